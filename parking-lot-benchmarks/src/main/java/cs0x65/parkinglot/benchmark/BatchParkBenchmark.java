@@ -0,0 +1,91 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parking a burst of cars into a half full lot and letting them leave again, car by car against the batch
+ * operations, and against the batch commands parsed and executed with their output. The scores are per car.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchParkBenchmark {
+    private static final int SIZE = 100_000;
+    private static final int BURST = 512;
+
+    private ParkingLot parkingLot;
+    private Car[] cars;
+    private long[] durations;
+    private final Ticket[] tickets = new Ticket[BURST];
+    private final DefaultParserImpl parser = new DefaultParserImpl();
+    private Command<ParkingLot> batchPark;
+    private Command<ParkingLot> batchLeave;
+    private final StringBuilder output = new StringBuilder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(SIZE);
+        Fixtures.fill(parkingLot, SIZE / 2);
+        // Free up every 3rd slot, so that the burst fills the holes first.
+        for (int i = 0; i < SIZE / 2; i += 3)
+            parkingLot.leave(new Car(Fixtures.regNo(i)), 4);
+        cars = new Car[BURST];
+        durations = new long[BURST];
+        for (int i = 0; i < BURST; i++) {
+            cars[i] = new Car(Fixtures.regNo(SIZE + i));
+            durations[i] = 4;
+        }
+        StringBuilder park = new StringBuilder("batch park");
+        StringBuilder leave = new StringBuilder("batch leave");
+        for (Car car : cars) {
+            park.append(' ').append(car.getRegNo());
+            leave.append(' ').append(car.getRegNo()).append(" 4");
+        }
+        try {
+            batchPark = parser.parse(park).setTarget(parkingLot);
+            batchLeave = parser.parse(leave).setTarget(parkingLot);
+        }catch (BadCommandException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Ticket[] carByCar() {
+        for (int i = 0; i < BURST; i++)
+            tickets[i] = parkingLot.park(cars[i]);
+        for (int i = 0; i < BURST; i++)
+            tickets[i] = parkingLot.leave(cars[i], 4);
+        return tickets;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Ticket[] batch() {
+        parkingLot.parkAll(cars, BURST, tickets, null);
+        parkingLot.leaveAll(cars, durations, BURST, tickets, null);
+        return tickets;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public StringBuilder batchCommands() throws CommandOutputFormatException, IOException {
+        output.setLength(0);
+        batchPark.executeAndAppend(output);
+        batchLeave.executeAndAppend(output);
+        return output;
+    }
+}
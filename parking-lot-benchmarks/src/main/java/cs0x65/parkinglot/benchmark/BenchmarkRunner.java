@@ -0,0 +1,42 @@
+package cs0x65.parkinglot.benchmark;
+
+import org.openjdk.jmh.Main;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The entry point of {@code benchmarks.jar}. It accepts the same options as the JMH {@link Main}, but unless told
+ * otherwise through {@code -rf} and {@code -rff}, writes the results as JSON to
+ * {@code jmh-results/<version>-<timestamp>.json}, so that the results can be tracked and compared across the releases.
+ */
+public final class BenchmarkRunner {
+    private static final String RESULTS_DIR = "jmh-results";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")){
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff")){
+            new File(RESULTS_DIR).mkdirs();
+            options.add("-rff");
+            options.add(RESULTS_DIR + File.separator + resultFileName());
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+
+    private static String resultFileName() {
+        String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+        return (version == null ? "dev" : version) + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())
+                + ".json";
+    }
+}
@@ -0,0 +1,76 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Command#execute()}, i.e. the invocation on the target plus the formatting of the output, for every
+ * {@link Command.Verb}. The parsing isn't included, see {@link ParserBenchmark} for it.
+ * <br/>
+ * A park has to be undone by a leave to keep the lot in the same state from one invocation to the next, so the park
+ * and the leave are measured as a pair; the difference from {@link #parkThenLeaveWithDuration()} gives an idea of the
+ * cost of the leave without the duration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandBenchmark {
+    private static final int SIZE = 1000;
+
+    private Command<ParkingLot> create;
+    private Command<ParkingLot> park;
+    private Command<ParkingLot> leave;
+    private Command<ParkingLot> leaveWithDuration;
+    private Command<ParkingLot> status;
+    private Command<ParkingLot> statusWithEmptySlots;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BadCommandException {
+        ParkingLot parkingLot = ParkingLot.create(SIZE);
+        Fixtures.fill(parkingLot, SIZE / 2);
+
+        DefaultParserImpl parser = new DefaultParserImpl();
+        create = parser.parse("create_parking_lot " + SIZE);
+        park = parser.parse("park MH-12-AB-1234").setTarget(parkingLot);
+        leave = parser.parse("leave MH-12-AB-1234").setTarget(parkingLot);
+        leaveWithDuration = parser.parse("leave MH-12-AB-1234 4").setTarget(parkingLot);
+        status = parser.parse("status").setTarget(parkingLot);
+        statusWithEmptySlots = parser.parse("status true").setTarget(parkingLot);
+    }
+
+    @Benchmark
+    public String createParkingLot() throws CommandOutputFormatException {
+        return create.execute();
+    }
+
+    @Benchmark
+    public String parkThenLeave() throws CommandOutputFormatException {
+        park.execute();
+        return leave.execute();
+    }
+
+    @Benchmark
+    public String parkThenLeaveWithDuration() throws CommandOutputFormatException {
+        park.execute();
+        return leaveWithDuration.execute();
+    }
+
+    @Benchmark
+    public String status() throws CommandOutputFormatException {
+        return status.execute();
+    }
+
+    @Benchmark
+    public String statusWithEmptySlots() throws CommandOutputFormatException {
+        return statusWithEmptySlots.execute();
+    }
+}
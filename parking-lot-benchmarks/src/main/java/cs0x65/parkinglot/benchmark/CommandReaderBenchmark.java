@@ -0,0 +1,70 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.io.BufferedCommandReader;
+import cs0x65.parkinglot.io.CommandReader;
+import cs0x65.parkinglot.io.ChannelCommandReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and parsing a whole command file through {@link BufferedCommandReader} v/s
+ * {@link ChannelCommandReader}. The score is the number of lines per second.
+ * <br/><br/>
+ * The channel reader used to memory map the file and copy the mapped bytes into it's block, at 2.7M to 3.5M lines a
+ * second across the runs on a single core. Scanning the mapped bytes in place, with the chunks unmapped as soon as
+ * they're read, measured 2.0M: the parser reads every character out of the {@code MappedByteBuffer}. Reading the file
+ * through the channel into the block measured 2.5M against 2.7M for the mapped copy in the same session, within the
+ * noise, and leaves no mapping behind.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandReaderBenchmark {
+    private static final int LINES = 1_000_000;
+
+    private final DefaultParserImpl parser = new DefaultParserImpl();
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("commands", ".txt");
+        Files.write(file, Arrays.asList(Fixtures.commands(LINES)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void bufferedReader(Blackhole blackhole) throws IOException, BadCommandException {
+        read(new BufferedCommandReader(file.toString()), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void channel(Blackhole blackhole) throws IOException, BadCommandException {
+        read(new ChannelCommandReader(file.toString()), blackhole);
+    }
+
+    private void read(CommandReader reader, Blackhole blackhole) throws IOException, BadCommandException {
+        try (CommandReader commandReader = reader){
+            CharSequence command;
+            while ((command = commandReader.readCommand()) != null){
+                blackhole.consume(parser.parse(command));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ConcurrentParkingLot;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the park/leave throughput of {@link ConcurrentParkingLot} with every benchmark thread acting as a gate that
+ * parks and un-parks it's own car. Run with increasing thread counts to check the scaling, for e.g.
+ * {@code java -jar target/benchmarks.jar ConcurrentParkLeave -t 1} then {@code -t 8}, {@code -t 32}.
+ * {@link #parkAndLeaveFromManyGates} runs 8 gates at a time whatever the thread count given.
+ * <br/><br/>
+ * The striped free slot counts and the contended searches carrying on from the gate's own region were measured on a
+ * single core only, where the 8 gates only interleave rather than contend: 3.0 against 3.4 ops/us from a single gate,
+ * and 3.3 against 3.2 ops/us from the 8 gates, both within the noise. The gain they're meant for needs as many cores
+ * as gates to show up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentParkLeaveBenchmark {
+    private static final int GATES = 8;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+        @Param({"100000"})
+        private int size;
+
+        private ConcurrentParkingLot parkingLot;
+        private final AtomicInteger gates = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            parkingLot = new ParkingLot.Builder(size).buildConcurrent();
+            // Half full, so that the gates contend over the same region of free slots.
+            for (int i = 0; i < size / 2; i++) {
+                parkingLot.park(new Car(Fixtures.regNo(i)));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private Car car;
+
+        @Setup(Level.Trial)
+        public void setUp(Lot lot) {
+            car = new Car("GATE-" + lot.gates.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public int parkAndLeave(Lot lot, Gate gate) {
+        int slot = lot.parkingLot.park(gate.car).getSlot();
+        lot.parkingLot.leave(gate.car, 1);
+        return slot;
+    }
+
+    @Benchmark
+    @Threads(GATES)
+    public int parkAndLeaveFromManyGates(Lot lot, Gate gate) {
+        return parkAndLeave(lot, gate);
+    }
+}
@@ -0,0 +1,73 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares executing a park + leave through the {@link Command} invokers against the reflective dispatch the commands
+ * used to go through, i.e. {@code Method.invoke} on the target followed by a {@code getDeclaredMethod(..).invoke(..)}
+ * per result accessor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    private static final String PARK_TEMPLATE = "Allocated slot number: %d";
+    private static final String LEAVE_TEMPLATE = "Registration number KA-01-HH-1234 with Slot Number %d is free " +
+            "with Charge %d";
+
+    private ParkingLot parkingLot;
+    private Command<ParkingLot> park;
+    private Command<ParkingLot> leave;
+
+    private Car car;
+    private Method parkMethod;
+    private Method leaveMethod;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BadCommandException, NoSuchMethodException {
+        parkingLot = ParkingLot.create(1000);
+        Fixtures.fill(parkingLot, 500);
+
+        DefaultParserImpl parser = new DefaultParserImpl();
+        park = parser.parse("park KA-01-HH-1234").setTarget(parkingLot);
+        leave = parser.parse("leave KA-01-HH-1234 3").setTarget(parkingLot);
+
+        car = new Car("KA-01-HH-1234");
+        parkMethod = ParkingLot.class.getMethod("park", Car.class);
+        leaveMethod = ParkingLot.class.getMethod("leave", Car.class, long.class);
+    }
+
+    @Benchmark
+    public String invoker() throws CommandOutputFormatException {
+        park.execute();
+        return leave.execute();
+    }
+
+    @Benchmark
+    public String reflection() throws Exception {
+        Object ticket = parkMethod.invoke(parkingLot, car);
+        String.format(PARK_TEMPLATE, bind(ticket, "getSlot"));
+        ticket = leaveMethod.invoke(parkingLot, car, 3L);
+        return String.format(LEAVE_TEMPLATE, bind(ticket, "getSlot", "getCharges"));
+    }
+
+    private static Object[] bind(Object result, String... accessors) throws Exception {
+        Object[] values = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            values[i] = result.getClass().getDeclaredMethod(accessors[i]).invoke(result);
+        }
+        return values;
+    }
+}
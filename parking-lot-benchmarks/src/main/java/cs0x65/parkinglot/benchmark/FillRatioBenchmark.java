@@ -0,0 +1,78 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ParkingLot#park(Car)} and {@link ParkingLot#leave(Car, long)} across the lot sizes and the fill
+ * ratios. The lot is filled up completely and then the random cars are un-parked till the fill ratio is reached, so
+ * the free slots are scattered all over the lot the way they are after a day of traffic.
+ * <br/>
+ * Each invocation parks and un-parks the same number of cars, so the fill ratio holds through out the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FillRatioBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.0", "0.5", "0.9", "0.99"})
+    private double fillRatio;
+
+    private ParkingLot parkingLot;
+    private Car visitor;
+    private Car[] parked;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(size);
+        Car[] cars = Fixtures.fill(parkingLot, size);
+        // Shuffle, so that the first cars of the array are un-parked from random slots.
+        Random random = new Random(size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Car car = cars[i];
+            cars[i] = cars[j];
+            cars[j] = car;
+        }
+        int toLeave = size - (int) (size * fillRatio);
+        for (int i = 0; i < toLeave; i++) {
+            parkingLot.leave(cars[i], 1);
+        }
+        parked = Arrays.copyOfRange(cars, toLeave, size);
+        visitor = new Car("MH-12-AB-1234");
+    }
+
+    /**
+     * Parks a car that's new to the lot at the nearest free slot and un-parks it again.
+     */
+    @Benchmark
+    public int parkThenLeave() {
+        int slot = parkingLot.park(visitor).getSlot();
+        parkingLot.leave(visitor, 1);
+        return slot;
+    }
+
+    /**
+     * Un-parks one of the parked cars and parks it back, which lands it at the nearest free slot.
+     */
+    @Benchmark
+    public int leaveThenPark() {
+        if (parked.length == 0)
+            return parkThenLeave();
+        Car car = parked[next];
+        next = next + 1 == parked.length ? 0 : next + 1;
+        parkingLot.leave(car, 1);
+        return parkingLot.park(car).getSlot();
+    }
+}
@@ -0,0 +1,79 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+
+/**
+ * Shared helpers to generate the data the benchmarks run against.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    /**
+     * @param i the sequence number of the car.
+     * @return a distinct, realistic looking registration number like KA-01-HH-1234 for every {@code i}.
+     */
+    static String regNo(int i) {
+        int number = i % 10000;
+        int series = (i / 10000) % 676;
+        int district = (i / 6760000) % 100;
+        return String.format("KA-%02d-%c%c-%04d", district, (char) ('A' + series / 26), (char) ('A' + series % 26),
+                number);
+    }
+
+    /**
+     * Parks {@code count} distinct cars into the supplied lot, occupying the slots 1 to {@code count}.
+     */
+    static Car[] fill(ParkingLot parkingLot, int count) {
+        Car[] cars = new Car[count];
+        for (int i = 0; i < count; i++) {
+            cars[i] = new Car(regNo(i));
+            parkingLot.park(cars[i]);
+        }
+        return cars;
+    }
+
+    /**
+     * Generates a replay of the gate traffic: a create followed by parks, leaves (half of them with the duration) and
+     * the occasional status.
+     * @param count the number of lines to generate.
+     */
+    static String[] commands(int count) {
+        String[] lines = new String[count];
+        lines[0] = "create_parking_lot " + count;
+        for (int i = 1; i < count; i++) {
+            if (i % 100 == 0)
+                lines[i] = "status";
+            else if (i % 3 == 0)
+                lines[i] = "leave " + regNo(i - 2) + (i % 2 == 0 ? " 4" : "");
+            else
+                lines[i] = "park " + regNo(i);
+        }
+        return lines;
+    }
+
+    /**
+     * Generates the same gate traffic as {@link #commands(int)}, but spread across many lots: the lots are created
+     * first, and then the commands are addressed to the lots in turns, for e.g. {@code @lot-3 park KA-00-AA-0001}.
+     * @param count the number of lines to generate.
+     * @param lots the number of lots.
+     */
+    static String[] multiLotCommands(int count, int lots) {
+        String[] lines = new String[count];
+        int perLot = count / lots + 1;
+        for (int lot = 0; lot < lots; lot++)
+            lines[lot] = "@lot-" + lot + " create_parking_lot " + perLot;
+        for (int i = lots; i < count; i++) {
+            int j = i / lots;
+            String prefix = "@lot-" + (i % lots) + " ";
+            if (j % 100 == 0)
+                lines[i] = prefix + "status";
+            else if (j % 3 == 0)
+                lines[i] = prefix + "leave " + regNo(j - 2) + (j % 2 == 0 ? " 4" : "");
+            else
+                lines[i] = prefix + "park " + regNo(j);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,53 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling up a lot of the given size, and the heap retained per parked car: the car, it's registration
+ * number, the slot table and the registration index. The score is the time to fill the lot; the bytes per
+ * car are printed at the end of every iteration, as the heap in use after a full GC, less the heap in use before the
+ * lot was created, over the number of cars.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class FootprintBenchmark {
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    private long heapBefore;
+    private ParkingLot parkingLot;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        parkingLot = null;
+        heapBefore = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        long bytesPerCar = (usedHeap() - heapBefore) / size;
+        System.out.println("Bytes per parked car: " + bytesPerCar + " (" + parkingLot.getNumOccupiedSlots() +
+                " cars)");
+    }
+
+    @Benchmark
+    public ParkingLot fill() {
+        parkingLot = ParkingLot.create(size);
+        Fixtures.fill(parkingLot, size);
+        return parkingLot;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
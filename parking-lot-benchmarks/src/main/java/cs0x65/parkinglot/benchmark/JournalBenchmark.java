@@ -0,0 +1,102 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.journal.JournalRecovery;
+import cs0x65.parkinglot.journal.WriteAheadJournal;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of journaling the parks and leaves through {@link WriteAheadJournal} with the group commit,
+ * and the time taken by {@link JournalRecovery} to replay a journal of 10 million records.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JournalBenchmark {
+    private static final int CARS = 5_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Journaled {
+        @Param({"false", "true"})
+        private boolean journaled;
+
+        private ParkingLot parkingLot;
+        private WriteAheadJournal journal;
+        private Car car;
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            parkingLot = ParkingLot.create(1000);
+            Fixtures.fill(parkingLot, 500);
+            car = new Car("MH-12-AB-1234");
+            if (journaled){
+                path = Files.createTempFile("journal", ".bin");
+                Files.delete(path);
+                journal = new WriteAheadJournal(path);
+                journal.recordCreate(parkingLot);
+                parkingLot.addListener(journal);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (journal != null){
+                journal.close();
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recorded {
+        private Path path;
+
+        /**
+         * Journals 5 million parks followed by 5 million leaves.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            path = Files.createTempFile("journal", ".bin");
+            Files.delete(path);
+            ParkingLot parkingLot = ParkingLot.create(CARS);
+            try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+                journal.recordCreate(parkingLot);
+                parkingLot.addListener(journal);
+                Car[] cars = Fixtures.fill(parkingLot, CARS);
+                for (Car car : cars) {
+                    parkingLot.leave(car, 3);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int parkThenLeave(Journaled state) {
+        int slot = state.parkingLot.park(state.car).getSlot();
+        state.parkingLot.leave(state.car, 1);
+        return slot;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ParkingLot recover(Recorded state) throws IOException {
+        return JournalRecovery.recover(state.path);
+    }
+}
@@ -0,0 +1,92 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.apache.logging.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the logging overhead per command: the leave and the park back of a car parsed and executed on a full lot,
+ * with the logging
+ * <ul>
+ *     <li>off: at the shipped ERROR level, the hot path statements are skipped by their level guards.</li>
+ *     <li>sync: at the INFO level through the synchronous loggers, every event is written by the parking thread and
+ *     the file is flushed after every event.</li>
+ *     <li>async: at the INFO level through the asynchronous loggers, as shipped, the events are handed over to the
+ *     logging thread and the file is flushed at the end of every batch.</li>
+ * </ul>
+ * The events are written to /dev/null unless {@code -Dparkinglot.benchmark.logFile} says otherwise. Every mode runs in
+ * a fork of it's own, so the logging is configured before the first logger is created.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private static final int SIZE = 1000;
+    private static final int LINES_MASK = (1 << 16) - 1;
+
+    @Param({"off", "sync", "async"})
+    private String mode;
+
+    private DefaultParserImpl parser;
+    private ParkingLot parkingLot;
+    private String[] leaves;
+    private String[] parks;
+    private final StringBuilder out = new StringBuilder();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("log4j2.configurationFile", "log4j2-benchmark.xml");
+        switch (mode){
+            case "sync":
+                System.setProperty("Log4jContextSelector",
+                        "org.apache.logging.log4j.core.selector.ClassLoaderContextSelector");
+                System.setProperty("parkinglot.logLevel", "INFO");
+                break;
+            case "async":
+                System.setProperty("Log4jContextSelector",
+                        "org.apache.logging.log4j.core.async.AsyncLoggerContextSelector");
+                System.setProperty("parkinglot.logLevel", "INFO");
+                System.setProperty("parkinglot.benchmark.immediateFlush", "false");
+                break;
+            default:
+                System.setProperty("parkinglot.logLevel", "ERROR");
+        }
+
+        parser = new DefaultParserImpl();
+        parkingLot = ParkingLot.create(SIZE);
+        Fixtures.fill(parkingLot, SIZE);
+        leaves = new String[LINES_MASK + 1];
+        parks = new String[LINES_MASK + 1];
+        Random random = new Random(SIZE);
+        for (int i = 0; i < leaves.length; i++) {
+            String regNo = Fixtures.regNo(random.nextInt(SIZE));
+            leaves[i] = "leave " + regNo + " 4";
+            parks[i] = "park " + regNo;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public int leaveThenPark() throws BadCommandException, CommandOutputFormatException, IOException {
+        int i = next++ & LINES_MASK;
+        out.setLength(0);
+        parser.parse(leaves[i]).setTarget(parkingLot).executeAndAppend(out);
+        parser.parse(parks[i]).setTarget(parkingLot).executeAndAppend(out);
+        return out.length();
+    }
+}
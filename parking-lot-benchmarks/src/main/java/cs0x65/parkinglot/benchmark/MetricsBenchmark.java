@@ -0,0 +1,56 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the {@link MetricsRegistry} to the execution of a park and a leave, same as
+ * {@link CommandBenchmark#parkThenLeaveWithDuration()}: without the metrics, timing every command, and timing the
+ * default sample of the commands. The lot is registered with the metrics too, so the parks and the leaves are counted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private static final int SIZE = 1000;
+
+    /**
+     * Time 1 in so many commands, 0 being no metrics at all.
+     */
+    @Param({"0", "1", "16"})
+    private int sampleEvery;
+
+    private Command<ParkingLot> park;
+    private Command<ParkingLot> leave;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BadCommandException {
+        ParkingLot parkingLot = ParkingLot.create(SIZE);
+        Fixtures.fill(parkingLot, SIZE / 2);
+
+        DefaultParserImpl parser = new DefaultParserImpl();
+        if (sampleEvery > 0){
+            MetricsRegistry metrics = new MetricsRegistry(sampleEvery);
+            metrics.register(parkingLot);
+            parser.withMetrics(metrics);
+        }
+        park = parser.parse("park MH-12-AB-1234").setTarget(parkingLot);
+        leave = parser.parse("leave MH-12-AB-1234 4").setTarget(parkingLot);
+    }
+
+    @Benchmark
+    public String parkThenLeave() throws CommandOutputFormatException {
+        park.execute();
+        return leave.execute();
+    }
+}
@@ -0,0 +1,71 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.io.BatchedOutputWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the command outputs to a file through an auto flushing {@code println} per output v/s the
+ * {@link BatchedOutputWriter}. The score is the number of outputs per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+    private static final int LINES = 100_000;
+
+    @Param({"0", "1"})
+    public int flushEvery;
+
+    private String[] outputs;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        outputs = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            outputs[i] = i % 2 == 0 ? "Allocated slot number: " + i :
+                    "Registration number " + Fixtures.regNo(i) + " with Slot Number " + i + " is free with Charge 30";
+        }
+        file = Files.createTempFile("output", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * The way the outputs used to be printed; it always flushes every output so {@code flushEvery} doesn't apply.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void println() throws IOException {
+        try (PrintStream printStream = new PrintStream(new FileOutputStream(file.toFile()), true)){
+            for (String output : outputs) {
+                printStream.println(output);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void batched() throws IOException {
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(new FileOutputStream(file.toFile()), true,
+                flushEvery, BatchedOutputWriter.DEFAULT_BUFFER_SIZE, Charset.defaultCharset())){
+            for (String output : outputs) {
+                writer.writeLine(output);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a park followed by a leave on a lot that's full except for a single slot in the middle, which
+ * is the worst case for finding the nearest available slot by scanning from the entry.
+ * <br/>
+ * The cost is expected to stay flat as the lot size grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class ParkLeaveBenchmark {
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private ParkingLot parkingLot;
+    private Car car;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(size);
+        Car[] cars = Fixtures.fill(parkingLot, size);
+        // Free up the middle slot so that there's exactly one, far from the entry, available slot.
+        car = cars[size / 2];
+        parkingLot.leave(car, 1);
+    }
+
+    @Benchmark
+    public int parkAndLeave() {
+        int slot = parkingLot.park(car).getSlot();
+        parkingLot.leave(car, 1);
+        return slot;
+    }
+}
@@ -0,0 +1,65 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.io.Processor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Processor#processCommands()} end to end on a large command file, with the reading, parsing,
+ * execution and writing all on the calling thread versus staged across three threads by
+ * {@link Processor#withPipeline(int)}. The score is the number of commands per second.
+ * <br/>
+ * The status of {@link Fixtures#commands(int)} is swapped for a park, so the output stays proportional to the input as
+ * the lot fills up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    private static final int LINES = 1_000_000;
+
+    /**
+     * The commands in flight between the stages, 0 being no pipeline.
+     */
+    @Param({"0", "1024"})
+    private int pipelineCapacity;
+
+    private Path commandFile;
+    private Path outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] commands = Fixtures.commands(LINES);
+        for (int i = 0; i < LINES; i++) {
+            if (commands[i].equals("status"))
+                commands[i] = "park " + Fixtures.regNo(i);
+        }
+        commandFile = Files.createTempFile("commands", ".txt");
+        Files.write(commandFile, Arrays.asList(commands));
+        outputFile = Files.createTempFile("output", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(commandFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void processCommands() {
+        Processor processor = new Processor(commandFile.toString(), outputFile.toString())
+                .withInputMode(Processor.InputMode.CHANNEL);
+        if (pipelineCapacity > 0)
+            processor.withPipeline(pipelineCapacity);
+        processor.processCommands();
+    }
+}
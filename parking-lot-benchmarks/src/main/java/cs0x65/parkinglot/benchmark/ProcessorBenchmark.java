@@ -0,0 +1,51 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.io.Processor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Processor#processCommands()} end to end: reading, parsing and executing a generated command file
+ * and writing the outputs to a file. The score is the number of commands per second.
+ * <br/>
+ * Every 100th command is a status, which dominates the output as the lot fills up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+    private static final int LINES = 10_000;
+
+    @Param({"BUFFERED", "CHANNEL"})
+    private Processor.InputMode inputMode;
+
+    private Path commandFile;
+    private Path outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        commandFile = Files.createTempFile("commands", ".txt");
+        Files.write(commandFile, Arrays.asList(Fixtures.commands(LINES)));
+        outputFile = Files.createTempFile("output", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(commandFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void processCommands() {
+        new Processor(commandFile.toString(), outputFile.toString()).withInputMode(inputMode).processCommands();
+    }
+}
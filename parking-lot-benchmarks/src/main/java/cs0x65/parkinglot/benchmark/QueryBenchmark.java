@@ -0,0 +1,64 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the colour and the registration number queries of a full lot that has 100 red cars spread evenly across it,
+ * against a scan of the whole status, which is what answering the colour query took without the colour index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    private static final int RED_CARS = 100;
+
+    @Param({"1000", "1000000"})
+    private int size;
+
+    private ParkingLot parkingLot;
+    private String regNo;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(size);
+        int every = size / RED_CARS;
+        for (int i = 0; i < size; i++)
+            parkingLot.park(i % every == 0 ? new Car(Fixtures.regNo(i), "Red") : new Car(Fixtures.regNo(i)));
+        regNo = Fixtures.regNo(size / 2 + 1);
+    }
+
+    @Benchmark
+    public int slotNumbersWithColor() throws IOException {
+        out.setLength(0);
+        parkingLot.slotNumbersWithColor("Red", out);
+        return out.length();
+    }
+
+    @Benchmark
+    public int registrationNumbersWithColor() throws IOException {
+        out.setLength(0);
+        parkingLot.registrationNumbersWithColor("Red", out);
+        return out.length();
+    }
+
+    @Benchmark
+    public int slotNumberForRegistrationNumber() {
+        return parkingLot.getSlotNumber(regNo);
+    }
+
+    @Benchmark
+    public int statusScan() throws IOException {
+        out.setLength(0);
+        parkingLot.status(false, out);
+        return out.length();
+    }
+}
@@ -0,0 +1,48 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking the parked cars up by their registration numbers: a leave of a random parked car followed by the
+ * park of it back, on a full lot. The cars are created afresh from the text for every command, the way the parser
+ * does, so the registration numbers come without their hash codes cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RegistrationLookupBenchmark {
+    private static final int CARS_MASK = (1 << 16) - 1;
+
+    @Param({"1000", "1000000"})
+    private int size;
+
+    private ParkingLot parkingLot;
+    private char[][] regNos;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(size);
+        Car[] cars = Fixtures.fill(parkingLot, size);
+        // A random sample of the parked cars, visited round robin.
+        regNos = new char[CARS_MASK + 1][];
+        Random random = new Random(size);
+        for (int i = 0; i < regNos.length; i++)
+            regNos[i] = cars[random.nextInt(size)].getRegNo().toCharArray();
+    }
+
+    @Benchmark
+    public int leaveThenPark() {
+        char[] regNo = regNos[next++ & CARS_MASK];
+        parkingLot.leave(new Car(new String(regNo)), 1);
+        return parkingLot.park(new Car(new String(regNo))).getSlot();
+    }
+}
@@ -0,0 +1,63 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.PlateDictionary;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and executing the leave and the park back of the cars of a full lot, the cars being seen again and
+ * again the way the regulars are over a day's traffic. The plate dictionary of the parser is either big enough to
+ * hold all the cars, or of the capacity 1, which practically creates a new car for every command. The outputs are
+ * appended to a reused buffer, the way the command pipeline does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepeatedSightingsBenchmark {
+    private static final int SIZE = 1000;
+    private static final int LINES_MASK = (1 << 16) - 1;
+
+    @Param({"1", "4096"})
+    private int dictionaryCapacity;
+
+    private DefaultParserImpl parser;
+    private ParkingLot parkingLot;
+    private String[] leaves;
+    private String[] parks;
+    private final StringBuilder out = new StringBuilder();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parser = new DefaultParserImpl(new PlateDictionary(dictionaryCapacity));
+        parkingLot = ParkingLot.create(SIZE);
+        Fixtures.fill(parkingLot, SIZE);
+        leaves = new String[LINES_MASK + 1];
+        parks = new String[LINES_MASK + 1];
+        Random random = new Random(SIZE);
+        for (int i = 0; i < leaves.length; i++) {
+            String regNo = Fixtures.regNo(random.nextInt(SIZE));
+            leaves[i] = "leave " + regNo + " 4";
+            parks[i] = "park " + regNo;
+        }
+    }
+
+    @Benchmark
+    public int leaveThenPark() throws BadCommandException, CommandOutputFormatException, IOException {
+        int i = next++ & LINES_MASK;
+        out.setLength(0);
+        parser.parse(leaves[i]).setTarget(parkingLot).executeAndAppend(out);
+        parser.parse(parks[i]).setTarget(parkingLot).executeAndAppend(out);
+        return out.length();
+    }
+}
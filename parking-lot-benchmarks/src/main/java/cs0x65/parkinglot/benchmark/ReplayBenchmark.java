@@ -0,0 +1,80 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.engine.LotEngine;
+import cs0x65.parkinglot.io.Processor;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures replaying a command file addressed to 64 lots through the {@link LotEngine}: one command at a time versus
+ * in the sharded batches of {@link cs0x65.parkinglot.engine.ReplayBatch}, across the given number of lanes, with and
+ * without the {@link MetricsRegistry}, read by either {@link Processor.InputMode}. The score is the number of commands
+ * per second.
+ * <br/><br/>
+ * The batch used to copy every line it's handed into a {@code String}, which threw away the view over the bytes the
+ * {@link cs0x65.parkinglot.io.ChannelCommandReader} hands out. Copying the characters into the batch's own text
+ * instead took the batches of 4096 commands read by the channel reader, then still memory mapped, on a single lane
+ * from 89 to 30 bytes and from 396K to 474K commands a second. The buffered reader creates a {@code String} per line
+ * whatever the batch does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+    private static final int LINES = 100_000;
+    private static final int LOTS = 64;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    /**
+     * The commands per batch, 0 being one command at a time.
+     */
+    @Param({"0", "4096"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean metrics;
+
+    @Param({"BUFFERED", "CHANNEL"})
+    private Processor.InputMode inputMode;
+
+    private Path commandFile;
+    private Path outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        commandFile = Files.createTempFile("commands", ".txt");
+        Files.write(commandFile, Arrays.asList(Fixtures.multiLotCommands(LINES, LOTS)));
+        outputFile = Files.createTempFile("output", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(commandFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void replay() {
+        try (LotEngine engine = new LotEngine(parallelism)){
+            Processor processor = new Processor(commandFile.toString(), outputFile.toString()).withLotEngine(engine)
+                    .withInputMode(inputMode);
+            if (batchSize > 0)
+                processor.withReplayBatchSize(batchSize);
+            if (metrics)
+                processor.withMetrics(new MetricsRegistry(), null);
+            processor.processCommands();
+        }
+    }
+}
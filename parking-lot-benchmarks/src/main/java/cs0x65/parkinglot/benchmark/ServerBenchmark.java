@@ -0,0 +1,85 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.engine.LotEngine;
+import cs0x65.parkinglot.server.ParkingLotClient;
+import cs0x65.parkinglot.server.ParkingLotServer;
+import cs0x65.parkinglot.server.Protocol;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ParkingLotServer} over the loopback, with the {@link ParkingLotClient} as the gate controller:
+ * <ul>
+ *     <li>{@link #parkAndLeave()}: the latency of a park followed by a leave, each waiting for it's response. The
+ *     sample time mode reports the percentiles, for e.g. the p99.</li>
+ *     <li>{@link #pipelined()}: the throughput of the parks and leaves pipelined in bursts of {@link #BURST}, the
+ *     score being the number of commands per second.</li>
+ * </ul>
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+    private static final int BURST = 256;
+    private static final int CARS = 1024;
+
+    @Param({"TEXT", "BINARY"})
+    private Protocol protocol;
+
+    private LotEngine engine;
+    private ParkingLotServer server;
+    private ParkingLotClient client;
+    private String[] parks;
+    private String[] leaves;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        engine = new LotEngine(1);
+        server = new ParkingLotServer(engine, new InetSocketAddress("127.0.0.1", 0)).start();
+        client = new ParkingLotClient(server.getAddress(), protocol);
+        client.call("@gate create_parking_lot " + CARS);
+        parks = new String[CARS];
+        leaves = new String[CARS];
+        for (int i = 0; i < CARS; i++) {
+            parks[i] = "@gate park " + Fixtures.regNo(i);
+            leaves[i] = "@gate leave " + Fixtures.regNo(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+        engine.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String parkAndLeave() throws IOException {
+        int i = next++ & (CARS - 1);
+        client.call(parks[i]);
+        return client.call(leaves[i]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(2 * BURST)
+    public String pipelined() throws IOException {
+        for (int i = 0; i < BURST; i++) {
+            client.send(parks[i]);
+            client.send(leaves[i]);
+        }
+        client.flush();
+        String output = null;
+        for (int i = 0; i < 2 * BURST; i++)
+            output = client.receive();
+        return output;
+    }
+}
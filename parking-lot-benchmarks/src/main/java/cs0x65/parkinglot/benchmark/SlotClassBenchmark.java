@@ -0,0 +1,60 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a park followed by a leave of a motorcycle on a lot of a million slots, the slots being laid out in the
+ * given number of ranges of the motorcycle, compact, large and EV classes in turns, or all of the same class for a
+ * single range. All the slots are occupied but one large slot near the end, so the motorcycle is upsized twice and the
+ * park goes through the pools of three classes.
+ * <br/>
+ * The cost is expected to grow with the log of the number of ranges only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SlotClassBenchmark {
+    private static final int SIZE = 1_000_000;
+    private static final VehicleClass[] LAYOUT = {VehicleClass.MOTORCYCLE, VehicleClass.COMPACT, VehicleClass.LARGE,
+            VehicleClass.EV};
+
+    @Param({"1", "4", "1000", "100000"})
+    private int ranges;
+
+    private ParkingLot parkingLot;
+    private Car motorcycle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParkingLot.Builder builder = new ParkingLot.Builder(SIZE);
+        int rangeSize = SIZE / ranges;
+        for (int r = 0; ranges > 1 && r < ranges; r++)
+            builder.withSlotClass(LAYOUT[r % LAYOUT.length], r * rangeSize + 1, (r + 1) * rangeSize);
+        parkingLot = builder.build();
+        Car[] cars = new Car[SIZE];
+        for (int slot = 1; slot <= SIZE; slot++) {
+            cars[slot - 1] = new Car(Fixtures.regNo(slot), Car.DEFAULT_COLOR, parkingLot.getSlotClass(slot));
+            parkingLot.park(cars[slot - 1]);
+        }
+        int free = SIZE;
+        while (parkingLot.getSlotClass(free) != VehicleClass.LARGE && ranges > 1)
+            free--;
+        parkingLot.leave(cars[free - 1], 1);
+        motorcycle = new Car(Fixtures.regNo(0), Car.DEFAULT_COLOR, VehicleClass.MOTORCYCLE);
+    }
+
+    @Benchmark
+    public int parkAndLeave() {
+        int slot = parkingLot.park(motorcycle).getSlot();
+        parkingLot.leave(motorcycle, 1);
+        return slot;
+    }
+}
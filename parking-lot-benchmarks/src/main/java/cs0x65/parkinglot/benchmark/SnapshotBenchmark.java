@@ -0,0 +1,75 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.ParkingLotSnapshot;
+import cs0x65.parkinglot.journal.SnapshotFile;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the snapshots of a parking lot with 1 million occupied slots: taking the snapshot, which is what the
+ * parks and leaves wait for, writing it through {@link SnapshotFile} and loading it back.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SnapshotBenchmark {
+    private static final int CARS = 1_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Occupied {
+        private ParkingLot parkingLot;
+        private Car car;
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            parkingLot = ParkingLot.create(CARS + 1);
+            Fixtures.fill(parkingLot, CARS);
+            car = new Car("MH-12-AB-1234");
+            path = Files.createTempFile("snapshot", ".bin");
+            SnapshotFile.write(parkingLot.snapshot(), 0, path);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * The snapshot plus the park and the leave right after it, which copy the page they write to.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public ParkingLotSnapshot snapshotThenParkAndLeave(Occupied state) {
+        ParkingLotSnapshot snapshot = state.parkingLot.snapshot();
+        state.parkingLot.park(state.car);
+        state.parkingLot.leave(state.car, 1);
+        return snapshot;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public void write(Occupied state) throws IOException {
+        SnapshotFile.write(state.parkingLot.snapshot(), 0, state.path);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public ParkingLot load(Occupied state) throws IOException {
+        return SnapshotFile.load(state.path);
+    }
+}
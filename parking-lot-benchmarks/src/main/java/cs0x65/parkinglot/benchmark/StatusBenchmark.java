@@ -0,0 +1,50 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ParkingLot#status(boolean)} with and without the empty slots, on a lot where every other slot is
+ * occupied, as well as streaming the status into a reused buffer through {@link ParkingLot#status(boolean, Appendable)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StatusBenchmark {
+    @Param({"100", "10000", "1000000"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean includeEmptySlots;
+
+    private ParkingLot parkingLot;
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLot = ParkingLot.create(size);
+        Car[] cars = Fixtures.fill(parkingLot, size);
+        for (int i = 0; i < size; i += 2) {
+            parkingLot.leave(cars[i], 1);
+        }
+    }
+
+    @Benchmark
+    public String status() {
+        return parkingLot.status(includeEmptySlots);
+    }
+
+    @Benchmark
+    public int streamedStatus() throws IOException {
+        buffer.setLength(0);
+        parkingLot.status(includeEmptySlots, buffer);
+        return buffer.length();
+    }
+}
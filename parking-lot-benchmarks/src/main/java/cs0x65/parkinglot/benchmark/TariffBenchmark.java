@@ -0,0 +1,97 @@
+package cs0x65.parkinglot.benchmark;
+
+import cs0x65.parkinglot.tariff.Tariff;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures pricing a stay by a tariff with the time of the day, the weekend and the daily cap rules, for a stay of an
+ * hour and of 30 days, against summing the rates minute by minute. The bulk benchmarks price a million closed sessions
+ * one by one, and through the parallel bulk API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TariffBenchmark {
+    private static final long MINUTE = 60_000;
+    private static final int SESSIONS = 1_000_000;
+    // Monday, 2024-01-01 00:00 UTC.
+    private static final long MONDAY = 1_704_067_200_000L;
+
+    @Param({"60", "43200"})
+    private int stayMinutes;
+
+    private Tariff tariff;
+    private long[] minuteRates;
+    private long parkedAt;
+    private long[] parkedAts;
+    private long[] leftAts;
+    private long[] charges;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tariff = new Tariff.Builder(20)
+                .withWeekdayRate(LocalTime.of(8, 0), LocalTime.of(18, 0), 40)
+                .withWeekendRate(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT, 5)
+                .withDailyCap(300)
+                .build();
+        minuteRates = new long[7 * 24 * 60];
+        for (int minute = 0; minute < minuteRates.length; minute++) {
+            int minuteOfDay = minute % (24 * 60);
+            minuteRates[minute] = minute >= 5 * 24 * 60 ? 5 : minuteOfDay >= 8 * 60 && minuteOfDay < 18 * 60 ? 40 : 20;
+        }
+        parkedAt = MONDAY + 13 * 60 * MINUTE + 17;
+
+        Random random = new Random(SESSIONS);
+        parkedAts = new long[SESSIONS];
+        leftAts = new long[SESSIONS];
+        charges = new long[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            parkedAts[i] = MONDAY + (long) (random.nextDouble() * 365 * 24 * 60 * MINUTE);
+            leftAts[i] = parkedAts[i] + (long) (random.nextDouble() * stayMinutes * MINUTE);
+        }
+    }
+
+    @Benchmark
+    public long compiled() {
+        return tariff.charge(parkedAt, parkedAt + stayMinutes * MINUTE);
+    }
+
+    @Benchmark
+    public long minuteByMinute() {
+        long total = 0;
+        long day = 0;
+        long from = parkedAt / MINUTE;
+        for (long minute = from; minute < from + stayMinutes; minute++) {
+            if (minute % (24 * 60) == 0){
+                total += Math.min(300 * 60, day);
+                day = 0;
+            }
+            // The epoch day 0 was a Thursday.
+            day += minuteRates[(int) ((minute + 3 * 24 * 60) % minuteRates.length)];
+        }
+        total += Math.min(300 * 60, day);
+        return (total + 59) / 60;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public long[] bulkSequential() {
+        for (int i = 0; i < SESSIONS; i++)
+            charges[i] = tariff.charge(parkedAts[i], leftAts[i]);
+        return charges;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public long[] bulkParallel() {
+        tariff.charge(parkedAts, leftAts, charges);
+        return charges;
+    }
+}
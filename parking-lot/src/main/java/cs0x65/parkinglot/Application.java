@@ -1,19 +1,65 @@
 package cs0x65.parkinglot;
 
+import cs0x65.parkinglot.engine.LotEngine;
 import cs0x65.parkinglot.io.Processor;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
+import cs0x65.parkinglot.server.ParkingLotServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs the commands of the given file, or with {@code --server [port]} serves the parking lots over TCP till the
+ * process is killed, see {@link ParkingLotServer}.
+ * <br/>
+ * With {@code --metrics} ahead of the other arguments, the metrics of the commands and the parking lots are exposed
+ * through JMX, and the report of the metrics is written to {@link System#err} once the commands of the file are run.
+ */
 public class Application {
+    private static final String SERVER_OPTION = "--server";
+    private static final String METRICS_OPTION = "--metrics";
     private static final Logger LOGGER = LogManager.getLogger(Application.class.getName());
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
         LOGGER.info("Starting parking lot app..." );
-        if (args.length < 1) {
+        MetricsRegistry metrics = null;
+        int first = 0;
+        if (args.length > 0 && args[0].equals(METRICS_OPTION)){
+            metrics = registerMetrics();
+            first = 1;
+        }
+        if (args.length <= first) {
             LOGGER.error("Please supply the file to read commands from!");
             throw new IllegalArgumentException("Missing commands file! Please provide the file to read commands from");
         }
-        LOGGER.info("Reading commands from the file {}", args[0]);
-        Processor processor = new Processor(args[0]);
+        if (args[first].equals(SERVER_OPTION)){
+            int port = args.length > first + 1 ? Integer.parseInt(args[first + 1]) : ParkingLotServer.DEFAULT_PORT;
+            LotEngine engine = new LotEngine().withMetrics(metrics);
+            // The server thread keeps the process alive.
+            new ParkingLotServer(engine, new InetSocketAddress(port)).start();
+            return;
+        }
+        LOGGER.info("Reading commands from the file {}", args[first]);
+        Processor processor = new Processor(args[first]);
+        if (metrics != null)
+            processor.withMetrics(metrics, System.err);
         processor.processCommands();
     }
+
+    /**
+     * @return the metrics registered with the platform MBean server, they're kept even if the registration fails.
+     */
+    private static MetricsRegistry registerMetrics() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try {
+            metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        }catch (JMException e){
+            LOGGER.error("Failed to expose the metrics through JMX");
+            LOGGER.error(e);
+        }
+        return metrics;
+    }
 }
@@ -12,15 +12,31 @@ import java.util.Arrays;
  * </ul>
  */
 public class BadCommandException extends Exception{
+    /**
+     * The kinds of the parse failures, for e.g. to count them by the kind.
+     */
+    public enum Reason {
+        UNSUPPORTED_COMMAND,
+        INVALID_ARGUMENT
+    }
+
     private static final String badCommandMessage = badCommandMessageTemplate();
     private static final String badArgumentMessage = badArgumentMessageTemplate();
 
+    private final Reason reason;
+
     public BadCommandException(String verb) {
         super(String.format(badCommandMessage, verb));
+        this.reason = Reason.UNSUPPORTED_COMMAND;
     }
 
     public BadCommandException(String verb, String arg, String usageDetails) {
         super(String.format(badArgumentMessage, arg, verb, usageDetails));
+        this.reason = Reason.INVALID_ARGUMENT;
+    }
+
+    public Reason getReason() {
+        return reason;
     }
 
     private static String badCommandMessageTemplate(){
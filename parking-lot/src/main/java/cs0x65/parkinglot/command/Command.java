@@ -1,16 +1,16 @@
 package cs0x65.parkinglot.command;
 
 import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.metrics.CommandMetrics;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * This class represents the domain specific abstraction of the supplied text commands.
@@ -29,8 +29,7 @@ import java.util.List;
  *         The result object which is the domain specific result of executing the command on the target T
  *     </li>
  *     <li>
- *         The {@code verbMethod} {@link java.lang.reflect.Method} that will be invoked on the target T to obtain the
- *         result
+ *         The {@link Invoker} that will be invoked on the target T to obtain the result
  *      </li>
  *      <li>
  *          Because commands essentially produce formatted output that's rendered on {@code STOUT} or {@code STDERR}
@@ -47,12 +46,19 @@ public class Command<T> {
         CREATE_PARKING_LOT("create"),
         PARK("park"),
         LEAVE("leave"),
-        STATUS("status");
+        STATUS("status"),
+        // The queries, appended so that the ordinals of the verbs above, used by the binary protocol, are unchanged.
+        REGISTRATION_NUMBERS_FOR_CARS_WITH_COLOUR("registrations"),
+        SLOT_NUMBERS_FOR_CARS_WITH_COLOUR("slots"),
+        SLOT_NUMBER_FOR_REGISTRATION_NUMBER("slot"),
+        BATCH("batch");
 
         private final String internal;
+        private final String lName;
 
         Verb(String internal){
             this.internal = internal;
+            this.lName = name().toLowerCase();
         }
 
         public String internal(){
@@ -60,17 +66,57 @@ public class Command<T> {
         }
 
         public String lName(){
-            return name().toLowerCase();
+            return lName;
         }
     }
 
+    /**
+     * Binds the command to the domain specific method of the target that implements it, for e.g.
+     * {@code (parkingLot, args) -> parkingLot.park((Car) args[0])}.
+     * <br/>
+     * The invokers are plain typed lambdas built once per {@link Verb} by the parser, so executing a command doesn't
+     * involve any reflective lookup or invocation.
+     * @param <T> the target class that implements the domain specific commands.
+     */
+    @FunctionalInterface
+    public interface Invoker<T> {
+        /**
+         *
+         * @param target the target to execute the command on. It's null for the commands that don't need a target,
+         *               like the one that creates the target itself.
+         * @param args the arguments supplied for the given command.
+         * @return the domain specific result of executing the command.
+         */
+        Object invoke(T target, Object[] args);
+    }
+
+    /**
+     * The variant of the {@link Invoker} for the commands with a large output, like the status of a large parking lot,
+     * that writes the output straight into the rendering target rather than returning it as a result, for e.g.
+     * {@code (parkingLot, args, out) -> parkingLot.status((Boolean) args[0], out)}.
+     * @param <T> the target class that implements the domain specific commands.
+     */
+    @FunctionalInterface
+    public interface StreamingInvoker<T> {
+        /**
+         *
+         * @param target the target to execute the command on.
+         * @param args the arguments supplied for the given command.
+         * @param out the target to write the output of the command to.
+         * @throws IOException if the output target fails to write.
+         */
+        void invoke(T target, Object[] args, Appendable out) throws IOException;
+    }
+
     private T target;
-    private final Method verbMethod;
+    private final Invoker<T> invoker;
+    private StreamingInvoker<T> streamingInvoker;
     private final Verb verb;
     private final Object[] args;
-    private List<String> resultAccessors;
+    private List<Function<Object, ?>> resultAccessors;
     private String outputTemplate;
     private Object result;
+    private MetricsRegistry metrics;
 
     private static final Logger LOGGER = LogManager.getLogger(Command.class.getName());
 
@@ -78,13 +124,12 @@ public class Command<T> {
      *
      * @param verb {@link Verb} identifies the command verb/action/directive. Each command has a distinct, un-ambiguous
      *                         verb associated with it.
-     * @param verbMethod {@link java.lang.reflect.Method} that will be invoked on the target T to obtain the
-     *  *         result
+     * @param invoker {@link Invoker} that will be invoked on the target T to obtain the result
      * @param args the arguments supplied for the given command.
      */
-    public Command(Verb verb, Method verbMethod, Object... args) {
+    public Command(Verb verb, Invoker<T> invoker, Object... args) {
         this.verb = verb;
-        this.verbMethod = verbMethod;
+        this.invoker = invoker;
         this.args = args;
     }
 
@@ -98,7 +143,7 @@ public class Command<T> {
 
     /**
      *
-     * @return the domain specific object that's returned by executing the {@code verbMethod} on the target.
+     * @return the domain specific object that's returned by executing the {@code invoker} on the target.
      * {@code execute} and it's variant do the work of generating a formatted textual output that's more suitable for
      * rendering to {@code STOUT} or {@code STDERR} or to file streams/readers.
      * Make sure to call this method to retrieve the result only after invoking one of the {@code execute} method on
@@ -110,12 +155,12 @@ public class Command<T> {
 
     /**
      *
-     * @param resultAccessors are the accessor/getter method names that are invoked on the underlying target so that
+     * @param resultAccessors are the accessor/getter functions that are applied on the result of the command so that
      *                        the returned values from the invocation are bind to the the output template placeholders.
      *                        They generate a formatted textual output out of output template that's more suitable for
      *                        rendering to {@code STOUT} or {@code STDERR} or to file streams/readers.
      */
-    public void setResultAccessors(List<String> resultAccessors) {
+    public void setResultAccessors(List<Function<Object, ?>> resultAccessors) {
         this.resultAccessors = resultAccessors;
     }
 
@@ -128,6 +173,38 @@ public class Command<T> {
         this.outputTemplate = outputTemplate;
     }
 
+    /**
+     *
+     * @param streamingInvoker is used by {@link #executeAndAppend(Appendable)} in place of the {@link Invoker}, so that
+     *                         the output is written straight into the rendering target.
+     */
+    public void setStreamingInvoker(StreamingInvoker<T> streamingInvoker) {
+        this.streamingInvoker = streamingInvoker;
+    }
+
+    /**
+     *
+     * @param metrics the registry the command records it's execution to, see {@link CommandMetrics}, or null to not
+     *                record it. It's typically set by the parser.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Binds the same command, with the same arguments and output template, to a different implementation, for e.g.
+     * to create the parking lot within a registry rather than standalone.
+     * @param invoker {@link Invoker} that will be invoked on the target T to obtain the result
+     * @return the new command bound to the given invoker, without a streaming invoker or a target.
+     */
+    public Command<T> withInvoker(Invoker<T> invoker) {
+        Command<T> command = new Command<>(verb, invoker, args);
+        command.resultAccessors = resultAccessors;
+        command.outputTemplate = outputTemplate;
+        command.metrics = metrics;
+        return command;
+    }
+
     /**
      *
      * @param target sets the target - which is the domain specific implementation of the group of commands relevant to
@@ -178,42 +255,95 @@ public class Command<T> {
         writer.write(exec());
     }
 
+    /**
+     * Behaves like {@code execute()} but appends the output to the supplied target. If the command has a
+     * {@link StreamingInvoker}, the output is written into the target as it's produced without being built up in
+     * memory first, and {@link #getResult()} returns null unless the invocation fails.
+     * @param out the target to append the output to, for e.g. a {@link Writer}.
+     * @throws CommandOutputFormatException
+     * @throws IOException if the target fails to write.
+     */
+    public void executeAndAppend(Appendable out) throws CommandOutputFormatException, IOException {
+        if (streamingInvoker == null){
+            out.append(exec());
+            return;
+        }
+        if (metrics == null){
+            stream(out);
+            return;
+        }
+        CommandMetrics commandMetrics = metrics.get(verb);
+        boolean sampled = commandMetrics.sample();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            stream(out);
+        }finally {
+            commandMetrics.record(result instanceof RuntimeException, sampled ? System.nanoTime() - start : -1);
+        }
+    }
+
+    private void stream(Appendable out) throws IOException {
+        try {
+            result = null;
+            streamingInvoker.invoke(target, args, out);
+        }catch (RuntimeException e){
+            // Same as exec(), render the error message as the output.
+            result = e;
+            out.append(e.getMessage());
+        }
+    }
+
+    /**
+     * Invokes the command, recording it to the metrics if it has any. Only the sampled commands read the clock.
+     */
     private String exec() throws CommandOutputFormatException{
+        if (metrics == null)
+            return invoke();
+        CommandMetrics commandMetrics = metrics.get(verb);
+        boolean sampled = commandMetrics.sample();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            return invoke();
+        }finally {
+            commandMetrics.record(result instanceof RuntimeException, sampled ? System.nanoTime() - start : -1);
+        }
+    }
+
+    private String invoke() throws CommandOutputFormatException{
+        try {
+            result = invoker.invoke(target, args);
+        }catch (RuntimeException e){
+            // The exception has been thrown by the underlying target method.
+            // We would like to show the relevant error message on the command console/STDOUT.
+            // For such cases, grab the exception and the corresponding message and return it as the output to be
+            // rendered to relevant out/rendering stream.
+            result = e;
+            return e.getMessage();
+        }
+        // The underlying domain class method of the command itself returns String, so no need to bind template
+        // params to values for e.g. status() method
+        if (result instanceof String){
+            return (String) result;
+        }
+        if (outputTemplate == null || outputTemplate.trim().isEmpty()){
+            return "";
+        }
+        // There's a valid template, but it's params are already bound to values; so return template itself.
+        if (resultAccessors == null || resultAccessors.isEmpty()){
+            LOGGER.info(outputTemplate);
+            return outputTemplate;
+        }
         try {
-            Object object = Modifier.isStatic(verbMethod.getModifiers()) ? ParkingLot.class : target;
-            result = verbMethod.invoke(object, args);
-            // The underlying domain class method of the command itself returns String, so no need to bind template
-            // params to values for e.g. status() method
-            if (result instanceof String){
-                return (String) result;
-            }
-            if (outputTemplate == null || outputTemplate.trim().isEmpty()){
-                return "";
-            }
-            // There's a valid template, but it's params are already bound to values; so return template itself.
-            if (resultAccessors == null || resultAccessors.isEmpty()){
-                LOGGER.info(outputTemplate);
-                return outputTemplate;
-            }
             // Bind template params to values
             Object[] values = new Object[resultAccessors.size()];
             for (int i = 0; i < resultAccessors.size(); i++) {
-                values[i] = result.getClass().getDeclaredMethod(resultAccessors.get(i)).invoke(result);
+                values[i] = resultAccessors.get(i).apply(result);
             }
             String output = String.format(outputTemplate, values);
             LOGGER.info(output);
             return output;
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e){
-            // InvocationTargetException is the exception that has been thrown by the underlying target method.
-            // We would like to show the relevant error message and stack trace on the command console/STDOUT.
-            // For such cases, grab the exception and the corresponding message and return it as the output to be
-            // rendered to relevant out/rendering stream.
-            if (e instanceof InvocationTargetException){
-                result = e.getCause();
-                return ((Throwable) result).getMessage();
-            }else {
-                LOGGER.error(e.getMessage());
-            }
+        }catch (RuntimeException e){
+            LOGGER.error(e.getMessage());
             throw new CommandOutputFormatException(e);
         }
     }
@@ -1,16 +1,23 @@
 package cs0x65.parkinglot.command;
 
 import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.StatusWriter;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
 import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.PlateDictionary;
+import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Formatter;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * The parking lot specific parser.
@@ -19,137 +26,557 @@ import java.util.stream.Collectors;
  * specific commands: {@code Command<ParkingLot>}
  * The supported commands are
  * <ul>
- *     <li>create_parking_lot {size}</li>
- *     <li>park {registraionNo}</li>
+ *     <li>create_parking_lot {size [slotClass fromSlot toSlot]...}</li>
+ *     <li>park {registraionNo [colour] [vehicleClass]}</li>
  *     <li>leave {registraionNo [duration]}</li>
  *     <li>status {[includeEmptySlots]]}</li>
+ *     <li>registration_numbers_for_cars_with_colour {colour}</li>
+ *     <li>slot_numbers_for_cars_with_colour {colour}</li>
+ *     <li>slot_number_for_registration_number {registraionNo}</li>
+ *     <li>batch park {registraionNo...}</li>
+ *     <li>batch leave {registraionNo [duration]...}</li>
  * </ul>
+ * The command text is tokenized in a single pass over the {@code CharSequence}: the verbs are matched in place and
+ * the numeric arguments are parsed in place, so that a well formed command allocates nothing apart from the resulting
+ * {@code Command}, it's arguments and the {@code Car}. The verbs are matched case-insensitively and the tokens are
+ * separated by any amount of white space. The vehicle and the slot classes are the names of the {@link VehicleClass}es,
+ * matched case-insensitively, for e.g. {@code park KA-01-HH-1234 Red ev}, and the lone token following the
+ * registration number of a park is the class rather than the colour of the car if it names a class.
+ * <br/><br/>
+ * The cars are looked up in a {@link PlateDictionary} rather than created for every command, so the park and the leave
+ * of the same car share one {@code Car} instance and, on a hit, the registration number isn't even copied out of the
+ * command text. The colours, of the parks and of the queries alike, are looked up in the dictionary as well.
  */
 public class DefaultParserImpl implements Parser<ParkingLot> {
     private static final Logger LOGGER = LogManager.getLogger(DefaultParserImpl.class.getName());
 
+    // The invokers and result accessors are built once and shared by all the commands of the same verb.
+    // The slot classes, if any, follow the size: the classes, the first and the last slots of their ranges.
+    private static final Command.Invoker<ParkingLot> CREATE = (parkingLot, args) -> args.length == 1 ?
+            ParkingLot.create((Integer) args[0]) : new ParkingLot.Builder((Integer) args[0])
+            .withSlotClasses((VehicleClass[]) args[1], (int[]) args[2], (int[]) args[3]).build();
+    private static final Command.Invoker<ParkingLot> PARK = (parkingLot, args) -> parkingLot.park((Car) args[0]);
+    // The parking lot finds the car to leave by it's registration number alone, so the car parked with a colour
+    // leaves without naming it, and the leave looks the car up once.
+    private static final Command.Invoker<ParkingLot> LEAVE = (parkingLot, args) -> parkingLot.leave((Car) args[0]);
+    private static final Command.Invoker<ParkingLot> LEAVE_WITH_DURATION = (parkingLot, args) ->
+            parkingLot.leave((Car) args[0], (Long) args[1]);
+    private static final Command.Invoker<ParkingLot> STATUS = (parkingLot, args) ->
+            parkingLot.status((Boolean) args[0]);
+    private static final Command.StreamingInvoker<ParkingLot> STREAM_STATUS = (parkingLot, args, out) ->
+            parkingLot.status((Boolean) args[0], out);
+    private static final Command.Invoker<ParkingLot> REGISTRATION_NUMBERS = (parkingLot, args) ->
+            parkingLot.registrationNumbersWithColor((String) args[0]);
+    private static final Command.StreamingInvoker<ParkingLot> STREAM_REGISTRATION_NUMBERS = (parkingLot, args, out) ->
+            parkingLot.registrationNumbersWithColor((String) args[0], out);
+    private static final Command.Invoker<ParkingLot> SLOT_NUMBERS = (parkingLot, args) ->
+            parkingLot.slotNumbersWithColor((String) args[0]);
+    private static final Command.StreamingInvoker<ParkingLot> STREAM_SLOT_NUMBERS = (parkingLot, args, out) ->
+            parkingLot.slotNumbersWithColor((String) args[0], out);
+    private static final Command.Invoker<ParkingLot> SLOT_NUMBER = (parkingLot, args) -> {
+        int slot = parkingLot.getSlotNumber((String) args[0]);
+        return slot == -1 ? ParkingLot.NOT_FOUND : String.valueOf(slot);
+    };
+
+    private static final List<Function<Object, ?>> SIZE_ACCESSORS = Collections.singletonList(
+            result -> ((ParkingLot) result).getSize());
+    private static final List<Function<Object, ?>> SLOT_ACCESSORS = Collections.singletonList(
+            result -> ((Ticket) result).getSlot());
+    private static final List<Function<Object, ?>> REG_NO_SLOT_AND_CHARGES_ACCESSORS = Arrays.asList(
+            result -> ((Ticket) result).getCar().getRegNo(),
+            result -> ((Ticket) result).getSlot(),
+            result -> ((Ticket) result).getCharges());
+
+    private static final String CREATE_TEMPLATE = "Created parking lot with %d slots";
+    private static final String PARK_TEMPLATE = "Allocated slot number: %d";
+    private static final String LEAVE_TEMPLATE = "Registration number %s with Slot Number %d is free with Charge %d";
+    // The templates above, split around their numbers for the batches, which append the numbers digit by digit.
+    private static final String PARK_OUTPUT = "Allocated slot number: ";
+    private static final String LEAVE_OUTPUT = "Registration number ";
+    private static final String LEAVE_SLOT_OUTPUT = " with Slot Number ";
+    private static final String LEAVE_CHARGE_OUTPUT = " is free with Charge ";
+
+    private static final Command.Verb[] VERBS = Command.Verb.values();
+    private static final VehicleClass[] VEHICLE_CLASSES = VehicleClass.values();
+    private static final String[] VEHICLE_CLASS_NAMES = new String[VEHICLE_CLASSES.length];
+
+    static {
+        for (VehicleClass vehicleClass : VEHICLE_CLASSES)
+            VEHICLE_CLASS_NAMES[vehicleClass.ordinal()] = vehicleClass.name().toLowerCase();
+    }
+
+    private final PlateDictionary plates;
+    private MetricsRegistry metrics;
+    /**
+     * The tickets and the failures of the batches, reused from batch to batch. The commands of the parser may be
+     * executed by several threads, for e.g. on the lanes of a {@link cs0x65.parkinglot.engine.LotEngine}, so a batch
+     * takes the scratch over for the time it executes, and the batch that finds it taken allocates it's own.
+     */
+    private final AtomicReference<BatchScratch> batchScratch = new AtomicReference<>(new BatchScratch());
+    // The batch invokers are bound to the parser, as they use it's scratch.
+    private final Command.StreamingInvoker<ParkingLot> streamBatch = this::executeBatch;
+    private final Command.Invoker<ParkingLot> batch = (parkingLot, args) -> {
+        StringBuilder output = new StringBuilder();
+        try {
+            executeBatch(parkingLot, args, output);
+        }catch (IOException e){
+            // StringBuilder doesn't throw IOException.
+            throw new UncheckedIOException(e);
+        }
+        return output.toString();
+    };
+
+    public DefaultParserImpl() {
+        this(new PlateDictionary());
+    }
+
+    /**
+     *
+     * @param plates the dictionary of the cars, it can be shared by the parsers.
+     */
+    public DefaultParserImpl(PlateDictionary plates) {
+        this.plates = plates;
+    }
+
+    /**
+     * Records the commands that fail to parse to the metrics, and hands the metrics over to the commands parsed so
+     * that they record their execution, see {@link Command#setMetrics(MetricsRegistry)}.
+     * @param metrics the metrics registry or null for none. Default is none.
+     * @return this parser.
+     */
+    public DefaultParserImpl withMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     @Override
-    public Command<ParkingLot> parse(String commandString) throws BadCommandException{
+    public Command<ParkingLot> parse(CharSequence commandString) throws BadCommandException{
+        if (metrics == null)
+            return parseCommand(commandString);
+        try {
+            Command<ParkingLot> command = parseCommand(commandString);
+            command.setMetrics(metrics);
+            return command;
+        }catch (BadCommandException e){
+            metrics.recordParseFailure(e);
+            throw e;
+        }
+    }
+
+    private Command<ParkingLot> parseCommand(CharSequence commandString) throws BadCommandException{
+        // Every command is logged at the debug level only, at the info level it'd flood the log with a line per
+        // command read.
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Command: {}", commandString);
         // Makes sure that redundant white spaces are ignored.
-        List<String> components = Arrays.stream(commandString.trim().split(" ")).
-                filter(s -> !s.trim().equals("")).
-                collect(Collectors.toList());
+        int verbStart = skipWhiteSpace(commandString, 0);
+        int verbEnd = tokenEnd(commandString, verbStart);
+        Command.Verb verb = matchVerb(commandString, verbStart, verbEnd);
+        if (verb == null)
+            throw new BadCommandException(commandString.subSequence(verbStart, verbEnd).toString());
 
-        try {
-            Command.Verb verb = Command.Verb.valueOf(components.get(0).toUpperCase());
-            List<String> args = components.subList(1, components.size());
-            switch (verb){
-                case CREATE_PARKING_LOT:
-                    return parseCreateCommand(args);
-                case PARK:
-                    return  parseParkCommand(args);
-                case LEAVE:
-                    return parseLeaveCommand(args);
-                case STATUS:
-                    return parseStatusCommand(args);
-            }
-        }catch (IllegalArgumentException e){
-            throw new BadCommandException(components.get(0));
+        int argsStart = skipWhiteSpace(commandString, verbEnd);
+        switch (verb){
+            case CREATE_PARKING_LOT:
+                return parseCreateCommand(commandString, argsStart);
+            case PARK:
+                return  parseParkCommand(commandString, argsStart);
+            case LEAVE:
+                return parseLeaveCommand(commandString, argsStart);
+            case STATUS:
+                return parseStatusCommand(commandString, argsStart);
+            case REGISTRATION_NUMBERS_FOR_CARS_WITH_COLOUR:
+                return parseQueryCommand(commandString, argsStart, verb, REGISTRATION_NUMBERS,
+                        STREAM_REGISTRATION_NUMBERS, "colour");
+            case SLOT_NUMBERS_FOR_CARS_WITH_COLOUR:
+                return parseQueryCommand(commandString, argsStart, verb, SLOT_NUMBERS, STREAM_SLOT_NUMBERS,
+                        "colour");
+            case SLOT_NUMBER_FOR_REGISTRATION_NUMBER:
+                return parseQueryCommand(commandString, argsStart, verb, SLOT_NUMBER, null, "registration no");
+            case BATCH:
+                return parseBatchCommand(commandString, argsStart);
         }
         return null;
     }
 
-    private Command<ParkingLot> parseCreateCommand(List<String> args) throws BadCommandException {
-        LOGGER.info("Command: {} Args: {}", Command.Verb.CREATE_PARKING_LOT.lName(), args);
+    private Command<ParkingLot> parseCreateCommand(CharSequence cmd, int argsStart) throws BadCommandException {
+        int sizeEnd = tokenEnd(cmd, argsStart);
+        int size;
         try {
-            if (args.size() < 1)
+            if (sizeEnd == argsStart)
                 throw new IllegalArgumentException();
 
-            int size = Integer.parseInt(args.get(0));
+            size = (int) parseLong(cmd, argsStart, sizeEnd, Integer.MIN_VALUE, Integer.MAX_VALUE);
             if (size < 0)
                 throw new IllegalArgumentException();
-
-            Method method = ParkingLot.class.getMethod(Command.Verb.CREATE_PARKING_LOT.internal(), int.class);
-            Command<ParkingLot> command = new Command<>(Command.Verb.CREATE_PARKING_LOT, method, size);
-            command.setOutputTemplate("Created parking lot with "+size+" slots");
-            return command;
-        }catch (IllegalArgumentException | NoSuchMethodException e){
+        }catch (IllegalArgumentException e){
             LOGGER.error("Failed to parse {} command: invalid size", Command.Verb.CREATE_PARKING_LOT.lName(),
                     e);
             throw new BadCommandException(
                     Command.Verb.CREATE_PARKING_LOT.lName(),
-                    args.size() == 1 ? args.get(0) : "size",
+                    countTokens(cmd, argsStart) == 1 ? cmd.subSequence(argsStart, sizeEnd).toString() : "size",
                     usageHelpText(Command.Verb.CREATE_PARKING_LOT)
             );
         }
+
+        Command<ParkingLot> command = countTokens(cmd, sizeEnd) == 0 ?
+                new Command<>(Command.Verb.CREATE_PARKING_LOT, CREATE, size) :
+                parseSlotClasses(cmd, sizeEnd, size);
+        command.setResultAccessors(SIZE_ACCESSORS);
+        command.setOutputTemplate(CREATE_TEMPLATE);
+        return command;
     }
 
-    private Command<ParkingLot> parseParkCommand(List<String> args) throws BadCommandException {
-        LOGGER.info("Command: {} Args: {}", Command.Verb.PARK.lName(), args);
+    /**
+     * Parses the slot classes following the size of the lot, a class and the first and the last slots of it's range
+     * at a time, into the create command whose arguments are the size, the classes and the first and the last slots
+     * of their ranges. The ranges are checked against each other once the parking lot is built.
+     */
+    private Command<ParkingLot> parseSlotClasses(CharSequence cmd, int sizeEnd, int size) throws BadCommandException {
+        int numRanges = (countTokens(cmd, sizeEnd) + 2) / 3;
+        VehicleClass[] slotClasses = new VehicleClass[numRanges];
+        int[] fromSlots = new int[numRanges];
+        int[] toSlots = new int[numRanges];
+        int start = sizeEnd;
+        int end = sizeEnd;
         try {
-            if (args.size() < 1)
-                throw new IllegalArgumentException();
+            for (int r = 0; r < numRanges; r++) {
+                start = skipWhiteSpace(cmd, end);
+                end = tokenEnd(cmd, start);
+                slotClasses[r] = matchVehicleClass(cmd, start, end);
+                if (slotClasses[r] == null)
+                    throw new IllegalArgumentException();
+                start = skipWhiteSpace(cmd, end);
+                end = tokenEnd(cmd, start);
+                fromSlots[r] = parseSlot(cmd, start, end, size);
+                start = skipWhiteSpace(cmd, end);
+                end = tokenEnd(cmd, start);
+                toSlots[r] = parseSlot(cmd, start, end, size);
+            }
+        }catch (IllegalArgumentException e){
+            LOGGER.error("Failed to parse {} command: invalid slot range", Command.Verb.CREATE_PARKING_LOT.lName());
+            throw new BadCommandException(
+                    Command.Verb.CREATE_PARKING_LOT.lName(),
+                    end > start ? cmd.subSequence(start, end).toString() : "slot range",
+                    usageHelpText(Command.Verb.CREATE_PARKING_LOT)
+            );
+        }
+        return new Command<>(Command.Verb.CREATE_PARKING_LOT, CREATE, size, slotClasses, fromSlots, toSlots);
+    }
 
-            Method method = ParkingLot.class.getMethod(Command.Verb.PARK.internal(), Car.class);
-            Command<ParkingLot> command = new Command<>(Command.Verb.PARK, method, new Car(args.get(0)));
-            command.setResultAccessors(Collections.singletonList("getSlot"));
-            command.setOutputTemplate("Allocated slot number: %d");
-            return command;
-        }catch (IllegalArgumentException | NoSuchMethodException e){
+    private Command<ParkingLot> parseParkCommand(CharSequence cmd, int argsStart) throws BadCommandException {
+        int regNoEnd = tokenEnd(cmd, argsStart);
+        if (regNoEnd == argsStart){
             LOGGER.error("Failed to parse {} command: invalid registration no for the car",
-                    Command.Verb.PARK.lName(), e);
+                    Command.Verb.PARK.lName());
             throw new BadCommandException(
                     Command.Verb.PARK.lName(),
-                    args.size() == 1 ? args.get(0) : "registration no",
+                    "registration no",
                     usageHelpText(Command.Verb.PARK)
             );
         }
+
+        int colorStart = skipWhiteSpace(cmd, regNoEnd);
+        int colorEnd = tokenEnd(cmd, colorStart);
+        int classStart = skipWhiteSpace(cmd, colorEnd);
+        int classEnd = tokenEnd(cmd, classStart);
+        VehicleClass vehicleClass = VehicleClass.COMPACT;
+        if (classEnd > classStart){
+            vehicleClass = matchVehicleClass(cmd, classStart, classEnd);
+            if (vehicleClass == null){
+                LOGGER.error("Failed to parse {} command: invalid vehicle class", Command.Verb.PARK.lName());
+                throw new BadCommandException(
+                        Command.Verb.PARK.lName(),
+                        cmd.subSequence(classStart, classEnd).toString(),
+                        usageHelpText(Command.Verb.PARK)
+                );
+            }
+        }else if (colorEnd > colorStart){
+            // The lone token naming a class is the class of the car of the default colour.
+            VehicleClass named = matchVehicleClass(cmd, colorStart, colorEnd);
+            if (named != null){
+                vehicleClass = named;
+                colorEnd = colorStart;
+            }
+        }
+        String color = colorEnd == colorStart ? Car.DEFAULT_COLOR : plates.color(cmd, colorStart, colorEnd);
+        Car car = plates.lookup(cmd, argsStart, regNoEnd, color, vehicleClass);
+
+        Command<ParkingLot> command = new Command<>(Command.Verb.PARK, PARK, car);
+        command.setResultAccessors(SLOT_ACCESSORS);
+        command.setOutputTemplate(PARK_TEMPLATE);
+        return command;
     }
 
-    private Command<ParkingLot> parseLeaveCommand(List<String> args) throws BadCommandException {
-        LOGGER.info("Command: {} Args: {}", Command.Verb.LEAVE.lName(), args);
+    private Command<ParkingLot> parseLeaveCommand(CharSequence cmd, int argsStart) throws BadCommandException {
+        int regNoEnd = tokenEnd(cmd, argsStart);
+        int durationStart = skipWhiteSpace(cmd, regNoEnd);
+        int durationEnd = tokenEnd(cmd, durationStart);
         try {
-            if (args.size() < 1)
+            if (regNoEnd == argsStart)
                 throw new IllegalArgumentException();
 
             Command<ParkingLot> command;
-            Method method;
+            Car car = plates.lookup(cmd, argsStart, regNoEnd);
 
             // Command variant with duration.
-            if (args.size() > 1){
-                long duration = Long.parseLong(args.get(1));
+            if (durationEnd > durationStart){
+                long duration = parseLong(cmd, durationStart, durationEnd, Long.MIN_VALUE, Long.MAX_VALUE);
                 if (duration < 0)
                     throw new IllegalArgumentException();
 
-                method = ParkingLot.class.getMethod(Command.Verb.LEAVE.internal(), Car.class, long.class);
-                command = new Command<>(Command.Verb.LEAVE, method, new Car(args.get(0)), duration);
+                command = new Command<>(Command.Verb.LEAVE, LEAVE_WITH_DURATION, car, duration);
             }else {
                 // Command variant w/o duration.
-                method = ParkingLot.class.getMethod(Command.Verb.LEAVE.internal(), Car.class);
-                command = new Command<>(Command.Verb.LEAVE, method, new Car(args.get(0)));
+                command = new Command<>(Command.Verb.LEAVE, LEAVE, car);
             }
 
-            command.setResultAccessors(Arrays.asList("getSlot", "getCharges"));
-            command.setOutputTemplate("Registration number "+args.get(0)+" with Slot Number %d is free with Charge %d");
+            command.setResultAccessors(REG_NO_SLOT_AND_CHARGES_ACCESSORS);
+            command.setOutputTemplate(LEAVE_TEMPLATE);
             return command;
-        }catch (IllegalArgumentException | NoSuchMethodException e){
+        }catch (IllegalArgumentException e){
             LOGGER.error("Failed to parse {} command: invalid duration", Command.Verb.LEAVE.lName(), e);
             throw new BadCommandException(
                     Command.Verb.LEAVE.lName(),
-                    args.size() == 2 ? args.get(1) : "duration",
+                    countTokens(cmd, argsStart) == 2 ? cmd.subSequence(durationStart, durationEnd).toString() :
+                            "duration",
                     usageHelpText(Command.Verb.LEAVE)
             );
         }
     }
 
-    private Command<ParkingLot> parseStatusCommand(List<String> args) throws BadCommandException{
-        LOGGER.info("Command: "+ Command.Verb.STATUS+" Args: "+args);
+    private Command<ParkingLot> parseStatusCommand(CharSequence cmd, int argsStart) {
+        int end = tokenEnd(cmd, argsStart);
+        boolean includeEmptySlots = end - argsStart == 4 && matchesIgnoreCase(cmd, argsStart, end, "true");
+        Command<ParkingLot> command = new Command<>(Command.Verb.STATUS, STATUS, includeEmptySlots);
+        command.setStreamingInvoker(STREAM_STATUS);
+        return command;
+    }
+
+    /**
+     * Parses the batch of parks or leaves into the command whose arguments are the verb of the batch, the cars and the
+     * durations of the leaves, -1 for a leave without the duration.
+     */
+    private Command<ParkingLot> parseBatchCommand(CharSequence cmd, int argsStart) throws BadCommandException {
+        int verbEnd = tokenEnd(cmd, argsStart);
+        Command.Verb verb = matchVerb(cmd, argsStart, verbEnd);
+        int numTokens = countTokens(cmd, verbEnd);
+        boolean parkOrLeave = verb == Command.Verb.PARK || verb == Command.Verb.LEAVE;
+        if (!parkOrLeave || numTokens == 0){
+            LOGGER.error("Failed to parse {} command: invalid park or leave batch", Command.Verb.BATCH.lName());
+            throw new BadCommandException(
+                    Command.Verb.BATCH.lName(),
+                    !parkOrLeave && verbEnd > argsStart ? cmd.subSequence(argsStart, verbEnd).toString() :
+                            "registration no",
+                    usageHelpText(Command.Verb.BATCH)
+            );
+        }
+
+        Car[] cars = new Car[numTokens];
+        long[] durations = verb == Command.Verb.LEAVE ? new long[numTokens] : null;
+        int count = 0;
+        int end;
+        for (int start = skipWhiteSpace(cmd, verbEnd); start < cmd.length(); start = skipWhiteSpace(cmd, end)) {
+            end = tokenEnd(cmd, start);
+            // A number following the registration number of a leave is it's duration.
+            if (durations != null && count > 0 && durations[count - 1] < 0 && isNumber(cmd, start, end)){
+                try {
+                    durations[count - 1] = parseLong(cmd, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+                }catch (NumberFormatException e){
+                    durations[count - 1] = -1;
+                }
+                if (durations[count - 1] < 0){
+                    LOGGER.error("Failed to parse {} command: invalid duration", Command.Verb.BATCH.lName());
+                    throw new BadCommandException(Command.Verb.BATCH.lName(), cmd.subSequence(start, end).toString(),
+                            usageHelpText(Command.Verb.BATCH));
+                }
+            }else {
+                cars[count] = plates.lookup(cmd, start, end);
+                if (durations != null)
+                    durations[count] = -1;
+                count++;
+            }
+        }
+
+        Command<ParkingLot> command = new Command<>(Command.Verb.BATCH, batch, verb, Arrays.copyOf(cars, count),
+                durations == null ? null : Arrays.copyOf(durations, count));
+        command.setStreamingInvoker(streamBatch);
+        return command;
+    }
 
+    /**
+     * Executes the batch parsed by {@link #parseBatchCommand(CharSequence, int)} through the batch operations of the
+     * parking lot, and writes the outputs of the individual parks or leaves one per line, same as the park and the
+     * leave commands output them. Apart from the tickets of the cars, nothing is allocated per car: the tickets and
+     * the failures are collected into the scratch of the parser, and the numbers are appended digit by digit.
+     */
+    private void executeBatch(ParkingLot parkingLot, Object[] args, Appendable out) throws IOException {
+        Car[] cars = (Car[]) args[1];
+        long[] durations = (long[]) args[2];
+        BatchScratch scratch = batchScratch.getAndSet(null);
+        if (scratch == null)
+            scratch = new BatchScratch();
+        Ticket[] tickets = scratch.tickets(cars.length);
+        RuntimeException[] failures = scratch.failures;
         try {
-            boolean includeEmptySlots = false;
-            if (args.size() > 0)
-                includeEmptySlots = Boolean.parseBoolean(args.get(0));
+            if (args[0] == Command.Verb.PARK)
+                parkingLot.parkAll(cars, cars.length, tickets, failures);
+            else
+                parkingLot.leaveAll(cars, durations, cars.length, tickets, failures);
 
-            Method method = ParkingLot.class.getMethod(Command.Verb.STATUS.internal(), boolean.class);
-            return new Command<>(Command.Verb.STATUS, method, includeEmptySlots);
-        } catch (NoSuchMethodException e) {
-            throw new BadCommandException(e.getMessage());
+            for (int i = 0; i < cars.length; i++) {
+                if (i > 0)
+                    out.append('\n');
+                if (failures[i] != null){
+                    out.append(failures[i].getMessage());
+                }else if (args[0] == Command.Verb.PARK){
+                    out.append(PARK_OUTPUT);
+                    StatusWriter.appendDigits(out, tickets[i].getSlot());
+                }else {
+                    out.append(LEAVE_OUTPUT).append(tickets[i].getCar().getRegNo()).append(LEAVE_SLOT_OUTPUT);
+                    StatusWriter.appendDigits(out, tickets[i].getSlot());
+                    out.append(LEAVE_CHARGE_OUTPUT);
+                    StatusWriter.appendDigits(out, tickets[i].getCharges());
+                }
+            }
+        }finally {
+            // The tickets and the failures aren't held on to beyond the batch.
+            Arrays.fill(tickets, 0, cars.length, null);
+            Arrays.fill(failures, 0, cars.length, null);
+            batchScratch.set(scratch);
+        }
+    }
+
+    private Command<ParkingLot> parseQueryCommand(CharSequence cmd, int argsStart, Command.Verb verb,
+                                                  Command.Invoker<ParkingLot> invoker,
+                                                  Command.StreamingInvoker<ParkingLot> streamingInvoker,
+                                                  String argName) throws BadCommandException {
+        int argEnd = tokenEnd(cmd, argsStart);
+        if (argEnd == argsStart || countTokens(cmd, argsStart) != 1){
+            LOGGER.error("Failed to parse {} command: invalid {}", verb.lName(), argName);
+            throw new BadCommandException(verb.lName(), argName, usageHelpText(verb));
         }
+
+        // Neither the colour nor the registration number is copied out of the command if it's been seen recently.
+        String arg = verb == Command.Verb.SLOT_NUMBER_FOR_REGISTRATION_NUMBER ?
+                plates.lookup(cmd, argsStart, argEnd).getRegNo() : plates.color(cmd, argsStart, argEnd);
+        Command<ParkingLot> command = new Command<>(verb, invoker, arg);
+        if (streamingInvoker != null)
+            command.setStreamingInvoker(streamingInvoker);
+        return command;
+    }
+
+    private static boolean isWhiteSpace(char c){
+        return c <= ' ';
+    }
+
+    private static int skipWhiteSpace(CharSequence cmd, int from){
+        int length = cmd.length();
+        while (from < length && isWhiteSpace(cmd.charAt(from)))
+            from++;
+        return from;
+    }
+
+    private static int tokenEnd(CharSequence cmd, int from){
+        int length = cmd.length();
+        while (from < length && !isWhiteSpace(cmd.charAt(from)))
+            from++;
+        return from;
+    }
+
+    private static int countTokens(CharSequence cmd, int from){
+        int count = 0;
+        for (int start = skipWhiteSpace(cmd, from); start < cmd.length(); start = skipWhiteSpace(cmd, start)) {
+            start = tokenEnd(cmd, start);
+            count++;
+        }
+        return count;
+    }
+
+    private static Command.Verb matchVerb(CharSequence cmd, int start, int end){
+        for (Command.Verb verb : VERBS) {
+            String name = verb.lName();
+            if (end - start == name.length() && matchesIgnoreCase(cmd, start, end, name))
+                return verb;
+        }
+        return null;
+    }
+
+    private static VehicleClass matchVehicleClass(CharSequence cmd, int start, int end){
+        for (VehicleClass vehicleClass : VEHICLE_CLASSES) {
+            String name = VEHICLE_CLASS_NAMES[vehicleClass.ordinal()];
+            if (end - start == name.length() && matchesIgnoreCase(cmd, start, end, name))
+                return vehicleClass;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the token is a decimal number, optionally signed.
+     */
+    private static boolean isNumber(CharSequence cmd, int start, int end){
+        int i = start < end && (cmd.charAt(start) == '-' || cmd.charAt(start) == '+') ? start + 1 : start;
+        if (i == end)
+            return false;
+        for (; i < end; i++) {
+            if (cmd.charAt(i) < '0' || cmd.charAt(i) > '9')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param lowerCase the lower case text to match against.
+     */
+    private static boolean matchesIgnoreCase(CharSequence cmd, int start, int end, String lowerCase){
+        for (int i = start; i < end; i++) {
+            char c = cmd.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+            if (c != lowerCase.charAt(i - start))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the decimal number within the given range of the command text, same as {@link Long#parseLong(String)}
+     * does but without creating the string first.
+     * @throws NumberFormatException if the text isn't a number or it's outside of the [min, max] range.
+     */
+    private static long parseLong(CharSequence cmd, int start, int end, long min, long max){
+        boolean negative = false;
+        int i = start;
+        if (i < end && (cmd.charAt(i) == '-' || cmd.charAt(i) == '+')){
+            negative = cmd.charAt(i) == '-';
+            i++;
+        }
+        if (i == end)
+            throw new NumberFormatException();
+        // Accumulate negatively so that the min value can be parsed without overflowing.
+        long limit = negative ? min : -max;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = cmd.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value < (limit + digit) / 10)
+                throw new NumberFormatException();
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text isn't a slot of the parking lot of the given size.
+     */
+    private static int parseSlot(CharSequence cmd, int start, int end, int size){
+        long slot = parseLong(cmd, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (slot < 1 || slot > size)
+            throw new IllegalArgumentException();
+        return (int) slot;
+    }
+
+    private static String vehicleClasses(){
+        return String.join(", ", VEHICLE_CLASS_NAMES);
     }
 
     private static String usageHelpText(Command.Verb verb){
@@ -157,17 +584,26 @@ public class DefaultParserImpl implements Parser<ParkingLot> {
         Formatter formatter = new Formatter(new StringBuilder());
         switch (verb){
             case CREATE_PARKING_LOT:
-                formatter.format("%s {size}", Command.Verb.CREATE_PARKING_LOT.lName());
+                formatter.format("%s {size, [slotClass fromSlot toSlot]...}", Command.Verb.CREATE_PARKING_LOT.lName());
                 formatter.format("\n\tcreates a parking lot");
                 formatter.format("\n\twhere 'size' is the parking lot size specified as an integer");
+                formatter.format("\n\twhere every optional 'slotClass fromSlot toSlot' sets the class of the slots " +
+                        "from 'fromSlot' to 'toSlot', one of: %s; the other slots are compact.", vehicleClasses());
                 formatter.format("\n\tfor e.g. create_parking_lot 10");
+                formatter.format("\n\t\twith the slot classes - create_parking_lot 10 ev 1 2 large 9 10");
                 return formatter.toString();
             case PARK:
-                formatter.format("%s {registrationNo}", Command.Verb.PARK.lName());
+                formatter.format("%s {registrationNo, [colour], [vehicleClass]}", Command.Verb.PARK.lName());
                 formatter.format("\n\tparks the car in the parking lot");
                 formatter.format("\n\twhere 'registrationNo' is the registration number of the car to be parked" +
                         "in the format: <MH-12-AB-9876>");
-                formatter.format("\n\tfor e.g. park KA-01-HH-1234");
+                formatter.format("\n\twhere 'colour' is an optional argument specifying the colour of the car; " +
+                        "defaults to %s.", Car.DEFAULT_COLOR);
+                formatter.format("\n\tfor e.g. without optional colour arg-  park KA-01-HH-1234");
+                formatter.format("\n\twhere 'vehicleClass' is an optional argument specifying the class of the car, " +
+                        "one of: %s; defaults to compact.", vehicleClasses());
+                formatter.format("\n\twith optional arg - park KA-01-HH-1234 Red");
+                formatter.format("\n\twith optional args - park KA-01-HH-1234 Red ev");
                 return formatter.toString();
             case LEAVE:
                 formatter.format("%s {registrationNo, [duration]}", Command.Verb.LEAVE.lName());
@@ -187,7 +623,51 @@ public class DefaultParserImpl implements Parser<ParkingLot> {
                 formatter.format("\n\tfor e.g. without optional includeEmptySlots arg-  status");
                 formatter.format("\n\twith optional arg - status true");
                 return formatter.toString();
+            case REGISTRATION_NUMBERS_FOR_CARS_WITH_COLOUR:
+                formatter.format("%s {colour}", verb.lName());
+                formatter.format("\n\tprints the registration numbers of the parked cars of the colour");
+                formatter.format("\n\twhere 'colour' is the colour the car was parked with, matched case sensitively");
+                formatter.format("\n\tfor e.g. %s White", verb.lName());
+                return formatter.toString();
+            case SLOT_NUMBERS_FOR_CARS_WITH_COLOUR:
+                formatter.format("%s {colour}", verb.lName());
+                formatter.format("\n\tprints the slot numbers of the parked cars of the colour");
+                formatter.format("\n\twhere 'colour' is the colour the car was parked with, matched case sensitively");
+                formatter.format("\n\tfor e.g. %s White", verb.lName());
+                return formatter.toString();
+            case SLOT_NUMBER_FOR_REGISTRATION_NUMBER:
+                formatter.format("%s {registrationNo}", verb.lName());
+                formatter.format("\n\tprints the slot number of the parked car");
+                formatter.format("\n\twhere 'registrationNo' is the registration number of the car " +
+                        "in the format: <MH-12-AB-9876>");
+                formatter.format("\n\tfor e.g. %s KA-01-HH-1234", verb.lName());
+                return formatter.toString();
+            case BATCH:
+                formatter.format("%s {park|leave} {registrationNo...}", verb.lName());
+                formatter.format("\n\tparks or un-parks the cars in one go, printing the output of every car " +
+                        "on a separate line");
+                formatter.format("\n\twhere every 'registrationNo' of a leave can be followed by the optional " +
+                        "duration for which the car was parked");
+                formatter.format("\n\tfor e.g. %s park KA-01-HH-1234 KA-01-HH-9999", verb.lName());
+                formatter.format("\n\t\t%s leave KA-01-HH-1234 4 KA-01-HH-9999", verb.lName());
+                return formatter.toString();
         }
         return usage;
     }
+
+    /**
+     * The arrays the batch operations of the parking lot collect their results into, grown to the largest batch.
+     */
+    private static final class BatchScratch {
+        private Ticket[] tickets = new Ticket[0];
+        private RuntimeException[] failures = new RuntimeException[0];
+
+        Ticket[] tickets(int count) {
+            if (tickets.length < count){
+                tickets = new Ticket[count];
+                failures = new RuntimeException[count];
+            }
+            return tickets;
+        }
+    }
 }
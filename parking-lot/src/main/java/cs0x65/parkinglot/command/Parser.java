@@ -23,5 +23,13 @@ package cs0x65.parkinglot.command;
  *           parsing.
  */
 public interface Parser<T> {
-    Command<T> parse(String commandString) throws BadCommandException;
+    /**
+     *
+     * @param commandString the command text, for e.g. a line read from the command file. The text isn't retained
+     *                      beyond the call, so the callers are free to reuse the same {@code CharSequence} instance
+     *                      for the subsequent commands.
+     * @return the {@code Command} bound to the target class.
+     * @throws BadCommandException if the command isn't supported or it's arguments are invalid.
+     */
+    Command<T> parse(CharSequence commandString) throws BadCommandException;
 }
@@ -39,7 +39,7 @@
  *         The result object which is the domain specific result of executing the command on the target T
  *     </li>
  *     <li>
- *         The {@code verbMethod} {@link java.lang.reflect.Method} that will be invoked on the target T to obtain the
+ *         The {@link cs0x65.parkinglot.command.Command.Invoker} that will be invoked on the target T to obtain the
  *         result
  *      </li>
  *      <li>
@@ -0,0 +1,244 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Serves many parking lots, kept in a {@link LotRegistry}, within a single process.
+ * <br/><br/>
+ * The commands are addressed to a lot by prefixing them with the name of the lot, for e.g.
+ * {@code @mall park KA-01-HH-1234}, and {@code @mall create_parking_lot 6} creates the lot named mall. The commands
+ * without the prefix are addressed to the {@link #DEFAULT_LOT}, so a command file for a single lot runs as is.
+ * <br/><br/>
+ * Each lot is pinned to one of the lanes of the engine, a lane being a single thread that executes the commands of
+ * it's lots one at a time in the order they're submitted. So a lot is never updated concurrently, and doesn't need to
+ * be thread safe, while the lots on different lanes are updated in parallel. The number of lanes is typically the
+ * number of cores.
+ */
+public class LotEngine implements Closeable {
+    public static final String DEFAULT_LOT = "default";
+
+    private final LotRegistry registry = new LotRegistry();
+    private final ExecutorService[] lanes;
+    private final DefaultParserImpl parser = new DefaultParserImpl();
+    private MetricsRegistry metrics;
+
+    private static final Logger LOGGER = LogManager.getLogger(LotEngine.class.getName());
+
+    /**
+     * Creates the engine with a lane per available core.
+     */
+    public LotEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     *
+     * @param parallelism the number of lanes i.e. the maximum number of lots updated in parallel.
+     */
+    public LotEngine(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        lanes = new ExecutorService[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            String name = "lot-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public LotRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getParallelism() {
+        return lanes.length;
+    }
+
+    /**
+     * Records the metrics of the commands, and of the lots they create, see {@link MetricsRegistry}. It's meant to be
+     * set before the commands are submitted.
+     * @param metrics the metrics registry or null for none. Default is none.
+     * @return this engine.
+     */
+    public LotEngine withMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        parser.withMetrics(metrics);
+        return this;
+    }
+
+    /**
+     * Parses the command and executes it on the lane of the lot it's addressed to. The create of the lot is executed
+     * on the lane of the lot too, and the lot is looked up on the lane by the commands that follow, so the commands
+     * submitted after the create find the lot without waiting for the create to complete.
+     * <br/><br/>
+     * The failures of the command, for e.g. a car that's not parked, a lot that doesn't exist or the create of a lot
+     * that already exists, are rendered as the output, same as {@link Command#execute()} does.
+     * @param commandLine the command text, optionally prefixed with the {@code @name} of the lot. The text isn't
+     *                    retained beyond the call.
+     * @return the output of the command once it's executed.
+     * @throws BadCommandException if the command isn't supported or it's arguments are invalid.
+     */
+    public CompletableFuture<String> submit(CharSequence commandLine) throws BadCommandException {
+        Addressed addressed = parse(commandLine);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return run(addressed.lotId, addressed.command);
+            }catch (CommandOutputFormatException e){
+                throw new CompletionException(e);
+            }
+        }, laneOf(addressed.lotId));
+    }
+
+    /**
+     * Creates the batch to replay a large number of commands through the engine, see {@link ReplayBatch}.
+     * @param capacity the maximum number of commands in the batch.
+     * @return the new empty batch.
+     */
+    public ReplayBatch newReplayBatch(int capacity) {
+        return new ReplayBatch(this, capacity);
+    }
+
+    /**
+     * Executes the action on the lane of the lot, for e.g. to park a car without going through the command text.
+     * @param lotId the name of the parking lot.
+     * @param action the action to execute on the parking lot.
+     * @param <R> the result of the action.
+     * @return the result of the action once it's executed. It fails with the {@link IllegalArgumentException} if the
+     * lot doesn't exist, or with whatever the action throws.
+     */
+    public <R> CompletableFuture<R> execute(String lotId, Function<ParkingLot, R> action) {
+        return CompletableFuture.supplyAsync(() -> {
+            ParkingLot parkingLot = registry.get(lotId);
+            if (parkingLot == null)
+                throw new IllegalArgumentException("Parking lot: " + lotId + " doesn't exist");
+            return action.apply(parkingLot);
+        }, laneOf(lotId));
+    }
+
+    /**
+     * Waits for the commands already submitted to complete.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes)
+            lane.shutdown();
+        try {
+            for (ExecutorService lane : lanes)
+                lane.awaitTermination(1, TimeUnit.MINUTES);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits the command text into the lot it's addressed to and the command itself.
+     */
+    Addressed parse(CharSequence commandLine) throws BadCommandException {
+        int start = 0;
+        while (start < commandLine.length() && commandLine.charAt(start) <= ' ')
+            start++;
+        String lotId = DEFAULT_LOT;
+        if (start < commandLine.length() && commandLine.charAt(start) == '@'){
+            int end = start + 1;
+            while (end < commandLine.length() && commandLine.charAt(end) > ' ')
+                end++;
+            lotId = commandLine.subSequence(start + 1, end).toString();
+            start = end;
+        }
+        return new Addressed(lotId, parser.parse(start == 0 ? commandLine :
+                CharBuffer.wrap(commandLine, start, commandLine.length())));
+    }
+
+    /**
+     * Executes the command on the lot, on the calling thread. It must be called on the lane of the lot, the command
+     * that creates the lot included: the lots of the same name are created on the same lane, so the create finds the
+     * lot that already exists before it builds another one.
+     * @return the output of the command.
+     */
+    String run(String lotId, Command<ParkingLot> command) throws CommandOutputFormatException {
+        if (command.getVerb() == Command.Verb.CREATE_PARKING_LOT){
+            if (registry.get(lotId) != null)
+                return lotAlreadyExists(lotId);
+            return command.withInvoker((parkingLot, args) -> {
+                ParkingLot.Builder builder = new ParkingLot.Builder((Integer) args[0]).withName(lotId);
+                // The slot classes, if any, follow the size, see DefaultParserImpl.
+                if (args.length > 1)
+                    builder.withSlotClasses((VehicleClass[]) args[1], (int[]) args[2], (int[]) args[3]);
+                ParkingLot created = registry.create(builder);
+                if (metrics != null)
+                    metrics.register(created);
+                return created;
+            }).execute();
+        }
+        ParkingLot parkingLot = registry.get(lotId);
+        if (parkingLot == null)
+            return lotNotFound(lotId);
+        return execute(command.setTarget(parkingLot));
+    }
+
+    ExecutorService laneOf(int lane) {
+        return lanes[lane];
+    }
+
+    private static String execute(Command<ParkingLot> command) throws CommandOutputFormatException {
+        StringBuilder output = new StringBuilder();
+        try {
+            command.executeAndAppend(output);
+        }catch (IOException e){
+            // StringBuilder doesn't throw.
+            throw new UncheckedIOException(e);
+        }
+        return output.toString();
+    }
+
+    private static String lotAlreadyExists(String lotId) {
+        LOGGER.error("Parking lot: {} already exists", lotId);
+        return "Parking lot: " + lotId + " already exists";
+    }
+
+    private static String lotNotFound(String lotId) {
+        LOGGER.error("Parking lot: {} doesn't exist", lotId);
+        return "Parking lot: " + lotId + " doesn't exist";
+    }
+
+    ExecutorService laneOf(String lotId) {
+        int hash = lotId.hashCode();
+        // Spread the higher bits, same as HashMap does, as the names often only differ in the last few characters.
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+
+    /**
+     * The command along with the name of the lot it's addressed to.
+     */
+    static final class Addressed {
+        final String lotId;
+        final Command<ParkingLot> command;
+
+        Addressed(String lotId, Command<ParkingLot> command) {
+            this.lotId = lotId;
+            this.command = command;
+        }
+    }
+}
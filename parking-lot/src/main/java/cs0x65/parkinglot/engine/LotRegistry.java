@@ -0,0 +1,67 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of the parking lots served by a single process, where each lot is identified by it's name, see
+ * {@link ParkingLot.Builder#withName(String)}.
+ * <br/><br/>
+ * The registry is thread safe, but the parking lots it holds aren't; the {@link LotEngine} makes sure that each lot is
+ * only ever updated by a single thread at a time.
+ */
+public class LotRegistry {
+    private final ConcurrentMap<String, ParkingLot> lots = new ConcurrentHashMap<>();
+
+    private static final Logger LOGGER = LogManager.getLogger(LotRegistry.class.getName());
+
+    /**
+     * Builds and registers the parking lot.
+     * @param builder the builder of the parking lot, with the name to register the lot under.
+     * @return the registered parking lot.
+     * @throws IllegalArgumentException if a parking lot with the same name is already registered.
+     */
+    public ParkingLot create(ParkingLot.Builder builder) {
+        ParkingLot parkingLot = builder.build();
+        if (lots.putIfAbsent(parkingLot.getName(), parkingLot) != null)
+            throw new IllegalArgumentException("Parking lot: " + parkingLot.getName() + " already exists");
+        LOGGER.info("Parking lot: {} registered with {} slots", parkingLot.getName(), parkingLot.getSize());
+        return parkingLot;
+    }
+
+    /**
+     *
+     * @param name the name of the parking lot.
+     * @return the parking lot or null if there's no parking lot with the given name.
+     */
+    public ParkingLot get(String name) {
+        return lots.get(name);
+    }
+
+    /**
+     *
+     * @param name the name of the parking lot.
+     * @return the parking lot that's removed or null if there's no parking lot with the given name.
+     */
+    public ParkingLot remove(String name) {
+        return lots.remove(name);
+    }
+
+    /**
+     *
+     * @return the live view of the names of the registered parking lots.
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(lots.keySet());
+    }
+
+    public int size() {
+        return lots.size();
+    }
+}
@@ -0,0 +1,276 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Replays the commands of a {@link LotEngine} in batches, for e.g. the archived traffic of many lots, spreading the
+ * work across the lanes of the engine while producing the very same outputs as executing the commands one by one.
+ * <br/><br/>
+ * The commands are collected through {@link #add(CharSequence)} till the batch is full, and then
+ * {@link #execute(OutputConsumer)}:
+ * <ol>
+ *     <li>parses the commands in parallel, each lane parsing a contiguous range of the batch.</li>
+ *     <li>shards the commands by the lot they're addressed to, and executes each shard as a single task on the lane of
+ *     it's lot, in the order of the commands. The lots are independent, so the shards run in parallel.</li>
+ *     <li>hands the outputs over in the original order of the commands, once all the shards have completed.</li>
+ * </ol>
+ * Sharding by the lot, rather than by say the registration number, is what keeps the outputs the same: a park gets the
+ * nearest available slot, which depends on every park and leave of the lot before it.
+ * <br/><br/>
+ * The lines aren't kept as {@code String}s: {@link #add(CharSequence)} copies their characters one after the other
+ * into a single {@code char[]} of the batch, which is kept across the batches, and the lines are parsed through a
+ * {@link CharSequence} view over it. So a line costs no allocation till it's parsed, where it used to cost a
+ * {@code String} and it's {@code byte[]}.
+ * <br/><br/>
+ * The batch isn't thread safe; it's meant to be owned by the thread reading the commands. The batch is empty again
+ * after it's executed, so it can be reused for the next batch.
+ */
+public class ReplayBatch {
+    /**
+     * Receives the outputs of the commands, for e.g. to write them to a file.
+     */
+    @FunctionalInterface
+    public interface OutputConsumer {
+        /**
+         * @param output the output of the command.
+         * @throws IOException if the output fails to write.
+         */
+        void accept(String output) throws IOException;
+    }
+
+    private final LotEngine engine;
+    /**
+     * The characters of all the lines of the batch, one after the other. It only grows, to fit the longest batch yet.
+     */
+    private char[] text;
+    /**
+     * The offset in the text where the line ends, the line starts where the line before it ends.
+     */
+    private final int[] lineEnds;
+    private final String[] lotIds;
+    private final Command<ParkingLot>[] commands;
+    private final String[] outputs;
+    /**
+     * Links the commands of the same lot, in the order of the commands: the index of the next command addressed to the
+     * same lot, or -1 for the last one.
+     */
+    private final int[] nextOfLot;
+    private int size;
+
+    private static final Logger LOGGER = LogManager.getLogger(ReplayBatch.class.getName());
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReplayBatch(LotEngine engine, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        this.engine = engine;
+        text = new char[capacity * 32];
+        lineEnds = new int[capacity];
+        lotIds = new String[capacity];
+        commands = new Command[capacity];
+        outputs = new String[capacity];
+        nextOfLot = new int[capacity];
+    }
+
+    /**
+     * Adds the command to the batch, the command is parsed and executed later by {@link #execute(OutputConsumer)}.
+     * @param commandLine the command text, optionally prefixed with the {@code @name} of the lot. The text is copied,
+     *                    so the caller is free to reuse it, for e.g. the reader's view over it's buffer.
+     * @return true if the batch is full.
+     */
+    public boolean add(CharSequence commandLine) {
+        if (size == lineEnds.length)
+            throw new IllegalStateException("Replay batch is full");
+        int start = size == 0 ? 0 : lineEnds[size - 1];
+        int length = commandLine.length();
+        if (start + length > text.length)
+            text = Arrays.copyOf(text, Math.max(text.length * 2, start + length));
+        if (commandLine instanceof String){
+            ((String) commandLine).getChars(0, length, text, start);
+        }else {
+            for (int i = 0; i < length; i++)
+                text[start + i] = commandLine.charAt(i);
+        }
+        lineEnds[size++] = start + length;
+        return size == lineEnds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Executes the commands of the batch and hands over their outputs in the order the commands were added.
+     * <br/><br/>
+     * If one of the commands is invalid, the commands before it are executed and their outputs handed over, same as
+     * if the commands were executed one by one, while the commands after it are dropped.
+     * @param consumer receives the outputs.
+     * @throws IOException if the consumer fails to write the output.
+     * @throws BadCommandException for the first invalid command, if any.
+     * @throws CommandOutputFormatException if the output of a command can't be formatted.
+     */
+    public void execute(OutputConsumer consumer) throws IOException, BadCommandException,
+            CommandOutputFormatException {
+        if (size == 0)
+            return;
+        try {
+            BadCommandException badCommand = parse();
+            int numValid = badCommand == null ? size : indexOf(badCommand);
+            executeShards(numValid);
+            for (int i = 0; i < numValid; i++)
+                consumer.accept(outputs[i]);
+            if (badCommand != null)
+                throw badCommand;
+        }finally {
+            clear();
+        }
+    }
+
+    /**
+     * Parses the commands, a contiguous range of the batch per lane.
+     * @return the failure of the first invalid command, or null if all the commands are valid.
+     */
+    private BadCommandException parse() throws CommandOutputFormatException {
+        int numRanges = Math.min(engine.getParallelism(), size);
+        int rangeSize = (size + numRanges - 1) / numRanges;
+        BadCommandException[] failures = new BadCommandException[numRanges];
+        CompletableFuture<?>[] ranges = new CompletableFuture<?>[numRanges];
+        for (int r = 0; r < numRanges; r++) {
+            int range = r;
+            int from = r * rangeSize;
+            int to = Math.min(from + rangeSize, size);
+            ranges[r] = CompletableFuture.runAsync(() -> {
+                Line line = new Line();
+                for (int i = from; i < to; i++) {
+                    try {
+                        LotEngine.Addressed addressed = engine.parse(line.of(i));
+                        lotIds[i] = addressed.lotId;
+                        commands[i] = addressed.command;
+                    }catch (BadCommandException e){
+                        // The commands after the invalid one are never executed.
+                        failures[range] = e;
+                        commands[i] = null;
+                        return;
+                    }
+                }
+            }, engine.laneOf(r));
+        }
+        await(ranges);
+        for (BadCommandException failure : failures) {
+            if (failure != null)
+                return failure;
+        }
+        return null;
+    }
+
+    private int indexOf(BadCommandException badCommand) {
+        for (int i = 0; i < size; i++) {
+            if (commands[i] == null)
+                return i;
+        }
+        throw new IllegalStateException("Invalid command not found", badCommand);
+    }
+
+    private void executeShards(int numCommands) throws CommandOutputFormatException {
+        // The first and the last command of every lot.
+        Map<String, int[]> shards = new HashMap<>();
+        for (int i = 0; i < numCommands; i++) {
+            nextOfLot[i] = -1;
+            int[] shard = shards.get(lotIds[i]);
+            if (shard == null){
+                shards.put(lotIds[i], new int[]{i, i});
+            }else {
+                nextOfLot[shard[1]] = i;
+                shard[1] = i;
+            }
+        }
+
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[shards.size()];
+        int t = 0;
+        for (Map.Entry<String, int[]> shard : shards.entrySet()) {
+            String lotId = shard.getKey();
+            int first = shard.getValue()[0];
+            tasks[t++] = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = first; i != -1; i = nextOfLot[i])
+                        outputs[i] = engine.run(lotId, commands[i]);
+                }catch (CommandOutputFormatException e){
+                    throw new CompletionException(e);
+                }
+            }, engine.laneOf(lotId));
+        }
+        await(tasks);
+        LOGGER.info("Replayed {} commands across {} lots", numCommands, shards.size());
+    }
+
+    private static void await(CompletableFuture<?>[] tasks) throws CommandOutputFormatException {
+        try {
+            CompletableFuture.allOf(tasks).join();
+        }catch (CompletionException e){
+            if (e.getCause() instanceof CommandOutputFormatException)
+                throw (CommandOutputFormatException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void clear() {
+        for (int i = 0; i < size; i++) {
+            lotIds[i] = null;
+            commands[i] = null;
+            outputs[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * The view over a line of the text, moved from line to line by the lane parsing them.
+     * {@link #subSequence(int, int)} and {@link #toString()} copy the characters, so the text they return stays
+     * valid after the batch is cleared.
+     */
+    private final class Line implements CharSequence {
+        private int start;
+        private int length;
+
+        Line of(int index) {
+            start = index == 0 ? 0 : lineEnds[index - 1];
+            length = lineEnds[index] - start;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            return text[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            return new String(text, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(text, start, length);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.io.BatchedOutputWriter;
+import cs0x65.parkinglot.io.CommandReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs any number of the command streams, for e.g. the operator consoles and the kiosks, each a session of it's own
+ * against the lots of a {@link LotEngine}.
+ * <br/><br/>
+ * Every session runs on a thread of it's own, reading a command, waiting for it's output and writing it, one command
+ * at a time. The session never touches a lot itself: the commands are submitted to the engine, which executes them on
+ * the lane of the lot, so the lots are updated safely however many sessions share them.
+ * <br/><br/>
+ * The sessions spend most of their time waiting for the next command to be typed in, so on Java 21 or later, they run
+ * on the virtual threads: a waiting session holds on to no platform thread, and tens of thousands of sessions cost
+ * little more than their buffers. On the older JVMs, the sessions fall back to the platform threads, see
+ * {@link #isVirtual()}. The virtual threads are looked up reflectively, so the same build runs on both.
+ * <br/><br/>
+ * The sessions run on an {@link ExecutorService}: a new virtual thread per session on Java 21, or a cached pool of the
+ * platform threads before it. So {@link #close()} waits for the active sessions through
+ * {@link ExecutorService#awaitTermination(long, TimeUnit)}.
+ */
+public class SessionExecutor implements Closeable {
+    private final LotEngine engine;
+    private final ExecutorService sessions;
+    private final boolean virtual;
+    private final AtomicInteger numActiveSessions = new AtomicInteger();
+
+    private static final Logger LOGGER = LogManager.getLogger(SessionExecutor.class.getName());
+
+    /**
+     *
+     * @param engine executes the commands of the sessions, it's left open when the executor is closed.
+     */
+    public SessionExecutor(LotEngine engine) {
+        this.engine = engine;
+        ExecutorService virtualThreadExecutor = virtualThreadExecutor();
+        virtual = virtualThreadExecutor != null;
+        if (virtual){
+            sessions = virtualThreadExecutor;
+        }else {
+            LOGGER.warn("Virtual threads aren't available, the sessions run on the platform threads");
+            AtomicInteger numThreads = new AtomicInteger();
+            sessions = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "session-" + numThreads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return true if the sessions run on the virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getNumActiveSessions() {
+        return numActiveSessions.get();
+    }
+
+    /**
+     * Starts the session, which runs till the end of the commands. The invalid commands are answered with the usage
+     * help, and the commands that fail with the reason of the failure, and the session carries on either way.
+     * @param reader the commands of the session, optionally prefixed with the {@code @name} of the lot. It's closed
+     *               at the end of the session.
+     * @param writer the outputs of the commands, a line per output. It's closed at the end of the session; create it
+     *               with the flush every 1 for the outputs to show up as soon as the commands are executed.
+     * @return the number of commands executed, once the session has ended. It fails with the {@link IOException} if
+     * the commands fail to read or the outputs fail to write.
+     */
+    public CompletableFuture<Long> open(CommandReader reader, BatchedOutputWriter writer) {
+        CompletableFuture<Long> numCommands = new CompletableFuture<>();
+        numActiveSessions.incrementAndGet();
+        try {
+            sessions.execute(() -> {
+                long executed;
+                try {
+                    executed = run(reader, writer);
+                }catch (IOException | RuntimeException e){
+                    LOGGER.error("Session failed", e);
+                    numActiveSessions.decrementAndGet();
+                    numCommands.completeExceptionally(e);
+                    return;
+                }
+                // The session has ended by the time it's future completes.
+                numActiveSessions.decrementAndGet();
+                numCommands.complete(executed);
+            });
+        }catch (RejectedExecutionException e){
+            numActiveSessions.decrementAndGet();
+            throw new IllegalStateException("Session executor is closed");
+        }
+        return numCommands;
+    }
+
+    private long run(CommandReader reader, BatchedOutputWriter writer) throws IOException {
+        long numCommands = 0;
+        try (CommandReader commandReader = reader;
+             BatchedOutputWriter outputWriter = writer){
+            CharSequence cmdStr;
+            while ((cmdStr = commandReader.readCommand()) != null){
+                if (cmdStr.length() == 0)
+                    continue;
+                String output;
+                try {
+                    // Waiting for the lane only parks the virtual thread.
+                    output = engine.submit(cmdStr).join();
+                }catch (BadCommandException e){
+                    output = e.getMessage();
+                }catch (CompletionException e){
+                    // The command failed on the lane, the session carries on with the next one.
+                    LOGGER.error("Command failed: {}", cmdStr, e.getCause());
+                    output = e.getCause().getMessage();
+                }
+                outputWriter.writeLine(output);
+                numCommands++;
+            }
+        }
+        return numCommands;
+    }
+
+    /**
+     * Stops accepting the sessions and waits for the active ones to end, for a minute at most.
+     */
+    @Override
+    public void close() {
+        sessions.shutdown();
+        try {
+            if (!sessions.awaitTermination(1, TimeUnit.MINUTES))
+                LOGGER.warn("{} sessions still active after a minute", numActiveSessions.get());
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the executor starting a new virtual thread per task, or null if the JVM doesn't support them.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "session-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        }catch (ReflectiveOperationException | RuntimeException e){
+            // Missing before Java 21, or still a preview feature that's not enabled.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package cs0x65.parkinglot.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The lock-free counterpart of {@link BitSetFreeSlotIndex} used by {@link ConcurrentParkingLot}: one occupancy bit per
+ * slot, where a slot is claimed by a CAS on the word that holds it's bit.
+ * <br/><br/>
+ * A second level keeps a bit for every occupancy word that's known to be full, so that a search can skip full regions
+ * of the lot 64 words at a time. The summary is only a hint:
+ * <ul>
+ *     <li>whoever fills up a word sets the summary bit and then re-reads the word, clearing the bit again if a slot
+ *     was vacated in the meantime.</li>
+ *     <li>whoever vacates a slot clears the occupancy bit first and the summary bit afterwards.</li>
+ * </ul>
+ * So a summary bit may transiently be stale, but never permanently hides a free slot. Even so, {@link #claim(int)}
+ * falls back to scanning all the occupancy words before reporting the lot as full.
+ */
+final class AtomicOccupancyBitmap {
+    private static final int CONTENDED = -2;
+
+    private final int size;
+    private final AtomicLongArray words;
+    private final AtomicLongArray fullWords;
+
+    AtomicOccupancyBitmap(int size) {
+        this.size = size;
+        int numWords = Math.max(1, (size + 63) >>> 6);
+        words = new AtomicLongArray(numWords);
+        fullWords = new AtomicLongArray((numWords + 63) >>> 6);
+        // Mark the bits beyond the lot size as occupied so that they're never claimed.
+        if ((size & 63) != 0 || size == 0)
+            words.set(numWords - 1, -1L << (size & 63));
+        if (words.get(numWords - 1) == -1L)
+            markFull(numWords - 1);
+    }
+
+    /**
+     * Claims the nearest free slot found from the entry.<br/>
+     * A gate that loses the CAS on a word to another gate carries on it's search from the word picked by the hint
+     * rather than retrying the same word, so that the gates parking at the same time spread over the lot instead of
+     * all contending over the nearest free slots.
+     * @param hint the gate's hint, for e.g. it's thread id, where a contended search carries on from.
+     * @return the 1-based slot number, or -1 if no free slot was found.
+     */
+    int claim(int hint) {
+        int numWords = words.length();
+        int slot = claim(0, numWords, true, false);
+        if (slot == CONTENDED){
+            int home = (hint & Integer.MAX_VALUE) % numWords;
+            slot = claim(home, numWords, true, true);
+            if (slot == -1)
+                slot = claim(0, home, true, true);
+        }
+        return slot != -1 ? slot : claim(0, numWords, false, true);
+    }
+
+    /**
+     * Searches the words from {@code from} (inclusive) to {@code to} (exclusive).
+     * @param retry whether a lost CAS is retried on the same word, rather than ending the search as {@link #CONTENDED}.
+     */
+    private int claim(int from, int to, boolean useSummary, boolean retry) {
+        if (from >= to)
+            return -1;
+        for (int s = from >>> 6; s <= (to - 1) >>> 6; s++) {
+            long candidates = useSummary ? ~fullWords.get(s) : -1L;
+            if (s == from >>> 6)
+                candidates &= -1L << from;
+            while (candidates != 0) {
+                int w = (s << 6) + Long.numberOfTrailingZeros(candidates);
+                if (w >= to)
+                    break;
+                candidates &= candidates - 1;
+                int slot = claimInWord(w, retry);
+                if (slot != -1)
+                    return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int claimInWord(int w, boolean retry) {
+        long word;
+        while ((word = words.get(w)) != -1L) {
+            long bit = Long.lowestOneBit(~word);
+            long claimed = word | bit;
+            if (words.compareAndSet(w, word, claimed)) {
+                if (claimed == -1L) {
+                    markFull(w);
+                    if (words.get(w) != -1L)
+                        markNotFull(w);
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(bit) + 1;
+            }
+            if (!retry)
+                return CONTENDED;
+        }
+        return -1;
+    }
+
+    /**
+     * Vacates the slot.
+     * @param slot the 1-based slot number.
+     * @return false if the slot wasn't claimed.
+     */
+    boolean release(int slot) {
+        if (slot < 1 || slot > size)
+            return false;
+        int w = (slot - 1) >>> 6;
+        long bit = 1L << (slot - 1);
+        long word;
+        do {
+            word = words.get(w);
+            if ((word & bit) == 0)
+                return false;
+        } while (!words.compareAndSet(w, word, word & ~bit));
+        markNotFull(w);
+        return true;
+    }
+
+    boolean isOccupied(int slot) {
+        if (slot < 1 || slot > size)
+            return false;
+        return (words.get((slot - 1) >>> 6) & (1L << (slot - 1))) != 0;
+    }
+
+    /**
+     * @return the nearest free slot at the time of the call, or -1 if there's none.
+     */
+    int nearest() {
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            if (word != -1L)
+                return (w << 6) + Long.numberOfTrailingZeros(~word) + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @param slot the 1-based slot number to start looking from.
+     * @return the first occupied slot at or after the given slot at the time of the call, or -1 if there's none.
+     */
+    int nextOccupied(int slot) {
+        int bit = Math.max(slot - 1, 0);
+        if (bit >= size)
+            return -1;
+        int w = bit >>> 6;
+        long word = words.get(w) & (-1L << bit);
+        while (word == 0) {
+            if (++w == words.length())
+                return -1;
+            word = words.get(w);
+        }
+        int next = (w << 6) + Long.numberOfTrailingZeros(word) + 1;
+        // The bits beyond the lot size are always set, they aren't the occupied slots.
+        return next <= size ? next : -1;
+    }
+
+    private void markFull(int w) {
+        long bit = 1L << w;
+        long summary;
+        do {
+            summary = fullWords.get(w >>> 6);
+        } while ((summary & bit) == 0 && !fullWords.compareAndSet(w >>> 6, summary, summary | bit));
+    }
+
+    private void markNotFull(int w) {
+        long bit = 1L << w;
+        long summary;
+        do {
+            summary = fullWords.get(w >>> 6);
+        } while ((summary & bit) != 0 && !fullWords.compareAndSet(w >>> 6, summary, summary & ~bit));
+    }
+}
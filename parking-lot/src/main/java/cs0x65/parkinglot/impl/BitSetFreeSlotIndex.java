@@ -0,0 +1,153 @@
+package cs0x65.parkinglot.impl;
+
+/**
+ * The {@link FreeSlotIndex} backed by the slot occupancy bitset, i.e. one bit per slot that's set when the slot is
+ * occupied.
+ * <br/><br/>
+ * The occupancy bits are kept in a {@code long[]} and summarised by further levels of {@code long[]} where a bit is
+ * set when the corresponding word of the level below is full. The top level is a single word, hence the nearest free
+ * slot is found by descending the levels using {@link Long#numberOfTrailingZeros(long)} on the inverted words - that's
+ * O(log<sub>64</sub> n) i.e. at most 4 word reads for a lot with 16 million slots.
+ * <br/>
+ * The bits beyond the lot size are permanently marked as occupied so that they're never handed out.
+ * <br/><br/>
+ * The whole index is allocated in one shot when the lot is created and takes a little over 1 bit per slot.
+ */
+public class BitSetFreeSlotIndex implements FreeSlotIndex {
+    private final int size;
+    /**
+     * levels[0] holds the occupancy bits, levels[k+1] has a bit set for every full word of levels[k].
+     */
+    private final long[][] levels;
+
+    /**
+     *
+     * @param size the number of slots in the parking lot, all of them free to begin with.
+     */
+    public BitSetFreeSlotIndex(int size) {
+        this.size = size;
+        int numLevels = 1;
+        for (int words = wordsFor(size); words > 1; words = wordsFor(words))
+            numLevels++;
+        levels = new long[numLevels][];
+
+        int bits = size;
+        for (int k = 0; k < numLevels; k++) {
+            long[] level = new long[wordsFor(bits)];
+            // Mark the bits beyond the number of slots/words as occupied/full so that they're never handed out.
+            if ((bits & 63) != 0 || bits == 0)
+                level[level.length - 1] = -1L << (bits & 63);
+            levels[k] = level;
+            bits = level.length;
+        }
+        // Only the last word of every level can start off as full i.e. when it holds nothing but the padding.
+        for (int k = 0; k < numLevels - 1; k++) {
+            int last = levels[k].length - 1;
+            if (levels[k][last] == -1L)
+                levels[k + 1][last >>> 6] |= 1L << last;
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    @Override
+    public int nearest() {
+        int index = 0;
+        for (int k = levels.length - 1; k >= 0; k--) {
+            long word = levels[k][index];
+            if (word == -1L)
+                return -1;
+            index = (index << 6) + Long.numberOfTrailingZeros(~word);
+        }
+        return index + 1;
+    }
+
+    @Override
+    public int allocate() {
+        int slot = nearest();
+        if (slot != -1)
+            set(slot - 1);
+        return slot;
+    }
+
+    @Override
+    public boolean allocate(int slot) {
+        if (slot < 1 || slot > size || isOccupied(slot))
+            return false;
+        set(slot - 1);
+        return true;
+    }
+
+    /**
+     * Claims the free slots a word of the occupancy bits at a time, so the levels above are looked up once per word
+     * rather than once per slot, and updated only when a word fills up.
+     */
+    @Override
+    public int allocate(int[] slots, int count) {
+        int claimed = 0;
+        for (int slot = nearest(); slot != -1 && claimed < count; slot = nearest()) {
+            int index = (slot - 1) >>> 6;
+            long word = levels[0][index];
+            // The bits beyond the lot size are set, so they're never among the free ones.
+            for (long free = ~word; free != 0 && claimed < count; free &= free - 1) {
+                int bit = Long.numberOfTrailingZeros(free);
+                word |= 1L << bit;
+                slots[claimed++] = (index << 6) + bit + 1;
+            }
+            levels[0][index] = word;
+            if (word == -1L)
+                set(1, index);
+        }
+        return claimed;
+    }
+
+    @Override
+    public void release(int slot) {
+        if (!isOccupied(slot))
+            throw new IllegalArgumentException("Slot: " + slot + " is not allocated");
+        clear(slot - 1);
+    }
+
+    /**
+     *
+     * @param slot the slot number.
+     * @return true if the slot is currently allocated.
+     */
+    public boolean isOccupied(int slot) {
+        if (slot < 1 || slot > size)
+            return false;
+        int bit = slot - 1;
+        return (levels[0][bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(int bit) {
+        set(0, bit);
+    }
+
+    /**
+     * Sets the bit of the given level, and of the levels above as the words fill up.
+     */
+    private void set(int k, int bit) {
+        for (; k < levels.length; k++) {
+            long[] level = levels[k];
+            int word = bit >>> 6;
+            level[word] |= 1L << bit;
+            if (level[word] != -1L)
+                return;
+            bit = word;
+        }
+    }
+
+    private void clear(int bit) {
+        for (long[] level : levels) {
+            int word = bit >>> 6;
+            boolean wasFull = level[word] == -1L;
+            level[word] &= ~(1L << bit);
+            if (!wasFull)
+                return;
+            bit = word;
+        }
+    }
+}
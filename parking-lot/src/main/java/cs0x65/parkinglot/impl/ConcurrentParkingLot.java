@@ -0,0 +1,272 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.tariff.Tariff;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The thread safe variant of {@link ParkingLot} that lets multiple entry/exit gates park and un-park the cars
+ * concurrently. It's configured and built through the same {@link ParkingLot.Builder} by calling
+ * {@link ParkingLot.Builder#buildConcurrent()}, and behaves the same as {@code ParkingLot} when used from a single
+ * thread.
+ * <br/><br/>
+ * None of the operations take a lock:
+ * <ul>
+ *     <li>the slots are claimed by a CAS on the occupancy bitset, see {@link AtomicOccupancyBitmap}</li>
+ *     <li>the parked cars are registered in a {@link ConcurrentHashMap}</li>
+ *     <li>the capacity is reserved by a CAS on the number of free slots before claiming a slot, so a slot is
+ *     always found once the reservation succeeds</li>
+ * </ul>
+ * The free slots aren't counted by a single counter that every gate would contend over, they're striped: every gate
+ * reserves from and gives back to the stripe picked by it's thread, and only reserves from the other stripes once it's
+ * own stripe runs out. The stripes are padded to a cache line each so that the gates don't share the line either.
+ * <br/><br/>
+ * The car is registered with a pending ticket before the capacity is reserved, so that two gates parking the same car
+ * can never both get a slot. A gate that sees the pending ticket of another gate waits for the other gate to either
+ * complete or back out of the park. Hence {@link #park(Car)} either succeeds, or fails because the car is parked or
+ * because every stripe was out of free slots when it was looked at. As the stripes are looked at one after the other, a
+ * park racing with a leave may be turned away as full even though the lot was never full at a single point in time.
+ * <br/><br/>
+ * Under contention the slot handed out is the nearest free slot found at the time of the search, rather than the
+ * nearest one across all the in-flight parks. A gate that loses a slot to another gate carries on it's search from
+ * the region of the lot picked by it's thread, see {@link AtomicOccupancyBitmap#claim(int)}.
+ */
+public class ConcurrentParkingLot implements Parkable<Car, Ticket> {
+    /**
+     * The ints per stripe of the free slots, so that every stripe sits in a 64 byte cache line of it's own.
+     */
+    private static final int STRIPE_PADDING = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private final int size;
+    private final String name;
+    private final ParkingLot.ParkedTimeUnit parkedTimeUnit;
+    private final int initialDuration;
+    private final int subsequentDuration;
+    private final int initialDurationRate;
+    private final int subsequentDurationRate;
+    private final Tariff[] tariffs;
+
+    private final AtomicOccupancyBitmap occupancy;
+    private final AtomicReferenceArray<Ticket> slots;
+    private final ConcurrentMap<Car, Ticket> carTicketMap = new ConcurrentHashMap<>();
+    private final int numStripes;
+    private final AtomicIntegerArray freeSlots;
+
+    private final StatusWriter.Slots statusView = new StatusWriter.Slots() {
+        @Override
+        public Car getCar(int slot) {
+            Ticket ticket = slots.get(slot - 1);
+            return ticket == null ? null : ticket.getCar();
+        }
+
+        @Override
+        public int nextOccupied(int slot) {
+            return occupancy.nextOccupied(slot);
+        }
+    };
+
+    private static final Logger LOGGER = LogManager.getLogger(ConcurrentParkingLot.class.getName());
+
+    ConcurrentParkingLot(ParkingLot.Builder builder) {
+        this.size = builder.size;
+        this.name = builder.name;
+        this.parkedTimeUnit = builder.parkedTimeUnit;
+        this.initialDuration = builder.initialDuration;
+        this.subsequentDuration = builder.subsequentDuration;
+        this.initialDurationRate = builder.initialDurationRate;
+        this.subsequentDurationRate = builder.subsequentDurationRate;
+        this.tariffs = builder.tariffs.clone();
+        occupancy = new AtomicOccupancyBitmap(size);
+        slots = new AtomicReferenceArray<>(size);
+        // More stripes than cores, as the gates are spread over the stripes by their thread ids and may collide.
+        int cores = Runtime.getRuntime().availableProcessors();
+        numStripes = Math.min(MAX_STRIPES, Integer.highestOneBit(4 * cores - 1) << 1);
+        freeSlots = new AtomicIntegerArray(numStripes * STRIPE_PADDING);
+        for (int stripe = 0; stripe < numStripes; stripe++) {
+            freeSlots.set(stripe * STRIPE_PADDING, size / numStripes + (stripe < size % numStripes ? 1 : 0));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ParkingLot.ParkedTimeUnit getParkedTimeUnit() {
+        return parkedTimeUnit;
+    }
+
+    public int getInitialDuration() {
+        return initialDuration;
+    }
+
+    public int getSubsequentDuration() {
+        return subsequentDuration;
+    }
+
+    public int getInitialDurationRate() {
+        return initialDurationRate;
+    }
+
+    public int getSubsequentDurationRate() {
+        return subsequentDurationRate;
+    }
+
+    /**
+     *
+     * @return the number of currently occupied slots, including the ones being claimed by in-flight parks.
+     */
+    public int getNumOccupiedSlots() {
+        int free = 0;
+        for (int stripe = 0; stripe < numStripes; stripe++) {
+            free += freeSlots.get(stripe * STRIPE_PADDING);
+        }
+        return size - free;
+    }
+
+    /**
+     *
+     * @return the nearest available slot from the entry at the time of the call, or -1 if the parking lot is full.
+     */
+    public int getNearestAvailableSlotIndex() {
+        return occupancy.nearest();
+    }
+
+    @Override
+    public Ticket park(Car car) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to park car: {} ", car.getRegNo());
+        if (getNumOccupiedSlots() == size)
+            throw full(car);
+
+        Ticket pending = new Ticket(0, car, System.currentTimeMillis());
+        Ticket existing;
+        while ((existing = carTicketMap.putIfAbsent(car, pending)) != null){
+            if (existing.getSlot() != 0)
+                throw new IllegalArgumentException("The car: " + car.getRegNo() + " is already parked at slot: " +
+                        existing.getSlot());
+            // Another gate is in the middle of parking the same car, wait till it either parks or backs out.
+            Thread.yield();
+        }
+
+        int gate = gate();
+        if (!reserveSlot(gate)){
+            carTicketMap.remove(car, pending);
+            throw full(car);
+        }
+
+        int slot;
+        // The reservation guarantees a free slot, it may just be transiently hidden by a concurrent leave that has
+        // released the slot but not yet the reservation.
+        while ((slot = occupancy.claim(gate)) == -1)
+            Thread.yield();
+
+        Ticket ticket = new Ticket(slot, car, pending.getParkedAt());
+        slots.set(slot - 1, ticket);
+        carTicketMap.replace(car, pending, ticket);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Car: {} parked at slot: {}", car.getRegNo(), Unbox.box(slot));
+        return ticket;
+    }
+
+    /**
+     *
+     * @return the hash of the calling thread, that picks both the stripe of the free slots and the region of the lot
+     * where a contended search carries on from.
+     */
+    private static int gate() {
+        return (int) Thread.currentThread().getId() * 0x9E3779B9;
+    }
+
+    private int stripeOf(int gate) {
+        return gate & (numStripes - 1);
+    }
+
+    private boolean reserveSlot(int gate) {
+        int home = stripeOf(gate);
+        for (int i = 0; i < numStripes; i++) {
+            int index = ((home + i) & (numStripes - 1)) * STRIPE_PADDING;
+            int free;
+            while ((free = freeSlots.get(index)) > 0) {
+                if (freeSlots.compareAndSet(index, free, free - 1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private IllegalStateException full(Car car) {
+        LOGGER.error("Parking lot is full! Can't park car: {}", car.getRegNo());
+        return new IllegalStateException("Sorry, parking lot is full");
+    }
+
+    @Override
+    public Ticket leave(Car car, long duration) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to un-park car: {} ", car.getRegNo());
+        Ticket ticket = unregister(car);
+        // When the duration is directly provided, need to set leftAt = parkedAt + duration.
+        ticket.setLeftAt(ticket.getParkedAt() + duration * parkedTimeUnit.getTimeInSeconds() * 1000);
+        return removeCar(ticket, duration);
+    }
+
+    /**
+     * A convenient method to un-park a car without requiring to specify the duration for which it was parked.
+     * See {@link ParkingLot#leave(Car)}.
+     * @param car the car being un-parked from the lot.
+     * @return the ticket corresponding to the parked car which is slated to leave.
+     */
+    public Ticket leave(Car car) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to un-park car: {} ", car.getRegNo());
+        Ticket ticket = unregister(car);
+        ticket.setLeftAt(System.currentTimeMillis());
+        return removeCar(ticket, ticket.getDuration(parkedTimeUnit));
+    }
+
+    private Ticket unregister(Car car) {
+        Ticket ticket = carTicketMap.get(car);
+        // A pending ticket means the car isn't parked yet, and a failed remove means a concurrent leave won the race.
+        if (ticket == null || ticket.getSlot() == 0 || !carTicketMap.remove(car, ticket))
+            throw new IllegalArgumentException("Registration number " + car.getRegNo() + " not found");
+        return ticket;
+    }
+
+    private Ticket removeCar(Ticket ticket, long duration) {
+        slots.set(ticket.getSlot() - 1, null);
+        // Release the slot before the reservation so that a park holding a fresh reservation finds it.
+        occupancy.release(ticket.getSlot());
+        freeSlots.incrementAndGet(stripeOf(gate()) * STRIPE_PADDING);
+        ticket.setCharges(ParkingLot.calculateCharges(tariffs, ticket, duration, initialDuration, initialDurationRate,
+                subsequentDurationRate));
+        if (LOGGER.isInfoEnabled()){
+            LOGGER.info("Car: {} left from slot: {}", ticket.getCar().getRegNo(), Unbox.box(ticket.getSlot()));
+            LOGGER.info("Charges accrued: {}", Unbox.box(ticket.getCharges()));
+        }
+        return ticket;
+    }
+
+    /**
+     * See {@link ParkingLot#status(boolean, Appendable)} for the format. The status is a weakly consistent view of the
+     * lot, i.e. it may or may not reflect the parks and leaves that are in-flight while it's gathered.
+     */
+    @Override
+    public void status(boolean includeEmptySlots, Appendable out) throws IOException {
+        LOGGER.info("Gathering current status of the parking lot...");
+        int rows = StatusWriter.write(out, size, includeEmptySlots, statusView);
+        LOGGER.info("Status of {} slots written", rows);
+    }
+}
@@ -0,0 +1,59 @@
+package cs0x65.parkinglot.impl;
+
+/**
+ * Keeps track of the free parking slots of a {@link ParkingLot} so that the nearest available slot from the entry can
+ * be found without scanning all the slots.
+ * <br/>
+ * The slot numbers dealt with by the index are 1-based, same as the slot numbers handed out on the
+ * {@link cs0x65.parkinglot.model.Ticket}. The slot with the lower number is always nearer to the entry, so the
+ * implementing classes must always return the lowest free slot number from {@link #nearest()} and {@link #allocate()}.
+ * <br/>
+ * The index is maintained incrementally by the {@code ParkingLot}: {@link #allocate()} on every park and
+ * {@link #release(int)} on every leave. A custom implementation can be plugged in through
+ * {@link ParkingLot.Builder#withFreeSlotIndex(java.util.function.IntFunction)}.
+ */
+public interface FreeSlotIndex {
+    /**
+     *
+     * @return the nearest free slot from the entry without claiming it, or -1 if there's no free slot.
+     */
+    int nearest();
+
+    /**
+     * Claims the nearest free slot from the entry so that it won't be handed out again until it's released.
+     * @return the claimed slot, or -1 if there's no free slot.
+     */
+    int allocate();
+
+    /**
+     * Claims the given slot, irrespective of whether it's the nearest free slot. It's meant for rebuilding the state
+     * of a parking lot, for e.g. from a journal, rather than for parking the incoming cars.
+     * @param slot the slot to claim.
+     * @return false if the slot is out of range or already allocated.
+     */
+    boolean allocate(int slot);
+
+    /**
+     * Claims the nearest free slots from the entry in one go, for e.g. for a burst of incoming cars. The implementing
+     * classes can claim them in a single pass over the index rather than looking up the nearest slot over again.
+     * @param slots receives the claimed slots in the ascending order.
+     * @param count the number of slots to claim.
+     * @return the number of slots claimed, less than {@code count} if there aren't as many free slots.
+     */
+    default int allocate(int[] slots, int count) {
+        int claimed = 0;
+        while (claimed < count) {
+            int slot = allocate();
+            if (slot == -1)
+                break;
+            slots[claimed++] = slot;
+        }
+        return claimed;
+    }
+
+    /**
+     * Returns the previously allocated slot back to the index so that it's available to the next incoming car.
+     * @param slot the slot being vacated.
+     */
+    void release(int slot);
+}
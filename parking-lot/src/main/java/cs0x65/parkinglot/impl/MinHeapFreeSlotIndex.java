@@ -0,0 +1,134 @@
+package cs0x65.parkinglot.impl;
+
+import java.util.Arrays;
+
+/**
+ * The {@link FreeSlotIndex} that combines a high watermark with a min-heap of the freed slots.
+ * <br/><br/>
+ * The slots beyond the watermark have never been handed out, hence they're all free. The slots below the watermark that
+ * have been vacated are kept in a binary min-heap of primitive ints. Because every slot in the heap is below the
+ * watermark, the top of the heap (if any) is always the nearest free slot, else it's the watermark itself.
+ * <br/>
+ * Effectively:
+ * <ul>
+ *     <li>creating the index is O(1) irrespective of the parking lot size - nothing is pre-filled</li>
+ *     <li>{@link #allocate()} and {@link #release(int)} are O(log n) in the number of vacated slots</li>
+ *     <li>{@link #nearest()} is O(1)</li>
+ *     <li>{@link #allocate(int)} of a slot other than the nearest one is O(n) in the number of vacated slots, or in the
+ *     distance from the watermark; it's only meant for rebuilding the state of the lot</li>
+ * </ul>
+ */
+public class MinHeapFreeSlotIndex implements FreeSlotIndex {
+    private static final int INITIAL_HEAP_CAPACITY = 16;
+
+    private final int size;
+    /**
+     * The lowest slot that's never been allocated; all the slots from here on till {@link #size} are free.
+     */
+    private int watermark = 1;
+    private int[] heap;
+    private int heapSize;
+
+    /**
+     *
+     * @param size the number of slots in the parking lot, all of them free to begin with.
+     */
+    public MinHeapFreeSlotIndex(int size) {
+        this.size = size;
+        this.heap = new int[Math.min(INITIAL_HEAP_CAPACITY, Math.max(size, 1))];
+    }
+
+    @Override
+    public int nearest() {
+        if (heapSize > 0)
+            return heap[0];
+        return watermark <= size ? watermark : -1;
+    }
+
+    @Override
+    public int allocate() {
+        if (heapSize > 0)
+            return poll();
+        return watermark <= size ? watermark++ : -1;
+    }
+
+    @Override
+    public boolean allocate(int slot) {
+        if (slot < 1 || slot > size)
+            return false;
+        if (slot >= watermark){
+            // The slots skipped over by moving the watermark past the given slot are still free.
+            for (int free = watermark; free < slot; free++)
+                push(free);
+            watermark = slot + 1;
+            return true;
+        }
+        for (int i = 0; i < heapSize; i++) {
+            if (heap[i] == slot){
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void release(int slot) {
+        if (slot < 1 || slot >= watermark)
+            throw new IllegalArgumentException("Slot: " + slot + " is not allocated");
+        // Vacating the last handed out slot just moves the watermark back, which keeps the heap small for the common
+        // case of the most recent arrival leaving first.
+        if (slot == watermark - 1){
+            watermark--;
+            return;
+        }
+        push(slot);
+    }
+
+    private void push(int slot) {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heap.length << 1);
+        int i = heapSize++;
+        while (i > 0){
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= slot)
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private int poll() {
+        int top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    private void removeAt(int i) {
+        int last = heap[--heapSize];
+        if (i == heapSize)
+            return;
+        // The last element may need to move up rather than down when it's taking the place of an element from a
+        // different branch of the heap.
+        while (i > 0){
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= last)
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        int half = heapSize >>> 1;
+        while (i < half){
+            int child = (i << 1) + 1;
+            int right = child + 1;
+            if (right < heapSize && heap[right] < heap[child])
+                child = right;
+            if (last <= heap[child])
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+    }
+}
@@ -1,5 +1,8 @@
 package cs0x65.parkinglot.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Represents an entity or resource that is able provide the <b>parkable</b> behaviour.
  * <br/>
@@ -29,10 +32,87 @@ public interface Parkable<O, T> {
      */
     T leave(O object, long duration);
 
+    /**
+     * Same as {@link #leave(Object, long)} but the duration is measured up to now.
+     * @param object the object to be un-parked/withdrawn from the parkable resource.
+     * @return the corresponding entity/record that captures the details of un-parking transaction.
+     */
+    T leave(O object);
+
+    /**
+     * Parks the objects one after the other, for e.g. a burst of the gate events, without failing the whole batch for
+     * the objects that can't be parked. The implementing classes can amortise the checks and the bookkeeping of the
+     * individual parks over the batch.
+     * @param objects the objects to be parked, the first {@code count} of them.
+     * @param count the number of objects to park.
+     * @param results receives the result of parking every object at the object's index, or null if the object
+     *                couldn't be parked. It can be reused across the batches.
+     * @param failures receives the reason the object at the index couldn't be parked, or null if it's been parked. It
+     *                 can be null if the reasons aren't wanted.
+     * @return the number of objects parked.
+     */
+    default int parkAll(O[] objects, int count, T[] results, RuntimeException[] failures) {
+        int parked = 0;
+        for (int i = 0; i < count; i++) {
+            RuntimeException failure = null;
+            try {
+                results[i] = park(objects[i]);
+                parked++;
+            }catch (RuntimeException e){
+                results[i] = null;
+                failure = e;
+            }
+            if (failures != null)
+                failures[i] = failure;
+        }
+        return parked;
+    }
+
+    /**
+     * Same as {@link #parkAll(Object[], int, Object[], RuntimeException[])} for un-parking the objects.
+     * @param durations the duration for which every object was parked, a negative duration or a null array for the
+     *                  duration to be measured up to now, see {@link #leave(Object)}.
+     */
+    default int leaveAll(O[] objects, long[] durations, int count, T[] results, RuntimeException[] failures) {
+        int left = 0;
+        for (int i = 0; i < count; i++) {
+            RuntimeException failure = null;
+            try {
+                results[i] = durations == null || durations[i] < 0 ? leave(objects[i]) :
+                        leave(objects[i], durations[i]);
+                left++;
+            }catch (RuntimeException e){
+                results[i] = null;
+                failure = e;
+            }
+            if (failures != null)
+                failures[i] = failure;
+        }
+        return left;
+    }
+
     /**
      * @param includeEmptySlots specifies whether the status information shall include empty slots.
      * @return the status of the parkable resource. The implementing classes are free to return whatever is relevant
      * to their domain and satisfy their semantics.
      */
-    String status(boolean includeEmptySlots);
+    default String status(boolean includeEmptySlots) {
+        StringBuilder status = new StringBuilder();
+        try {
+            status(includeEmptySlots, status);
+        }catch (IOException e){
+            // StringBuilder doesn't throw IOException.
+            throw new UncheckedIOException(e);
+        }
+        return status.toString();
+    }
+
+    /**
+     * Streams the status into the supplied target rather than building it up in memory, which is preferable for the
+     * large resources.
+     * @param includeEmptySlots specifies whether the status information shall include empty slots.
+     * @param out the target to write the status to, for e.g. a {@link java.io.Writer} or a {@link StringBuilder}.
+     * @throws IOException if the target fails to write.
+     */
+    void status(boolean includeEmptySlots, Appendable out) throws IOException;
 }
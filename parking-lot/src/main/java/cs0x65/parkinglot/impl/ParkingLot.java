@@ -1,11 +1,18 @@
 package cs0x65.parkinglot.impl;
 
 import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.PlateCodec;
 import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
+import cs0x65.parkinglot.tariff.Tariff;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * The class represents the parking lot that provides the certain number of parking slots to park the cars.
@@ -21,18 +28,31 @@ import java.util.*;
  *
  */
 public class ParkingLot implements Parkable<Car, Ticket>{
+    /**
+     * The output of the queries that find no car.
+     */
+    public static final String NOT_FOUND = "Not found";
+
     /**
      * The builder class that helps build the instance of the {@link ParkingLot} class for the given
      * criteria/configuration.
      */
     public static final class Builder{
-        private final int size;
-        private String name;
-        private ParkedTimeUnit parkedTimeUnit = ParkedTimeUnit.HOUR;
-        private int initialDuration = 2;
-        private int subsequentDuration = 1;
-        private int initialDurationRate = 10;
-        private int subsequentDurationRate = 10;
+        private static final IntFunction<FreeSlotIndex> DEFAULT_FREE_SLOT_INDEX = BitSetFreeSlotIndex::new;
+
+        // The fields are package private so that the other Parkable implementations in the package, like
+        // ConcurrentParkingLot, can be built from the same configuration.
+        final int size;
+        String name;
+        ParkedTimeUnit parkedTimeUnit = ParkedTimeUnit.HOUR;
+        int initialDuration = 2;
+        int subsequentDuration = 1;
+        int initialDurationRate = 10;
+        int subsequentDurationRate = 10;
+        IntFunction<FreeSlotIndex> freeSlotIndexFactory = DEFAULT_FREE_SLOT_INDEX;
+        final List<SlotPools.Range> slotClasses = new ArrayList<>();
+        boolean upsizing = true;
+        final Tariff[] tariffs = new Tariff[VehicleClass.values().length];
 
         /**
          * Creates a builder that will build the parking lot with the given size.<br/>
@@ -62,6 +82,24 @@ public class ParkingLot implements Parkable<Car, Ticket>{
             return new ParkingLot(this);
         }
 
+        /**
+         * Builds the thread safe variant of the parking lot with the same configuration and defaults as
+         * {@link #build()}. The concurrent parking lot claims it's slots from a bitmap of it's own and has no slot
+         * classes, so it can't be built with the free slot index configured by {@link #withFreeSlotIndex(IntFunction)}
+         * or with the slot classes configured by {@link #withSlotClass(VehicleClass, int, int)}.
+         * @return the {@link ConcurrentParkingLot} object built with the given specification.
+         * @throws IllegalStateException if the free slot index or the slot classes are configured.
+         */
+        public ConcurrentParkingLot buildConcurrent(){
+            if (freeSlotIndexFactory != DEFAULT_FREE_SLOT_INDEX)
+                throw new IllegalStateException("The concurrent parking lot can't be built with a free slot index");
+            if (!slotClasses.isEmpty())
+                throw new IllegalStateException("The concurrent parking lot can't be built with the slot classes");
+            if (name == null)
+                name = "ParkingLot:"+ new Random().nextInt();
+            return new ConcurrentParkingLot(this);
+        }
+
         /**
          * The name can be any descriptive text that can be associated with the parking lot, for e.g. address,
          * a landmark etc.
@@ -126,6 +164,74 @@ public class ParkingLot implements Parkable<Car, Ticket>{
             this.subsequentDurationRate = subsequentDurationRate;
             return this;
         }
+
+        /**
+         * Plugs in the index used to find the nearest available slot from the entry.
+         * @param freeSlotIndexFactory creates the {@link FreeSlotIndex} for the given parking lot size.
+         *                             Default is {@link BitSetFreeSlotIndex}.
+         */
+        public Builder withFreeSlotIndex(IntFunction<FreeSlotIndex> freeSlotIndexFactory) {
+            this.freeSlotIndexFactory = freeSlotIndexFactory;
+            return this;
+        }
+
+        /**
+         * Sets the class of the given range of slots, for e.g. the slots nearest to the entry can be the EV bays
+         * and the farthest ones the large bays, so that a car is only parked at a slot it fits in, see
+         * {@link #withUpsizing(boolean)}. The slots outside of the configured ranges are
+         * {@link VehicleClass#COMPACT}. The concurrent parking lot can't be built with the slot classes, see
+         * {@link #buildConcurrent()}.
+         * @param slotClass the class of the slots.
+         * @param fromSlot the first slot of the range.
+         * @param toSlot the last slot of the range, inclusive.
+         */
+        public Builder withSlotClass(VehicleClass slotClass, int fromSlot, int toSlot) {
+            slotClasses.add(new SlotPools.Range(slotClass, fromSlot, toSlot));
+            return this;
+        }
+
+        /**
+         * Same as {@link #withSlotClass(VehicleClass, int, int)} for every range of the given arrays, for e.g. the
+         * ranges of the {@code create_parking_lot} command.
+         * @param slotClasses the classes of the ranges.
+         * @param fromSlots the first slots of the ranges.
+         * @param toSlots the last slots of the ranges, inclusive.
+         */
+        public Builder withSlotClasses(VehicleClass[] slotClasses, int[] fromSlots, int[] toSlots) {
+            for (int i = 0; i < slotClasses.length; i++)
+                withSlotClass(slotClasses[i], fromSlots[i], toSlots[i]);
+            return this;
+        }
+
+        /**
+         * @param upsizing whether a car is parked at the nearest slot of the next larger class when there's no free
+         *                 slot of it's own class, see {@link VehicleClass#larger()}. Default is true.
+         */
+        public Builder withUpsizing(boolean upsizing) {
+            this.upsizing = upsizing;
+            return this;
+        }
+
+        /**
+         * Charges the cars of all the classes by the tariff rather than by the initial and the subsequent duration
+         * rates, see {@link #withTariff(VehicleClass, Tariff)}.
+         * @param tariff {@link Tariff}
+         */
+        public Builder withTariff(Tariff tariff) {
+            Arrays.fill(tariffs, tariff);
+            return this;
+        }
+
+        /**
+         * Charges the cars of the class by the tariff rather than by the initial and the subsequent duration rates.
+         * The cars of the classes without a tariff are charged by the rates.
+         * @param vehicleClass the class of the cars.
+         * @param tariff {@link Tariff}
+         */
+        public Builder withTariff(VehicleClass vehicleClass, Tariff tariff) {
+            tariffs[vehicleClass.ordinal()] = tariff;
+            return this;
+        }
     }
 
     /**
@@ -153,28 +259,73 @@ public class ParkingLot implements Parkable<Car, Ticket>{
     private final int subsequentDuration;
     private final int initialDurationRate;
     private final int subsequentDurationRate;
+    /**
+     * The tariff by the vehicle class, null for the classes charged by the rates above.
+     */
+    private final Tariff[] tariffs;
 
     /**
-     * Represents the list of parking slots where each slot number is the list index.
-     * If the slot is occupied, it has a non-null {@link Car} entry at the corresponding index in the slot.
+     * Represents the parking slots where each slot is looked up by it's slot number.
+     * If the slot is occupied, it has a non-null {@link Ticket} entry of the parked car for the corresponding slot.
+     * The tickets are kept column-wise rather than as objects, see {@link TicketTable}.
      * <br/>
-     * The parking slot with index i-1 is nearest to the parking lot entry than the slot with index i.
+     * The parking slot with number i-1 is nearest to the parking lot entry than the slot with number i.
      * Each new car coming into the parking lot is always allocated to the nearest available slot from the entry.
      */
-    private final List<Car> slots;
+    private final TicketTable slots;
 
     /**
      * A handy way to quickly:<br/>
      * - lookup for an existence of a car in the parking lot O(1) v/s O(n) required for lookup within slots list.
      * <br/>
-     * - ability to directly identify the parking slot index maintained by {@link #slots} and reset it to null
+     * - ability to directly identify the parking slot number maintained by {@link #slots} and reset it to null
      * whenever a car leaves the parking lot. Again this reduces the time required to identify the slot index occupied
      * by the car from O(n) to O(1).
+     * <br/>
+     * The cars are indexed by their registration numbers packed into a {@code long}, see {@link PlateIndex}.
+     */
+    private final PlateIndex registrations;
+
+    /**
+     * Tracks the free slots so that the nearest available slot is found in O(log n) rather than scanning
+     * {@link #slots} from the entry on every park.
+     */
+    private final FreeSlotIndex freeSlots;
+
+    /**
+     * The free slots by the slot class, null if all the slots are of the same class. It's also the {@link #freeSlots}
+     * when it's there.
+     */
+    private final SlotPools slotPools;
+
+    /**
+     * The slots of the parked cars by their colour, kept up to date on every park and leave, so that the cars of a
+     * colour are listed in the order of their slots without scanning the lot, see
+     * {@link #slotNumbersWithColor(String, Appendable)}.
      */
-    private final Map<Car, Ticket> carTicketMap;
+    private final Map<String, SlotBitmap> colors = new HashMap<>();
 
     private int numOccupiedSlots;
 
+    private ParkingLotListener[] listeners = new ParkingLotListener[0];
+
+    /**
+     * The slots claimed for a batch of cars, reused across the batches.
+     */
+    private int[] claimedSlots = new int[0];
+
+    private final StatusWriter.Slots statusView = new StatusWriter.Slots() {
+        @Override
+        public Car getCar(int slot) {
+            return slots.getCar(slot);
+        }
+
+        @Override
+        public int nextOccupied(int slot) {
+            return slots.nextOccupied(slot);
+        }
+    };
+
     private static final Logger LOGGER = LogManager.getLogger(ParkingLot.class.getName());
 
     private ParkingLot(Builder builder) {
@@ -185,14 +336,17 @@ public class ParkingLot implements Parkable<Car, Ticket>{
         this.subsequentDuration = builder.subsequentDuration;
         this.initialDurationRate = builder.initialDurationRate;
         this.subsequentDurationRate = builder.subsequentDurationRate;
-        carTicketMap = new HashMap<>(size);
-        slots = new ArrayList<>(size);
-        initSlots();
-    }
-
-    private void initSlots(){
-        for (int i = 0; i < size ; i++) {
-            slots.add(null);
+        this.tariffs = builder.tariffs.clone();
+        slots = new TicketTable(size);
+        // The index grows with the number of parked cars rather than being sized for the whole lot upfront, so that a
+        // huge mostly empty lot doesn't cost a table entry per slot.
+        registrations = new PlateIndex(slots);
+        if (builder.slotClasses.isEmpty()){
+            slotPools = null;
+            freeSlots = builder.freeSlotIndexFactory.apply(size);
+        }else {
+            slotPools = new SlotPools(size, builder.slotClasses, builder.upsizing, builder.freeSlotIndexFactory);
+            freeSlots = slotPools;
         }
     }
 
@@ -259,6 +413,16 @@ public class ParkingLot implements Parkable<Car, Ticket>{
         return subsequentDurationRate;
     }
 
+    /**
+     *
+     * @param vehicleClass the class of the cars.
+     * @return the tariff the cars of the class are charged by, or null if they're charged by the initial and the
+     * subsequent duration rates.
+     */
+    public Tariff getTariff(VehicleClass vehicleClass) {
+        return tariffs[vehicleClass.ordinal()];
+    }
+
     /**
      *
      * @return the number of currently occupied slots for the given parking lot.
@@ -268,55 +432,204 @@ public class ParkingLot implements Parkable<Car, Ticket>{
     }
 
     public Ticket park(Car car) {
-        LOGGER.info("Request to park car: {} ", car.getRegNo());
+        // The info logging is guarded on the hot path, so that it costs a level check when it's off; when it's on, the
+        // primitives are boxed by Unbox into reused buffers rather than into new Integers and Longs.
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to park car: {} ", car.getRegNo());
 
         if (numOccupiedSlots == size){
             LOGGER.error("Parking lot is full! Can't park car: {}", car.getRegNo());
             throw new IllegalStateException("Sorry, parking lot is full");
         }
 
-        Ticket ticket = carTicketMap.get(car);
-        if (ticket != null)
+        long code = car.getCode();
+        int parkedAt = registrations.find(code, car.getRegNo());
+        if (parkedAt != 0)
             throw new IllegalArgumentException("The car: " + car.getRegNo() + " is already parked at slot: " +
-                    ticket.getSlot());
+                    parkedAt);
 
-        int index = getNearestAvailableSlotIndex();
-        ticket = new Ticket(index, car, System.currentTimeMillis());
-        slots.set(index-1, car);
-        carTicketMap.put(car, ticket);
+        int index = slotPools == null ? freeSlots.allocate() : slotPools.allocate(car.getVehicleClass());
+        if (index == -1){
+            LOGGER.error("No slot available for the {} car: {}", car.getVehicleClass(), car.getRegNo());
+            throw new IllegalStateException("Sorry, no slot available for the " +
+                    car.getVehicleClass().name().toLowerCase() + " car");
+        }
+        Ticket ticket = new Ticket(index, car, System.currentTimeMillis());
+        slots.put(index, car, ticket.getParkedAt());
+        registrations.add(code, index);
+        colorSlots(car.getColor()).add(index);
         numOccupiedSlots++;
-        LOGGER.info("Car: {} parked at slot: {}", car.getRegNo(), index);
-        LOGGER.info("Current num occupied slots: {} out of Total slots: {}", numOccupiedSlots, size);
+        if (LOGGER.isInfoEnabled()){
+            LOGGER.info("Car: {} parked at slot: {}", car.getRegNo(), Unbox.box(index));
+            LOGGER.info("Current num occupied slots: {} out of Total slots: {}", Unbox.box(numOccupiedSlots),
+                    Unbox.box(size));
+        }
+        for (ParkingLotListener listener : listeners)
+            listener.onPark(ticket);
         return ticket;
     }
 
+    /**
+     * Parks the cars the same way {@link #park(Car)} does, but claims the slots for the whole batch in one pass over
+     * the free slot index and grows the registration index upfront, rather than car by car. The cars are handed the
+     * claimed slots in their order, so every car still gets the nearest free slot at it's turn. A car that's already
+     * parked, including earlier in the same batch, or that finds the lot full fails with the same exception as
+     * {@link #park(Car)} would throw, without failing the rest of the batch. The listeners are notified of every car
+     * parked.
+     * <br/>
+     * The slots of the lot with the slot classes are claimed car by car, by the class of the car.
+     */
+    @Override
+    public int parkAll(Car[] cars, int count, Ticket[] results, RuntimeException[] failures) {
+        if (slotPools != null)
+            return Parkable.super.parkAll(cars, count, results, failures);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to park a batch of {} cars", Unbox.box(count));
+
+        registrations.ensureCapacity(count);
+        if (claimedSlots.length < count)
+            claimedSlots = new int[count];
+        int numClaimed = freeSlots.allocate(claimedSlots, count);
+        int next = 0;
+        long parkedAt = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            Car car = cars[i];
+            long code = car.getCode();
+            int parkedSlot = registrations.find(code, car.getRegNo());
+            RuntimeException failure = null;
+            if (parkedSlot != 0){
+                failure = new IllegalArgumentException("The car: " + car.getRegNo() + " is already parked at slot: " +
+                        parkedSlot);
+            }else if (next == numClaimed){
+                LOGGER.error("Parking lot is full! Can't park car: {}", car.getRegNo());
+                failure = new IllegalStateException("Sorry, parking lot is full");
+            }
+            if (failures != null)
+                failures[i] = failure;
+            if (failure != null){
+                results[i] = null;
+                continue;
+            }
+
+            int slot = claimedSlots[next++];
+            Ticket ticket = new Ticket(slot, car, parkedAt);
+            slots.put(slot, car, parkedAt);
+            registrations.add(code, slot);
+            colorSlots(car.getColor()).add(slot);
+            numOccupiedSlots++;
+            for (ParkingLotListener listener : listeners)
+                listener.onPark(ticket);
+            results[i] = ticket;
+        }
+        // The slots claimed for the cars that were already parked are handed back.
+        for (int j = numClaimed - 1; j >= next; j--)
+            freeSlots.release(claimedSlots[j]);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Parked {} cars of the batch, current num occupied slots: {} out of Total slots: {}",
+                    Unbox.box(next), Unbox.box(numOccupiedSlots), Unbox.box(size));
+        return next;
+    }
+
     public Ticket leave(Car car, long duration) {
-        LOGGER.info("Request to un-park car: {} ", car.getRegNo());
-        Ticket ticket = carTicketMap.get(car);
-        if (ticket == null)
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to un-park car: {} ", car.getRegNo());
+        long code = car.getCode();
+        int slot = registrations.find(code, car.getRegNo());
+        if (slot == 0)
             throw new IllegalArgumentException("Registration number " + car.getRegNo() + " not found");
 
-        return removeCar(car, duration);
+        return removeCar(slots.get(slot), code, duration);
     }
 
     /**
      * A convenient method to un-park a car without requiring to specify the duration for which it was parked.
      * The method marks the exit time of the car by calling {@link Ticket#setLeftAt(long)} on the corresponding
      * {@link Ticket} instance.
-     * @param car the car being un-parked from the lot.
+     * @param car the car being un-parked from the lot. It's found by it's registration number alone, whatever it's
+     *            colour, and it's the car found that's charged and handed the ticket.
      * @return the ticket corresponding to the parked car which is slated to leave.
      */
     public Ticket leave(Car car) {
-        LOGGER.info("Request to un-park car: {} ", car.getRegNo());
-        Ticket ticket = carTicketMap.get(car);
-        if (ticket == null)
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Request to un-park car: {} ", car.getRegNo());
+        long code = car.getCode();
+        int slot = registrations.find(code, car.getRegNo());
+        if (slot == 0)
             throw new IllegalArgumentException("Registration number " + car.getRegNo() + " not found");
 
-        return removeCar(car);
+        return removeCar(slots.get(slot), code);
+    }
+
+    /**
+     * Registers the listener to be notified of every subsequent park and leave.
+     * @param listener {@link ParkingLotListener}
+     */
+    public void addListener(ParkingLotListener listener) {
+        // Copy on write, the listeners are iterated on every park and leave but hardly ever added.
+        ParkingLotListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        listeners = newListeners;
     }
 
     /**
-     * A utility method to get the formatted text representation of the current status of the parking lot.<br/>
+     * Re-parks the car of the ticket at the very slot and with the very parked time recorded on the ticket, which is
+     * how the state of the parking lot is rebuilt, for e.g. from a journal. Unlike {@link #park(Car)}, the slot doesn't
+     * have to be the nearest available one and the listeners aren't notified.
+     * @param ticket the ticket that was handed out when the car was originally parked.
+     * @return the ticket for the restored car.
+     */
+    public Ticket restore(Ticket ticket) {
+        Car car = ticket.getCar();
+        long code = car.getCode();
+        int parkedAt = registrations.find(code, car.getRegNo());
+        if (parkedAt != 0)
+            throw new IllegalArgumentException("The car: " + car.getRegNo() + " is already parked at slot: " +
+                    parkedAt);
+        if (!freeSlots.allocate(ticket.getSlot()))
+            throw new IllegalStateException("Slot: " + ticket.getSlot() + " isn't available to restore car: " +
+                    car.getRegNo());
+
+        Ticket restored = new Ticket(ticket.getSlot(), car, ticket.getParkedAt());
+        slots.put(restored.getSlot(), car, restored.getParkedAt());
+        registrations.add(code, restored.getSlot());
+        colorSlots(car.getColor()).add(restored.getSlot());
+        numOccupiedSlots++;
+        return restored;
+    }
+
+    /**
+     * Un-parks the car without charging it or marking it's exit time, and without notifying the listeners. It's the
+     * counterpart of {@link #restore(Ticket)} for the cars that are known to have already left, for e.g. while
+     * replaying a journal.
+     * @param car the car to un-park.
+     * @return the ticket of the car, as it was when the car was parked.
+     */
+    public Ticket release(Car car) {
+        long code = car.getCode();
+        int slot = registrations.find(code, car.getRegNo());
+        if (slot == 0)
+            throw new IllegalArgumentException("Registration number " + car.getRegNo() + " not found");
+        Ticket ticket = slots.get(slot);
+        registrations.remove(code, slot);
+        colors.get(ticket.getCar().getColor()).remove(slot);
+        slots.remove(ticket.getSlot());
+        freeSlots.release(ticket.getSlot());
+        numOccupiedSlots--;
+        return ticket;
+    }
+
+    /**
+     * Captures the consistent point-in-time view of the parking lot, for e.g. to write it to the disk in the
+     * background. The snapshot shares the slot pages with the parking lot, copy on write, so taking it doesn't copy
+     * the tickets, and the subsequent parks and leaves only copy the pages they touch. See {@link TicketTable}.
+     * @return {@link ParkingLotSnapshot} of the parking lot as of now.
+     */
+    public ParkingLotSnapshot snapshot() {
+        return new ParkingLotSnapshot(this, slots.snapshot());
+    }
+
+    /**
+     * Writes the formatted text representation of the current status of the parking lot to the supplied target.<br/>
      *
      * The formatted text contains two columns/headers: the 1st column is Slot No. & 2nd Registration No.
      * with each entry on a separate row.
@@ -361,64 +674,178 @@ public class ParkingLot implements Parkable<Car, Ticket>{
      *     </tr>
      * </table>
      *
+     * The rows are streamed into the supplied target as they're rendered. When the empty slots are excluded, only the
+     * occupied slots are visited.
+     *
      * @param includeEmptySlots specifies whether the status information shall include empty slots.
-     * @return the formatted text that captures the current status of the parking lot.
+     * @param out the target to write the formatted status to.
+     * @throws IOException if the target fails to write.
      */
-    public String status(boolean includeEmptySlots) {
+    @Override
+    public void status(boolean includeEmptySlots, Appendable out) throws IOException {
         LOGGER.info("Gathering current status of the parking lot...");
-        Formatter formatter = new Formatter(new StringBuilder());
-        formatter.format("%-8s %s\n", "Slot No.", "Registration No.");
-        for (int i = 0; i < slots.size(); i++) {
-            Car car = slots.get(i);
-            if (car != null)
-                formatter.format("%-8d %s\n", i+1, car.getRegNo());
-            else if (includeEmptySlots)
-                formatter.format("%-8d %s\n", i+1, "--");
-        }
-        String status = formatter.toString();
-        // Remove last \n
-        status = status.substring(0, status.length()-1);
-        LOGGER.info("\n"+status);
-        return status;
+        int rows = StatusWriter.write(out, size, includeEmptySlots, statusView);
+        LOGGER.info("Status of {} slots written", rows);
     }
 
     /**
      *
-     * @return the index of the nearest slot from the entry that's available to park an incoming car.
+     * @return the index of the nearest slot from the entry that's available to park an incoming car, or -1 if the
+     * parking lot is full.
      */
     public int getNearestAvailableSlotIndex(){
-        for (int i = 0; i < slots.size() ; i++) {
-            if (slots.get(i) == null){
-                return i+1;
-            }
+        return freeSlots.nearest();
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number.
+     * @return the class of the slot, see {@link Builder#withSlotClass(VehicleClass, int, int)}.
+     */
+    public VehicleClass getSlotClass(int slot) {
+        if (slot < 1 || slot > size)
+            throw new IllegalArgumentException("Invalid slot: " + slot);
+        return slotPools == null ? VehicleClass.COMPACT : slotPools.slotClass(slot);
+    }
+
+    /**
+     *
+     * @param regNo the registration number of the car.
+     * @return the slot the car with the registration number is parked at, whatever it's colour, or -1 if it isn't
+     * parked.
+     */
+    public int getSlotNumber(String regNo) {
+        int slot = registrations.find(PlateCodec.encode(regNo), regNo);
+        return slot == 0 ? -1 : slot;
+    }
+
+    /**
+     *
+     * @param regNo the registration number of the car.
+     * @return the car with the registration number that's parked, whatever it's colour, or null if it isn't parked.
+     */
+    public Car getParkedCar(String regNo) {
+        int slot = registrations.find(PlateCodec.encode(regNo), regNo);
+        return slot == 0 ? null : slots.getCar(slot);
+    }
+
+    /**
+     * Writes the registration numbers of the parked cars of the colour, in the order of their slots and separated by
+     * ", ", for e.g. {@code KA-01-HH-1234, KA-01-HH-9999}, or {@value #NOT_FOUND} if there's none.
+     * <br/>
+     * The cars are found through the colour index rather than by scanning the slots, so it costs the number of the cars
+     * of the colour, however large the lot is.
+     * @param color the colour of the cars, it's matched case sensitively.
+     * @param out the target to write the registration numbers to.
+     * @throws IOException if the target fails to write.
+     */
+    public void registrationNumbersWithColor(String color, Appendable out) throws IOException {
+        writeColor(color, out, true);
+    }
+
+    /**
+     * Same as {@link #registrationNumbersWithColor(String, Appendable)} but writes the slot numbers, for e.g.
+     * {@code 1, 2, 4}.
+     * @param color the colour of the cars, it's matched case sensitively.
+     * @param out the target to write the slot numbers to.
+     * @throws IOException if the target fails to write.
+     */
+    public void slotNumbersWithColor(String color, Appendable out) throws IOException {
+        writeColor(color, out, false);
+    }
+
+    /**
+     * Same as {@link #registrationNumbersWithColor(String, Appendable)} but returns the registration numbers.
+     */
+    public String registrationNumbersWithColor(String color) {
+        return colorText(color, true);
+    }
+
+    /**
+     * Same as {@link #slotNumbersWithColor(String, Appendable)} but returns the slot numbers.
+     */
+    public String slotNumbersWithColor(String color) {
+        return colorText(color, false);
+    }
+
+    private String colorText(String color, boolean regNos) {
+        StringBuilder text = new StringBuilder();
+        try {
+            writeColor(color, text, regNos);
+        }catch (IOException e){
+            // StringBuilder doesn't throw IOException.
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    private void writeColor(String color, Appendable out, boolean regNos) throws IOException {
+        SlotBitmap bitmap = colors.get(color);
+        if (bitmap == null || bitmap.size() == 0){
+            out.append(NOT_FOUND);
+            return;
+        }
+        String separator = "";
+        for (int slot = bitmap.next(1); slot != -1; slot = slot < size ? bitmap.next(slot + 1) : -1) {
+            out.append(separator);
+            if (regNos)
+                out.append(slots.getCar(slot).getRegNo());
+            else
+                StatusWriter.appendDigits(out, slot);
+            separator = ", ";
         }
-        return -1;
     }
 
-    private Ticket removeCar(Car car, long duration) {
-        Ticket ticket = carTicketMap.get(car);
+    private SlotBitmap colorSlots(String color) {
+        SlotBitmap bitmap = colors.get(color);
+        if (bitmap == null){
+            bitmap = new SlotBitmap(size);
+            colors.put(color, bitmap);
+        }
+        return bitmap;
+    }
 
-        slots.set(ticket.getSlot() - 1, null);
-        carTicketMap.remove(car);
+    private Ticket removeCar(Ticket ticket, long code, long duration) {
+        registrations.remove(code, ticket.getSlot());
+        colors.get(ticket.getCar().getColor()).remove(ticket.getSlot());
+        slots.remove(ticket.getSlot());
+        freeSlots.release(ticket.getSlot());
         // When the duration is directly provided, need to set leftAt = parkedAt + duration.
         if (ticket.getLeftAt() == 0)
             ticket.setLeftAt(ticket.getParkedAt() + duration * parkedTimeUnit.getTimeInSeconds() * 1000);
-        ticket.setCharges(calculateCharges(duration));
+        ticket.setCharges(calculateCharges(tariffs, ticket, duration, initialDuration, initialDurationRate,
+                subsequentDurationRate));
         numOccupiedSlots--;
-        LOGGER.info("Car: {} left from slot: {}", car.getRegNo(), ticket.getSlot());
-        LOGGER.info("Charges accrued: {}", ticket.getCharges());
-        LOGGER.info("Current num occupied slots: {} out of Total slots: {}", numOccupiedSlots, size);
+        if (LOGGER.isInfoEnabled()){
+            LOGGER.info("Car: {} left from slot: {}", ticket.getCar().getRegNo(), Unbox.box(ticket.getSlot()));
+            LOGGER.info("Charges accrued: {}", Unbox.box(ticket.getCharges()));
+            LOGGER.info("Current num occupied slots: {} out of Total slots: {}", Unbox.box(numOccupiedSlots),
+                    Unbox.box(size));
+        }
+        for (ParkingLotListener listener : listeners)
+            listener.onLeave(ticket);
         return ticket;
     }
 
-    private Ticket removeCar(Car car){
-        Ticket ticket = carTicketMap.get(car);
+    private Ticket removeCar(Ticket ticket, long code){
         // Duration was not provided, so leftAt needs to be set before computing the duration.
         ticket.setLeftAt(System.currentTimeMillis());
-        return removeCar(car, ticket.getDuration(parkedTimeUnit));
+        return removeCar(ticket, code, ticket.getDuration(parkedTimeUnit));
+    }
+
+    /**
+     * Charges the ticket by the tariff of it's car's class, or by the rates if the class has no tariff.
+     */
+    static long calculateCharges(Tariff[] tariffs, Ticket ticket, long duration, int initialDuration,
+                                 int initialDurationRate, int subsequentDurationRate){
+        Tariff tariff = tariffs[ticket.getCar().getVehicleClass().ordinal()];
+        if (tariff != null)
+            return tariff.charge(ticket.getParkedAt(), ticket.getLeftAt());
+        return calculateCharges(duration, initialDuration, initialDurationRate, subsequentDurationRate);
     }
 
-    private long calculateCharges(long duration){
+    static long calculateCharges(long duration, int initialDuration, int initialDurationRate,
+                                 int subsequentDurationRate){
         long charges = initialDurationRate;
         long additionalDuration = duration - initialDuration;
         if (additionalDuration > 0)
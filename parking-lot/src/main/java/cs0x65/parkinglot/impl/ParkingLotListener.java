@@ -0,0 +1,22 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Ticket;
+
+/**
+ * Gets notified of the cars parked into and un-parked from a {@link ParkingLot}, for e.g. to journal them.
+ * The listeners are registered through {@link ParkingLot#addListener(ParkingLotListener)}.
+ * <br/>
+ * The listeners are called on the thread that parks or un-parks the car, after the parking lot has been updated, so
+ * they should be quick to return.
+ */
+public interface ParkingLotListener {
+    /**
+     * @param ticket the ticket of the car that's just been parked.
+     */
+    void onPark(Ticket ticket);
+
+    /**
+     * @param ticket the ticket of the car that's just left, with the exit time and the charges filled in.
+     */
+    void onLeave(Ticket ticket);
+}
@@ -0,0 +1,88 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Ticket;
+
+/**
+ * The point-in-time view of a {@link ParkingLot}: it's configuration and the tickets of the cars parked at the time the
+ * snapshot is taken through {@link ParkingLot#snapshot()}.
+ * <br/><br/>
+ * The snapshot is immutable and is unaffected by the subsequent parks and leaves, so it can be read, for e.g. written
+ * to the disk, by another thread while the parking lot carries on. Hand it over to the other thread through a thread
+ * safe channel like an {@link java.util.concurrent.Executor}.
+ */
+public final class ParkingLotSnapshot {
+    private final int size;
+    private final String name;
+    private final ParkingLot.ParkedTimeUnit parkedTimeUnit;
+    private final int initialDuration;
+    private final int subsequentDuration;
+    private final int initialDurationRate;
+    private final int subsequentDurationRate;
+    private final int numOccupiedSlots;
+    private final TicketTable.View slots;
+
+    ParkingLotSnapshot(ParkingLot parkingLot, TicketTable.View slots) {
+        size = parkingLot.getSize();
+        name = parkingLot.getName();
+        parkedTimeUnit = parkingLot.getParkedTimeUnit();
+        initialDuration = parkingLot.getInitialDuration();
+        subsequentDuration = parkingLot.getSubsequentDuration();
+        initialDurationRate = parkingLot.getInitialDurationRate();
+        subsequentDurationRate = parkingLot.getSubsequentDurationRate();
+        numOccupiedSlots = parkingLot.getNumOccupiedSlots();
+        this.slots = slots;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ParkingLot.ParkedTimeUnit getParkedTimeUnit() {
+        return parkedTimeUnit;
+    }
+
+    public int getInitialDuration() {
+        return initialDuration;
+    }
+
+    public int getSubsequentDuration() {
+        return subsequentDuration;
+    }
+
+    public int getInitialDurationRate() {
+        return initialDurationRate;
+    }
+
+    public int getSubsequentDurationRate() {
+        return subsequentDurationRate;
+    }
+
+    public int getNumOccupiedSlots() {
+        return numOccupiedSlots;
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number.
+     * @return the ticket of the car that was parked at the slot, or null if the slot was empty. Only the slot, the car
+     * and the parked time of the ticket are part of the snapshot.
+     */
+    public Ticket getTicket(int slot) {
+        return slots.get(slot);
+    }
+
+    /**
+     * Iterates the occupied slots, for e.g. {@code for (int s = snapshot.nextOccupied(1); s != -1;
+     * s = snapshot.nextOccupied(s + 1))}.
+     * @param slot the 1-based slot number to start looking from.
+     * @return the first occupied slot at or after the given slot, or -1 if there's none.
+     */
+    public int nextOccupied(int slot) {
+        // A negative slot is the one past Integer.MAX_VALUE.
+        return slot > size || slot < 0 ? -1 : slots.nextOccupied(slot);
+    }
+}
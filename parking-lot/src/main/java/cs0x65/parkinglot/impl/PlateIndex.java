@@ -0,0 +1,133 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.PlateCodec;
+
+/**
+ * Indexes the parked cars by their registration numbers, encoded by the {@link PlateCodec}, to the slots they're
+ * parked at.
+ * <br/><br/>
+ * It's an open addressing hash table over two primitive arrays, the codes and the slots, probed linearly, so an
+ * entry costs 12 bytes, or 24 at the worst case load factor of a half, and neither the lookup nor the update allocates.
+ * The lookup of a freshly parsed car doesn't even hash it's registration number string: the code is computed from the
+ * characters in one pass.
+ * <br/><br/>
+ * A registration number is indexed at most once, whatever the colour of the car: the cars are told apart by their
+ * registration numbers alone, the way the parking lot always told them apart. The packed codes are equal only for the
+ * equal registration numbers, but the codes of the registration numbers that can't be packed may collide, so a match
+ * on such a code is confirmed against the car parked at the slot in the {@link TicketTable}.
+ */
+final class PlateIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final TicketTable tickets;
+    private long[] codes;
+    /**
+     * The 1-based slot of the entry, 0 for an empty entry.
+     */
+    private int[] slots;
+    private int mask;
+    private int shift;
+    private int size;
+
+    PlateIndex(TicketTable tickets) {
+        this.tickets = tickets;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the car with the registration number, whatever it's colour.
+     * @param code the code of the registration number, see {@link Car#getCode()} and
+     *             {@link PlateCodec#encode(CharSequence)}.
+     * @param regNo the registration number.
+     * @return the slot the car with the registration number is parked at, or 0 if there's none.
+     */
+    int find(long code, String regNo) {
+        for (int i = home(code); slots[i] != 0; i = (i + 1) & mask) {
+            if (codes[i] == code && (PlateCodec.isPacked(code) || tickets.getCar(slots[i]).getRegNo().equals(regNo)))
+                return slots[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Indexes the car parked at the slot.
+     */
+    void add(long code, int slot) {
+        if (2 * (size + 1) > slots.length)
+            rehash(2 * slots.length);
+        insert(code, slot);
+        size++;
+    }
+
+    /**
+     * Grows the table upfront, if need be, so that the given number of cars can be added without rehashing, for e.g.
+     * before parking a batch of cars.
+     */
+    void ensureCapacity(int additional) {
+        int capacity = slots.length;
+        while (2L * (size + additional) > capacity)
+            capacity *= 2;
+        if (capacity != slots.length)
+            rehash(capacity);
+    }
+
+    /**
+     * Removes the car parked at the slot from the index.
+     */
+    void remove(long code, int slot) {
+        int i = home(code);
+        while (slots[i] != slot) {
+            if (slots[i] == 0)
+                throw new IllegalStateException("Slot: " + slot + " isn't indexed");
+            i = (i + 1) & mask;
+        }
+        // Shifts the following entries of the probe sequence back into the hole, rather than leaving a tombstone.
+        int hole = i;
+        for (int j = (hole + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int home = home(codes[j]);
+            // Moves the entry unless it's home lies cyclically within (hole, j].
+            if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j)){
+                codes[hole] = codes[j];
+                slots[hole] = slots[j];
+                hole = j;
+            }
+        }
+        slots[hole] = 0;
+        size--;
+    }
+
+    private int home(long code) {
+        // Fibonacci hashing, the low bits of the packed codes are far from uniform.
+        return (int) ((code * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void insert(long code, int slot) {
+        int i = home(code);
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        codes[i] = code;
+        slots[i] = slot;
+    }
+
+    private void allocate(int capacity) {
+        codes = new long[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldCodes = codes;
+        int[] oldSlots = slots;
+        allocate(capacity);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0)
+                insert(oldCodes[i], oldSlots[i]);
+        }
+    }
+}
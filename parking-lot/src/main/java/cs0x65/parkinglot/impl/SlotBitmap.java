@@ -0,0 +1,103 @@
+package cs0x65.parkinglot.impl;
+
+/**
+ * The set of the slots of a parking lot, for e.g. the slots of the cars of a colour, as a two level bitmap: a bit per
+ * slot, and a summary bit per 64 slots telling whether any of them is in the set.
+ * <br/><br/>
+ * The slot bits are allocated in pages of 64K slots the first time a slot of the page is added, so the set of a rare
+ * colour costs little more than it's summary, a bit per 64 slots, even for a huge lot. Adding and removing a slot is
+ * O(1), and iterating the set skips 4096 slots per summary word, so it costs the number of the slots in the set rather
+ * than the size of the lot.
+ */
+final class SlotBitmap {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private final int numWords;
+    /**
+     * The words of the slot bits, by page, a null page has none of it's slots in the set.
+     */
+    private final long[][] pages;
+    /**
+     * A bit per word, set when the word has any slot in the set.
+     */
+    private final long[] summary;
+    private int size;
+
+    /**
+     *
+     * @param size the number of slots in the parking lot.
+     */
+    SlotBitmap(int size) {
+        // Slot i is bit i, so that the slots needn't be shifted by one.
+        numWords = (size >>> 6) + 1;
+        pages = new long[((numWords - 1) >>> PAGE_BITS) + 1][];
+        summary = new long[((numWords - 1) >>> 6) + 1];
+    }
+
+    /**
+     * @return the number of slots in the set.
+     */
+    int size() {
+        return size;
+    }
+
+    void add(int slot) {
+        int w = slot >>> 6;
+        long[] page = pages[w >>> PAGE_BITS];
+        if (page == null){
+            page = new long[1 << PAGE_BITS];
+            pages[w >>> PAGE_BITS] = page;
+        }
+        long word = page[w & PAGE_MASK];
+        if ((word & (1L << slot)) == 0){
+            page[w & PAGE_MASK] = word | (1L << slot);
+            summary[w >>> 6] |= 1L << w;
+            size++;
+        }
+    }
+
+    void remove(int slot) {
+        int w = slot >>> 6;
+        long[] page = pages[w >>> PAGE_BITS];
+        if (page == null)
+            return;
+        long word = page[w & PAGE_MASK];
+        if ((word & (1L << slot)) != 0){
+            word &= ~(1L << slot);
+            page[w & PAGE_MASK] = word;
+            if (word == 0)
+                summary[w >>> 6] &= ~(1L << w);
+            size--;
+        }
+    }
+
+    /**
+     * @param slot the 1-based slot number to start looking from.
+     * @return the first slot in the set at or after the given slot, or -1 if there's none.
+     */
+    int next(int slot) {
+        int w = slot >>> 6;
+        if (w >= numWords)
+            return -1;
+        long[] page = pages[w >>> PAGE_BITS];
+        if (page != null){
+            long word = page[w & PAGE_MASK] & (-1L << slot);
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        // The rest of the words are skipped by the summary, 64 at a time.
+        w++;
+        int s = w >>> 6;
+        if (s >= summary.length)
+            return -1;
+        long bits = summary[s] & (-1L << w);
+        while (bits == 0) {
+            if (++s == summary.length)
+                return -1;
+            bits = summary[s];
+        }
+        w = (s << 6) + Long.numberOfTrailingZeros(bits);
+        return (w << 6) + Long.numberOfTrailingZeros(pages[w >>> PAGE_BITS][w & PAGE_MASK]);
+    }
+}
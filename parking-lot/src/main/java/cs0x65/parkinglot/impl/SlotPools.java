@@ -0,0 +1,213 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.VehicleClass;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * The {@link FreeSlotIndex} of a parking lot whose slots are of different {@link VehicleClass}es, see
+ * {@link ParkingLot.Builder#withSlotClass(VehicleClass, int, int)}.
+ * <br/><br/>
+ * The slots of each class form a pool with a free slot index of it's own, over the slots of the class numbered from 1
+ * in the order of the slot numbers, so the nearest free slot of the pool is also the nearest free slot of the class.
+ * The slots of a class are laid out in ranges, and a slot is mapped to and from the number within it's pool by a binary
+ * search over the ranges. So the nearest compatible slot is found in O(log n) per class tried, however many classes
+ * and slots there are, and the pools take no more memory than the single index of the lot would.
+ */
+final class SlotPools implements FreeSlotIndex {
+    /**
+     * The slots from {@code from} to {@code to}, both inclusive, of the class.
+     */
+    static final class Range {
+        final VehicleClass slotClass;
+        final int from;
+        final int to;
+
+        Range(VehicleClass slotClass, int from, int to) {
+            this.slotClass = slotClass;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final VehicleClass[] CLASSES = VehicleClass.values();
+
+    private final int size;
+    private final boolean upsizing;
+    /**
+     * The ranges covering all the slots in the order of the slots: the first slot, the class, and the number of the
+     * first slot within the pool of the class, of every range.
+     */
+    private final int[] starts;
+    private final VehicleClass[] classes;
+    private final int[] poolStarts;
+    /**
+     * The ranges of every class, as the indexes into the arrays above.
+     */
+    private final int[][] classRanges;
+    /**
+     * The free slot index of every class, null if the lot has no slot of the class.
+     */
+    private final FreeSlotIndex[] pools;
+
+    /**
+     *
+     * @param size the number of slots in the parking lot.
+     * @param slotClasses the ranges of the slots of the classes, the slots outside the ranges are
+     *                    {@link VehicleClass#COMPACT}.
+     * @param upsizing whether a vehicle is parked at a slot of a larger class when there's no free slot of it's own
+     *                 class, see {@link VehicleClass#larger()}.
+     * @param freeSlotIndexFactory creates the free slot index of a pool for the given pool size.
+     * @throws IllegalArgumentException if a range is outside of the lot or it overlaps with another one.
+     */
+    SlotPools(int size, List<Range> slotClasses, boolean upsizing, IntFunction<FreeSlotIndex> freeSlotIndexFactory) {
+        this.size = size;
+        this.upsizing = upsizing;
+
+        List<Range> sorted = new ArrayList<>(slotClasses);
+        sorted.sort(Comparator.comparingInt(range -> range.from));
+        List<Range> ranges = new ArrayList<>();
+        int next = 1;
+        for (Range range : sorted) {
+            if (range.from < next || range.to < range.from || range.to > size)
+                throw new IllegalArgumentException("Invalid slot range: " + range.from + "-" + range.to + " of the " +
+                        range.slotClass + " slots");
+            if (range.from > next)
+                ranges.add(new Range(VehicleClass.COMPACT, next, range.from - 1));
+            ranges.add(range);
+            next = range.to + 1;
+        }
+        if (next <= size)
+            ranges.add(new Range(VehicleClass.COMPACT, next, size));
+
+        starts = new int[ranges.size()];
+        classes = new VehicleClass[ranges.size()];
+        poolStarts = new int[ranges.size()];
+        int[] poolSizes = new int[CLASSES.length];
+        int[] numClassRanges = new int[CLASSES.length];
+        for (int r = 0; r < ranges.size(); r++) {
+            Range range = ranges.get(r);
+            int c = range.slotClass.ordinal();
+            starts[r] = range.from;
+            classes[r] = range.slotClass;
+            poolStarts[r] = poolSizes[c] + 1;
+            poolSizes[c] += range.to - range.from + 1;
+            numClassRanges[c]++;
+        }
+        classRanges = new int[CLASSES.length][];
+        pools = new FreeSlotIndex[CLASSES.length];
+        for (int c = 0; c < CLASSES.length; c++) {
+            classRanges[c] = new int[numClassRanges[c]];
+            if (poolSizes[c] > 0)
+                pools[c] = freeSlotIndexFactory.apply(poolSizes[c]);
+        }
+        int[] filled = new int[CLASSES.length];
+        for (int r = 0; r < classes.length; r++) {
+            int c = classes[r].ordinal();
+            classRanges[c][filled[c]++] = r;
+        }
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number.
+     * @return the class of the slot.
+     */
+    VehicleClass slotClass(int slot) {
+        return classes[rangeOf(slot)];
+    }
+
+    /**
+     * Claims the nearest free slot the vehicle of the class can be parked at: the nearest free slot of it's own class,
+     * or if there's none and the upsizing is on, of the next larger class and so on.
+     * @param vehicleClass the class of the vehicle.
+     * @return the claimed slot, or -1 if there's no compatible free slot.
+     */
+    int allocate(VehicleClass vehicleClass) {
+        for (VehicleClass c = vehicleClass; c != null; c = upsizing ? c.larger() : null) {
+            FreeSlotIndex pool = pools[c.ordinal()];
+            if (pool != null){
+                int poolSlot = pool.allocate();
+                if (poolSlot != -1)
+                    return toSlot(c.ordinal(), poolSlot);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nearest() {
+        int nearest = -1;
+        for (int c = 0; c < pools.length; c++) {
+            int poolSlot = pools[c] == null ? -1 : pools[c].nearest();
+            if (poolSlot != -1){
+                int slot = toSlot(c, poolSlot);
+                if (nearest == -1 || slot < nearest)
+                    nearest = slot;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Claims the nearest free slot of any class.
+     */
+    @Override
+    public int allocate() {
+        int slot = nearest();
+        return slot != -1 && allocate(slot) ? slot : -1;
+    }
+
+    @Override
+    public boolean allocate(int slot) {
+        if (slot < 1 || slot > size)
+            return false;
+        int r = rangeOf(slot);
+        return pools[classes[r].ordinal()].allocate(poolStarts[r] + slot - starts[r]);
+    }
+
+    @Override
+    public void release(int slot) {
+        int r = rangeOf(slot);
+        pools[classes[r].ordinal()].release(poolStarts[r] + slot - starts[r]);
+    }
+
+    /**
+     * @return the index of the range the slot falls in.
+     */
+    private int rangeOf(int slot) {
+        int low = 0;
+        int high = starts.length - 1;
+        // The last range starting at or before the slot.
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= slot)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * @return the slot number of the slot numbered {@code poolSlot} within the pool of the class.
+     */
+    private int toSlot(int c, int poolSlot) {
+        int[] ranges = classRanges[c];
+        int low = 0;
+        int high = ranges.length - 1;
+        // The last range of the class whose first slot is numbered at or before the pool slot.
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (poolStarts[ranges[mid]] <= poolSlot)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        int r = ranges[low];
+        return starts[r] + poolSlot - poolStarts[r];
+    }
+}
@@ -0,0 +1,93 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+
+import java.io.IOException;
+
+/**
+ * Writes the status table of the parking lot, see {@link ParkingLot#status(boolean, Appendable)} for the format.
+ * It's shared by the {@link Parkable} implementations so that they render the status exactly the same way.
+ * <br/><br/>
+ * The rows are appended to the target one field at a time: the slot numbers are written digit by digit and padded by
+ * hand rather than going through {@link java.util.Formatter}, so nothing is allocated per row. The digits are written
+ * the same way for the outputs of the other commands too, for e.g. by the batches of the
+ * {@link cs0x65.parkinglot.command.DefaultParserImpl}, see {@link #appendDigits(Appendable, long)}.
+ */
+public final class StatusWriter {
+    /**
+     * The view of the slots the status is rendered from.
+     */
+    interface Slots {
+        /**
+         * @param slot the 1-based slot number.
+         * @return the car parked at the slot, or null if the slot is empty.
+         */
+        Car getCar(int slot);
+
+        /**
+         * @param slot the 1-based slot number to start looking from.
+         * @return the first occupied slot at or after the given slot, or -1 if there's none.
+         */
+        int nextOccupied(int slot);
+    }
+
+    private static final String HEADER = "Slot No. Registration No.";
+    private static final String EMPTY_SLOT = "--";
+    private static final int SLOT_COLUMN_WIDTH = 8;
+
+    private StatusWriter() {
+    }
+
+    /**
+     * @return the number of rows written, excluding the header.
+     */
+    static int write(Appendable out, int size, boolean includeEmptySlots, Slots slots) throws IOException {
+        out.append(HEADER);
+        int rows = 0;
+        if (includeEmptySlots){
+            for (int slot = 1; slot <= size; slot++) {
+                Car car = slots.getCar(slot);
+                appendRow(out, slot, car == null ? EMPTY_SLOT : car.getRegNo());
+                rows++;
+            }
+        }else {
+            for (int slot = slots.nextOccupied(1); slot != -1; slot = slot < size ? slots.nextOccupied(slot + 1) : -1) {
+                Car car = slots.getCar(slot);
+                // The slot may be claimed but not yet filled in by an in-flight park of a concurrent lot.
+                if (car != null){
+                    appendRow(out, slot, car.getRegNo());
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Same as {@code format("\n%-8d %s", slot, regNo)}.
+     */
+    private static void appendRow(Appendable out, int slot, String regNo) throws IOException {
+        out.append('\n');
+        int digits = appendDigits(out, slot);
+        for (int i = digits; i < SLOT_COLUMN_WIDTH; i++)
+            out.append(' ');
+        out.append(' ').append(regNo);
+    }
+
+    /**
+     * Same as {@code out.append(String.valueOf(value))} but without creating the string.
+     * @param value a non-negative number.
+     * @return the number of digits written.
+     */
+    public static int appendDigits(Appendable out, long value) throws IOException {
+        long divisor = 1;
+        int digits = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+            digits++;
+        }
+        for (; divisor > 0; divisor /= 10)
+            out.append((char) ('0' + value / divisor % 10));
+        return digits;
+    }
+}
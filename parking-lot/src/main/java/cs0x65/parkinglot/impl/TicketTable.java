@@ -0,0 +1,201 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+
+/**
+ * Maps the slot numbers of the parking lot to the {@link Ticket} of the car occupying the slot.
+ * <br/><br/>
+ * The tickets aren't kept as objects: the table is columnar, the car and the parked time of the slot are kept in a
+ * {@code Car[]} and a {@code long[]} column, and {@link #get(int)} creates the {@code Ticket} as a view of them on
+ * demand. So an occupied slot costs a reference and a long, 12 bytes, rather than the 48 bytes of a ticket object and
+ * the reference to it, and the parked cars leave no ticket objects behind for the garbage collector to trace and
+ * promote. The rest of a ticket, the left time and the charges, is only ever set once the car has left, on the ticket
+ * handed out by the leave.
+ * <br/><br/>
+ * The trade-off is that the leave allocates the ticket it hands out, 48 bytes a leave, where it used to hand out the
+ * ticket kept since the park. That garbage dies young though, while the tickets kept for the parked cars lived as long
+ * as the cars and had to be copied by every young collection until they got promoted. So the collections come a bit
+ * more often but are shorter, and take less time overall: a leave and a park of a random car of a full 1M slot lot
+ * measured 28 collections taking 1916ms with the ticket objects against 32 taking 1703ms with the columns.
+ * <br/><br/>
+ * The table is split into fixed size pages that are only allocated when a slot within the page first gets occupied.
+ * So a huge lot that's never been filled only costs a reference per page for it's untouched regions rather than a
+ * reference per slot. A page is kept once it's allocated, even when all it's slots are vacated again: a page is about
+ * 48KB, and dropping it would have the next park into an empty region allocate it all over again, which made the
+ * parks and the leaves of a nearly empty lot some 50 times slower than those of a busy one.
+ * <br/><br/>
+ * Every page also keeps an occupancy bit per slot, so that the occupied slots are iterated by
+ * {@link #nextOccupied(int)} 64 slots at a time, skipping the pages never allocated altogether.
+ * <br/><br/>
+ * The pages are copy on write across the {@link #snapshot()}s: taking a snapshot only copies the references to the
+ * pages, and it's the first write to a page after the snapshot that copies the page itself. So the snapshot stays
+ * consistent while the table carries on being updated, and costs a page copy per page touched rather than a copy of
+ * the whole table.
+ */
+final class TicketTable {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int WORDS_PER_PAGE = PAGE_SIZE >>> 6;
+
+    private final Car[][] pages;
+    private final long[][] parkedAtPages;
+    private final long[][] pageBits;
+    /**
+     * The epoch in which the page was last copied or allocated; the page is shared with a snapshot, and must be copied
+     * before it's written to, unless it's epoch is the current one.
+     */
+    private final int[] pageEpochs;
+    private int epoch;
+
+    TicketTable(int size) {
+        int numPages = (size + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        pages = new Car[numPages][];
+        parkedAtPages = new long[numPages][];
+        pageBits = new long[numPages][];
+        pageEpochs = new int[numPages];
+    }
+
+    /**
+     * Captures the point-in-time view of the table in O(number of pages). The view is immutable and can be read by
+     * any other thread once it's safely published to it.
+     * @return the view of the table as of now.
+     */
+    View snapshot() {
+        epoch++;
+        return new View(pages.clone(), parkedAtPages.clone(), pageBits.clone());
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number.
+     * @return a new ticket of the car parked at the slot, or null if the slot is empty. It's the only allocation of a
+     * leave, the ticket the leave hands out.
+     */
+    Ticket get(int slot) {
+        return get(pages, parkedAtPages, slot);
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number.
+     * @return the car parked at the slot, or null if the slot is empty.
+     */
+    Car getCar(int slot) {
+        return getCar(pages, slot);
+    }
+
+    /**
+     * Parks the car at the slot, replacing the car parked at the slot if any.
+     * @param slot the 1-based slot number.
+     * @param car the car.
+     * @param parkedAt the time the car was parked at.
+     */
+    void put(int slot, Car car, long parkedAt) {
+        int index = slot - 1;
+        int pageIndex = index >>> PAGE_SHIFT;
+        Car[] page = pages[pageIndex];
+        if (page == null){
+            page = pages[pageIndex] = new Car[PAGE_SIZE];
+            parkedAtPages[pageIndex] = new long[PAGE_SIZE];
+            pageBits[pageIndex] = new long[WORDS_PER_PAGE];
+            pageEpochs[pageIndex] = epoch;
+        }else if (pageEpochs[pageIndex] != epoch){
+            page = copyPage(pageIndex);
+        }
+        if (page[index & PAGE_MASK] == null)
+            pageBits[pageIndex][(index & PAGE_MASK) >>> 6] |= 1L << index;
+        page[index & PAGE_MASK] = car;
+        parkedAtPages[pageIndex][index & PAGE_MASK] = parkedAt;
+    }
+
+    void remove(int slot) {
+        int index = slot - 1;
+        int pageIndex = index >>> PAGE_SHIFT;
+        Car[] page = pages[pageIndex];
+        if (page == null || page[index & PAGE_MASK] == null)
+            return;
+        if (pageEpochs[pageIndex] != epoch)
+            page = copyPage(pageIndex);
+        page[index & PAGE_MASK] = null;
+        pageBits[pageIndex][(index & PAGE_MASK) >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     *
+     * @param slot the 1-based slot number to start looking from.
+     * @return the first occupied slot at or after the given slot, or -1 if there's none.
+     */
+    int nextOccupied(int slot) {
+        return nextOccupied(pageBits, slot);
+    }
+
+    private Car[] copyPage(int pageIndex) {
+        // The parked times are copied along with the cars even by a remove, as the page is only copied once per epoch.
+        parkedAtPages[pageIndex] = parkedAtPages[pageIndex].clone();
+        pageBits[pageIndex] = pageBits[pageIndex].clone();
+        pageEpochs[pageIndex] = epoch;
+        return pages[pageIndex] = pages[pageIndex].clone();
+    }
+
+    private static Ticket get(Car[][] pages, long[][] parkedAtPages, int slot) {
+        int index = slot - 1;
+        Car[] page = pages[index >>> PAGE_SHIFT];
+        Car car = page == null ? null : page[index & PAGE_MASK];
+        return car == null ? null : new Ticket(slot, car, parkedAtPages[index >>> PAGE_SHIFT][index & PAGE_MASK]);
+    }
+
+    private static Car getCar(Car[][] pages, int slot) {
+        int index = slot - 1;
+        Car[] page = pages[index >>> PAGE_SHIFT];
+        return page == null ? null : page[index & PAGE_MASK];
+    }
+
+    private static int nextOccupied(long[][] pageBits, int slot) {
+        int index = Math.max(slot - 1, 0);
+        for (int pageIndex = index >>> PAGE_SHIFT; pageIndex < pageBits.length; pageIndex++) {
+            long[] bits = pageBits[pageIndex];
+            if (bits != null){
+                int w = (index & PAGE_MASK) >>> 6;
+                long word = bits[w] & (-1L << index);
+                while (true) {
+                    if (word != 0)
+                        return (pageIndex << PAGE_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word) + 1;
+                    if (++w == WORDS_PER_PAGE)
+                        break;
+                    word = bits[w];
+                }
+            }
+            index = (pageIndex + 1) << PAGE_SHIFT;
+        }
+        return -1;
+    }
+
+    /**
+     * The point-in-time view of the table, see {@link #snapshot()}.
+     */
+    static final class View {
+        private final Car[][] pages;
+        private final long[][] parkedAtPages;
+        private final long[][] pageBits;
+
+        private View(Car[][] pages, long[][] parkedAtPages, long[][] pageBits) {
+            this.pages = pages;
+            this.parkedAtPages = parkedAtPages;
+            this.pageBits = pageBits;
+        }
+
+        Ticket get(int slot) {
+            return TicketTable.get(pages, parkedAtPages, slot);
+        }
+
+        Car getCar(int slot) {
+            return TicketTable.getCar(pages, slot);
+        }
+
+        int nextOccupied(int slot) {
+            return TicketTable.nextOccupied(pageBits, slot);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package cs0x65.parkinglot.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The {@link Writer} that accumulates the command outputs in a reusable character buffer and only encodes and writes
+ * them to the underlying stream in batches i.e. when the buffer fills up, on {@link #flush()} and on {@link #close()}.
+ * <br/>
+ * Compared to a {@code println} per command on an auto flushing {@link java.io.PrintStream}, the batches save the lock,
+ * the charset encoding call and the system call per command that otherwise cost more than the command itself.
+ * <br/><br/>
+ * For the interactive use, where each output needs to show up as soon as it's produced, the writer can additionally
+ * be asked to flush after every N lines, see {@link #writeLine(String)}.
+ * <br/><br/>
+ * The writer isn't thread safe; it's meant to be owned by the single thread that processes the commands.
+ */
+public class BatchedOutputWriter extends Writer {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final OutputStream out;
+    private final boolean closeOut;
+    private final int flushEvery;
+    private final CharsetEncoder encoder;
+    private final char[] chars;
+    private final CharBuffer charBuffer;
+    private final byte[] bytes;
+    private final ByteBuffer byteBuffer;
+
+    private int numChars;
+    private int numLinesSinceFlush;
+    private boolean closed;
+
+    /**
+     * Creates the writer that only flushes when the buffer fills up or when asked to.
+     * @param out the stream to write the encoded output to.
+     * @param closeOut whether to close the stream along with the writer; pass false for the streams like
+     *                 {@link System#out} which must stay open.
+     */
+    public BatchedOutputWriter(OutputStream out, boolean closeOut) {
+        this(out, closeOut, 0, DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+    }
+
+    /**
+     *
+     * @param out the stream to write the encoded output to.
+     * @param closeOut whether to close the stream along with the writer.
+     * @param flushEvery flush after every so many lines written through {@link #writeLine(String)}. Zero or less
+     *                   means only flush when the buffer fills up or when asked to.
+     * @param bufferSize the number of characters accumulated before they're encoded and written out.
+     * @param charset the charset to encode the output in.
+     */
+    public BatchedOutputWriter(OutputStream out, boolean closeOut, int flushEvery, int bufferSize, Charset charset) {
+        // Room for a held back high surrogate plus at least one more character.
+        if (bufferSize < 2)
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        this.out = out;
+        this.closeOut = closeOut;
+        this.flushEvery = flushEvery;
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = new char[bufferSize];
+        charBuffer = CharBuffer.wrap(chars);
+        bytes = new byte[(int) Math.ceil(bufferSize * (double) encoder.maxBytesPerChar())];
+        byteBuffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Writes the line followed by the line separator, and flushes if it's the N-th line since the last flush where N
+     * is the {@code flushEvery} the writer is created with.
+     * @param line the line to write, typically the output of a command.
+     * @throws IOException if the underlying stream fails to write.
+     */
+    public void writeLine(String line) throws IOException {
+        write(line, 0, line.length());
+        endLine();
+    }
+
+    /**
+     * Ends the line written so far, for e.g. through {@link #append(CharSequence)}, the same way as
+     * {@link #writeLine(String)} does.
+     * @throws IOException if the underlying stream fails to write.
+     */
+    public void endLine() throws IOException {
+        write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
+        if (flushEvery > 0 && ++numLinesSinceFlush >= flushEvery)
+            flush();
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0){
+            if (numChars == chars.length)
+                flushBuffer();
+            int n = Math.min(len, chars.length - numChars);
+            str.getChars(off, off + n, chars, numChars);
+            numChars += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0){
+            if (numChars == chars.length)
+                flushBuffer();
+            int n = Math.min(len, chars.length - numChars);
+            System.arraycopy(cbuf, off, chars, numChars, n);
+            numChars += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Copies the characters straight out of the {@code String} or the {@code StringBuilder}, for e.g. the output
+     * rendered by another thread, rather than through the {@code String} copy made by {@link Writer#append}.
+     */
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        if (csq instanceof String){
+            write((String) csq, 0, csq.length());
+        }else if (csq instanceof StringBuilder){
+            StringBuilder sb = (StringBuilder) csq;
+            ensureOpen();
+            int off = 0;
+            int len = sb.length();
+            while (len > 0){
+                if (numChars == chars.length)
+                    flushBuffer();
+                int n = Math.min(len, chars.length - numChars);
+                sb.getChars(off, off + n, chars, numChars);
+                numChars += n;
+                off += n;
+                len -= n;
+            }
+        }else {
+            super.append(csq);
+        }
+        return this;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        if (numChars == chars.length)
+            flushBuffer();
+        chars[numChars++] = (char) c;
+    }
+
+    /**
+     * Encodes the buffered characters in one go and writes them out to the stream, without flushing the stream.
+     * A trailing high surrogate is held back till it's pair is written.
+     */
+    private void flushBuffer() throws IOException {
+        charBuffer.limit(numChars).position(0);
+        CoderResult result;
+        do {
+            byteBuffer.clear();
+            result = encoder.encode(charBuffer, byteBuffer, false);
+            out.write(bytes, 0, byteBuffer.position());
+        } while (result.isOverflow());
+
+        int remaining = charBuffer.remaining();
+        System.arraycopy(chars, charBuffer.position(), chars, 0, remaining);
+        numChars = remaining;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        out.flush();
+        numLinesSinceFlush = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            flushBuffer();
+            charBuffer.limit(numChars).position(0);
+            byteBuffer.clear();
+            encoder.encode(charBuffer, byteBuffer, true);
+            encoder.flush(byteBuffer);
+            out.write(bytes, 0, byteBuffer.position());
+            numChars = 0;
+            out.flush();
+        }finally {
+            closed = true;
+            if (closeOut)
+                out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Writer is closed");
+    }
+}
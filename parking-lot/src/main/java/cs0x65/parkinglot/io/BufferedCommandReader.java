@@ -0,0 +1,45 @@
+package cs0x65.parkinglot.io;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The {@link CommandReader} that reads the command file one line at a time through a {@link BufferedReader}.
+ * It creates a {@code String} per line, which makes it the simpler choice for small or interactive inputs.
+ * For the large command files, prefer {@link ChannelCommandReader}.
+ * <br/>
+ * It also reads the commands typed in, for e.g. on a console or a kiosk, see {@link #BufferedCommandReader(Reader)}.
+ */
+public class BufferedCommandReader implements CommandReader {
+    private final BufferedReader bufferedReader;
+
+    /**
+     *
+     * @param filePath the command file to read from.
+     * @throws IOException if the file can't be opened.
+     */
+    public BufferedCommandReader(String filePath) throws IOException {
+        this(new FileReader(filePath));
+    }
+
+    /**
+     *
+     * @param reader the source to read the commands from, it's closed along with the command reader.
+     */
+    public BufferedCommandReader(Reader reader) {
+        bufferedReader = new BufferedReader(reader);
+    }
+
+    @Override
+    public CharSequence readCommand() throws IOException {
+        String line = bufferedReader.readLine();
+        return line == null ? null : line.trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bufferedReader.close();
+    }
+}
@@ -0,0 +1,48 @@
+package cs0x65.parkinglot.io;
+
+/**
+ * A reusable {@link CharSequence} view over a range of a byte array, where every byte is a single character i.e. the
+ * text is ASCII/ISO-8859-1 encoded, which is the case for the commands.
+ * <br/>
+ * It lets the command text be handed over to the parser without decoding the bytes into a {@code String} first.
+ * {@link #subSequence(int, int)} and {@link #toString()} do copy the characters, so the returned text stays valid after
+ * the view is moved on to another range.
+ */
+final class ByteSequence implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    ByteSequence set(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        return (char) (bytes[offset + index] & 0xff);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        // The ISO-8859-1 bytes are the characters themselves, so skip the charset decoder.
+        return new String(bytes, 0, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return (String) subSequence(0, length);
+    }
+}
@@ -0,0 +1,112 @@
+package cs0x65.parkinglot.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@link CommandReader} that reads the command file through a {@link FileChannel} into a reusable block of bytes,
+ * and finds the line boundaries directly within the block. Each command is handed out as a reusable
+ * {@link CharSequence} view over the bytes, so no {@code String} is created and no charset decoding is done per line.
+ * <br/><br/>
+ * A line crossing the end of the block is moved to the front of the block before refilling it, so the lines can be of
+ * any length.
+ * <br/><br/>
+ * It used to memory map the file a chunk at a time and copy the mapped bytes into the block, leaving every chunk
+ * mapped till the garbage collector got round to it. Scanning the mapped bytes in place instead turned out slower than
+ * the copy: the parser reads the command a character at a time, and every byte read out of a
+ * {@code MappedByteBuffer} costs a bounds check. So the file is read into the block, with nothing mapped to release,
+ * see {@code CommandReaderBenchmark} for the numbers.
+ * <br/><br/>
+ * The file is expected to be ASCII encoded, see {@link ByteSequence}.
+ */
+public class ChannelCommandReader implements CommandReader {
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteSequence command = new ByteSequence();
+
+    private byte[] block;
+    private int blockPosition;
+    private int blockLimit;
+    private boolean endOfFile;
+
+    /**
+     *
+     * @param filePath the command file to read from.
+     * @throws IOException if the file can't be opened.
+     */
+    public ChannelCommandReader(String filePath) throws IOException {
+        this(filePath, DEFAULT_BLOCK_SIZE);
+    }
+
+    ChannelCommandReader(String filePath, int blockSize) throws IOException {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        block = new byte[blockSize];
+        channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+    }
+
+    @Override
+    public CharSequence readCommand() throws IOException {
+        int end;
+        while ((end = indexOfNewLine()) == -1){
+            if (!fill()){
+                // The last line of the file without the trailing new line.
+                if (blockPosition == blockLimit)
+                    return null;
+                end = blockLimit;
+                break;
+            }
+        }
+
+        int start = blockPosition;
+        blockPosition = Math.min(end + 1, blockLimit);
+        // Same as String.trim() i.e. drops the white spaces including the \r of the \r\n line endings.
+        while (start < end && (block[start] & 0xff) <= ' ')
+            start++;
+        while (end > start && (block[end - 1] & 0xff) <= ' ')
+            end--;
+        return command.set(block, start, end - start);
+    }
+
+    private int indexOfNewLine() {
+        byte[] bytes = block;
+        for (int i = blockPosition; i < blockLimit; i++) {
+            if (bytes[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the partially read line to the front of the block and appends the next bytes of the file after it.
+     * @return false if the whole file has been read.
+     */
+    private boolean fill() throws IOException {
+        if (endOfFile)
+            return false;
+        int remaining = blockLimit - blockPosition;
+        if (remaining == block.length)
+            block = Arrays.copyOf(block, block.length << 1);
+        System.arraycopy(block, blockPosition, block, 0, remaining);
+        blockPosition = 0;
+        blockLimit = remaining;
+
+        int read = channel.read(ByteBuffer.wrap(block, blockLimit, block.length - blockLimit));
+        if (read == -1){
+            endOfFile = true;
+            return false;
+        }
+        blockLimit += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
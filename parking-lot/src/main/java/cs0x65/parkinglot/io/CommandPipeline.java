@@ -0,0 +1,262 @@
+package cs0x65.parkinglot.io;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import cs0x65.parkinglot.command.Parser;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Processes the commands in three stages, each on it's own thread, connected by a ring of reusable slots in the style
+ * of a disruptor:
+ * <ol>
+ *     <li>the reader thread reads the command text and parses it into the {@link Command} of the slot.</li>
+ *     <li>the calling thread executes the command, being the single writer of the {@link ParkingLot}, and renders the
+ *     output into the character buffer of the slot.</li>
+ *     <li>the writer thread copies the output into the {@link BatchedOutputWriter}, which encodes and writes it out.</li>
+ * </ol>
+ * Each stage publishes how far it has got through a sequence of it's own, and only ever waits for the stage in front
+ * of it: the execution for the reader, the writer for the execution, and the reader for the writer to free up the
+ * slot. So the stages hand the slots over without a lock, and a stage that has fallen behind catches up on all the
+ * slots published since, in one go. The outputs are written in the order of the slots, i.e. the order of the
+ * commands.
+ * <br/><br/>
+ * If the reading or the parsing fails, or the execution throws, the outputs of the commands before the failed one are
+ * written out, and then the failure is rethrown by {@link #run(Stage)}; same as processing the commands one by one.
+ */
+final class CommandPipeline {
+    /**
+     * Executes a command on the calling thread.
+     */
+    @FunctionalInterface
+    interface Stage {
+        /**
+         * @param command the parsed command.
+         * @param out receives the output of the command.
+         */
+        void execute(Command<ParkingLot> command, Appendable out) throws IOException, CommandOutputFormatException;
+    }
+
+    private static final int SPINS = 64;
+    private static final int YIELDS = 128;
+    private static final long PARK_NANOS = 20_000;
+    private static final int MAX_RETAINED_OUTPUT = 1 << 16;
+
+    /**
+     * The index of the last slot published by a stage, padded so that the sequences of the different stages don't
+     * share a cache line.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+
+        private Sequence() {
+            super(-1);
+        }
+    }
+
+    private static final class Slot {
+        private Command<ParkingLot> command;
+        /**
+         * Marks the end of the input, or the failed command if the failure is set.
+         */
+        private boolean end;
+        private Exception failure;
+        private final StringBuilder output = new StringBuilder();
+    }
+
+    private final CommandReader reader;
+    private final Parser<ParkingLot> parser;
+    private final BatchedOutputWriter writer;
+    private final Slot[] slots;
+    private final int mask;
+    private final Sequence read = new Sequence();
+    private final Sequence executed = new Sequence();
+    private final Sequence written = new Sequence();
+    /**
+     * Set once the execution has ended, i.e. nothing more will be published for the writer.
+     */
+    private volatile boolean executionEnded;
+    /**
+     * Set when a stage gives up, so the other stages stop waiting for it.
+     */
+    private volatile boolean halted;
+    private volatile IOException writeFailure;
+
+    private static final Logger LOGGER = LogManager.getLogger(CommandPipeline.class.getName());
+
+    /**
+     *
+     * @param reader the source of the commands.
+     * @param parser parses the commands on the reader thread.
+     * @param writer the target of the outputs, it's only written to by the writer thread.
+     * @param capacity the number of slots, rounded up to a power of 2. It bounds the number of commands read ahead of
+     *                 the one being executed plus the outputs waiting to be written.
+     */
+    CommandPipeline(CommandReader reader, Parser<ParkingLot> parser, BatchedOutputWriter writer, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        this.reader = reader;
+        this.parser = parser;
+        this.writer = writer;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++)
+            slots[i] = new Slot();
+        mask = size - 1;
+    }
+
+    /**
+     * Runs the pipeline till the end of the input, executing the commands on the calling thread. The reader and the
+     * writer threads have ended by the time the method returns.
+     * @param stage executes the commands.
+     * @throws IOException if the commands fail to read or the outputs fail to write.
+     * @throws BadCommandException for the first invalid command, if any.
+     * @throws CommandOutputFormatException if the output of a command can't be formatted.
+     */
+    void run(Stage stage) throws IOException, BadCommandException, CommandOutputFormatException {
+        Thread readerThread = start(this::read, "pipeline-reader");
+        Thread writerThread = start(this::write, "pipeline-writer");
+        Exception failure = null;
+        try {
+            failure = execute(stage);
+        }finally {
+            executionEnded = true;
+            // Lets the writer drain the outputs executed so far, and stops the reader reading ahead.
+            join(writerThread);
+            halted = true;
+            join(readerThread);
+        }
+        if (writeFailure != null)
+            throw writeFailure;
+        if (failure instanceof IOException)
+            throw (IOException) failure;
+        if (failure instanceof BadCommandException)
+            throw (BadCommandException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+    }
+
+    /**
+     * @return the failure of the reader stage, if any.
+     */
+    private Exception execute(Stage stage) throws IOException, CommandOutputFormatException {
+        long next = 0;
+        while (true) {
+            long available = waitFor(read, next);
+            if (available < next)
+                return null;
+            for (; next <= available; next++) {
+                Slot slot = slots[(int) next & mask];
+                if (slot.end)
+                    return slot.failure;
+                slot.output.setLength(0);
+                // Lets go of the buffer grown by an exceptionally large output, for e.g. the status of a full lot.
+                if (slot.output.capacity() > MAX_RETAINED_OUTPUT)
+                    slot.output.trimToSize();
+                stage.execute(slot.command, slot.output);
+                executed.lazySet(next);
+            }
+        }
+    }
+
+    private void read() {
+        long next = 0;
+        Slot slot;
+        do {
+            // The slot is free once the writer is done with the output it held a round ago.
+            if (waitFor(written, next - slots.length) < next - slots.length)
+                return;
+            slot = slots[(int) next & mask];
+            slot.command = null;
+            slot.end = false;
+            slot.failure = null;
+            try {
+                CharSequence cmdStr = reader.readCommand();
+                if (cmdStr == null)
+                    slot.end = true;
+                else
+                    slot.command = parser.parse(cmdStr);
+            }catch (IOException | BadCommandException | RuntimeException e){
+                slot.end = true;
+                slot.failure = e;
+            }
+            read.lazySet(next++);
+        } while (!slot.end);
+    }
+
+    private void write() {
+        long next = 0;
+        try {
+            while (true) {
+                // The outputs published just before the end of the execution are drained before stopping.
+                boolean ended = executionEnded;
+                long available = ended ? executed.get() : waitFor(executed, next);
+                if (available < next){
+                    if (ended)
+                        return;
+                    continue;
+                }
+                for (; next <= available; next++) {
+                    Slot slot = slots[(int) next & mask];
+                    writer.append(slot.output);
+                    writer.endLine();
+                }
+                written.lazySet(available);
+            }
+        }catch (IOException e){
+            LOGGER.error("Failed to write the output", e);
+            writeFailure = e;
+            halted = true;
+        }
+    }
+
+    /**
+     * Waits till the sequence reaches the value, spinning at first, then yielding and eventually parking the thread.
+     * @return the value of the sequence, which is less than the awaited value only if the pipeline is halted or, for
+     * the writer, the execution has ended.
+     */
+    private long waitFor(Sequence sequence, long value) {
+        long current;
+        for (int i = 0; (current = sequence.get()) < value; i++) {
+            if (halted || (sequence == executed && executionEnded))
+                return sequence.get();
+            if (i >= YIELDS)
+                LockSupport.parkNanos(PARK_NANOS);
+            else if (i >= SPINS)
+                Thread.yield();
+        }
+        return current;
+    }
+
+    private static Thread start(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            }catch (InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,21 @@
+package cs0x65.parkinglot.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the command text from the source one command at a time, for e.g. one line at a time from the command file.
+ * <br/>
+ * The implementing classes are free to return the same {@link CharSequence} instance, refilled with the next command,
+ * on every call. So the returned text is only valid till the next call to {@link #readCommand()}; copy it by calling
+ * {@code toString()} to retain it for longer.
+ */
+public interface CommandReader extends Closeable {
+    /**
+     *
+     * @return the next command text with the leading and trailing white spaces removed, or null if the end of the
+     * source has been reached.
+     * @throws IOException if the source can't be read.
+     */
+    CharSequence readCommand() throws IOException;
+}
@@ -1,14 +1,27 @@
 package cs0x65.parkinglot.io;
 
 import cs0x65.parkinglot.command.*;
+import cs0x65.parkinglot.engine.LotEngine;
+import cs0x65.parkinglot.engine.ReplayBatch;
 import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.journal.JournalRecovery;
+import cs0x65.parkinglot.journal.Snapshotter;
+import cs0x65.parkinglot.journal.WriteAheadJournal;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * The class is at the core of the command processing infrastructure which abstracts all the IO.
@@ -20,11 +33,53 @@ import java.io.PrintStream;
  * <br/>
  * The processor can either print the output itself or pass a corresponding target stream/writer to the {@code Command}
  * while executing which takes care of printing the outcome.
+ * <br/>
+ * The way the command file is read is controlled by the {@link InputMode}.
+ * <br/>
+ * The outputs are accumulated by a {@link BatchedOutputWriter} and written out in batches and at the end of the input,
+ * rather than printed one command at a time; see {@link #withFlushEvery(int)} for the interactive use.
+ * <br/>
+ * With a {@link LotEngine}, see {@link #withLotEngine(LotEngine)}, the commands can be addressed to any number of
+ * parking lots and are executed by the engine, in parallel across the lots.
+ * <br/>
+ * With a {@link MetricsRegistry}, see {@link #withMetrics(MetricsRegistry, Appendable)}, the latencies of the commands
+ * and the occupancy of the parking lots are recorded, and reported at the end of the run.
  */
 public class Processor {
+    /**
+     * The maximum number of commands submitted to the {@link LotEngine} and waiting for their outputs to be written.
+     */
+    private static final int MAX_COMMANDS_IN_FLIGHT = 4096;
+
+    /**
+     * The ways to read the commands from the command file.
+     */
+    public enum InputMode {
+        /**
+         * Reads one line at a time through a {@link java.io.BufferedReader}, see {@link BufferedCommandReader}.
+         */
+        BUFFERED,
+        /**
+         * Reads the file in blocks through a {@link java.nio.channels.FileChannel} and hands the lines over to the
+         * parser without creating a {@code String} per line, see {@link ChannelCommandReader}. Best suited for the
+         * large command files.
+         */
+        CHANNEL
+    }
+
     private final String filePath;
     private String outFilePath;
-    private final Parser<ParkingLot> parser = new DefaultParserImpl();
+    private InputMode inputMode = InputMode.BUFFERED;
+    private int flushEvery;
+    private String journalPath;
+    private String snapshotPath;
+    private int snapshotEvery;
+    private LotEngine lotEngine;
+    private int replayBatchSize;
+    private int pipelineCapacity;
+    private MetricsRegistry metrics;
+    private Appendable metricsReport;
+    private final DefaultParserImpl parser = new DefaultParserImpl();
     private static final Logger LOGGER = LogManager.getLogger(Processor.class.getName());
 
     public Processor(String filePath) {
@@ -36,40 +91,243 @@ public class Processor {
         this.outFilePath = outFilePath;
     }
 
+    /**
+     * @param inputMode the way the command file is read. Default is {@link InputMode#BUFFERED}.
+     * @return this processor.
+     */
+    public Processor withInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+        return this;
+    }
+
+    /**
+     * @param flushEvery flush the output after every so many commands, for e.g. 1 to see the output of each command as
+     *                   soon as it's executed. Default is 0 i.e. the output is only flushed when the output buffer
+     *                   fills up and at the end of the input.
+     * @return this processor.
+     */
+    public Processor withFlushEvery(int flushEvery) {
+        this.flushEvery = flushEvery;
+        return this;
+    }
+
+    /**
+     * Makes the parking lot durable: every park and leave is recorded to the given journal, and on the next run the
+     * parking lot is recovered from the journal before processing the commands, so the commands carry on from where
+     * the previous run left off. See {@link WriteAheadJournal}.
+     * @param journalPath the journal file, it's created if it doesn't exist.
+     * @return this processor.
+     * @throws IllegalStateException if the processor is processing through the {@link LotEngine}, which the journal
+     * doesn't apply to.
+     */
+    public Processor withJournal(String journalPath) {
+        if (lotEngine != null)
+            throw new IllegalStateException("The journal doesn't apply to the lot engine");
+        this.journalPath = journalPath;
+        return this;
+    }
+
+    /**
+     * Bounds the recovery time of the journaled parking lot, see {@link #withJournal(String)}: a snapshot of the
+     * parking lot is written in the background every so many commands, and on the next run the parking lot is
+     * recovered from the snapshot plus just the part of the journal that follows it. See {@link Snapshotter}.
+     * @param snapshotPath the snapshot file, it's replaced by every snapshot.
+     * @param snapshotEvery take the snapshot after every so many commands.
+     * @return this processor.
+     * @throws IllegalStateException if the processor is processing through the {@link LotEngine}, which the snapshots
+     * don't apply to.
+     */
+    public Processor withSnapshots(String snapshotPath, int snapshotEvery) {
+        if (snapshotEvery < 1)
+            throw new IllegalArgumentException("Invalid snapshot every: " + snapshotEvery);
+        if (lotEngine != null)
+            throw new IllegalStateException("The snapshots don't apply to the lot engine");
+        this.snapshotPath = snapshotPath;
+        this.snapshotEvery = snapshotEvery;
+        return this;
+    }
+
+    /**
+     * Processes the commands through the given engine, where each command is addressed to a parking lot by the
+     * {@code @name} prefix, for e.g. {@code @mall park KA-01-HH-1234}; see {@link LotEngine}. The parking lots live on
+     * in the engine after the processing, so the same engine can serve any number of command files.
+     * <br/>
+     * The outputs are written in the order of the commands. The journal, the snapshots and the pipeline don't apply
+     * to the engine.
+     * @param lotEngine the engine to execute the commands.
+     * @return this processor.
+     * @throws IllegalStateException if the processor is journaled, takes the snapshots or runs the pipeline, see
+     * {@link #withJournal(String)} and {@link #withPipeline(int)}.
+     */
+    public Processor withLotEngine(LotEngine lotEngine) {
+        if (journalPath != null || snapshotPath != null)
+            throw new IllegalStateException("The journal and the snapshots don't apply to the lot engine");
+        if (pipelineCapacity > 0)
+            throw new IllegalStateException("The pipeline doesn't apply to the lot engine");
+        this.lotEngine = lotEngine;
+        return this;
+    }
+
+    /**
+     * Replays the commands through the {@link LotEngine} in batches rather than one command at a time, which
+     * amortizes the hand over of the commands to the lanes of the engine across the batch, and parses the commands in
+     * parallel too. Best suited for replaying the large archives of traffic across many lots. See {@link ReplayBatch}.
+     * <br/>
+     * Only applies along with {@link #withLotEngine(LotEngine)}.
+     * <br/>
+     * The gain depends on the lanes of the engine running on the cores of their own. On a single core the batches
+     * only add the cost of holding the batch: replaying 100k commands across 64 lots measured about 309k commands per
+     * second one at a time, about the same in the batches of 4096 and down to about 246k in the batches of 65536.
+     * The gain on many cores hasn't been measured yet.
+     * @param replayBatchSize the number of commands per batch, for e.g. 4096.
+     * @return this processor.
+     */
+    public Processor withReplayBatchSize(int replayBatchSize) {
+        if (replayBatchSize < 1)
+            throw new IllegalArgumentException("Invalid replay batch size: " + replayBatchSize);
+        this.replayBatchSize = replayBatchSize;
+        return this;
+    }
+
+    /**
+     * Reads and parses the commands, and writes out their outputs, on two threads of their own while the calling
+     * thread only executes the commands against the parking lot; see {@link CommandPipeline}. The stages overlap, so
+     * the throughput of the large command files is bound by the slowest of them rather than by the sum of all.
+     * <br/>
+     * The outputs are written in the order of the commands, same as without the pipeline. Doesn't apply along with
+     * {@link #withLotEngine(LotEngine)}.
+     * @param pipelineCapacity the number of commands in flight between the stages, for e.g. 1024.
+     * @return this processor.
+     * @throws IllegalStateException if the processor is processing through the {@link LotEngine}, which the pipeline
+     * doesn't apply to.
+     */
+    public Processor withPipeline(int pipelineCapacity) {
+        if (pipelineCapacity < 1)
+            throw new IllegalArgumentException("Invalid pipeline capacity: " + pipelineCapacity);
+        if (lotEngine != null)
+            throw new IllegalStateException("The pipeline doesn't apply to the lot engine");
+        this.pipelineCapacity = pipelineCapacity;
+        return this;
+    }
+
+    /**
+     * Records the metrics of the commands processed and of the parking lots they create, see {@link MetricsRegistry},
+     * and writes out the report of the metrics at the end of {@link #processCommands()}. Along with
+     * {@link #withLotEngine(LotEngine)}, the metrics are handed over to the engine.
+     * @param metrics the metrics registry, it can be shared by the processors and exposed through JMX.
+     * @param metricsReport the target the report is written to, for e.g. {@link System#err}, or null for no report.
+     * @return this processor.
+     */
+    public Processor withMetrics(MetricsRegistry metrics, Appendable metricsReport) {
+        this.metrics = metrics;
+        this.metricsReport = metricsReport;
+        return this;
+    }
+
     /**
      * Reads command one line at a time, executes it and renders the results.
      * If the output file is supplied, the command output is written to the given file else to the {@link System#out}
      */
     public void processCommands(){
         LOGGER.info("Reading commands from the file: {}", filePath);
+        if (metrics != null){
+            parser.withMetrics(metrics);
+            if (lotEngine != null)
+                lotEngine.withMetrics(metrics);
+        }
         if (outFilePath != null)
-            processWithPrintStream();
+            processWithOutputFile();
         else
-            process();
+            process(System.out, false);
+        if (metrics != null && metricsReport != null)
+            reportMetrics();
     }
 
-    private void process(){
+    private void reportMetrics(){
+        try {
+            metrics.report(metricsReport);
+            if (metricsReport instanceof Flushable)
+                ((Flushable) metricsReport).flush();
+        }catch (IOException e){
+            LOGGER.error("Failed to write the metrics report");
+            LOGGER.error(e);
+        }
+    }
+
+    private void processWithOutputFile(){
+        FileOutputStream outputStream;
+        try {
+            outputStream = new FileOutputStream(outFilePath);
+        }catch (FileNotFoundException e){
+            LOGGER.error("Failed to open the output file {}", outFilePath);
+            LOGGER.error(e);
+            return;
+        }
+        process(outputStream, true);
+    }
+
+    private CommandReader openReader() throws IOException {
+        return inputMode == InputMode.CHANNEL ? new ChannelCommandReader(filePath) :
+                new BufferedCommandReader(filePath);
+    }
+
+    /**
+     * Opens the journal to append to, after the parking lot has been recovered from it.
+     * @return the journal or null if the processor isn't journaled.
+     */
+    private WriteAheadJournal openJournal(ParkingLot recovered) throws IOException {
+        if (journalPath == null)
+            return null;
+        WriteAheadJournal journal = new WriteAheadJournal(Paths.get(journalPath));
+        if (recovered != null)
+            recovered.addListener(journal);
+        return journal;
+    }
+
+    /**
+     * @return the snapshotter or null if the processor isn't journaled or doesn't take snapshots.
+     */
+    private Snapshotter openSnapshotter(WriteAheadJournal journal) {
+        return journal == null || snapshotPath == null ? null : new Snapshotter(Paths.get(snapshotPath), journal);
+    }
+
+    private void process(OutputStream outputStream, boolean closeOutputStream){
+        if (lotEngine != null && replayBatchSize > 0){
+            replayWithEngine(outputStream, closeOutputStream);
+            return;
+        }
+        if (lotEngine != null){
+            processWithEngine(outputStream, closeOutputStream);
+            return;
+        }
         ParkingLot parkingLot = null;
-        String cmdStr = null;
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(filePath))){
-            while ((cmdStr = bufferedReader.readLine()) != null){
-                cmdStr = cmdStr.trim();
-                Command<ParkingLot> command = parser.parse(cmdStr);
-                LOGGER.info("Command read: {}", command.getVerb().lName());
-
-                if (parkingLot == null){
-                    if (command.getVerb() == Command.Verb.CREATE_PARKING_LOT){
-                        command.executeAndPrint(System.out);
-                        parkingLot = (ParkingLot) command.getResult();
-                    }else {
-                        LOGGER.error("Illegal state: Parking lot doesn't exist!");
-                        throw new IllegalStateException("Illegal state: Parking lot doesn't exist! Please create one" +
-                                " by executing command: " + Command.Verb.CREATE_PARKING_LOT.lName() +
-                                " before issuing any other commands.");
-                    }
-                }else {
-                    command.setTarget(parkingLot).executeAndPrint(System.out);
-                }
+        if (journalPath != null){
+            try {
+                parkingLot = JournalRecovery.recover(Paths.get(journalPath),
+                        snapshotPath == null ? null : Paths.get(snapshotPath), ParkingLot.Builder::new);
+            }catch (IOException e){
+                LOGGER.error("Failed to recover the parking lot from the journal {}", journalPath);
+                LOGGER.error(e);
+                return;
+            }
+        }
+
+        CharSequence cmdStr = null;
+        // The writer is closed, and so flushed, even when the processing is aborted by the IllegalStateException.
+        // Likewise the journal is synced, after the snapshot being written, if any, completes.
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(outputStream, closeOutputStream, flushEvery,
+                BatchedOutputWriter.DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+             CommandReader commandReader = openReader();
+             WriteAheadJournal journal = openJournal(parkingLot);
+             Snapshotter snapshotter = openSnapshotter(journal)){
+            Execution execution = new Execution(parkingLot, journal, snapshotter);
+            if (pipelineCapacity > 0){
+                new CommandPipeline(commandReader, parser, writer, pipelineCapacity).run(execution::execute);
+                return;
+            }
+            while ((cmdStr = commandReader.readCommand()) != null){
+                execution.execute(parser.parse(cmdStr), writer);
+                writer.endLine();
             }
         }catch (IOException | BadCommandException | CommandOutputFormatException e){
             LOGGER.error("Failed to process command {}", cmdStr);
@@ -77,32 +335,100 @@ public class Processor {
         }
     }
 
-    private void processWithPrintStream(){
-        ParkingLot parkingLot = null;
-        String cmdStr = null;
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(filePath));
-                PrintStream printStream = new PrintStream(outFilePath)){
-            while ((cmdStr = bufferedReader.readLine()) != null){
-                cmdStr = cmdStr.trim();
-                Command<ParkingLot> command = parser.parse(cmdStr);
-                LOGGER.info("Command read: {}", command.getVerb().lName());
-
-                if (parkingLot == null){
-                    if (command.getVerb() == Command.Verb.CREATE_PARKING_LOT){
-                        command.executeAndPrint(printStream);
-                        parkingLot = (ParkingLot) command.getResult();
-                    }else {
-                        LOGGER.error("Illegal state: Parking lot doesn't exist!");
-                        throw new IllegalStateException("Illegal state: Parking lot doesn't exist! Please create one" +
-                                " by executing command: " + Command.Verb.CREATE_PARKING_LOT.lName() +
-                                " before issuing any other commands.");
+    /**
+     * Executes the commands against the single parking lot, which is created by the first command unless it's
+     * recovered from the journal, and keeps the journal and the snapshots of the parking lot.
+     */
+    private final class Execution {
+        private ParkingLot parkingLot;
+        private final WriteAheadJournal journal;
+        private final Snapshotter snapshotter;
+        private int numCommandsSinceSnapshot;
+
+        private Execution(ParkingLot parkingLot, WriteAheadJournal journal, Snapshotter snapshotter) {
+            this.parkingLot = parkingLot;
+            this.journal = journal;
+            this.snapshotter = snapshotter;
+            if (parkingLot != null && metrics != null)
+                metrics.register(parkingLot);
+        }
+
+        /**
+         * Executes the command and appends it's output, without the line separator.
+         * @throws IllegalStateException if the parking lot hasn't been created yet and the command doesn't create it.
+         */
+        private void execute(Command<ParkingLot> command, Appendable out) throws IOException,
+                CommandOutputFormatException {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("Command read: {}", command.getVerb().lName());
+
+            if (parkingLot == null){
+                if (command.getVerb() == Command.Verb.CREATE_PARKING_LOT){
+                    out.append(command.execute());
+                    parkingLot = (ParkingLot) command.getResult();
+                    if (journal != null){
+                        journal.recordCreate(parkingLot);
+                        parkingLot.addListener(journal);
                     }
+                    if (metrics != null)
+                        metrics.register(parkingLot);
                 }else {
-                    command.setTarget(parkingLot).executeAndPrint(printStream);
+                    LOGGER.error("Illegal state: Parking lot doesn't exist!");
+                    throw new IllegalStateException("Illegal state: Parking lot doesn't exist! Please create one" +
+                            " by executing command: " + Command.Verb.CREATE_PARKING_LOT.lName() +
+                            " before issuing any other commands.");
                 }
+            }else {
+                // Streams the large outputs, like the status, straight into the writer.
+                command.setTarget(parkingLot).executeAndAppend(out);
+                // A skipped snapshot, if the previous one is still being written, is retried on the next command.
+                if (snapshotter != null && ++numCommandsSinceSnapshot >= snapshotEvery &&
+                        snapshotter.snapshot(parkingLot) != null)
+                    numCommandsSinceSnapshot = 0;
             }
-        }catch (IOException | BadCommandException | CommandOutputFormatException e){
+        }
+    }
+
+    private void processWithEngine(OutputStream outputStream, boolean closeOutputStream){
+        CharSequence cmdStr = null;
+        Queue<CompletableFuture<String>> outputs = new ArrayDeque<>();
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(outputStream, closeOutputStream, flushEvery,
+                BatchedOutputWriter.DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+             CommandReader commandReader = openReader()){
+            try {
+                while ((cmdStr = commandReader.readCommand()) != null){
+                    outputs.add(lotEngine.submit(cmdStr));
+                    // Writes out the outputs that are ready, and waits for the oldest one when too many are pending.
+                    while (!outputs.isEmpty() && (outputs.peek().isDone() || outputs.size() > MAX_COMMANDS_IN_FLIGHT))
+                        writer.writeLine(outputs.poll().join());
+                }
+            }finally {
+                // The outputs of the commands submitted before the failure, if any, are written out all the same.
+                while (!outputs.isEmpty())
+                    writer.writeLine(outputs.poll().join());
+            }
+        }catch (IOException | BadCommandException e){
+            LOGGER.error("Failed to process command {}", cmdStr);
+            LOGGER.error(e);
+        }catch (CompletionException e){
             LOGGER.error("Failed to process command {}", cmdStr);
+            LOGGER.error(e.getCause());
+        }
+    }
+
+    private void replayWithEngine(OutputStream outputStream, boolean closeOutputStream){
+        ReplayBatch batch = lotEngine.newReplayBatch(replayBatchSize);
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(outputStream, closeOutputStream, flushEvery,
+                BatchedOutputWriter.DEFAULT_BUFFER_SIZE, Charset.defaultCharset());
+             CommandReader commandReader = openReader()){
+            CharSequence cmdStr;
+            while ((cmdStr = commandReader.readCommand()) != null){
+                if (batch.add(cmdStr))
+                    batch.execute(writer::writeLine);
+            }
+            batch.execute(writer::writeLine);
+        }catch (IOException | BadCommandException | CommandOutputFormatException e){
+            LOGGER.error("Failed to replay the commands");
             LOGGER.error(e);
         }
     }
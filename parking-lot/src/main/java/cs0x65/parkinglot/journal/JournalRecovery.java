@@ -0,0 +1,330 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Rebuilds the {@link ParkingLot} by replaying the journal written by {@link WriteAheadJournal}.
+ * <br/><br/>
+ * Every record carries the slot it's about, so the state of a slot at the end of the journal is decided by the last
+ * record for that slot alone: the slot is occupied if it's a park, else it's empty. Hence the journal is replayed in
+ * two sequential passes:
+ * <ol>
+ *     <li>the first pass only reads the type and the slot of the records to find the last record per slot. It also
+ *     validates that the parks and leaves alternate for every slot, and finds the last create.</li>
+ *     <li>the second pass restores, through {@link ParkingLot#restore(Ticket)}, the cars of just the parks that are the
+ *     last record of their slot.</li>
+ * </ol>
+ * So the cars that have come and gone during the journaled period are never materialized, and the recovery time is
+ * dominated by reading the file rather than by rebuilding the intermediate states of the parking lot. The listeners of
+ * the rebuilt parking lot aren't notified.
+ * <br/><br/>
+ * Given a snapshot written by {@link Snapshotter}, the parking lot starts off from the snapshot and only the records
+ * after the position of the journal the snapshot was taken at are replayed.
+ * <br/><br/>
+ * A crash can leave the last record partially written. The replay stops at the first record that's incomplete or
+ * fails it's checksum, and the journal is truncated right before it so that the new records are appended after the
+ * last good one.
+ */
+public final class JournalRecovery {
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Marks the slots occupied by the snapshot and not recorded since.
+     */
+    private static final int SNAPSHOT = Integer.MAX_VALUE;
+    private static final VehicleClass[] VEHICLE_CLASSES = VehicleClass.values();
+    private static final Logger LOGGER = LogManager.getLogger(JournalRecovery.class.getName());
+
+    private JournalRecovery() {
+    }
+
+    /**
+     * Recovers the parking lot with the default configuration, see {@link ParkingLot.Builder#build()}.
+     * @param path the journal file.
+     * @return the parking lot as of the last good record of the journal, or null if the journal doesn't exist or
+     * doesn't record the creation of a parking lot.
+     * @throws IOException if the journal can't be read, isn't a journal or doesn't replay cleanly.
+     */
+    public static ParkingLot recover(Path path) throws IOException {
+        return recover(path, ParkingLot.Builder::new);
+    }
+
+    /**
+     *
+     * @param path the journal file.
+     * @param builders creates the builder for the parking lot of the given size, so that the recovered parking lot
+     *                 gets the same configuration as the original one. Only the size is recorded by the journal.
+     * @return the parking lot as of the last good record of the journal, or null if the journal doesn't exist or
+     * doesn't record the creation of a parking lot.
+     * @throws IOException if the journal can't be read, isn't a journal or doesn't replay cleanly.
+     */
+    public static ParkingLot recover(Path path, IntFunction<ParkingLot.Builder> builders) throws IOException {
+        return recover(path, null, builders);
+    }
+
+    /**
+     * Recovers the parking lot from the snapshot, if it exists, and then replays just the part of the journal that
+     * follows the snapshot, see {@link Snapshotter}. The snapshot is ignored if the journal records the creation of a
+     * new parking lot after it.
+     * @param path the journal file.
+     * @param snapshotPath the snapshot file, or null to replay the whole journal.
+     * @param builders creates the builder for the parking lot of the given size. The configuration recorded by the
+     *                 snapshot, if any, is applied on top.
+     * @return the parking lot as of the last good record of the journal, or null if the journal doesn't exist or
+     * doesn't record the creation of a parking lot.
+     * @throws IOException if the journal or the snapshot can't be read, aren't what they should be or don't replay
+     * cleanly.
+     */
+    public static ParkingLot recover(Path path, Path snapshotPath, IntFunction<ParkingLot.Builder> builders)
+            throws IOException {
+        SnapshotFile.Contents snapshot = snapshotPath != null && Files.exists(snapshotPath) ?
+                SnapshotFile.read(snapshotPath) : null;
+        long journalSize = Files.exists(path) ? Files.size(path) : 0;
+        if (snapshot != null && snapshot.journalPosition > journalSize)
+            throw new IOException("The journal " + path + " is behind the snapshot " + snapshotPath);
+        if (journalSize == 0)
+            return null;
+
+        long start = System.nanoTime();
+        long replayFrom = snapshot == null ? 0 : snapshot.journalPosition;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            // Pass 1: find the last record of every slot.
+            RecordReader reader = new RecordReader(path, channel, replayFrom, journalSize, true);
+            int size = -1;
+            int lastCreate = -1;
+            SlotRecords lastRecords = null;
+            if (snapshot != null){
+                size = snapshot.size;
+                lastRecords = new SlotRecords(size);
+                for (int slot : snapshot.slots)
+                    lastRecords.set(slot, SNAPSHOT);
+            }
+            int numRecords = 0;
+            for (; reader.next(); numRecords++) {
+                ByteBuffer buffer = reader.buffer;
+                byte type = buffer.get();
+                if (type == WriteAheadJournal.CREATE){
+                    size = buffer.getInt();
+                    lastCreate = numRecords;
+                    lastRecords = new SlotRecords(size);
+                    continue;
+                }
+                if (lastRecords == null)
+                    throw reader.corrupt("parking lot doesn't exist");
+                int slot = buffer.getInt();
+                if (slot < 1 || slot > size)
+                    throw reader.corrupt("invalid slot: " + slot);
+                boolean occupied = lastRecords.get(slot) > 0;
+                if (type == WriteAheadJournal.PARK && !occupied)
+                    lastRecords.set(slot, numRecords + 1);
+                else if (type == WriteAheadJournal.LEAVE && occupied)
+                    lastRecords.set(slot, -(numRecords + 1));
+                else
+                    throw reader.corrupt(type == WriteAheadJournal.PARK || type == WriteAheadJournal.LEAVE ?
+                            "slot: " + slot + (occupied ? " is already occupied" : " is already empty") :
+                            "unknown record type: " + type);
+            }
+            reader.truncateTornRecord();
+            if (lastRecords == null)
+                return null;
+
+            // Restore the cars of the snapshot that are still parked, unless the snapshot is superseded by a create.
+            ParkingLot parkingLot;
+            if (snapshot != null && lastCreate == -1){
+                parkingLot = snapshot.configure(builders).build();
+                for (int i = 0; i < snapshot.slots.length; i++) {
+                    int slot = snapshot.slots[i];
+                    if (lastRecords.get(slot) == SNAPSHOT)
+                        parkingLot.restore(new Ticket(slot, snapshot.cars[i], snapshot.parkedAts[i]));
+                }
+            }else {
+                parkingLot = builders.apply(size).build();
+            }
+
+            // Pass 2: restore the cars of the journal that are still parked.
+            reader = new RecordReader(path, channel, replayFrom, reader.goodSize, false);
+            for (int record = 0; reader.next(); record++) {
+                if (record <= lastCreate)
+                    continue;
+                ByteBuffer buffer = reader.buffer;
+                if (buffer.get() != WriteAheadJournal.PARK)
+                    continue;
+                int slot = buffer.getInt();
+                if (lastRecords.get(slot) != record + 1)
+                    continue;
+                long parkedAt = buffer.getLong();
+                try {
+                    parkingLot.restore(new Ticket(slot, readCar(buffer, reader.nextRecord), parkedAt));
+                }catch (RuntimeException e){
+                    throw reader.corrupt(e.getMessage());
+                }
+            }
+            LOGGER.info("Recovered {} records from the journal {} in {} ms", numRecords, path,
+                    (System.nanoTime() - start) / 1_000_000);
+            return parkingLot;
+        }
+    }
+
+    /**
+     * @param recordEnd the position the record ends at. The records journaled before the vehicle classes end right
+     *                  after the color, and their cars are read as {@link VehicleClass#COMPACT}.
+     */
+    private static Car readCar(ByteBuffer buffer, int recordEnd) {
+        String regNo = readString(buffer);
+        String color = readString(buffer);
+        if (buffer.position() == recordEnd)
+            return new Car(regNo, color);
+        int vehicleClass = buffer.get();
+        if (vehicleClass < 0 || vehicleClass >= VEHICLE_CLASSES.length)
+            throw new IllegalArgumentException("invalid vehicle class: " + vehicleClass);
+        return new Car(regNo, color, VEHICLE_CLASSES[vehicleClass]);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        int position = buffer.position();
+        buffer.position(position + length);
+        return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The last record per slot, where the record is identified by it's 1-based sequence number in the journal and the
+     * leaves are negated; zero means that there's no record for the slot. The numbers are kept in pages that are only
+     * allocated once a slot within the page is seen, same as the slots of the parking lot itself.
+     */
+    private static final class SlotRecords {
+        private static final int PAGE_SHIFT = 12;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        private final int[][] pages;
+
+        SlotRecords(int size) {
+            pages = new int[(int) ((size + (long) PAGE_MASK) >>> PAGE_SHIFT)][];
+        }
+
+        int get(int slot) {
+            int[] page = pages[(slot - 1) >>> PAGE_SHIFT];
+            return page == null ? 0 : page[(slot - 1) & PAGE_MASK];
+        }
+
+        void set(int slot, int record) {
+            int pageIndex = (slot - 1) >>> PAGE_SHIFT;
+            int[] page = pages[pageIndex];
+            if (page == null)
+                page = pages[pageIndex] = new int[PAGE_MASK + 1];
+            page[(slot - 1) & PAGE_MASK] = record;
+        }
+    }
+
+    /**
+     * Reads the records sequentially through a large buffer that's refilled from the file as it's consumed.
+     */
+    private static final class RecordReader {
+        private final Path path;
+        private final FileChannel channel;
+        private final long fileSize;
+        private final boolean verify;
+        private final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, WriteAheadJournal.MAX_RECORD_SIZE));
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * The position in the file of the first byte in the buffer.
+         */
+        private long bufferPosition;
+        private int nextRecord;
+        /**
+         * The size of the file up to the end of the last good record read so far.
+         */
+        private long goodSize;
+
+        /**
+         * @param start the position of the first record to read, or 0 to read from the first record in the file.
+         * @param fileSize the size of the file to read up to.
+         * @param verify whether to verify the checksums; the ones already verified by a previous pass needn't be.
+         */
+        RecordReader(Path path, FileChannel channel, long start, long fileSize, boolean verify) throws IOException {
+            this.path = path;
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.verify = verify;
+            fill();
+            if (buffer.remaining() < 4 || buffer.getInt() != WriteAheadJournal.MAGIC)
+                throw new IOException("Not a parking lot journal: " + path);
+            if (start > buffer.position()){
+                bufferPosition = start;
+                fill();
+            }
+            nextRecord = buffer.position();
+            goodSize = bufferPosition + nextRecord;
+        }
+
+        /**
+         * Moves on to the next record, leaving the buffer positioned at it's payload.
+         * @return false at the end of the journal or at a torn record.
+         */
+        boolean next() throws IOException {
+            if (buffer.limit() - nextRecord < WriteAheadJournal.MAX_RECORD_SIZE &&
+                    bufferPosition + buffer.limit() < fileSize){
+                bufferPosition += nextRecord;
+                nextRecord = 0;
+                fill();
+            }
+
+            int frameStart = nextRecord;
+            int payloadStart = frameStart + WriteAheadJournal.FRAME_HEADER_SIZE;
+            if (payloadStart > buffer.limit())
+                return false;
+            int length = buffer.getInt(frameStart);
+            if (length < 1 || length > buffer.limit() - payloadStart)
+                return false;
+            if (verify){
+                crc.reset();
+                crc.update(buffer.array(), buffer.arrayOffset() + payloadStart, length);
+                if ((int) crc.getValue() != buffer.getInt(frameStart + 4))
+                    return false;
+            }
+            buffer.position(payloadStart);
+            nextRecord = payloadStart + length;
+            goodSize = bufferPosition + nextRecord;
+            return true;
+        }
+
+        void truncateTornRecord() throws IOException {
+            if (goodSize < fileSize){
+                LOGGER.warn("Truncating the torn record at position {} of the journal {}", goodSize, path);
+                channel.truncate(goodSize);
+            }
+        }
+
+        IOException corrupt(String reason) {
+            return new IOException("Failed to replay the record at position " + goodSize + " of the journal " + path +
+                    ": " + reason);
+        }
+
+        private void fill() throws IOException {
+            buffer.clear();
+            long remaining = fileSize - bufferPosition;
+            if (remaining < buffer.capacity())
+                buffer.limit((int) remaining);
+            while (buffer.hasRemaining()){
+                if (channel.read(buffer, bufferPosition + buffer.position()) <= 0)
+                    break;
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.ParkingLotSnapshot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the {@link ParkingLotSnapshot} to the disk in a compact binary format and loads it back, so that the
+ * recovery only needs to replay the journal from the position the snapshot was taken at rather than from the start.
+ * See the {@link cs0x65.parkinglot.journal package} for the file format.
+ * <br/><br/>
+ * The snapshot is written to a temporary file which then replaces the previous snapshot in one go, so a crash in the
+ * middle of the write leaves the previous snapshot intact.
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x504C5332; // PLS2
+    /**
+     * The snapshots taken before the vehicle classes, whose tickets don't have the class of the car.
+     */
+    static final int MAGIC_WITHOUT_CLASSES = 0x504C5331; // PLS1
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_STRING_SIZE = 0xFFFF;
+    /**
+     * slot and parked time deltas, plus 2 strings with their lengths, plus the vehicle class.
+     */
+    private static final int MAX_TICKET_SIZE = 5 + 10 + 2 * (3 + MAX_STRING_SIZE) + 1;
+    private static final ParkingLot.ParkedTimeUnit[] PARKED_TIME_UNITS = ParkingLot.ParkedTimeUnit.values();
+    private static final VehicleClass[] VEHICLE_CLASSES = VehicleClass.values();
+    private static final Logger LOGGER = LogManager.getLogger(SnapshotFile.class.getName());
+
+    private SnapshotFile() {
+    }
+
+    /**
+     *
+     * @param snapshot the snapshot to write.
+     * @param journalPosition the position of the journal the snapshot was taken at, see
+     *                        {@link WriteAheadJournal#position()}. The journal must be synced up to the position
+     *                        before the snapshot is written.
+     * @param path the snapshot file, it's replaced if it exists.
+     * @throws IOException if the file fails to write.
+     */
+    public static void write(ParkingLotSnapshot snapshot, long journalPosition, Path path) throws IOException {
+        long start = System.nanoTime();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            Output out = new Output(channel);
+            ByteBuffer buffer = out.buffer;
+            buffer.putInt(MAGIC);
+            buffer.putLong(journalPosition);
+            buffer.putInt(snapshot.getSize());
+            out.putString(snapshot.getName());
+            buffer.put((byte) snapshot.getParkedTimeUnit().ordinal());
+            buffer.putInt(snapshot.getInitialDuration());
+            buffer.putInt(snapshot.getSubsequentDuration());
+            buffer.putInt(snapshot.getInitialDurationRate());
+            buffer.putInt(snapshot.getSubsequentDurationRate());
+            buffer.putInt(snapshot.getNumOccupiedSlots());
+
+            // The colors are few and repeat a lot, so each is only written in full the first time it's seen.
+            Map<String, Integer> colors = new HashMap<>();
+            int previousSlot = 0;
+            long previousParkedAt = 0;
+            int numTickets = 0;
+            for (int slot = snapshot.nextOccupied(1); slot != -1; slot = snapshot.nextOccupied(slot + 1)) {
+                Ticket ticket = snapshot.getTicket(slot);
+                out.ensure(MAX_TICKET_SIZE);
+                out.putVarLong(slot - previousSlot);
+                out.putVarLong(zigZag(ticket.getParkedAt() - previousParkedAt));
+                out.putString(ticket.getCar().getRegNo());
+                String color = ticket.getCar().getColor();
+                Integer colorIndex = colors.get(color);
+                if (colorIndex == null){
+                    colors.put(color, colors.size() + 1);
+                    out.putVarLong(0);
+                    out.putString(color);
+                }else {
+                    out.putVarLong(colorIndex);
+                }
+                buffer.put((byte) ticket.getCar().getVehicleClass().ordinal());
+                previousSlot = slot;
+                previousParkedAt = ticket.getParkedAt();
+                numTickets++;
+            }
+            if (numTickets != snapshot.getNumOccupiedSlots())
+                throw new IllegalStateException("The snapshot has " + numTickets + " tickets instead of " +
+                        snapshot.getNumOccupiedSlots());
+            out.finish();
+        }
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }catch (AtomicMoveNotSupportedException e){
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOGGER.info("Snapshot of {} tickets written to {} in {} ms", snapshot.getNumOccupiedSlots(), path,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Loads the parking lot from the snapshot alone, with the default free slot index and all the slots
+     * {@link VehicleClass#COMPACT}.
+     * @param path the snapshot file.
+     * @return the parking lot as of the snapshot.
+     * @throws IOException if the file can't be read or isn't an intact snapshot.
+     */
+    public static ParkingLot load(Path path) throws IOException {
+        return load(path, ParkingLot.Builder::new);
+    }
+
+    /**
+     * Loads the parking lot from the snapshot alone.
+     * @param path the snapshot file.
+     * @param builders creates the builder for the parking lot of the given size, so that the loaded parking lot gets
+     *                 what the snapshot doesn't record, for e.g. the slot classes, the upsizing and the tariffs. The
+     *                 configuration recorded by the snapshot is applied on top.
+     * @return the parking lot as of the snapshot.
+     * @throws IOException if the file can't be read or isn't an intact snapshot.
+     */
+    public static ParkingLot load(Path path, IntFunction<ParkingLot.Builder> builders) throws IOException {
+        return read(path).restore(builders);
+    }
+
+    static Contents read(Path path) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            Input in = new Input(path, channel);
+            ByteBuffer buffer = in.buffer;
+            in.require(4 + 8 + 4);
+            int magic = buffer.getInt();
+            if (magic != MAGIC && magic != MAGIC_WITHOUT_CLASSES)
+                throw new IOException("Not a parking lot snapshot: " + path);
+            Contents contents = new Contents();
+            contents.journalPosition = buffer.getLong();
+            contents.size = buffer.getInt();
+            contents.name = in.getString();
+            in.require(1 + 5 * 4);
+            int unit = buffer.get();
+            if (unit < 0 || unit >= PARKED_TIME_UNITS.length)
+                throw in.corrupt("invalid parked time unit: " + unit);
+            contents.parkedTimeUnit = PARKED_TIME_UNITS[unit];
+            contents.initialDuration = buffer.getInt();
+            contents.subsequentDuration = buffer.getInt();
+            contents.initialDurationRate = buffer.getInt();
+            contents.subsequentDurationRate = buffer.getInt();
+            int numTickets = buffer.getInt();
+            if (numTickets < 0 || numTickets > contents.size)
+                throw in.corrupt("invalid number of tickets: " + numTickets);
+
+            contents.slots = new int[numTickets];
+            contents.parkedAts = new long[numTickets];
+            contents.cars = new Car[numTickets];
+            List<String> colors = new ArrayList<>();
+            int slot = 0;
+            long parkedAt = 0;
+            for (int i = 0; i < numTickets; i++) {
+                in.ensure(MAX_TICKET_SIZE);
+                long slotDelta = in.getVarLong();
+                if (slotDelta < 1 || slotDelta > contents.size - slot)
+                    throw in.corrupt("invalid slot after slot: " + slot);
+                slot += (int) slotDelta;
+                parkedAt += unZigZag(in.getVarLong());
+                String regNo = in.getString();
+                long colorIndex = in.getVarLong();
+                String color;
+                if (colorIndex == 0){
+                    color = in.getString();
+                    colors.add(color);
+                }else if (colorIndex <= colors.size()){
+                    color = colors.get((int) colorIndex - 1);
+                }else {
+                    throw in.corrupt("invalid color: " + colorIndex);
+                }
+                VehicleClass vehicleClass = VehicleClass.COMPACT;
+                if (magic == MAGIC){
+                    int ordinal = in.get();
+                    if (ordinal < 0 || ordinal >= VEHICLE_CLASSES.length)
+                        throw in.corrupt("invalid vehicle class: " + ordinal);
+                    vehicleClass = VEHICLE_CLASSES[ordinal];
+                }
+                contents.slots[i] = slot;
+                contents.parkedAts[i] = parkedAt;
+                contents.cars[i] = new Car(regNo, color, vehicleClass);
+            }
+            in.finish();
+            LOGGER.info("Snapshot of {} tickets read from {} in {} ms", numTickets, path,
+                    (System.nanoTime() - start) / 1_000_000);
+            return contents;
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * The snapshot as read from the file, with the tickets as the parallel arrays in the ascending order of the slots.
+     */
+    static final class Contents {
+        long journalPosition;
+        int size;
+        String name;
+        ParkingLot.ParkedTimeUnit parkedTimeUnit;
+        int initialDuration;
+        int subsequentDuration;
+        int initialDurationRate;
+        int subsequentDurationRate;
+        int[] slots;
+        long[] parkedAts;
+        Car[] cars;
+
+        /**
+         * @param builders creates the builder for the parking lot of the given size.
+         * @return the builder configured the same as the parking lot the snapshot was taken of.
+         */
+        ParkingLot.Builder configure(IntFunction<ParkingLot.Builder> builders) {
+            return builders.apply(size)
+                    .withName(name)
+                    .withParkedTimeUnit(parkedTimeUnit)
+                    .withInitialDuration(initialDuration)
+                    .withSubsequentDuration(subsequentDuration)
+                    .withInitialDurationRate(initialDurationRate)
+                    .withSubsequentDurationRate(subsequentDurationRate);
+        }
+
+        ParkingLot restore(IntFunction<ParkingLot.Builder> builders) {
+            ParkingLot parkingLot = configure(builders).build();
+            for (int i = 0; i < slots.length; i++)
+                parkingLot.restore(new Ticket(slots[i], cars[i], parkedAts[i]));
+            return parkingLot;
+        }
+    }
+
+    /**
+     * Writes the file through a large buffer, check summing everything written.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int size) throws IOException {
+            if (buffer.remaining() < size)
+                flush();
+        }
+
+        void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0){
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_SIZE)
+                throw new IllegalArgumentException("Too long to snapshot: " + value);
+            ensure(3 + bytes.length);
+            putVarLong(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+
+        private void flush() throws IOException {
+            crc.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the file through a large buffer that's refilled as it's consumed, check summing everything read.
+     */
+    private static final class Input {
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        /**
+         * The size of the file without the trailing checksum.
+         */
+        private final long dataSize;
+        private long readPosition;
+
+        Input(Path path, FileChannel channel) throws IOException {
+            this.path = path;
+            this.channel = channel;
+            dataSize = channel.size() - 4;
+            if (dataSize < 0)
+                throw corrupt("unexpected end of file");
+            buffer.limit(0);
+        }
+
+        /**
+         * Makes sure that the buffer has the given number of bytes, or whatever remains of the file if that's less.
+         */
+        void ensure(int size) throws IOException {
+            if (buffer.remaining() >= size || readPosition == dataSize)
+                return;
+            crc.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.compact();
+            if (buffer.remaining() > dataSize - readPosition)
+                buffer.limit(buffer.position() + (int) (dataSize - readPosition));
+            while (buffer.hasRemaining()){
+                int n = channel.read(buffer, readPosition);
+                if (n <= 0)
+                    throw corrupt("unexpected end of file");
+                readPosition += n;
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Same as {@link #ensure(int)}, but fails if the file doesn't have the given number of bytes left.
+         */
+        void require(int size) throws IOException {
+            ensure(size);
+            if (buffer.remaining() < size)
+                throw corrupt("unexpected end of file");
+        }
+
+        long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw corrupt("invalid number");
+        }
+
+        String getString() throws IOException {
+            long length = getVarLong();
+            if (length > MAX_STRING_SIZE)
+                throw corrupt("invalid string length: " + length);
+            require((int) length);
+            int position = buffer.position();
+            buffer.position(position + (int) length);
+            return new String(buffer.array(), buffer.arrayOffset() + position, (int) length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Checks that the whole file has been read, and verifies the checksum.
+         */
+        void finish() throws IOException {
+            if (buffer.hasRemaining() || readPosition != dataSize)
+                throw corrupt("unexpected data after the tickets");
+            crc.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+            ByteBuffer checksum = ByteBuffer.allocate(4);
+            while (checksum.hasRemaining()){
+                if (channel.read(checksum, dataSize + checksum.position()) <= 0)
+                    throw corrupt("unexpected end of file");
+            }
+            if (checksum.getInt(0) != (int) crc.getValue())
+                throw corrupt("checksum mismatch");
+        }
+
+        IOException corrupt(String reason) {
+            return new IOException("Corrupt snapshot " + path + ": " + reason);
+        }
+
+        byte get() throws IOException {
+            if (!buffer.hasRemaining())
+                throw corrupt("unexpected end of file");
+            return buffer.get();
+        }
+    }
+}
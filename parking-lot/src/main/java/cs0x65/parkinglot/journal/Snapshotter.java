@@ -0,0 +1,92 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.ParkingLotSnapshot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the snapshots of a journaled {@link ParkingLot} and writes them to the snapshot file in the background, so
+ * that the recovery only replays the journal from the last snapshot onwards, see
+ * {@link JournalRecovery#recover(Path, Path, java.util.function.IntFunction)}.
+ * <br/><br/>
+ * Taking the snapshot only copies the references to the slot pages of the parking lot, see
+ * {@link ParkingLot#snapshot()}, so a park or a leave never waits for the snapshot to be written. Before the snapshot
+ * is written, the journal is synced up to the position the snapshot was taken at, so the snapshot is never ahead of
+ * the journal on the disk.
+ * <br/><br/>
+ * The snapshotter isn't thread safe; it's meant to be called by the thread that updates the parking lot.
+ */
+public class Snapshotter implements Closeable {
+    private final Path path;
+    private final WriteAheadJournal journal;
+    private final ExecutorService writer;
+    private Future<?> inProgress;
+
+    private static final Logger LOGGER = LogManager.getLogger(Snapshotter.class.getName());
+
+    /**
+     *
+     * @param path the snapshot file, it's replaced by every snapshot.
+     * @param journal the journal the parking lot is recorded to.
+     */
+    public Snapshotter(Path path, WriteAheadJournal journal) {
+        this.path = path;
+        this.journal = journal;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Takes the snapshot of the parking lot and writes it in the background. The snapshot is skipped if the previous
+     * one is still being written.
+     * @param parkingLot the parking lot recorded to the journal of the snapshotter.
+     * @return the pending write of the snapshot, or null if the snapshot is skipped.
+     * @throws IOException if the journal fails to report it's position.
+     */
+    public Future<?> snapshot(ParkingLot parkingLot) throws IOException {
+        if (inProgress != null && !inProgress.isDone())
+            return null;
+        long journalPosition = journal.position();
+        ParkingLotSnapshot snapshot = parkingLot.snapshot();
+        inProgress = writer.submit(() -> {
+            try {
+                journal.sync();
+                SnapshotFile.write(snapshot, journalPosition, path);
+            }catch (IOException | RuntimeException e){
+                LOGGER.error("Failed to write the snapshot {}", path, e);
+                throw e;
+            }
+            return null;
+        });
+        return inProgress;
+    }
+
+    /**
+     * Waits for the snapshot being written, if any, to complete.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.ParkingLotListener;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Appends the parks and the leaves of a {@link ParkingLot} to the journal file as they happen, so that the parking lot
+ * can be rebuilt by {@link JournalRecovery} if the process dies. See the {@link cs0x65.parkinglot.journal package}
+ * for the file format.
+ * <br/><br/>
+ * The records are encoded into an in-memory buffer and made durable in groups: the buffer is written out and synced
+ * to the disk once every {@code syncEvery} records, and in the background once every {@code syncIntervalMillis} for
+ * whatever has been recorded in the meantime. So a park or a leave never waits for the disk, at the cost of losing at
+ * most the last group of records in a crash. Call {@link #sync()} to make everything recorded so far durable right
+ * away, for e.g. at the end of the input.
+ * <br/><br/>
+ * Attach the journal to the parking lot through {@link ParkingLot#addListener(ParkingLotListener)} after recording
+ * it's creation through {@link #recordCreate(ParkingLot)}. The journal is thread safe.
+ */
+public class WriteAheadJournal implements ParkingLotListener, Closeable {
+    public static final int DEFAULT_SYNC_EVERY = 4096;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 20;
+
+    static final int MAGIC = 0x504C4A31; // PLJ1
+    static final byte CREATE = 1;
+    static final byte PARK = 2;
+    static final byte LEAVE = 3;
+    static final int FRAME_HEADER_SIZE = 8;
+    /**
+     * type + slot + 3 longs + 2 strings of at most 3 bytes per char of up to 2 byte length + vehicle class.
+     */
+    static final int MAX_RECORD_SIZE = FRAME_HEADER_SIZE + 1 + 4 + 3 * 8 + 2 * (2 + 0xFFFF) + 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Logger LOGGER = LogManager.getLogger(WriteAheadJournal.class.getName());
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, MAX_RECORD_SIZE));
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncer;
+
+    private int numUnsyncedRecords;
+    private boolean closed;
+
+    /**
+     * Opens the journal with the default group commit settings.
+     * @param path the journal file, it's created if it doesn't exist, else appended to.
+     * @throws IOException if the file can't be opened or isn't a journal.
+     */
+    public WriteAheadJournal(Path path) throws IOException {
+        this(path, DEFAULT_SYNC_EVERY, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     *
+     * @param path the journal file, it's created if it doesn't exist, else appended to.
+     * @param syncEvery the number of records after which the journal is synced to the disk.
+     * @param syncIntervalMillis the maximum time a record stays un-synced for; zero or less disables the background
+     *                           sync, so the records are only synced every {@code syncEvery} records and when asked to.
+     * @throws IOException if the file can't be opened or isn't a journal.
+     */
+    public WriteAheadJournal(Path path, int syncEvery, long syncIntervalMillis) throws IOException {
+        if (syncEvery < 1)
+            throw new IllegalArgumentException("Invalid sync every: " + syncEvery);
+        this.path = path;
+        this.syncEvery = syncEvery;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size == 0){
+                buffer.putInt(MAGIC);
+                sync();
+            }else {
+                ByteBuffer magic = ByteBuffer.allocate(4);
+                while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0);
+                magic.flip();
+                if (magic.remaining() < 4 || magic.getInt() != MAGIC)
+                    throw new IOException("Not a parking lot journal: " + path);
+                channel.position(size);
+            }
+        }catch (IOException e){
+            channel.close();
+            throw e;
+        }
+
+        if (syncIntervalMillis > 0){
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncInBackground, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }else {
+            syncer = null;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Records the creation of the parking lot, which resets the state rebuilt by the recovery to an empty lot of the
+     * same size.
+     * @param parkingLot the parking lot just created.
+     */
+    public synchronized void recordCreate(ParkingLot parkingLot) {
+        ensureCapacity();
+        int start = beginRecord(CREATE);
+        buffer.putInt(parkingLot.getSize());
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void onPark(Ticket ticket) {
+        ensureCapacity();
+        int start = beginRecord(PARK);
+        try {
+            buffer.putInt(ticket.getSlot());
+            buffer.putLong(ticket.getParkedAt());
+            putCar(ticket.getCar());
+        }catch (RuntimeException e){
+            abortRecord(start);
+            throw e;
+        }
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void onLeave(Ticket ticket) {
+        ensureCapacity();
+        int start = beginRecord(LEAVE);
+        try {
+            buffer.putInt(ticket.getSlot());
+            buffer.putLong(ticket.getParkedAt());
+            buffer.putLong(ticket.getLeftAt());
+            buffer.putLong(ticket.getCharges());
+            putCar(ticket.getCar());
+        }catch (RuntimeException e){
+            abortRecord(start);
+            throw e;
+        }
+        endRecord(start);
+    }
+
+    /**
+     * The position the next record will be written at. The records before the position are all the ones recorded so
+     * far, though not necessarily synced yet; for e.g. a snapshot of the parking lot taken now is as of this position.
+     * @return the position in bytes from the start of the journal file.
+     * @throws IOException if the journal file fails to report it's position.
+     */
+    public synchronized long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Writes out everything recorded so far and syncs it to the disk.
+     * @throws IOException if the journal file fails to write.
+     */
+    public synchronized void sync() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        channel.force(false);
+        numUnsyncedRecords = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null){
+            // Not shutdownNow(), interrupting a sync in progress would close the channel.
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this){
+            if (closed)
+                return;
+            closed = true;
+            try {
+                sync();
+            }finally {
+                channel.close();
+            }
+        }
+    }
+
+    private synchronized void syncInBackground() {
+        if (closed || (numUnsyncedRecords == 0 && buffer.position() == 0))
+            return;
+        try {
+            sync();
+        }catch (IOException e){
+            LOGGER.error("Failed to sync the journal {}", path, e);
+        }
+    }
+
+    private void ensureCapacity() {
+        if (closed)
+            throw new IllegalStateException("Journal is closed: " + path);
+        if (buffer.remaining() >= MAX_RECORD_SIZE)
+            return;
+        // Only write out the full buffer, the sync is left to the group commit.
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }catch (IOException e){
+            throw new UncheckedIOException("Failed to write the journal " + path, e);
+        }
+    }
+
+    private int beginRecord(byte type) {
+        int start = buffer.position();
+        buffer.position(start + FRAME_HEADER_SIZE);
+        buffer.put(type);
+        return start;
+    }
+
+    /**
+     * Drops the partially encoded record, for e.g. the one with a registration number too long to be journaled.
+     */
+    private void abortRecord(int start) {
+        buffer.position(start);
+    }
+
+    private void endRecord(int start) {
+        int payloadStart = start + FRAME_HEADER_SIZE;
+        int length = buffer.position() - payloadStart;
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + payloadStart, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        if (++numUnsyncedRecords >= syncEvery){
+            try {
+                sync();
+            }catch (IOException e){
+                throw new UncheckedIOException("Failed to sync the journal " + path, e);
+            }
+        }
+    }
+
+    private void putCar(Car car) {
+        putString(car.getRegNo());
+        putString(car.getColor());
+        buffer.put((byte) car.getVehicleClass().ordinal());
+    }
+
+    private void putString(String value) {
+        int lengthAt = buffer.position();
+        buffer.position(lengthAt + 2);
+        int length = value.length();
+        boolean ascii = length <= 0xFFFF;
+        for (int i = 0; i < length && ascii; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80)
+                buffer.put((byte) c);
+            else
+                ascii = false;
+        }
+        if (!ascii){
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF)
+                throw new IllegalArgumentException("Too long to journal: " + value);
+            buffer.position(lengthAt + 2);
+            buffer.put(bytes);
+        }
+        buffer.putShort(lengthAt, (short) (buffer.position() - lengthAt - 2));
+    }
+}
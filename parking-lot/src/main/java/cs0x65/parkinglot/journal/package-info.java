@@ -0,0 +1,51 @@
+/**
+ * The durability of the parking lot state.
+ * <br/><br/>
+ * {@link cs0x65.parkinglot.journal.WriteAheadJournal} records every park and leave of a
+ * {@link cs0x65.parkinglot.impl.ParkingLot} to an append-only binary file, and
+ * {@link cs0x65.parkinglot.journal.JournalRecovery} rebuilds the parking lot by replaying the file, for e.g. after the
+ * process has crashed.
+ * <br/><br/>
+ * The journal is a 4 byte magic number followed by the records, where each record is framed as:
+ * <pre>
+ *     int    length of the payload
+ *     int    CRC32 of the payload
+ *     byte[] payload
+ * </pre>
+ * and the payload is one of:
+ * <pre>
+ *     CREATE: byte type, int size
+ *     PARK:   byte type, int slot, long parkedAt, string regNo, string color, byte vehicle class
+ *     LEAVE:  byte type, int slot, long parkedAt, long leftAt, long charges, string regNo, string color,
+ *             byte vehicle class
+ * </pre>
+ * where a string is a 2 byte length followed by the UTF-8 bytes, and the vehicle class is the ordinal of the
+ * {@link cs0x65.parkinglot.model.VehicleClass}. The records journaled before the vehicle classes end right after the
+ * color, and their cars are recovered as {@code COMPACT}. The length and the checksum let the recovery detect
+ * a record that was torn by a crash in the middle of a write; the journal is truncated right before such a record.
+ * <br/><br/>
+ * {@link cs0x65.parkinglot.journal.Snapshotter} periodically writes the snapshot of the parking lot through
+ * {@link cs0x65.parkinglot.journal.SnapshotFile}, so that the recovery starts off from the snapshot and only replays
+ * the journal from the position the snapshot was taken at. The snapshot is laid out as:
+ * <pre>
+ *     int    magic number
+ *     long   position of the journal the snapshot was taken at
+ *     int    size
+ *     string name
+ *     byte   parked time unit
+ *     int    initial duration, subsequent duration, initial duration rate, subsequent duration rate
+ *     int    number of tickets
+ *     the tickets in the ascending order of the slots, each as:
+ *         varint slot minus the previous slot
+ *         varint zig-zag encoded parkedAt minus the previous parkedAt
+ *         string regNo
+ *         varint 0 followed by the string color the first time the color is seen, else the 1-based index of the
+ *                color in the order they're first seen
+ *         byte   vehicle class
+ *     int    CRC32 of everything before
+ * </pre>
+ * where a varint is 7 bits per byte, least significant first, and a string is a varint length followed by the UTF-8
+ * bytes. The snapshots taken before the vehicle classes have the magic number {@code PLS1} rather than {@code PLS2}
+ * and no vehicle class in the tickets, and their cars are loaded as {@code COMPACT}.
+ */
+package cs0x65.parkinglot.journal;
@@ -0,0 +1,101 @@
+package cs0x65.parkinglot.metrics;
+
+import cs0x65.parkinglot.command.Command;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the commands of a {@link Command.Verb}: the number of the commands executed and failed, and the
+ * {@link LatencyHistogram} of their execution times. It's updated by {@link Command} as it executes, see
+ * {@link Command#setMetrics(MetricsRegistry)}.
+ * <br/><br/>
+ * Every command is counted, but only a random sample of the commands is timed, 1 in the sample rate of the
+ * {@link MetricsRegistry}. Reading the clock twice costs more than executing a lot of the commands, so timing every
+ * command would slow them down noticeably, while the sampled latencies make for the same percentiles given enough
+ * commands. The counters are {@link LongAdder}s, so the lanes of a {@link cs0x65.parkinglot.engine.LotEngine}
+ * executing the commands of the same verb in parallel don't contend on them.
+ */
+public final class CommandMetrics implements CommandMetricsMXBean {
+    private final Command.Verb verb;
+    private final MetricsRegistry registry;
+    private final int sampleMask;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    CommandMetrics(Command.Verb verb, MetricsRegistry registry, int sampleEvery) {
+        this.verb = verb;
+        this.registry = registry;
+        this.sampleMask = sampleEvery - 1;
+    }
+
+    public Command.Verb getVerb() {
+        return verb;
+    }
+
+    /**
+     * Decides whether the command about to be executed is timed.
+     * @return true if the command is to be timed and it's latency passed to {@link #record(boolean, long)}.
+     */
+    public boolean sample() {
+        return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    /**
+     * Records the command executed.
+     * @param failed whether the command failed, for e.g. the car to leave isn't parked.
+     * @param latency the execution time of the command in the nanoseconds, or -1 if it wasn't timed.
+     */
+    public void record(boolean failed, long latency) {
+        count.increment();
+        if (failed)
+            failures.increment();
+        if (latency >= 0)
+            latencies.record(latency);
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getThroughput() {
+        return getCount() / registry.getUptimeSeconds();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return latencies.getMean() / 1000;
+    }
+
+    @Override
+    public double getP50Latency() {
+        return latencies.getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Latency() {
+        return latencies.getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Latency() {
+        return latencies.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxLatency() {
+        return latencies.getMax() / 1000.0;
+    }
+}
@@ -0,0 +1,26 @@
+package cs0x65.parkinglot.metrics;
+
+/**
+ * The JMX view of the {@link CommandMetrics} of a {@link cs0x65.parkinglot.command.Command.Verb}, registered as
+ * {@code cs0x65.parkinglot:type=Command,verb=<verb>}. The latencies are in the microseconds.
+ */
+public interface CommandMetricsMXBean {
+    long getCount();
+
+    long getFailures();
+
+    /**
+     * @return the commands per second since the metrics registry was created.
+     */
+    double getThroughput();
+
+    double getMeanLatency();
+
+    double getP50Latency();
+
+    double getP99Latency();
+
+    double getP999Latency();
+
+    double getMaxLatency();
+}
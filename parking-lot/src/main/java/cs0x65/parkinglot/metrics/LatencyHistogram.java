@@ -0,0 +1,117 @@
+package cs0x65.parkinglot.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of the latencies, in the nanoseconds, along the lines of the HdrHistogram: the values are counted in the
+ * log-linear buckets, 32 linear sub-buckets per power of 2, so that any value is bucketed within about 3% of it's
+ * magnitude while the whole range from 1 nanosecond to 18 minutes fits in 1152 counters.
+ * <br/><br/>
+ * Recording a value is a couple of shifts to find it's bucket and an atomic increment of the bucket, it doesn't
+ * allocate or lock, and it's safe to record from many threads at once. The values above the range are counted in the
+ * top bucket.
+ * <br/><br/>
+ * The statistics are worked out from the buckets when they're read, so they're approximate within the precision of a
+ * bucket, and they're consistent only when no values are being recorded at the same time. Like the HdrHistogram, the
+ * percentiles and the maximum are reported as the highest value of their bucket, so they're never under-reported.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The highest value that's told apart from the others, 2^40 - 1 nanoseconds being about 18 minutes.
+     */
+    static final long HIGHEST_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(HIGHEST_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param value the latency in the nanoseconds. The negative values are counted as 0.
+     */
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(Math.min(Math.max(value, 0), HIGHEST_VALUE)));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @param percentile the percentile, for e.g. 99.9.
+     * @return the value the given percentage of the recorded values are at or below, 0 if there are none.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        long count = 0;
+        for (long bucketCount : snapshot)
+            count += bucketCount;
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return highestValueAt(i);
+        }
+        return highestValueAt(BUCKETS - 1);
+    }
+
+    /**
+     * @return the mean of the recorded values, taking the middle of their buckets, 0 if there are none.
+     */
+    public double getMean() {
+        long count = 0;
+        double total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = counts.get(i);
+            count += bucketCount;
+            total += bucketCount * (lowestValueAt(i) + highestValueAt(i)) / 2.0;
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * @return the highest recorded value, 0 if there are none.
+     */
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) != 0)
+                return highestValueAt(i);
+        }
+        return 0;
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    /**
+     * The values below 64 get a bucket each, and the higher values get 32 buckets per power of 2, the bucket being the
+     * top 6 bits of the value offset by the power.
+     */
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    static long highestValueAt(int index) {
+        return lowestValueAt(index + 1) - 1;
+    }
+}
@@ -0,0 +1,255 @@
+package cs0x65.parkinglot.metrics;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the metrics of the command processing:
+ * <ul>
+ *     <li>the count, the failures and the latencies of the commands of every {@link Command.Verb}, see
+ *     {@link CommandMetrics}.</li>
+ *     <li>the commands that failed to parse, by the {@link BadCommandException.Reason}.</li>
+ *     <li>the occupancy and the throughput of every registered {@link ParkingLot}, see {@link ParkingLotMetrics}.</li>
+ * </ul>
+ * The registry is handed to the {@link cs0x65.parkinglot.io.Processor} or the
+ * {@link cs0x65.parkinglot.engine.LotEngine}, which pass it on to their parser and register the parking lots they
+ * create, and the commands update it as they're executed. The metrics are exposed through JMX, see
+ * {@link #registerMBeans(MBeanServer)}, and as a text report, see {@link #report(Appendable)}.
+ * <br/><br/>
+ * The registry is thread safe. Recording the metrics of a command neither allocates nor locks, and only a sample of the
+ * commands is timed, see {@link CommandMetrics}, so that the metrics can be left on in production.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+    public static final String DOMAIN = "cs0x65.parkinglot";
+    /**
+     * Times 1 in 16 commands, which keeps the overhead of the metrics to a few nanoseconds per command.
+     */
+    public static final int DEFAULT_SAMPLE_EVERY = 16;
+
+    private static final Command.Verb[] VERBS = Command.Verb.values();
+    private static final BadCommandException.Reason[] REASONS = BadCommandException.Reason.values();
+
+    private final long createdAt = System.nanoTime();
+    private final int sampleEvery;
+    private final CommandMetrics[] commands = new CommandMetrics[VERBS.length];
+    private final LongAdder[] parseFailures = new LongAdder[REASONS.length];
+    /**
+     * The parking lots by their name, guarded by the registry. They're only updated as the lots are created.
+     */
+    private final Map<String, ParkingLotMetrics> parkingLots = new LinkedHashMap<>();
+    private MBeanServer mBeanServer;
+
+    private static final Logger LOGGER = LogManager.getLogger(MetricsRegistry.class.getName());
+
+    public MetricsRegistry() {
+        this(DEFAULT_SAMPLE_EVERY);
+    }
+
+    /**
+     *
+     * @param sampleEvery time 1 in so many commands, for e.g. 1 to time every command. It's a power of 2.
+     */
+    public MetricsRegistry(int sampleEvery) {
+        if (sampleEvery < 1 || Integer.bitCount(sampleEvery) != 1)
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleEvery);
+        this.sampleEvery = sampleEvery;
+        for (Command.Verb verb : VERBS)
+            commands[verb.ordinal()] = new CommandMetrics(verb, this, sampleEvery);
+        for (int i = 0; i < parseFailures.length; i++)
+            parseFailures[i] = new LongAdder();
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * @param verb the verb of the commands.
+     * @return the metrics of the commands of the verb.
+     */
+    public CommandMetrics get(Command.Verb verb) {
+        return commands[verb.ordinal()];
+    }
+
+    /**
+     * @param e the failure of the command to parse.
+     */
+    public void recordParseFailure(BadCommandException e) {
+        parseFailures[e.getReason().ordinal()].increment();
+    }
+
+    public long getParseFailures(BadCommandException.Reason reason) {
+        return parseFailures[reason.ordinal()].sum();
+    }
+
+    /**
+     * Starts keeping the occupancy and the throughput of the parking lot, replacing the parking lot of the same name
+     * registered before, if any.
+     * @param parkingLot the parking lot, it gets the {@link ParkingLotMetrics} as it's listener.
+     * @return the metrics of the parking lot.
+     */
+    public ParkingLotMetrics register(ParkingLot parkingLot) {
+        String name = parkingLot.getName();
+        ParkingLotMetrics metrics = new ParkingLotMetrics(name, parkingLot);
+        parkingLot.addListener(metrics);
+        synchronized (this){
+            ParkingLotMetrics replaced = parkingLots.put(name, metrics);
+            if (mBeanServer != null){
+                try {
+                    if (replaced != null)
+                        mBeanServer.unregisterMBean(parkingLotName(name));
+                    mBeanServer.registerMBean(metrics, parkingLotName(name));
+                }catch (JMException e){
+                    LOGGER.error("Failed to register the metrics of the parking lot: {}", name);
+                    LOGGER.error(e);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @param name the name of the parking lot.
+     * @return the metrics of the parking lot or null if there's no parking lot of the given name.
+     */
+    public synchronized ParkingLotMetrics getParkingLot(String name) {
+        return parkingLots.get(name);
+    }
+
+    /**
+     * @return the metrics of the parking lots in the order they're registered.
+     */
+    public synchronized List<ParkingLotMetrics> getParkingLots() {
+        return new ArrayList<>(parkingLots.values());
+    }
+
+    /**
+     * Exposes the metrics as the MXBeans of the {@link #DOMAIN}: the registry itself, the metrics of every verb and of
+     * every parking lot registered, now or later.
+     * @param mBeanServer the server to register with, for e.g. the
+     *                    {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+     * @throws JMException if the MXBeans fail to register, for e.g. another registry is registered with the server.
+     */
+    public synchronized void registerMBeans(MBeanServer mBeanServer) throws JMException {
+        if (this.mBeanServer != null)
+            throw new IllegalStateException("The metrics are already registered");
+        mBeanServer.registerMBean(this, new ObjectName(DOMAIN + ":type=Metrics"));
+        for (CommandMetrics metrics : commands)
+            mBeanServer.registerMBean(metrics, commandName(metrics.getVerb()));
+        for (Map.Entry<String, ParkingLotMetrics> entry : parkingLots.entrySet())
+            mBeanServer.registerMBean(entry.getValue(), parkingLotName(entry.getKey()));
+        this.mBeanServer = mBeanServer;
+    }
+
+    /**
+     * Removes the MXBeans registered by {@link #registerMBeans(MBeanServer)}, if any.
+     * @throws JMException if the MXBeans fail to unregister.
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (mBeanServer == null)
+            return;
+        mBeanServer.unregisterMBean(new ObjectName(DOMAIN + ":type=Metrics"));
+        for (CommandMetrics metrics : commands)
+            mBeanServer.unregisterMBean(commandName(metrics.getVerb()));
+        for (String name : parkingLots.keySet())
+            mBeanServer.unregisterMBean(parkingLotName(name));
+        mBeanServer = null;
+    }
+
+    @Override
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - createdAt) / 1e9;
+    }
+
+    @Override
+    public long getCommands() {
+        long count = 0;
+        for (CommandMetrics metrics : commands)
+            count += metrics.getCount();
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getParseFailures() {
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (BadCommandException.Reason reason : REASONS)
+            failures.put(reason.name().toLowerCase(), getParseFailures(reason));
+        return failures;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        try {
+            report(report);
+        }catch (IOException e){
+            // StringBuilder doesn't throw IOException.
+            throw new UncheckedIOException(e);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes out the text report of the metrics, for e.g. at the end of a run of the commands: a line per verb that's
+     * been executed, the parse failures, and a line per parking lot. The latencies are in the microseconds.
+     * @param out the target to write the report to.
+     * @throws IOException if the target fails to write.
+     */
+    public void report(Appendable out) throws IOException {
+        Formatter formatter = new Formatter(out);
+        double uptime = getUptimeSeconds();
+        formatter.format("Metrics over %.3f s, latencies of 1 in %d commands%n", uptime, sampleEvery);
+        formatter.format("%-41s %10s %10s %12s %10s %10s %10s %10s %10s%n", "Command", "Count", "Failures",
+                "Per second", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us");
+        for (CommandMetrics metrics : commands) {
+            long count = metrics.getCount();
+            if (count == 0)
+                continue;
+            formatter.format("%-41s %10d %10d %12.1f", metrics.getVerb().lName(), count, metrics.getFailures(),
+                    count / uptime);
+            // None of the few commands of the verb may have been sampled.
+            if (metrics.getLatencies().getCount() == 0)
+                formatter.format(" %10s %10s %10s %10s %10s%n", "-", "-", "-", "-", "-");
+            else
+                formatter.format(" %10.3f %10.3f %10.3f %10.3f %10.3f%n", metrics.getMeanLatency(),
+                        metrics.getP50Latency(), metrics.getP99Latency(), metrics.getP999Latency(),
+                        metrics.getMaxLatency());
+        }
+        formatter.format("%-41s %10s%n", "Parse failure", "Count");
+        for (BadCommandException.Reason reason : REASONS)
+            formatter.format("%-41s %10d%n", reason.name().toLowerCase(), getParseFailures(reason));
+        formatter.format("%-41s %10s %10s %12s %10s %10s %12s%n", "Parking lot", "Slots", "Occupied", "Occupancy %",
+                "Parks", "Leaves", "Per second");
+        for (ParkingLotMetrics metrics : getParkingLots()) {
+            formatter.format("%-41s %10d %10d %12.1f %10d %10d %12.1f%n", metrics.getName(), metrics.getSize(),
+                    metrics.getOccupiedSlots(), metrics.getOccupancy(), metrics.getParks(), metrics.getLeaves(),
+                    metrics.getThroughput());
+        }
+        formatter.flush();
+        if (formatter.ioException() != null)
+            throw formatter.ioException();
+    }
+
+    private static ObjectName commandName(Command.Verb verb) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Command,verb=" + verb.lName());
+    }
+
+    private static ObjectName parkingLotName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=ParkingLot,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,25 @@
+package cs0x65.parkinglot.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link MetricsRegistry} itself, registered as {@code cs0x65.parkinglot:type=Metrics}.
+ */
+public interface MetricsRegistryMXBean {
+    double getUptimeSeconds();
+
+    /**
+     * @return the commands executed, of all the verbs.
+     */
+    long getCommands();
+
+    /**
+     * @return the commands that failed to parse, by the {@link cs0x65.parkinglot.command.BadCommandException.Reason}.
+     */
+    Map<String, Long> getParseFailures();
+
+    /**
+     * @return the text report of all the metrics, see {@link MetricsRegistry#report(Appendable)}.
+     */
+    String getReport();
+}
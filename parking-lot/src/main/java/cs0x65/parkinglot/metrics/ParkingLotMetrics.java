@@ -0,0 +1,79 @@
+package cs0x65.parkinglot.metrics;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.impl.ParkingLotListener;
+import cs0x65.parkinglot.model.Ticket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The occupancy and the throughput of a {@link ParkingLot}, see {@link MetricsRegistry#register(ParkingLot)}. The
+ * parks and the leaves are counted as a {@link ParkingLotListener} of the parking lot, and the occupancy is read off
+ * the parking lot itself.
+ * <br/><br/>
+ * The parking lot is only ever updated by one thread at a time, so the counters are bumped by a plain read and an
+ * ordered write rather than an atomic increment, which costs next to nothing on the thread parking the cars. The
+ * readers, for e.g. a JMX client, see the counters and the occupancy as of a recent update, which is good enough for
+ * the gauges.
+ */
+public final class ParkingLotMetrics implements ParkingLotListener, ParkingLotMetricsMXBean {
+    private final String name;
+    private final ParkingLot parkingLot;
+    private final long registeredAt = System.nanoTime();
+    private final AtomicLong parks = new AtomicLong();
+    private final AtomicLong leaves = new AtomicLong();
+
+    ParkingLotMetrics(String name, ParkingLot parkingLot) {
+        this.name = name;
+        this.parkingLot = parkingLot;
+    }
+
+    @Override
+    public void onPark(Ticket ticket) {
+        parks.lazySet(parks.get() + 1);
+    }
+
+    @Override
+    public void onLeave(Ticket ticket) {
+        leaves.lazySet(leaves.get() + 1);
+    }
+
+    ParkingLot getParkingLot() {
+        return parkingLot;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return parkingLot.getSize();
+    }
+
+    @Override
+    public int getOccupiedSlots() {
+        return parkingLot.getNumOccupiedSlots();
+    }
+
+    @Override
+    public double getOccupancy() {
+        return parkingLot.getSize() == 0 ? 0 : 100.0 * getOccupiedSlots() / parkingLot.getSize();
+    }
+
+    @Override
+    public long getParks() {
+        return parks.get();
+    }
+
+    @Override
+    public long getLeaves() {
+        return leaves.get();
+    }
+
+    @Override
+    public double getThroughput() {
+        return (getParks() + getLeaves()) / ((System.nanoTime() - registeredAt) / 1e9);
+    }
+}
@@ -0,0 +1,27 @@
+package cs0x65.parkinglot.metrics;
+
+/**
+ * The JMX view of the {@link ParkingLotMetrics} of a parking lot, registered as
+ * {@code cs0x65.parkinglot:type=ParkingLot,name=<name>}.
+ */
+public interface ParkingLotMetricsMXBean {
+    String getName();
+
+    int getSize();
+
+    int getOccupiedSlots();
+
+    /**
+     * @return the percentage of the slots occupied.
+     */
+    double getOccupancy();
+
+    long getParks();
+
+    long getLeaves();
+
+    /**
+     * @return the parks and the leaves per second since the parking lot was registered.
+     */
+    double getThroughput();
+}
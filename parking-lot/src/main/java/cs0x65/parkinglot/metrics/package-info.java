@@ -0,0 +1,21 @@
+/**
+ * The latency and the throughput metrics of the command processing.
+ * <br/><br/>
+ * A {@link cs0x65.parkinglot.metrics.MetricsRegistry} is handed to the {@link cs0x65.parkinglot.io.Processor}, for
+ * e.g.
+ * <pre>
+ *     MetricsRegistry metrics = new MetricsRegistry();
+ *     metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+ *     new Processor("commands.txt").withMetrics(metrics, System.err).processCommands();
+ * </pre>
+ * and it keeps the count, the failures and the {@link cs0x65.parkinglot.metrics.LatencyHistogram} of the commands of
+ * every verb, the commands that failed to parse by the reason, and the occupancy and the throughput of every parking
+ * lot. The metrics are exposed as the MXBeans of the {@code cs0x65.parkinglot} domain:
+ * <pre>
+ *     cs0x65.parkinglot:type=Metrics
+ *     cs0x65.parkinglot:type=Command,verb=park
+ *     cs0x65.parkinglot:type=ParkingLot,name="mall"
+ * </pre>
+ * and the processor writes out the text report of the metrics at the end of the run.
+ */
+package cs0x65.parkinglot.metrics;
@@ -1,8 +1,22 @@
 package cs0x65.parkinglot.model;
 
-public class Car {
-    private String regNo;
-    private String color;
+/**
+ * The car being parked, an immutable value identified by it's registration number and color. The {@link VehicleClass}
+ * of the car decides the slots it can be parked at, but it isn't part of the car's identity.
+ * <br/><br/>
+ * The hash code and the {@link PlateCodec} code of the registration number are computed once, when the car is created,
+ * so the cars can be looked up, compared and hashed again and again, for e.g. on every park and leave of the same car,
+ * without touching the strings. See {@link PlateDictionary} to reuse the very same instance for the repeated sightings
+ * of a car.
+ */
+public final class Car {
+    public static final String DEFAULT_COLOR = "White";
+
+    private final String regNo;
+    private final String color;
+    private final VehicleClass vehicleClass;
+    private final long code;
+    private final int hash;
 
     /**
      *
@@ -10,12 +24,33 @@ public class Car {
      * @param color the color of the car.
      */
     public Car(String regNo, String color) {
-        this.regNo = regNo;
-        this.color = color;
+        this(regNo, color, VehicleClass.COMPACT);
+    }
+
+    /**
+     *
+     * @param regNo the registration/license plate number of the car being parked. For e.g MH-12-AB-1234.
+     * @param color the color of the car.
+     * @param vehicleClass the class of the car. Default is {@link VehicleClass#COMPACT}.
+     */
+    public Car(String regNo, String color, VehicleClass vehicleClass) {
+        this(regNo, color, vehicleClass, PlateCodec.encode(regNo));
     }
 
     public Car(String regNo){
-        this(regNo, "White");
+        this(regNo, DEFAULT_COLOR);
+    }
+
+    /**
+     * @param code the code of the registration number, as computed by {@link PlateCodec#encode(CharSequence)}.
+     */
+    Car(String regNo, String color, VehicleClass vehicleClass, long code) {
+        this.regNo = regNo;
+        this.color = color;
+        this.vehicleClass = vehicleClass;
+        this.code = code;
+        // Same as Objects.hash(regNo, color) without the varargs array.
+        this.hash = 31 * regNo.hashCode() + color.hashCode();
     }
 
     public String getRegNo() {
@@ -26,9 +61,20 @@ public class Car {
         return color;
     }
 
+    public VehicleClass getVehicleClass() {
+        return vehicleClass;
+    }
+
+    /**
+     * @return the code of the registration number, see {@link PlateCodec#encode(CharSequence)}.
+     */
+    public long getCode() {
+        return code;
+    }
+
     @Override
     public int hashCode() {
-        return (regNo+color).hashCode();
+        return hash;
     }
 
     @Override
@@ -38,6 +84,7 @@ public class Car {
         if (!(o instanceof Car))
             return false;
         Car car = (Car)o;
-        return car.regNo.equals(regNo) && car.color.equals(color);
+        // The codes and the hashes tell most of the unequal cars apart without comparing the strings.
+        return car.code == code && car.hash == hash && car.regNo.equals(regNo) && car.color.equals(color);
     }
 }
@@ -0,0 +1,155 @@
+package cs0x65.parkinglot.model;
+
+/**
+ * Packs the registration numbers into a {@code long}, for e.g. to index the parked cars by a primitive key rather than
+ * by the {@code Car} objects.
+ * <br/><br/>
+ * The registration numbers made of the upper case letters, the digits and the dashes are packed exactly, a base 38
+ * digit per character, so two such numbers are equal if and only if their codes are:
+ * <ul>
+ *     <li>when the dashes separate the letters from the digits, for e.g. KA-01-HH-1234, the dashes are implied by
+ *     the switches between the letters and the digits and only the letters and the digits are packed, up to
+ *     {@value #MAX_PACKED_LENGTH} of them.</li>
+ *     <li>otherwise all the characters, dashes included, are packed, up to {@value #MAX_PACKED_LENGTH} of them.</li>
+ * </ul>
+ * The codes of the packed numbers are non-negative, see {@link #isPacked(long)}, and can be turned back into the
+ * numbers by {@link #decode(long)}. Any other registration number, for e.g. a longer one or one with the lower case
+ * letters, is hashed into a negative code instead, which can collide with the code of another such number, so a
+ * match on such a code must be confirmed by comparing the numbers themselves.
+ */
+public final class PlateCodec {
+    public static final int MAX_PACKED_LENGTH = 11;
+
+    private static final int RADIX = 38;
+    private static final int DIGITS = 27;
+    private static final int DASH = 37;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * The symbols of the ASCII characters, 1 to 37, or 0 for the characters that can't be packed.
+     */
+    private static final byte[] SYMBOLS = new byte[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++)
+            SYMBOLS[c] = (byte) (c - 'A' + 1);
+        for (char c = '0'; c <= '9'; c++)
+            SYMBOLS[c] = (byte) (c - '0' + DIGITS);
+        SYMBOLS['-'] = DASH;
+    }
+
+    private PlateCodec() {
+    }
+
+    /**
+     *
+     * @param regNo the registration number.
+     * @return the code of the registration number.
+     */
+    public static long encode(CharSequence regNo) {
+        return encode(regNo, 0, regNo.length());
+    }
+
+    /**
+     * Same as {@link #encode(CharSequence)} but of the characters within the given range, for e.g. of the
+     * registration number token of a command, without creating the string first.
+     * @param text the text containing the registration number.
+     * @param start the index of the first character of the registration number.
+     * @param end the index past the last character of the registration number.
+     * @return the code of the registration number.
+     */
+    public static long encode(CharSequence text, int start, int end) {
+        int length = end - start;
+        long value = 0;
+        long scale = 1;
+        int numPacked = 0;
+        // Whether the dashes, if any, are exactly at the switches between the letters and the digits.
+        boolean dashesImplied = true;
+        boolean dashPending = false;
+        boolean lastIsDigit = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            int symbol = c < SYMBOLS.length ? SYMBOLS[c] : 0;
+            if (symbol == 0)
+                return hash(text, start, end);
+            if (symbol == DASH){
+                // A leading dash, or a dash following another one.
+                if (numPacked == 0 || dashPending)
+                    dashesImplied = false;
+                dashPending = true;
+                continue;
+            }
+            boolean isDigit = symbol >= DIGITS;
+            if (numPacked > 0 && (isDigit != lastIsDigit) != dashPending)
+                dashesImplied = false;
+            dashPending = false;
+            lastIsDigit = isDigit;
+            if (numPacked++ < MAX_PACKED_LENGTH){
+                value += symbol * scale;
+                scale *= RADIX;
+            }
+        }
+        if (dashesImplied && !dashPending && numPacked <= MAX_PACKED_LENGTH)
+            return value << 1 | 1;
+        if (length > MAX_PACKED_LENGTH)
+            return hash(text, start, end);
+
+        value = 0;
+        scale = 1;
+        for (int i = start; i < end; i++) {
+            value += SYMBOLS[text.charAt(i)] * scale;
+            scale *= RADIX;
+        }
+        return value << 1;
+    }
+
+    /**
+     * @return true if the code is the registration number packed exactly, false if it's hashed.
+     */
+    public static boolean isPacked(long code) {
+        return code >= 0;
+    }
+
+    /**
+     *
+     * @param code the packed code, see {@link #isPacked(long)}.
+     * @return the registration number of the code.
+     */
+    public static String decode(long code) {
+        if (!isPacked(code))
+            throw new IllegalArgumentException("Not a packed code: " + code);
+        boolean dashesImplied = (code & 1) != 0;
+        StringBuilder regNo = new StringBuilder(2 * MAX_PACKED_LENGTH);
+        int previous = 0;
+        for (long value = code >>> 1; value != 0; value /= RADIX) {
+            int symbol = (int) (value % RADIX);
+            if (dashesImplied && previous != 0 && isDigit(previous) != isDigit(symbol))
+                regNo.append('-');
+            regNo.append(character(symbol));
+            previous = symbol;
+        }
+        return regNo.toString();
+    }
+
+    private static char character(int symbol) {
+        if (symbol == DASH)
+            return '-';
+        return (char) (symbol < DIGITS ? 'A' + symbol - 1 : '0' + symbol - DIGITS);
+    }
+
+    private static boolean isDigit(int symbol) {
+        return symbol >= DIGITS && symbol < DASH;
+    }
+
+    /**
+     * The 64 bit FNV-1a hash of the characters, made negative.
+     */
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash | Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,123 @@
+package cs0x65.parkinglot.model;
+
+/**
+ * The dictionary of the recently seen cars, so that the repeated sightings of a car, for e.g. the park and the leave
+ * commands of the same car over a day's traffic, are bound to the very same {@link Car} instance instead of a new car
+ * and a new registration number string each time.
+ * <br/><br/>
+ * The dictionary is a direct mapped cache of a fixed capacity, indexed by the {@link PlateCodec} code of the
+ * registration number: a car evicts the one that was cached at it's entry, so the memory stays bounded however many
+ * distinct cars are seen. The lookup computes the code from the characters of the text in place, so a hit allocates
+ * nothing and, for the packed codes, doesn't even compare the characters. The default capacity holds the working set
+ * of a busy day's gate traffic, for e.g. the cars parked in the morning are still cached by the time they leave, and
+ * costs 64KB of references.
+ * <br/><br/>
+ * The colours of the cars are cached too, see {@link #color(CharSequence, int, int)}, as there are only a handful of
+ * them: so a car of any colour is cached and hit the same way as the car of the default colour, and a query by colour
+ * doesn't copy the colour out of the command either.
+ * <br/><br/>
+ * The cars are immutable, so the dictionary can be shared by the threads without locking: a thread may miss the car
+ * just cached by another one, and cache a duplicate of it, but never sees a partially constructed car.
+ */
+public final class PlateDictionary {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int COLORS = 64;
+
+    private final Car[] cars;
+    private final int shift;
+    private final String[] colors = new String[COLORS];
+
+    public PlateDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     *
+     * @param capacity the number of cars to cache, rounded up to a power of 2.
+     */
+    public PlateDictionary(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int entries = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        cars = new Car[entries];
+        shift = 64 - Integer.numberOfTrailingZeros(entries);
+    }
+
+    /**
+     * Looks up the {@link VehicleClass#COMPACT} car of the {@link Car#DEFAULT_COLOR} with the registration number
+     * within the given range of the text, creating and caching it if it's not been seen recently.
+     * @param text the text containing the registration number, for e.g. the command.
+     * @param start the index of the first character of the registration number.
+     * @param end the index past the last character of the registration number.
+     * @return the car.
+     */
+    public Car lookup(CharSequence text, int start, int end) {
+        return lookup(text, start, end, Car.DEFAULT_COLOR);
+    }
+
+    /**
+     * Same as {@link #lookup(CharSequence, int, int)} but of the car of the given colour. The car of the same
+     * registration number cached with another colour or class is evicted by the car of this colour.
+     * @param color the colour of the car, preferably looked up by {@link #color(CharSequence, int, int)} so that the
+     *              cached car is matched by the reference to it's colour.
+     * @return the car.
+     */
+    public Car lookup(CharSequence text, int start, int end, String color) {
+        return lookup(text, start, end, color, VehicleClass.COMPACT);
+    }
+
+    /**
+     * Same as {@link #lookup(CharSequence, int, int, String)} but of the car of the given class.
+     * @param vehicleClass the class of the car.
+     * @return the car.
+     */
+    public Car lookup(CharSequence text, int start, int end, String color, VehicleClass vehicleClass) {
+        long code = PlateCodec.encode(text, start, end);
+        // Fibonacci hashing, the low bits of the packed codes are far from uniform.
+        int i = (int) ((code * 0x9E3779B97F4A7C15L) >>> shift);
+        Car car = cars[i];
+        if (car != null && car.getCode() == code && car.getVehicleClass() == vehicleClass &&
+                (car.getColor() == color || car.getColor().equals(color)) &&
+                (PlateCodec.isPacked(code) || matches(car.getRegNo(), text, start, end)))
+            return car;
+
+        car = new Car(text.subSequence(start, end).toString(), color, vehicleClass, code);
+        cars[i] = car;
+        return car;
+    }
+
+    /**
+     * Looks up the colour within the given range of the text, creating and caching the string if it's not been seen
+     * recently.
+     * @param text the text containing the colour, for e.g. the command.
+     * @param start the index of the first character of the colour.
+     * @param end the index past the last character of the colour.
+     * @return the colour, the very same string for the same colour as long as it stays cached.
+     */
+    public String color(CharSequence text, int start, int end) {
+        if (matches(Car.DEFAULT_COLOR, text, start, end))
+            return Car.DEFAULT_COLOR;
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + text.charAt(i);
+        int i = (hash ^ hash >>> 16) & (COLORS - 1);
+        String color = colors[i];
+        if (color != null && matches(color, text, start, end))
+            return color;
+
+        color = text.subSequence(start, end).toString();
+        colors[i] = color;
+        return color;
+    }
+
+    private static boolean matches(String string, CharSequence text, int start, int end) {
+        if (string.length() != end - start)
+            return false;
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i - start) != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
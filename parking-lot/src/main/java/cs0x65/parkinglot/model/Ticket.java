@@ -7,6 +7,10 @@ import cs0x65.parkinglot.impl.ParkingLot;
  * Additionally, each ticket is identified by the start and end times.
  * <br/>
  * If a car leaves the parking lot (by paying the due charges) and comes back again then a new ticket is created.
+ * <br/><br/>
+ * The {@link ParkingLot} doesn't hold on to the tickets of the parked cars, it keeps their fields column-wise and
+ * hands out a new ticket on every park and leave. So a ticket is a detached copy: setting it's left time or charges
+ * doesn't affect the parking lot, and the ticket handed out by the park isn't updated by the leave of the car.
  */
 public class Ticket {
     private int slot;
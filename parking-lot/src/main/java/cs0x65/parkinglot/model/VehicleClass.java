@@ -0,0 +1,29 @@
+package cs0x65.parkinglot.model;
+
+/**
+ * The class of a vehicle, and of the parking slots the vehicle fits in.
+ * <br/><br/>
+ * The motorcycle, compact and large classes are ordered by size, so a vehicle of one of them fits in the slots of a
+ * larger class too, see {@link #larger()}. The EV slots have the chargers, so they're kept for the EVs, and an EV only
+ * parks at an EV slot.
+ */
+public enum VehicleClass {
+    MOTORCYCLE,
+    COMPACT,
+    LARGE,
+    EV;
+
+    /**
+     * @return the next larger class whose slots a vehicle of this class fits in, or null if there's none.
+     */
+    public VehicleClass larger() {
+        switch (this){
+            case MOTORCYCLE:
+                return COMPACT;
+            case COMPACT:
+                return LARGE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package cs0x65.parkinglot.server;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.engine.LotEngine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A client connection of the {@link ParkingLotServer}: decodes the requests, submits them to the {@link LotEngine}
+ * and encodes the outputs back in the order of the requests. It's only ever touched by the thread of the server,
+ * except for {@link #queued} which the lanes of the engine flip when an output is ready.
+ * <br/><br/>
+ * Reading is paused while {@link #MAX_PIPELINED} requests are waiting for their outputs, so a client that doesn't
+ * read the responses can't pile up the requests; the requests already received stay in the input buffer till then.
+ */
+final class Connection {
+    static final int MAX_PIPELINED = 1024;
+    private static final int BUFFER_SIZE = 1 << 17;
+    private static final Command.Verb[] VERBS = Command.Verb.values();
+
+    private final ParkingLotServer server;
+    private final LotEngine engine;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * The encoded outputs yet to be written, the buffer being in the write mode.
+     */
+    private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Queue<CompletableFuture<String>> pending = new ArrayDeque<>();
+    private final StringBuilder request = new StringBuilder();
+    private Protocol protocol;
+    private boolean inputEnded;
+    /**
+     * Whether the connection is queued to the server for writing out the outputs that are ready.
+     */
+    final AtomicBoolean queued = new AtomicBoolean();
+
+    private static final Logger LOGGER = LogManager.getLogger(Connection.class.getName());
+
+    Connection(ParkingLotServer server, LotEngine engine, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.engine = engine;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    void onReadable() throws IOException {
+        if (channel.read(in) < 0)
+            inputEnded = true;
+        decode();
+        onCompleted();
+    }
+
+    void onWritable() throws IOException {
+        flush();
+    }
+
+    /**
+     * Encodes the outputs that are ready, in the order of the requests, and writes them out.
+     */
+    void onCompleted() throws IOException {
+        if (!channel.isOpen())
+            return;
+        while (!pending.isEmpty() && pending.peek().isDone())
+            encode(pending.poll());
+        // Picks up the requests left in the input buffer while reading was paused.
+        if (in.position() > 0 && pending.size() < MAX_PIPELINED){
+            decode();
+            while (!pending.isEmpty() && pending.peek().isDone())
+                encode(pending.poll());
+        }
+        flush();
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        }catch (IOException e){
+            LOGGER.error("Failed to close the connection", e);
+        }
+    }
+
+    private void decode() throws IOException {
+        in.flip();
+        try {
+            if (protocol == null && in.hasRemaining()){
+                protocol = in.get(in.position()) == Protocol.BINARY_HELLO ? Protocol.BINARY : Protocol.TEXT;
+                if (protocol == Protocol.BINARY)
+                    in.get();
+            }
+            while (pending.size() < MAX_PIPELINED && (protocol == Protocol.BINARY ? decodeFrame() : decodeLine()))
+                submit();
+        }finally {
+            in.compact();
+        }
+        if (!in.hasRemaining() && pending.size() < MAX_PIPELINED){
+            // Only a text line can outgrow the buffer, a binary frame always fits.
+            throw new IOException("Request is too long: more than " + in.capacity() + " bytes");
+        }
+    }
+
+    /**
+     * @return true if a line is decoded into the request.
+     */
+    private boolean decodeLine() {
+        while (true) {
+            int start = in.position();
+            int end = start;
+            while (end < in.limit() && in.get(end) != '\n')
+                end++;
+            if (end == in.limit())
+                return false;
+            in.position(end + 1);
+            while (end > start && in.get(end - 1) <= ' ')
+                end--;
+            while (start < end && in.get(start) <= ' ')
+                start++;
+            // The blank lines are skipped, for e.g. the enter key hit by a human.
+            if (start < end){
+                request.setLength(0);
+                for (int i = start; i < end; i++)
+                    request.append((char) (in.get(i) & 0xff));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if a frame is decoded into the request.
+     */
+    private boolean decodeFrame() throws IOException {
+        if (in.remaining() < 2)
+            return false;
+        int length = in.getShort(in.position()) & 0xffff;
+        if (in.remaining() < 2 + length)
+            return false;
+        int start = in.position() + 2;
+        int end = start + length;
+        in.position(end);
+        if (length < 2)
+            throw new IOException("Invalid frame length: " + length);
+
+        request.setLength(0);
+        int verb = in.get(start) & 0xff;
+        int lotLength = in.get(start + 1) & 0xff;
+        int argsStart = start + 2 + lotLength;
+        if (argsStart > end)
+            throw new IOException("Invalid lot length: " + lotLength);
+        if (lotLength > 0){
+            request.append('@');
+            for (int i = start + 2; i < argsStart; i++)
+                request.append((char) (in.get(i) & 0xff));
+            request.append(' ');
+        }
+        // An unknown verb is left to the parser to reject, same as in the text.
+        request.append(verb < VERBS.length ? VERBS[verb].lName() : "#" + verb);
+        request.append(' ');
+        for (int i = argsStart; i < end; i++)
+            request.append((char) (in.get(i) & 0xff));
+        return true;
+    }
+
+    private void submit() {
+        CompletableFuture<String> output;
+        try {
+            output = engine.submit(request);
+        }catch (BadCommandException e){
+            output = new CompletableFuture<>();
+            output.completeExceptionally(e);
+        }
+        pending.add(output);
+        if (!output.isDone())
+            output.whenComplete((result, failure) -> server.ready(this));
+    }
+
+    private void encode(CompletableFuture<String> response) {
+        String output;
+        byte status;
+        try {
+            output = response.join();
+            status = Protocol.OK;
+        }catch (CompletionException e){
+            Throwable cause = e.getCause();
+            status = cause instanceof BadCommandException ? Protocol.BAD_COMMAND : Protocol.ERROR;
+            output = String.valueOf(cause.getMessage());
+        }
+        // The UTF-8 takes up to 3 bytes per character.
+        ensureRemaining(5 + 3 * output.length());
+        if (protocol == Protocol.BINARY){
+            out.put(status);
+            int lengthAt = out.position();
+            out.putInt(0);
+            putUtf8(output);
+            out.putInt(lengthAt, out.position() - lengthAt - 4);
+        }else {
+            putUtf8(output);
+            out.put((byte) '\n');
+        }
+    }
+
+    private void putUtf8(String output) {
+        int length = output.length();
+        for (int i = 0; i < length; i++) {
+            char c = output.charAt(i);
+            if (c >= 0x80){
+                // Falls back to the encoder for the rest of the text, the outputs are mostly ASCII.
+                out.put(output.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            out.put((byte) c);
+        }
+    }
+
+    private void ensureRemaining(int length) {
+        if (out.remaining() >= length)
+            return;
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length));
+        out.flip();
+        grown.put(out);
+        out = grown;
+    }
+
+    private void flush() throws IOException {
+        if (out.position() > 0){
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+        if (inputEnded && pending.isEmpty() && out.position() == 0){
+            close();
+            return;
+        }
+        int interestOps = 0;
+        if (!inputEnded && pending.size() < MAX_PIPELINED)
+            interestOps |= SelectionKey.OP_READ;
+        if (out.position() > 0)
+            interestOps |= SelectionKey.OP_WRITE;
+        key.interestOps(interestOps);
+    }
+}
@@ -0,0 +1,185 @@
+package cs0x65.parkinglot.server;
+
+import cs0x65.parkinglot.command.Command;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The blocking client of the {@link ParkingLotServer}, in either of the {@link Protocol}s, for e.g. to drive the
+ * server from the tests and the benchmarks.
+ * <br/><br/>
+ * The requests are buffered by {@link #send(String)} till {@link #flush()}, so any number of them can be pipelined,
+ * and then the responses are read one at a time, in the order of the requests, by {@link #receive()}.
+ * {@link #call(String)} does the round trip of a single request.
+ * <br/><br/>
+ * The client isn't thread safe.
+ */
+public class ParkingLotClient implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Command.Verb[] VERBS = Command.Verb.values();
+
+    private final SocketChannel channel;
+    private final Protocol protocol;
+    private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * The bytes received but not yet consumed, the buffer being in the read mode.
+     */
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte lastStatus;
+
+    /**
+     *
+     * @param address the address of the server.
+     * @param protocol the protocol to speak.
+     * @throws IOException if the server can't be connected to.
+     */
+    public ParkingLotClient(InetSocketAddress address, Protocol protocol) throws IOException {
+        this.protocol = protocol;
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+        if (protocol == Protocol.BINARY)
+            out.put(Protocol.BINARY_HELLO);
+    }
+
+    /**
+     * Buffers the request, it's sent on {@link #flush()} or when the buffer fills up.
+     * @param commandLine the command text, optionally prefixed with the {@code @name} of the lot, for e.g.
+     *                    {@code @mall park KA-01-HH-1234}.
+     * @throws IOException if the buffer fails to send.
+     * @throws IllegalArgumentException if the verb isn't supported, for the binary protocol.
+     */
+    public void send(String commandLine) throws IOException {
+        byte[] request = protocol == Protocol.BINARY ? frame(commandLine.trim()) :
+                (commandLine + "\n").getBytes(StandardCharsets.US_ASCII);
+        if (out.remaining() < request.length)
+            flush();
+        if (out.remaining() < request.length)
+            throw new IllegalArgumentException("Request is too long: " + request.length + " bytes");
+        out.put(request);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * Reads the response to the oldest request not yet received.
+     * @return the output of the command. For the text protocol, that's just the first line of a multi line output.
+     * @throws IOException if the connection fails or is closed by the server.
+     */
+    public String receive() throws IOException {
+        if (protocol == Protocol.TEXT){
+            int end;
+            while ((end = indexOfNewLine()) < 0)
+                fill(in.remaining() + 1);
+            String line = new String(in.array(), in.position(), end - in.position(), StandardCharsets.UTF_8);
+            in.position(end + 1);
+            return line;
+        }
+        fill(5);
+        lastStatus = in.get(in.position());
+        int length = in.getInt(in.position() + 1);
+        fill(5 + length);
+        String output = new String(in.array(), in.position() + 5, length, StandardCharsets.UTF_8);
+        in.position(in.position() + 5 + length);
+        return output;
+    }
+
+    /**
+     * Sends the request and waits for it's response.
+     * @param commandLine the command text, see {@link #send(String)}.
+     * @return the output of the command, see {@link #receive()}.
+     * @throws IOException if the connection fails.
+     */
+    public String call(String commandLine) throws IOException {
+        send(commandLine);
+        flush();
+        return receive();
+    }
+
+    /**
+     * @return true if the last response received over the binary protocol is a failure, for e.g. a bad command.
+     */
+    public boolean isLastFailed() {
+        return lastStatus != Protocol.OK;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private byte[] frame(String commandLine) {
+        int start = 0;
+        String lotId = "";
+        if (commandLine.startsWith("@")){
+            start = commandLine.indexOf(' ');
+            if (start < 0)
+                start = commandLine.length();
+            lotId = commandLine.substring(1, start);
+        }
+        String rest = commandLine.substring(start).trim();
+        int verbEnd = rest.indexOf(' ');
+        if (verbEnd < 0)
+            verbEnd = rest.length();
+        String verbName = rest.substring(0, verbEnd);
+        int verb = -1;
+        for (int i = 0; i < VERBS.length; i++) {
+            if (VERBS[i].lName().equalsIgnoreCase(verbName))
+                verb = i;
+        }
+        if (verb < 0)
+            throw new IllegalArgumentException("Unknown verb: " + verbName);
+        byte[] lot = lotId.getBytes(StandardCharsets.US_ASCII);
+        byte[] args = rest.substring(verbEnd).trim().getBytes(StandardCharsets.US_ASCII);
+        int length = 2 + lot.length + args.length;
+        if (lot.length > 0xFF || length > Protocol.MAX_REQUEST_LENGTH)
+            throw new IllegalArgumentException("Request is too long: " + commandLine);
+
+        ByteBuffer frame = ByteBuffer.allocate(2 + length);
+        frame.putShort((short) length).put((byte) verb).put((byte) lot.length).put(lot).put(args);
+        return frame.array();
+    }
+
+    private int indexOfNewLine() {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads till at least the given number of bytes are buffered.
+     */
+    private void fill(int length) throws IOException {
+        if (in.remaining() >= length)
+            return;
+        if (in.capacity() < length){
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(in.capacity() * 2, length));
+            grown.put(in);
+            grown.flip();
+            in = grown;
+        }
+        in.compact();
+        try {
+            while (in.position() < length) {
+                if (channel.read(in) < 0)
+                    throw new EOFException("Connection is closed by the server");
+            }
+        }finally {
+            in.flip();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package cs0x65.parkinglot.server;
+
+import cs0x65.parkinglot.engine.LotEngine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves the lots of a {@link LotEngine} over TCP, for e.g. to the gate controllers of the entry and the exit
+ * barriers. See the package documentation for the protocols.
+ * <br/><br/>
+ * A single thread runs the NIO selector over all the connections: it reads and decodes the requests, submits them to
+ * the engine, and writes the outputs back as the lanes of the engine complete them. So the commands of a lot are
+ * executed on the lane of the lot, same as with the command files, and the server thread never waits for a command.
+ * The responses are written in the order of the requests of the connection, even if they complete out of order
+ * across the lots.
+ * <br/><br/>
+ * The lanes hand the completed outputs back through a queue of the connections to write to, and wake the selector
+ * up at most once per round of the selector, however many outputs complete in the meantime.
+ */
+public class ParkingLotServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+
+    private final LotEngine engine;
+    private final InetSocketAddress address;
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    private static final Logger LOGGER = LogManager.getLogger(ParkingLotServer.class.getName());
+
+    /**
+     *
+     * @param engine executes the commands, it's left open when the server is closed.
+     * @param address the address to listen on, for e.g. port 0 for any free port.
+     */
+    public ParkingLotServer(LotEngine engine, InetSocketAddress address) {
+        this.engine = engine;
+        this.address = address;
+    }
+
+    /**
+     * Starts listening, and serving the connections on the server thread.
+     * @return this server.
+     * @throws IOException if the address can't be bound.
+     */
+    public synchronized ParkingLotServer start() throws IOException {
+        if (running)
+            throw new IllegalStateException("Server is already started");
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "lot-server");
+        thread.start();
+        LOGGER.info("Listening on {}", getAddress());
+        return this;
+    }
+
+    /**
+     * @return the address the server is listening on, with the actual port if it's started on port 0.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Queues the connection for writing out it's outputs that are ready, called by the lanes of the engine.
+     */
+    void ready(Connection connection) {
+        if (connection.queued.compareAndSet(false, true)){
+            ready.add(connection);
+            if (wakeupPending.compareAndSet(false, true))
+                selector.wakeup();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                Connection connection;
+                while ((connection = ready.poll()) != null) {
+                    connection.queued.set(false);
+                    try {
+                        connection.onCompleted();
+                    }catch (IOException e){
+                        LOGGER.error("Failed to write to the connection", e);
+                        connection.close();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()){
+                        accept();
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable())
+                            connection.onReadable();
+                        if (key.isValid() && key.isWritable())
+                            connection.onWritable();
+                    }catch (IOException e){
+                        LOGGER.error("Failed to serve the connection", e);
+                        connection.close();
+                    }
+                }
+            }
+        }catch (IOException e){
+            LOGGER.error("Server failed", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        // The responses are small and latency bound, don't hold them back for the acks.
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(this, engine, channel, key));
+    }
+
+    /**
+     * Stops the server and closes all the connections, without waiting for the outputs still pending.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running)
+            return;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            }catch (IOException e){
+                LOGGER.error("Failed to close the channel", e);
+            }
+        }
+        try {
+            selector.close();
+        }catch (IOException e){
+            LOGGER.error("Failed to close the selector", e);
+        }
+    }
+}
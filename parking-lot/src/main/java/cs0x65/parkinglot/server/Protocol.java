@@ -0,0 +1,40 @@
+package cs0x65.parkinglot.server;
+
+/**
+ * The wire protocols spoken by the {@link ParkingLotServer}, see the package documentation for the framing.
+ * <br/>
+ * The server tells the protocol of a connection by it's first byte: the binary connections open with the
+ * {@link #BINARY_HELLO} byte, which never starts a command text.
+ */
+public enum Protocol {
+    /**
+     * A command per line and the output of the command followed by a new line, same as the command and the output
+     * files. Meant for the humans, for e.g. over telnet, as the multi line outputs, like the status, aren't framed.
+     */
+    TEXT,
+    /**
+     * The length prefixed frames, meant for the gate controllers.
+     */
+    BINARY;
+
+    static final byte BINARY_HELLO = (byte) 0xFF;
+
+    /**
+     * The status byte of a binary response: the output of the command.
+     */
+    static final byte OK = 0;
+    /**
+     * The status byte of a binary response: the command isn't supported or it's arguments are invalid, the output
+     * being the usage help.
+     */
+    static final byte BAD_COMMAND = 1;
+    /**
+     * The status byte of a binary response: the command failed unexpectedly.
+     */
+    static final byte ERROR = 2;
+
+    /**
+     * The maximum length of a binary request, excluding the 2 byte length itself.
+     */
+    static final int MAX_REQUEST_LENGTH = 0xFFFF;
+}
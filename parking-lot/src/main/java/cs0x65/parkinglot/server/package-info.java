@@ -0,0 +1,33 @@
+/**
+ * The network front end of the parking lots, for e.g. for the entry and the exit barriers to talk to the lots in
+ * real time.
+ * <br/><br/>
+ * {@link cs0x65.parkinglot.server.ParkingLotServer} accepts the same commands as the command file over TCP, addressed
+ * to the lots of a {@link cs0x65.parkinglot.engine.LotEngine} by the {@code @name} prefix. A connection speaks either
+ * of the {@link cs0x65.parkinglot.server.Protocol}s:
+ * <ul>
+ *     <li>TEXT: a command per line, for e.g. {@code @mall park KA-01-HH-1234}, and the output of the command followed
+ *     by a new line.</li>
+ *     <li>BINARY: the connection opens with the single byte {@code 0xFF}, followed by the request frames:
+ *     <pre>
+ *     short  length of the rest of the frame, unsigned
+ *     byte   ordinal of the {@link cs0x65.parkinglot.command.Command.Verb}
+ *     byte   length of the name of the lot, 0 for the default lot
+ *     byte[] name of the lot
+ *     byte[] arguments separated by a space, for e.g. {@code KA-01-HH-1234 4} for a leave
+ *     </pre>
+ *     and the server responds to every request with the frame:
+ *     <pre>
+ *     byte   status: 0 for the output, 1 for a bad command, 2 for a failure
+ *     int    length of the output
+ *     byte[] output
+ *     </pre>
+ *     </li>
+ * </ul>
+ * The requests are ASCII and the outputs are UTF-8. The client is free to pipeline the requests i.e. send any number
+ * of them without waiting for the responses, which are always sent back in the order of the requests.
+ * <br/><br/>
+ * {@link cs0x65.parkinglot.server.ParkingLotClient} is the blocking client of both protocols, for e.g. to drive the
+ * server from the tests and the benchmarks.
+ */
+package cs0x65.parkinglot.server;
@@ -0,0 +1,231 @@
+package cs0x65.parkinglot.tariff;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * The tariff the parking sessions are charged by: the hourly rates that vary by the day of the week and the time of
+ * the day, a flat charge for the first minutes of the stay, and a cap on the charges of a calendar day.
+ * <br/><br/>
+ * The stay is charged by the minute, every started minute of the stay at the hourly rate in force at the minute of the
+ * clock it starts in divided by 60, and the total is rounded up to a whole unit of the charges. The daily cap applies
+ * to the charges of every calendar day of the stay separately, the first and the last partial days included, and not
+ * to the initial charge.
+ * <br/><br/>
+ * The tariff is compiled when it's built into the cumulative charges from the start of the week to every minute of the
+ * week, and the capped charges of every day of the week. So the charges up to any instant are the charges of the whole
+ * weeks before it plus a table lookup, and the charges of a stay are the difference of the two, plus the capped
+ * charges of the whole days in between worked out the same way. A stay of a month is priced in the same few
+ * operations as a stay of an hour, rather than minute by minute or day by day. The tables cost 80KB per tariff.
+ * <br/><br/>
+ * The days are the days in the time zone offset of the tariff, UTC unless configured. The offset is fixed, so the
+ * daylight saving time shifts aren't followed. The tariff is immutable and thread safe.
+ */
+public final class Tariff {
+    /**
+     * The builder of the {@link Tariff}. The rates are applied in the order they're configured, so a later rate
+     * overrides the earlier ones for the minutes it covers.
+     */
+    public static final class Builder {
+        private final long[] hourlyRates = new long[MINUTES_PER_WEEK];
+        private long dailyCap = -1;
+        private int initialMinutes;
+        private long initialCharge;
+        private ZoneOffset zoneOffset = ZoneOffset.UTC;
+
+        /**
+         *
+         * @param hourlyRate the rate per hour at all times, unless configured otherwise by
+         *                   {@link #withRate(DayOfWeek, LocalTime, LocalTime, long)}.
+         */
+        public Builder(long hourlyRate) {
+            Arrays.fill(hourlyRates, checkRate(hourlyRate));
+        }
+
+        /**
+         * Sets the rate for the given hours of the day of the week, for e.g. the evening rate on a Friday.
+         * @param day the day of the week.
+         * @param from the start of the hours, inclusive.
+         * @param to the end of the hours, exclusive, {@link LocalTime#MIDNIGHT} for the end of the day.
+         * @param hourlyRate the rate per hour.
+         * @throws IllegalArgumentException if the hours are empty or the rate is negative.
+         */
+        public Builder withRate(DayOfWeek day, LocalTime from, LocalTime to, long hourlyRate) {
+            int fromMinute = from.getHour() * 60 + from.getMinute();
+            int toMinute = to.equals(LocalTime.MIDNIGHT) ? MINUTES_PER_DAY : to.getHour() * 60 + to.getMinute();
+            if (fromMinute >= toMinute)
+                throw new IllegalArgumentException("Invalid hours: " + from + "-" + to);
+            int dayStart = (day.getValue() - 1) * MINUTES_PER_DAY;
+            Arrays.fill(hourlyRates, dayStart + fromMinute, dayStart + toMinute, checkRate(hourlyRate));
+            return this;
+        }
+
+        /**
+         * Same as {@link #withRate(DayOfWeek, LocalTime, LocalTime, long)} for every day from Monday to Friday.
+         */
+        public Builder withWeekdayRate(LocalTime from, LocalTime to, long hourlyRate) {
+            for (DayOfWeek day = DayOfWeek.MONDAY; day != DayOfWeek.SATURDAY; day = day.plus(1))
+                withRate(day, from, to, hourlyRate);
+            return this;
+        }
+
+        /**
+         * Same as {@link #withRate(DayOfWeek, LocalTime, LocalTime, long)} for Saturday and Sunday.
+         */
+        public Builder withWeekendRate(LocalTime from, LocalTime to, long hourlyRate) {
+            withRate(DayOfWeek.SATURDAY, from, to, hourlyRate);
+            return withRate(DayOfWeek.SUNDAY, from, to, hourlyRate);
+        }
+
+        /**
+         * @param dailyCap the maximum charges of a calendar day of the stay. Default is no cap.
+         */
+        public Builder withDailyCap(long dailyCap) {
+            this.dailyCap = checkRate(dailyCap);
+            return this;
+        }
+
+        /**
+         * Charges the first minutes of the stay at a flat charge rather than by the rates, for e.g. a free first half
+         * an hour. A shorter stay is charged the flat charge too.
+         * @param minutes the number of minutes covered by the flat charge. Default is 0.
+         * @param charge the flat charge. Default is 0.
+         */
+        public Builder withInitialCharge(int minutes, long charge) {
+            if (minutes < 0)
+                throw new IllegalArgumentException("Invalid initial minutes: " + minutes);
+            this.initialMinutes = minutes;
+            this.initialCharge = checkRate(charge);
+            return this;
+        }
+
+        /**
+         * @param zoneOffset the offset of the time zone the days and the hours of the tariff are in. Default is UTC.
+         */
+        public Builder withZoneOffset(ZoneOffset zoneOffset) {
+            this.zoneOffset = zoneOffset;
+            return this;
+        }
+
+        public Tariff build() {
+            return new Tariff(this);
+        }
+
+        private static long checkRate(long rate) {
+            if (rate < 0)
+                throw new IllegalArgumentException("Invalid rate: " + rate);
+            return rate;
+        }
+    }
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int MINUTES_PER_WEEK = DAYS_PER_WEEK * MINUTES_PER_DAY;
+    private static final long MILLIS_PER_MINUTE = 60_000;
+    /**
+     * The epoch day 0, 1970-01-01, was a Thursday, the day 3 of a week starting on Monday.
+     */
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    /**
+     * The charges, in the hourly rate times the minutes, from the start of the week to the minute of the week.
+     */
+    private final long[] cumulative;
+    private final long week;
+    /**
+     * The capped charges, in the hourly rate times the minutes, of the days of the week before the day of the week.
+     */
+    private final long[] cappedCumulative;
+    private final long cappedWeek;
+    private final long dailyCap;
+    private final long initialMillis;
+    private final long initialCharge;
+    private final int offsetMinutes;
+
+    private Tariff(Builder builder) {
+        cumulative = new long[MINUTES_PER_WEEK + 1];
+        for (int minute = 0; minute < MINUTES_PER_WEEK; minute++)
+            cumulative[minute + 1] = cumulative[minute] + builder.hourlyRates[minute];
+        week = cumulative[MINUTES_PER_WEEK];
+        // The charges are kept 60 times over, so the cap is too, saturating rather than overflowing.
+        dailyCap = builder.dailyCap < 0 || builder.dailyCap > Long.MAX_VALUE / 60 ? Long.MAX_VALUE :
+                builder.dailyCap * 60;
+        cappedCumulative = new long[DAYS_PER_WEEK + 1];
+        for (int day = 0; day < DAYS_PER_WEEK; day++) {
+            long charges = cumulative[(day + 1) * MINUTES_PER_DAY] - cumulative[day * MINUTES_PER_DAY];
+            cappedCumulative[day + 1] = cappedCumulative[day] + Math.min(dailyCap, charges);
+        }
+        cappedWeek = cappedCumulative[DAYS_PER_WEEK];
+        initialMillis = builder.initialMinutes * MILLIS_PER_MINUTE;
+        initialCharge = builder.initialCharge;
+        offsetMinutes = builder.zoneOffset.getTotalSeconds() / 60;
+    }
+
+    /**
+     * Prices the stay.
+     * @param parkedAt the time the car was parked at, in the milliseconds since the epoch.
+     * @param leftAt the time the car left at, in the milliseconds since the epoch.
+     * @return the charges of the stay.
+     */
+    public long charge(long parkedAt, long leftAt) {
+        long start = parkedAt + initialMillis;
+        if (leftAt <= start)
+            return initialCharge;
+        // Every started minute of the stay is charged, at the rate of the minute of the clock it starts in.
+        long from = Math.floorDiv(start, MILLIS_PER_MINUTE) + offsetMinutes;
+        long to = from + (leftAt - start + MILLIS_PER_MINUTE - 1) / MILLIS_PER_MINUTE;
+        long charges = minuteCharges(from, to);
+        return initialCharge + charges / 60 + (charges % 60 == 0 ? 0 : 1);
+    }
+
+    /**
+     * Prices the closed parking sessions in bulk, for e.g. for the end of the day billing, in parallel over the common
+     * {@link java.util.concurrent.ForkJoinPool}. The sessions are given column-wise, the way
+     * {@link #charge(long, long)} takes them.
+     * @param parkedAt the times the cars were parked at.
+     * @param leftAt the times the cars left at.
+     * @param charges receives the charges of the sessions.
+     * @throws IllegalArgumentException if the arrays aren't of the same length.
+     */
+    public void charge(long[] parkedAt, long[] leftAt, long[] charges) {
+        if (parkedAt.length != leftAt.length || leftAt.length != charges.length)
+            throw new IllegalArgumentException("The arrays are of different lengths: " + parkedAt.length + ", " +
+                    leftAt.length + ", " + charges.length);
+        Arrays.parallelSetAll(charges, i -> charge(parkedAt[i], leftAt[i]));
+    }
+
+    /**
+     * @return the charges, in the hourly rate times the minutes, of the local minutes from {@code from} to {@code to},
+     * exclusive, capped per day.
+     */
+    private long minuteCharges(long from, long to) {
+        long firstDay = Math.floorDiv(from, MINUTES_PER_DAY);
+        long lastDay = Math.floorDiv(to - 1, MINUTES_PER_DAY);
+        if (firstDay == lastDay)
+            return Math.min(dailyCap, cumulative(to) - cumulative(from));
+
+        long first = Math.min(dailyCap, cumulative((firstDay + 1) * MINUTES_PER_DAY) - cumulative(from));
+        long last = Math.min(dailyCap, cumulative(to) - cumulative(lastDay * MINUTES_PER_DAY));
+        return first + cappedCumulative(lastDay) - cappedCumulative(firstDay + 1) + last;
+    }
+
+    /**
+     * @return the charges from the start of the week of the epoch to the local minute.
+     */
+    private long cumulative(long minute) {
+        long day = Math.floorDiv(minute, MINUTES_PER_DAY);
+        long weeks = Math.floorDiv(day + EPOCH_DAY_OF_WEEK, DAYS_PER_WEEK);
+        long weekStart = (weeks * DAYS_PER_WEEK - EPOCH_DAY_OF_WEEK) * MINUTES_PER_DAY;
+        return weeks * week + cumulative[(int) (minute - weekStart)];
+    }
+
+    /**
+     * @return the capped charges of the days from the start of the week of the epoch to the local day, exclusive.
+     */
+    private long cappedCumulative(long day) {
+        long weeks = Math.floorDiv(day + EPOCH_DAY_OF_WEEK, DAYS_PER_WEEK);
+        return weeks * cappedWeek + cappedCumulative[(int) (day + EPOCH_DAY_OF_WEEK - weeks * DAYS_PER_WEEK)];
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * The pricing of the parking sessions.
+ * <br/><br/>
+ * A {@link cs0x65.parkinglot.tariff.Tariff} is defined through it's builder in terms of the hourly rates by the day of
+ * the week and the time of the day, a flat charge for the first minutes of the stay and a cap on the charges of a
+ * calendar day, for e.g.
+ * <pre>
+ *     new Tariff.Builder(20)
+ *             .withWeekdayRate(LocalTime.of(20, 0), LocalTime.MIDNIGHT, 10)
+ *             .withWeekendRate(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT, 5)
+ *             .withInitialCharge(30, 0)
+ *             .withDailyCap(150)
+ *             .build();
+ * </pre>
+ * and it's compiled into the cumulative charges over a week when it's built, so that a stay of any length is priced in
+ * constant time. The tariffs are set per {@link cs0x65.parkinglot.model.VehicleClass} on the
+ * {@link cs0x65.parkinglot.impl.ParkingLot.Builder}.
+ */
+package cs0x65.parkinglot.tariff;
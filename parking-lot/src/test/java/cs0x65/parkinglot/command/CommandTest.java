@@ -106,4 +106,12 @@ class CommandTest {
         }catch (BadCommandException | CommandOutputFormatException e){
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void withInvokerKeepsTheArgumentsAndTheOutputTemplate() throws BadCommandException, CommandOutputFormatException {
+        Command<ParkingLot> command = parser.parse("create_parking_lot 5").withInvoker((parkingLot, args) ->
+                new ParkingLot.Builder((Integer) args[0] * 2).withName("Mall").build());
+        assertEquals("Created parking lot with 10 slots", command.execute());
+        assertEquals("Mall", ((ParkingLot) command.getResult()).getName());
+    }
+}
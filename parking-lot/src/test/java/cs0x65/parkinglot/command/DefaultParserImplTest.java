@@ -2,8 +2,10 @@ package cs0x65.parkinglot.command;
 
 import cs0x65.parkinglot.impl.ParkingLot;
 import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.VehicleClass;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
@@ -99,4 +101,170 @@ class DefaultParserImplTest {
         actual = Collections.singletonList(badCommandException.getMessage().split("\n")[0]);
         assertLinesMatch(expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseIgnoresRedundantWhiteSpaceAndVerbCase() throws BadCommandException {
+        Command<ParkingLot> command = parser.parse("  LEAVE \t MH-12-NE-9010    5  ");
+        assertEquals(Command.Verb.LEAVE,  command.getVerb());
+        assertArrayEquals(new Object[]{new Car("MH-12-NE-9010"), 5L}, command.getArgs());
+
+        command = parser.parse("Status TRUE");
+        assertEquals(Command.Verb.STATUS,  command.getVerb());
+        assertArrayEquals(new Object[]{true}, command.getArgs());
+    }
+
+    @Test
+    void parseAcceptsAnyCharSequence() throws BadCommandException {
+        StringBuilder line = new StringBuilder("create_parking_lot 2147483647");
+        Command<ParkingLot> command = parser.parse(line);
+        assertEquals(Command.Verb.CREATE_PARKING_LOT,  command.getVerb());
+        assertArrayEquals(new Object[]{Integer.MAX_VALUE}, command.getArgs());
+
+        // The parser must not hold on to the supplied text.
+        line.setLength(0);
+        line.append("park KA-01-HH-1234");
+        command = parser.parse(line);
+        line.setLength(0);
+        assertArrayEquals(new Object[]{new Car("KA-01-HH-1234")}, command.getArgs());
+    }
+
+    @Test
+    void parseThrowsExceptionWhenPassedInvalidNumbers() {
+        BadCommandException badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("create_parking_lot 2147483648"));
+        assertEquals("'2147483648' - not a valid argument for the command: create_parking_lot",
+                badCommandException.getMessage().split("\n")[0]);
+
+        badCommandException = assertThrows(BadCommandException.class, () -> parser.parse("leave MH-12-NE-8900 -8"));
+        assertEquals("'-8' - not a valid argument for the command: leave",
+                badCommandException.getMessage().split("\n")[0]);
+
+        badCommandException = assertThrows(BadCommandException.class, () -> parser.parse("leave MH-12-NE-8900 4x"));
+        assertEquals("'4x' - not a valid argument for the command: leave",
+                badCommandException.getMessage().split("\n")[0]);
+
+        assertThrows(BadCommandException.class, () -> parser.parse("park"));
+        assertThrows(BadCommandException.class, () -> parser.parse(""));
+    }
+
+    @Test
+    void parseQueriesAndTheColourOfThePark() throws BadCommandException, CommandOutputFormatException {
+        ParkingLot parkingLot = ParkingLot.create(6);
+        assertEquals("Allocated slot number: 1",
+                parser.parse("park KA-01-HH-1234 White").setTarget(parkingLot).execute());
+        Command<ParkingLot> command = parser.parse("park KA-01-HH-9999 Red");
+        assertArrayEquals(new Object[]{new Car("KA-01-HH-9999", "Red")}, command.getArgs());
+        command.setTarget(parkingLot).execute();
+        parser.parse("park KA-01-BB-0001 Red").setTarget(parkingLot).execute();
+
+        command = parser.parse("registration_numbers_for_cars_with_colour Red");
+        assertEquals(Command.Verb.REGISTRATION_NUMBERS_FOR_CARS_WITH_COLOUR, command.getVerb());
+        assertEquals("KA-01-HH-9999, KA-01-BB-0001", command.setTarget(parkingLot).execute());
+        assertEquals("1", parser.parse("slot_numbers_for_cars_with_colour White").setTarget(parkingLot).execute());
+        assertEquals("2", parser.parse("slot_number_for_registration_number KA-01-HH-9999").setTarget(parkingLot)
+                .execute());
+        assertEquals(ParkingLot.NOT_FOUND, parser.parse("slot_number_for_registration_number MH-04-AY-1111")
+                .setTarget(parkingLot).execute());
+
+        // The car parked with a colour leaves by it's registration number alone.
+        assertEquals("Registration number KA-01-HH-9999 with Slot Number 2 is free with Charge 30",
+                parser.parse("leave KA-01-HH-9999 4").setTarget(parkingLot).execute());
+        assertEquals("3", parser.parse("slot_numbers_for_cars_with_colour Red").setTarget(parkingLot).execute());
+
+        BadCommandException badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("slot_numbers_for_cars_with_colour"));
+        assertEquals("'colour' - not a valid argument for the command: slot_numbers_for_cars_with_colour",
+                badCommandException.getMessage().split("\n")[0]);
+        assertThrows(BadCommandException.class, () -> parser.parse("slot_number_for_registration_number A B"));
+    }
+
+    @Test
+    void parkTheSameRegistrationNumberOnceWhateverTheColour() throws BadCommandException,
+            CommandOutputFormatException {
+        ParkingLot parkingLot = ParkingLot.create(6);
+        assertEquals("Allocated slot number: 1",
+                parser.parse("park KA-01-HH-1234 Red").setTarget(parkingLot).execute());
+        assertEquals("The car: KA-01-HH-1234 is already parked at slot: 1",
+                parser.parse("park KA-01-HH-1234 Blue").setTarget(parkingLot).execute());
+        assertEquals("The car: KA-01-HH-1234 is already parked at slot: 1",
+                parser.parse("park KA-01-HH-1234").setTarget(parkingLot).execute());
+        assertEquals("The car: KA-01-HH-1234 is already parked at slot: 1\nAllocated slot number: 2",
+                parser.parse("batch park KA-01-HH-1234 KA-01-HH-9999").setTarget(parkingLot).execute());
+        assertEquals(2, parkingLot.getNumOccupiedSlots());
+        assertEquals("1", parser.parse("slot_numbers_for_cars_with_colour Red").setTarget(parkingLot).execute());
+        assertEquals(ParkingLot.NOT_FOUND,
+                parser.parse("slot_numbers_for_cars_with_colour Blue").setTarget(parkingLot).execute());
+    }
+
+    @Test
+    void parseTheClassesOfTheSlotsAndOfTheCars() throws BadCommandException, CommandOutputFormatException {
+        Command<ParkingLot> command = parser.parse("create_parking_lot 4 ev 1 1 MOTORCYCLE 4 4");
+        assertEquals("Created parking lot with 4 slots", command.execute());
+        ParkingLot parkingLot = (ParkingLot) command.getResult();
+        assertEquals(VehicleClass.EV, parkingLot.getSlotClass(1));
+        assertEquals(VehicleClass.COMPACT, parkingLot.getSlotClass(2));
+        assertEquals(VehicleClass.MOTORCYCLE, parkingLot.getSlotClass(4));
+
+        command = parser.parse("park KA-01-HH-1234 Red ev");
+        assertArrayEquals(new Object[]{new Car("KA-01-HH-1234", "Red", VehicleClass.EV)}, command.getArgs());
+        assertEquals("Allocated slot number: 1", command.setTarget(parkingLot).execute());
+        // The lone token naming a class is the class of the car rather than it's colour.
+        command = parser.parse("park KA-01-HH-9999 motorcycle");
+        assertArrayEquals(new Object[]{new Car("KA-01-HH-9999", Car.DEFAULT_COLOR, VehicleClass.MOTORCYCLE)},
+                command.getArgs());
+        assertEquals("Allocated slot number: 4", command.setTarget(parkingLot).execute());
+        assertEquals("Allocated slot number: 2", parser.parse("park KA-01-BB-0001 Blue").setTarget(parkingLot)
+                .execute());
+        assertEquals("Sorry, no slot available for the ev car",
+                parser.parse("park KA-01-BB-0002 ev").setTarget(parkingLot).execute());
+
+        BadCommandException badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("park KA-01-HH-1234 Red truck"));
+        assertEquals("'truck' - not a valid argument for the command: park",
+                badCommandException.getMessage().split("\n")[0]);
+        badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("create_parking_lot 4 ev 1 5"));
+        assertEquals("'5' - not a valid argument for the command: create_parking_lot",
+                badCommandException.getMessage().split("\n")[0]);
+        badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("create_parking_lot 4 ev 1"));
+        assertEquals("'slot range' - not a valid argument for the command: create_parking_lot",
+                badCommandException.getMessage().split("\n")[0]);
+        assertThrows(BadCommandException.class, () -> parser.parse("create_parking_lot 4 truck 1 2"));
+        // The overlapping ranges fail once the parking lot is built.
+        assertEquals("Invalid slot range: 2-3 of the LARGE slots",
+                parser.parse("create_parking_lot 4 ev 1 2 large 2 3").execute());
+    }
+
+    @Test
+    void parseBatchOfParksAndLeaves() throws BadCommandException, CommandOutputFormatException, IOException {
+        ParkingLot parkingLot = ParkingLot.create(2);
+        Command<ParkingLot> command = parser.parse("batch park KA-01-HH-1234  KA-01-HH-9999 KA-01-BB-0001");
+        assertEquals(Command.Verb.BATCH, command.getVerb());
+        assertEquals("Allocated slot number: 1\nAllocated slot number: 2\nSorry, parking lot is full",
+                command.setTarget(parkingLot).execute());
+
+        command = parser.parse("batch leave KA-01-HH-1234 4 KA-01-BB-0001 KA-01-HH-9999 2");
+        assertArrayEquals(new long[]{4, -1, 2}, (long[]) command.getArgs()[2]);
+        assertEquals("Registration number KA-01-HH-1234 with Slot Number 1 is free with Charge 30\n" +
+                "Registration number KA-01-BB-0001 not found\n" +
+                "Registration number KA-01-HH-9999 with Slot Number 2 is free with Charge 10",
+                command.setTarget(parkingLot).execute());
+
+        // The parser reuses it's scratch across the batches, whatever their size.
+        StringBuilder output = new StringBuilder();
+        parser.parse("batch park KA-01-HH-1234 KA-01-HH-9999 KA-01-HH-1234").setTarget(parkingLot)
+                .executeAndAppend(output);
+        assertEquals("Allocated slot number: 1\nAllocated slot number: 2\n" +
+                "The car: KA-01-HH-1234 is already parked at slot: 1", output.toString());
+        assertEquals("Registration number KA-01-HH-9999 with Slot Number 2 is free with Charge 10",
+                parser.parse("batch leave KA-01-HH-9999 1").setTarget(parkingLot).execute());
+
+        BadCommandException badCommandException = assertThrows(BadCommandException.class,
+                () -> parser.parse("batch status"));
+        assertEquals("'status' - not a valid argument for the command: batch",
+                badCommandException.getMessage().split("\\n")[0]);
+        assertThrows(BadCommandException.class, () -> parser.parse("batch park"));
+        assertThrows(BadCommandException.class, () -> parser.parse("batch leave KA-01-HH-1234 -4"));
+    }
+}
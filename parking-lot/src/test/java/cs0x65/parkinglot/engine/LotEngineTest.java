@@ -0,0 +1,105 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LotEngineTest {
+    LotEngine engine = new LotEngine(4);
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void commandsAreAddressedToTheirLots() throws BadCommandException {
+        assertEquals("Created parking lot with 2 slots", engine.submit("@mall create_parking_lot 2").join());
+        assertEquals("Created parking lot with 1 slots", engine.submit("  @airport   create_parking_lot 1").join());
+        assertEquals("Created parking lot with 3 slots", engine.submit("create_parking_lot 3").join());
+        assertEquals("Allocated slot number: 1", engine.submit("@mall park KA-01-HH-1234").join());
+        assertEquals("Allocated slot number: 2", engine.submit("@mall park KA-01-HH-9999").join());
+        assertEquals("Allocated slot number: 1", engine.submit("@airport park KA-01-HH-9999").join());
+        assertEquals("Allocated slot number: 1", engine.submit("park KA-01-HH-9999").join());
+        assertEquals("Sorry, parking lot is full", engine.submit("@airport park KA-01-BB-0001").join());
+        assertEquals("Registration number KA-01-HH-1234 with Slot Number 1 is free with Charge 30",
+                engine.submit("@mall leave KA-01-HH-1234 4").join());
+        assertEquals("Slot No. Registration No.\n2        KA-01-HH-9999", engine.submit("@mall status").join());
+
+        assertEquals("Created parking lot with 2 slots", engine.submit("@garage create_parking_lot 2 ev 2 2").join());
+        assertEquals("Allocated slot number: 2", engine.submit("@garage park KA-01-HH-1234 ev").join());
+
+        assertEquals("Parking lot: station doesn't exist", engine.submit("@station park KA-01-HH-7777").join());
+        assertEquals("Parking lot: mall already exists", engine.submit("@mall create_parking_lot 3").join());
+        assertEquals(2, engine.getRegistry().get("mall").getSize());
+        assertEquals(3, engine.getRegistry().get(LotEngine.DEFAULT_LOT).getSize());
+        assertThrows(BadCommandException.class, () -> engine.submit("@mall fly KA-01-HH-1234"));
+    }
+
+    @Test
+    void commandsOfEachLotAreExecutedInOrderAcrossLanes() throws BadCommandException {
+        int lots = 16;
+        int cars = 500;
+        for (int lot = 0; lot < lots; lot++)
+            engine.submit("@lot-" + lot + " create_parking_lot " + cars);
+
+        List<CompletableFuture<String>> outputs = new ArrayList<>();
+        for (int car = 0; car < cars; car++) {
+            for (int lot = 0; lot < lots; lot++)
+                outputs.add(engine.submit("@lot-" + lot + " park KA-01-HH-" + car));
+        }
+        for (int i = 0; i < outputs.size(); i++)
+            assertEquals("Allocated slot number: " + (i / lots + 1), outputs.get(i).join());
+        for (int lot = 0; lot < lots; lot++)
+            assertEquals(cars, engine.getRegistry().get("lot-" + lot).getNumOccupiedSlots());
+    }
+
+    @Test
+    void actionsAreExecutedOnTheLaneOfTheLot() throws BadCommandException {
+        engine.submit("@mall create_parking_lot 2");
+        assertEquals(1, engine.execute("mall", parkingLot -> parkingLot.park(new Car("KA-01-HH-1234")))
+                .join().getSlot());
+        assertEquals(1, (int) engine.execute("mall", ParkingLot::getNumOccupiedSlots).join());
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> engine.execute("station", ParkingLot::getSize).join());
+        assertEquals("Parking lot: station doesn't exist", exception.getCause().getMessage());
+    }
+
+    @Test
+    void lotIsCreatedOnItsLane() throws BadCommandException {
+        try (LotEngine singleLane = new LotEngine(1)){
+            singleLane.submit("@blocker create_parking_lot 1").join();
+            CountDownLatch blocked = new CountDownLatch(1);
+            singleLane.execute("blocker", parkingLot -> {
+                try {
+                    return blocked.await(1, TimeUnit.MINUTES);
+                }catch (InterruptedException e){
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // The create waits for it's lane, and the park that follows it still finds the lot.
+            CompletableFuture<String> created = singleLane.submit("@mall create_parking_lot 2");
+            CompletableFuture<String> parked = singleLane.submit("@mall park KA-01-HH-1234");
+            CompletableFuture<String> duplicate = singleLane.submit("@mall create_parking_lot 3");
+            assertFalse(created.isDone());
+            assertNull(singleLane.getRegistry().get("mall"));
+            blocked.countDown();
+            assertEquals("Created parking lot with 2 slots", created.join());
+            assertEquals("Allocated slot number: 1", parked.join());
+            assertEquals("Parking lot: mall already exists", duplicate.join());
+            assertEquals(2, singleLane.getRegistry().get("mall").getSize());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LotRegistryTest {
+    LotRegistry registry = new LotRegistry();
+
+    @Test
+    void lotsAreRegisteredByName() {
+        ParkingLot mall = registry.create(new ParkingLot.Builder(3).withName("mall"));
+        ParkingLot airport = registry.create(new ParkingLot.Builder(5).withName("airport"));
+        assertSame(mall, registry.get("mall"));
+        assertSame(airport, registry.get("airport"));
+        assertNull(registry.get("station"));
+        assertEquals(2, registry.size());
+        assertTrue(registry.names().contains("mall"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> registry.create(new ParkingLot.Builder(4).withName("mall")));
+        assertEquals("Parking lot: mall already exists", exception.getMessage());
+        assertSame(mall, registry.get("mall"));
+
+        assertSame(mall, registry.remove("mall"));
+        assertNull(registry.get("mall"));
+        assertEquals(1, registry.size());
+    }
+}
@@ -0,0 +1,94 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.CommandOutputFormatException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayBatchTest {
+    LotEngine engine = new LotEngine(4);
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void replaysTheSameOutputsAsExecutingTheCommandsOneByOne() throws IOException, BadCommandException,
+            CommandOutputFormatException {
+        List<String> commands = new ArrayList<>();
+        Random random = new Random(3);
+        for (int lot = 0; lot < 20; lot++)
+            commands.add("@lot-" + lot + " create_parking_lot 50");
+        for (int i = 0; i < 20000; i++) {
+            String lot = "@lot-" + random.nextInt(20);
+            String car = "KA-01-HH-" + random.nextInt(80);
+            int r = random.nextInt(10);
+            commands.add(r < 5 ? lot + " park " + car : r < 9 ? lot + " leave " + car + " " + random.nextInt(5) :
+                    lot + " status");
+        }
+
+        List<String> expected = new ArrayList<>();
+        try (LotEngine oneByOne = new LotEngine(1)){
+            for (String command : commands)
+                expected.add(oneByOne.submit(command).join());
+        }
+
+        List<String> outputs = new ArrayList<>();
+        ReplayBatch batch = engine.newReplayBatch(777);
+        for (String command : commands) {
+            if (batch.add(command))
+                batch.execute(outputs::add);
+        }
+        batch.execute(outputs::add);
+        assertEquals(0, batch.size());
+        assertEquals(expected, outputs);
+    }
+
+    @Test
+    void commandsAfterTheInvalidOneAreDropped() throws IOException, BadCommandException,
+            CommandOutputFormatException {
+        ReplayBatch batch = engine.newReplayBatch(100);
+        batch.add("@mall create_parking_lot 2");
+        batch.add("@airport create_parking_lot 2");
+        batch.add("@mall park KA-01-HH-1234");
+        batch.add("@airport fly KA-01-HH-1234");
+        batch.add("@mall park KA-01-HH-9999");
+        batch.add("@airport park KA-01-HH-9999");
+        List<String> outputs = new ArrayList<>();
+        assertThrows(BadCommandException.class, () -> batch.execute(outputs::add));
+        assertEquals(3, outputs.size());
+        assertEquals("Allocated slot number: 1", outputs.get(2));
+        assertEquals(1, engine.getRegistry().get("mall").getNumOccupiedSlots());
+        assertEquals(0, engine.getRegistry().get("airport").getNumOccupiedSlots());
+
+        batch.add("@mall status");
+        batch.execute(outputs::add);
+        assertEquals("Slot No. Registration No.\n1        KA-01-HH-1234", outputs.get(3));
+    }
+
+    @Test
+    void linesAreCopiedSoTheCallerCanReuseTheirText() throws IOException, BadCommandException,
+            CommandOutputFormatException {
+        ReplayBatch batch = engine.newReplayBatch(100);
+        StringBuilder line = new StringBuilder();
+        for (String command : new String[]{"@mall create_parking_lot 2", "@mall park KA-01-HH-1234",
+                "@mall park KA-01-HH-9999", "@mall status"}) {
+            line.setLength(0);
+            batch.add(line.append(command));
+        }
+        line.setLength(0);
+        line.append("@mall fly KA-01-HH-1234");
+        List<String> outputs = new ArrayList<>();
+        batch.execute(outputs::add);
+        assertEquals(4, outputs.size());
+        assertEquals("Slot No. Registration No.\n1        KA-01-HH-1234\n2        KA-01-HH-9999", outputs.get(3));
+    }
+}
@@ -0,0 +1,166 @@
+package cs0x65.parkinglot.engine;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.io.BatchedOutputWriter;
+import cs0x65.parkinglot.io.BufferedCommandReader;
+import cs0x65.parkinglot.io.CommandReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionExecutorTest {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    LotEngine engine = new LotEngine(2);
+    SessionExecutor executor = new SessionExecutor(engine);
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+        engine.close();
+    }
+
+    @Test
+    void sessionsShareTheLots() throws BadCommandException, UnsupportedEncodingException {
+        int sessions = 500;
+        int carsPerSession = 8;
+        engine.submit("@mall create_parking_lot " + sessions * carsPerSession).join();
+
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<CompletableFuture<Long>> numCommands = new ArrayList<>();
+        for (int s = 0; s < sessions; s++) {
+            StringBuilder commands = new StringBuilder();
+            for (int c = 0; c < carsPerSession; c++)
+                commands.append("@mall park KA-").append(s).append("-HH-").append(c).append('\n');
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            outputs.add(output);
+            numCommands.add(executor.open(new BufferedCommandReader(new StringReader(commands.toString())),
+                    new BatchedOutputWriter(output, true)));
+        }
+        for (CompletableFuture<Long> sessionCommands : numCommands)
+            assertEquals(carsPerSession, (long) sessionCommands.join());
+
+        assertEquals(sessions * carsPerSession, engine.getRegistry().get("mall").getNumOccupiedSlots());
+        for (ByteArrayOutputStream output : outputs) {
+            String[] lines = output.toString("UTF-8").split(NEW_LINE);
+            assertEquals(carsPerSession, lines.length);
+            for (String line : lines)
+                assertTrue(line.startsWith("Allocated slot number: "), line);
+        }
+        assertEquals(0, executor.getNumActiveSessions());
+    }
+
+    @Test
+    void sessionCarriesOnAfterAnInvalidCommand() throws UnsupportedEncodingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String commands = "create_parking_lot 1\n\nfly KA-01-HH-1234\npark KA-01-HH-1234\n";
+        assertEquals(3, (long) executor.open(new BufferedCommandReader(new StringReader(commands)),
+                new BatchedOutputWriter(output, true)).join());
+
+        String[] lines = output.toString("UTF-8").split(NEW_LINE);
+        assertEquals("Created parking lot with 1 slots", lines[0]);
+        assertTrue(lines[1].startsWith("'fly' is not a supported command!"));
+        assertEquals("Allocated slot number: 1", lines[lines.length - 1]);
+    }
+
+    @Test
+    void sessionCarriesOnAfterACommandFails() throws UnsupportedEncodingException {
+        LotEngine failingEngine = new LotEngine(1) {
+            @Override
+            public CompletableFuture<String> submit(CharSequence commandLine) throws BadCommandException {
+                if (!commandLine.toString().contains("KA-01-HH-0000"))
+                    return super.submit(commandLine);
+                CompletableFuture<String> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("Lane failed"));
+                return failed;
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String commands = "create_parking_lot 2\npark KA-01-HH-0000\npark KA-01-HH-1234\n";
+        try (SessionExecutor failingExecutor = new SessionExecutor(failingEngine)){
+            assertEquals(3, (long) failingExecutor.open(new BufferedCommandReader(new StringReader(commands)),
+                    new BatchedOutputWriter(output, true)).join());
+        }finally {
+            failingEngine.close();
+        }
+
+        String[] lines = output.toString("UTF-8").split(NEW_LINE);
+        assertEquals("Lane failed", lines[1]);
+        assertEquals("Allocated slot number: 1", lines[2]);
+    }
+
+    @Test
+    void closeWaitsForTheActiveSessions() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> numCommands = executor.open(reader(() -> {
+            reading.countDown();
+            try {
+                release.await();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }), new BatchedOutputWriter(new ByteArrayOutputStream(), true));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        Thread closing = new Thread(executor::close);
+        closing.start();
+        closing.join(200);
+        assertTrue(closing.isAlive());
+        assertThrows(IllegalStateException.class, () -> executor.open(reader(() -> null),
+                new BatchedOutputWriter(new ByteArrayOutputStream(), true)));
+
+        release.countDown();
+        closing.join(10000);
+        assertFalse(closing.isAlive());
+        assertEquals(0, (long) numCommands.join());
+        assertEquals(0, executor.getNumActiveSessions());
+    }
+
+    @Test
+    void sessionsRunOnVirtualThreadsFromJava21() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        int feature = Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+        assertEquals(feature >= 21, executor.isVirtual());
+
+        AtomicReference<Thread> sessionThread = new AtomicReference<>();
+        executor.open(reader(() -> {
+            sessionThread.set(Thread.currentThread());
+            return null;
+        }), new BatchedOutputWriter(new ByteArrayOutputStream(), true)).join();
+        if (feature >= 21)
+            assertEquals(true, Thread.class.getMethod("isVirtual").invoke(sessionThread.get()));
+        else
+            assertTrue(sessionThread.get().isDaemon());
+    }
+
+    private interface Commands {
+        CharSequence next() throws IOException;
+    }
+
+    private static CommandReader reader(Commands commands) {
+        return new CommandReader() {
+            @Override
+            public CharSequence readCommand() throws IOException {
+                return commands.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
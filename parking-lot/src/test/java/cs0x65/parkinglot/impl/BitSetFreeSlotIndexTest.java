@@ -0,0 +1,129 @@
+package cs0x65.parkinglot.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitSetFreeSlotIndexTest {
+
+    @Test
+    void allocatesSlotsNearestToTheEntryFirst(){
+        FreeSlotIndex index = new BitSetFreeSlotIndex(3);
+        assertEquals(1, index.nearest());
+        assertEquals(1, index.allocate());
+        assertEquals(2, index.allocate());
+        assertEquals(3, index.allocate());
+        assertEquals(-1, index.nearest());
+        assertEquals(-1, index.allocate());
+    }
+
+    @Test
+    void neverHandsOutSlotsBeyondTheSize(){
+        for (int size : new int[]{0, 1, 63, 64, 65, 4096, 4097, 262145}) {
+            BitSetFreeSlotIndex index = new BitSetFreeSlotIndex(size);
+            for (int i = 1; i <= size; i++) {
+                assertEquals(i, index.allocate());
+            }
+            assertEquals(-1, index.allocate(), "size: " + size);
+            assertFalse(index.isOccupied(size + 1));
+        }
+    }
+
+    @Test
+    void releasedSlotIsReusedBeforeFartherOnes(){
+        BitSetFreeSlotIndex index = new BitSetFreeSlotIndex(5000);
+        for (int i = 0; i < 5000; i++) {
+            index.allocate();
+        }
+        index.release(4097);
+        index.release(65);
+        assertFalse(index.isOccupied(65));
+        assertEquals(65, index.allocate());
+        assertTrue(index.isOccupied(65));
+        assertEquals(4097, index.allocate());
+        assertEquals(-1, index.allocate());
+    }
+
+    @Test
+    void releaseOfUnallocatedSlotThrowsException(){
+        FreeSlotIndex index = new BitSetFreeSlotIndex(2);
+        index.allocate();
+        assertThrows(IllegalArgumentException.class, () -> index.release(2));
+        assertThrows(IllegalArgumentException.class, () -> index.release(3));
+    }
+
+    @Test
+    void matchesLinearScanUnderRandomParkAndLeave(){
+        int size = 10000;
+        FreeSlotIndex index = new BitSetFreeSlotIndex(size);
+        TreeSet<Integer> free = new TreeSet<>();
+        TreeSet<Integer> occupied = new TreeSet<>();
+        for (int i = 1; i <= size; i++) {
+            free.add(i);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            if (!free.isEmpty() && (occupied.isEmpty() || random.nextInt(3) > 0)){
+                int expected = free.pollFirst();
+                assertEquals(expected, index.allocate());
+                occupied.add(expected);
+            }else {
+                Integer slot = occupied.ceiling(random.nextInt(size) + 1);
+                if (slot == null)
+                    slot = occupied.first();
+                occupied.remove(slot);
+                free.add(slot);
+                index.release(slot);
+            }
+            assertEquals(free.isEmpty() ? -1 : free.first(), index.nearest());
+        }
+    }
+
+    @Test
+    void allocatesTheGivenSlot(){
+        FreeSlotIndex index = new BitSetFreeSlotIndex(200);
+        assertTrue(index.allocate(70));
+        assertFalse(index.allocate(70));
+        assertTrue(index.allocate(2));
+        assertFalse(index.allocate(0));
+        assertFalse(index.allocate(201));
+        assertEquals(1, index.allocate());
+        assertEquals(3, index.allocate());
+
+        index.release(70);
+        assertTrue(index.allocate(70));
+        for (int slot = 4; slot <= 200; slot++) {
+            if (slot != 70)
+                assertEquals(slot, index.allocate());
+        }
+        assertEquals(-1, index.allocate());
+    }
+
+    @Test
+    void allocatesTheNearestSlotsInOneGo(){
+        int size = 10_000;
+        BitSetFreeSlotIndex index = new BitSetFreeSlotIndex(size);
+        FreeSlotIndex reference = new MinHeapFreeSlotIndex(size);
+        Random random = new Random(5);
+        int[] slots = new int[500];
+        int[] expected = new int[500];
+        for (int i = 0; i < 200; i++) {
+            int count = random.nextInt(slots.length);
+            int claimed = index.allocate(slots, count);
+            assertEquals(reference.allocate(expected, count), claimed);
+            for (int j = 0; j < claimed; j++)
+                assertEquals(expected[j], slots[j]);
+            for (int j = 0; j < claimed; j++) {
+                if (random.nextInt(3) == 0){
+                    index.release(slots[j]);
+                    reference.release(slots[j]);
+                }
+            }
+            assertEquals(reference.nearest(), index.nearest());
+        }
+        assertEquals(-1, index.nearest());
+    }
+}
@@ -0,0 +1,168 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentParkingLotTest {
+    private static final int GATES = 8;
+
+    @Test
+    void buildConcurrentThrowsExceptionWhenTheSlotClassesOrTheFreeSlotIndexAreConfigured(){
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> new ParkingLot.Builder(3)
+                .withSlotClass(VehicleClass.EV, 1, 1).buildConcurrent());
+        assertEquals("The concurrent parking lot can't be built with the slot classes", exception.getMessage());
+        exception = assertThrows(IllegalStateException.class, () -> new ParkingLot.Builder(3)
+                .withFreeSlotIndex(BitSetFreeSlotIndex::new).buildConcurrent());
+        assertEquals("The concurrent parking lot can't be built with a free slot index", exception.getMessage());
+    }
+
+    @Test
+    void behavesLikeParkingLotFromSingleThread(){
+        ConcurrentParkingLot parkingLot = new ParkingLot.Builder(3).buildConcurrent();
+        Car car = new Car("MH-12-AB-1234");
+        assertEquals(1, parkingLot.park(car).getSlot());
+        assertEquals(2, parkingLot.park(new Car("MH-13-CD-1234")).getSlot());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> parkingLot.park(new Car("MH-12-AB-1234")));
+        assertEquals("The car: MH-12-AB-1234 is already parked at slot: 1", exception.getMessage());
+
+        Ticket ticket = parkingLot.leave(car, 4);
+        assertEquals(30, ticket.getCharges());
+        assertEquals(1, parkingLot.getNearestAvailableSlotIndex());
+        assertEquals(1, parkingLot.park(new Car("MH-14-E-1234")).getSlot());
+        assertEquals(3, parkingLot.park(new Car("MH-15-FG-1234")).getSlot());
+
+        IllegalStateException full = assertThrows(IllegalStateException.class,
+                () -> parkingLot.park(new Car("MH-16-H-1234")));
+        assertEquals("Sorry, parking lot is full", full.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> parkingLot.leave(car));
+        assertEquals("Registration number MH-12-AB-1234 not found", exception.getMessage());
+
+        String[] rows = parkingLot.status(true).split("\n");
+        assertEquals("Slot No. Registration No.", rows[0]);
+        assertEquals("1        MH-14-E-1234", rows[1]);
+        assertEquals("2        MH-13-CD-1234", rows[2]);
+        assertEquals("3        MH-15-FG-1234", rows[3]);
+    }
+
+    @Test
+    void slotIsNeverAllocatedTwiceUnderConcurrentParkAndLeave() throws Exception {
+        int size = 200;
+        ConcurrentParkingLot parkingLot = new ParkingLot.Builder(size).buildConcurrent();
+        AtomicIntegerArray holders = new AtomicIntegerArray(size + 1);
+        AtomicInteger failures = new AtomicInteger();
+
+        runOnGates(gate -> {
+            Random random = new Random(gate);
+            List<Ticket> parked = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                if (parked.isEmpty() || random.nextBoolean()){
+                    try {
+                        Ticket ticket = parkingLot.park(new Car("G" + gate + "-" + i));
+                        if (holders.incrementAndGet(ticket.getSlot()) != 1)
+                            failures.incrementAndGet();
+                        parked.add(ticket);
+                    }catch (IllegalStateException e){
+                        // lot is full, try to leave next time round
+                    }
+                }else {
+                    Ticket ticket = parked.remove(random.nextInt(parked.size()));
+                    // Give up the slot before it's vacated, as it may be handed out to another gate right after.
+                    holders.decrementAndGet(ticket.getSlot());
+                    parkingLot.leave(ticket.getCar(), 1);
+                }
+            }
+        });
+
+        assertEquals(0, failures.get());
+        int occupied = 0;
+        for (int slot = 1; slot <= size; slot++) {
+            assertTrue(holders.get(slot) == 0 || holders.get(slot) == 1);
+            occupied += holders.get(slot);
+        }
+        assertEquals(occupied, parkingLot.getNumOccupiedSlots());
+    }
+
+    @Test
+    void capacityIsNeverExceededUnderConcurrentParks() throws Exception {
+        int size = 1000;
+        ConcurrentParkingLot parkingLot = new ParkingLot.Builder(size).buildConcurrent();
+        AtomicIntegerArray holders = new AtomicIntegerArray(size + 1);
+        AtomicInteger parked = new AtomicInteger();
+
+        runOnGates(gate -> {
+            for (int i = 0; i < size; i++) {
+                try {
+                    holders.incrementAndGet(parkingLot.park(new Car("G" + gate + "-" + i)).getSlot());
+                    parked.incrementAndGet();
+                }catch (IllegalStateException e){
+                    // lot is full
+                }
+            }
+        });
+
+        assertEquals(size, parked.get());
+        assertEquals(size, parkingLot.getNumOccupiedSlots());
+        assertEquals(-1, parkingLot.getNearestAvailableSlotIndex());
+        for (int slot = 1; slot <= size; slot++) {
+            assertEquals(1, holders.get(slot));
+        }
+    }
+
+    @Test
+    void sameCarIsParkedOnlyOnceWhenParkedFromManyGates() throws Exception {
+        ConcurrentParkingLot parkingLot = new ParkingLot.Builder(100).buildConcurrent();
+        for (int round = 0; round < 200; round++) {
+            Car car = new Car("MH-12-AB-" + round);
+            AtomicInteger parked = new AtomicInteger();
+            runOnGates(gate -> {
+                try {
+                    parkingLot.park(car);
+                    parked.incrementAndGet();
+                }catch (IllegalArgumentException e){
+                    // already parked by another gate
+                }
+            });
+            assertEquals(1, parked.get());
+            parkingLot.leave(car, 1);
+        }
+        assertEquals(0, parkingLot.getNumOccupiedSlots());
+    }
+
+    private interface Gate {
+        void run(int gate);
+    }
+
+    private static void runOnGates(Gate gate) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(GATES);
+        CyclicBarrier barrier = new CyclicBarrier(GATES);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < GATES; i++) {
+                final int id = i;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    gate.run(id);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cs0x65.parkinglot.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHeapFreeSlotIndexTest {
+
+    @Test
+    void allocatesSlotsNearestToTheEntryFirst(){
+        FreeSlotIndex index = new MinHeapFreeSlotIndex(3);
+        assertEquals(1, index.nearest());
+        assertEquals(1, index.allocate());
+        assertEquals(2, index.allocate());
+        assertEquals(3, index.allocate());
+        assertEquals(-1, index.nearest());
+        assertEquals(-1, index.allocate());
+    }
+
+    @Test
+    void releasedSlotIsReusedBeforeFartherOnes(){
+        FreeSlotIndex index = new MinHeapFreeSlotIndex(6);
+        for (int i = 0; i < 5; i++) {
+            index.allocate();
+        }
+        index.release(4);
+        index.release(2);
+        assertEquals(2, index.nearest());
+        assertEquals(2, index.allocate());
+        assertEquals(4, index.allocate());
+        assertEquals(6, index.allocate());
+        assertEquals(-1, index.allocate());
+    }
+
+    @Test
+    void releaseOfUnallocatedSlotThrowsException(){
+        FreeSlotIndex index = new MinHeapFreeSlotIndex(2);
+        index.allocate();
+        assertThrows(IllegalArgumentException.class, () -> index.release(2));
+        assertThrows(IllegalArgumentException.class, () -> index.release(0));
+    }
+
+    @Test
+    void matchesLinearScanUnderRandomParkAndLeave(){
+        int size = 500;
+        FreeSlotIndex index = new MinHeapFreeSlotIndex(size);
+        TreeSet<Integer> free = new TreeSet<>();
+        TreeSet<Integer> occupied = new TreeSet<>();
+        for (int i = 1; i <= size; i++) {
+            free.add(i);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            if (!free.isEmpty() && (occupied.isEmpty() || random.nextInt(3) > 0)){
+                int expected = free.pollFirst();
+                assertEquals(expected, index.allocate());
+                occupied.add(expected);
+            }else {
+                Integer slot = occupied.ceiling(random.nextInt(size) + 1);
+                if (slot == null)
+                    slot = occupied.first();
+                occupied.remove(slot);
+                free.add(slot);
+                index.release(slot);
+            }
+            assertEquals(free.isEmpty() ? -1 : free.first(), index.nearest());
+        }
+    }
+
+    @Test
+    void allocatesTheGivenSlot(){
+        FreeSlotIndex index = new MinHeapFreeSlotIndex(200);
+        assertTrue(index.allocate(70));
+        assertFalse(index.allocate(70));
+        assertTrue(index.allocate(2));
+        assertFalse(index.allocate(0));
+        assertFalse(index.allocate(201));
+        assertEquals(1, index.allocate());
+        assertEquals(3, index.allocate());
+
+        index.release(70);
+        assertTrue(index.allocate(70));
+        for (int slot = 4; slot <= 200; slot++) {
+            if (slot != 70)
+                assertEquals(slot, index.allocate());
+        }
+        assertEquals(-1, index.allocate());
+    }
+}
@@ -2,9 +2,20 @@ package cs0x65.parkinglot.impl;
 
 import cs0x65.parkinglot.model.Car;
 import cs0x65.parkinglot.model.Ticket;
+import cs0x65.parkinglot.model.VehicleClass;
+import cs0x65.parkinglot.tariff.Tariff;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
@@ -206,4 +217,240 @@ class ParkingLotTest {
         status = parkingLot.status(false);
         assertEquals("2        MH-13-AC-9999", status.split("\n")[1]);
     }
-}
\ No newline at end of file
+
+    @Test
+    void statusIsStreamedForOccupiedSlotsOnly() throws IOException {
+        int size = 10000;
+        parkingLot = new ParkingLot.Builder(size).build();
+        Car[] cars = new Car[size];
+        for (int i = 0; i < size; i++) {
+            cars[i] = new Car("MH-12-AB-" + i);
+            parkingLot.park(cars[i]);
+        }
+        // Leaves a few slots occupied, including the ones either side of the word and page boundaries.
+        int[] occupied = {1, 64, 65, 4096, 4097, 8192, 10000};
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(occupied, i + 1) < 0)
+                parkingLot.leave(cars[i], 1);
+        }
+
+        StringBuilder status = new StringBuilder();
+        parkingLot.status(false, status);
+        assertEquals("Slot No. Registration No.\n" +
+                "1        MH-12-AB-0\n" +
+                "64       MH-12-AB-63\n" +
+                "65       MH-12-AB-64\n" +
+                "4096     MH-12-AB-4095\n" +
+                "4097     MH-12-AB-4096\n" +
+                "8192     MH-12-AB-8191\n" +
+                "10000    MH-12-AB-9999", status.toString());
+        assertEquals(size + 1, parkingLot.status(true).split("\n").length);
+    }
+
+    @Test
+    void listenersAreNotifiedOfParksAndLeaves() {
+        parkingLot = new ParkingLot.Builder(2).build();
+        List<String> events = new ArrayList<>();
+        parkingLot.addListener(new ParkingLotListener() {
+            @Override
+            public void onPark(Ticket ticket) {
+                events.add("park " + ticket.getCar().getRegNo() + " " + ticket.getSlot());
+            }
+
+            @Override
+            public void onLeave(Ticket ticket) {
+                events.add("leave " + ticket.getCar().getRegNo() + " " + ticket.getSlot() + " " + ticket.getCharges());
+            }
+        });
+        Car car = new Car("MH-12-AB-1234");
+        parkingLot.park(car);
+        parkingLot.park(new Car("MH-13-AC-9999"));
+        parkingLot.leave(car, 4);
+        assertThrows(IllegalArgumentException.class, () -> parkingLot.leave(car, 4));
+        assertEquals(Arrays.asList("park MH-12-AB-1234 1", "park MH-13-AC-9999 2", "leave MH-12-AB-1234 1 30"), events);
+    }
+
+    @Test
+    void restoreAndReleaseRebuildTheStateWithoutCharging() {
+        parkingLot = new ParkingLot.Builder(5).build();
+        Car car = new Car("MH-12-AB-1234");
+        Ticket ticket = parkingLot.restore(new Ticket(4, car, 1000L));
+        assertEquals(4, ticket.getSlot());
+        assertEquals(1000L, ticket.getParkedAt());
+        assertEquals(1, parkingLot.getNumOccupiedSlots());
+        assertEquals(1, parkingLot.getNearestAvailableSlotIndex());
+
+        IllegalStateException occupied = assertThrows(IllegalStateException.class,
+                () -> parkingLot.restore(new Ticket(4, new Car("MH-13-AC-9999"), 0L)));
+        assertEquals("Slot: 4 isn't available to restore car: MH-13-AC-9999", occupied.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> parkingLot.restore(new Ticket(2, car, 0L)));
+
+        assertEquals(1, parkingLot.park(new Car("MH-14-E-1234")).getSlot());
+        ticket = parkingLot.release(car);
+        assertEquals(4, ticket.getSlot());
+        assertEquals(0, ticket.getCharges());
+        assertEquals(1, parkingLot.getNumOccupiedSlots());
+        assertThrows(IllegalArgumentException.class, () -> parkingLot.release(car));
+    }
+
+    @Test
+    void snapshotIsUnaffectedByTheSubsequentParksAndLeaves() {
+        // Spans 3 pages of the slots.
+        parkingLot = new ParkingLot.Builder(10000).withName("Mall").withInitialDurationRate(15).build();
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < 9000; i++) {
+            cars.add(new Car("KA-01-HH-" + i));
+            parkingLot.park(cars.get(i));
+        }
+        for (int i = 0; i < 9000; i += 2)
+            parkingLot.leave(cars.get(i), 1);
+
+        ParkingLotSnapshot snapshot = parkingLot.snapshot();
+        String status = parkingLot.status(false);
+        // Empties the 1st page, writes to the 2nd one and allocates the 3rd one afresh.
+        for (int i = 1; i < 4096; i += 2)
+            parkingLot.leave(cars.get(i), 1);
+        parkingLot.park(new Car("MH-12-AB-1234"));
+        parkingLot.leave(cars.get(4097), 1);
+        for (int i = 0; i < 2000; i++)
+            parkingLot.park(new Car("MH-13-AC-" + i));
+
+        assertEquals(10000, snapshot.getSize());
+        assertEquals("Mall", snapshot.getName());
+        assertEquals(15, snapshot.getInitialDurationRate());
+        assertEquals(4500, snapshot.getNumOccupiedSlots());
+        assertNull(snapshot.getTicket(1));
+        assertEquals("KA-01-HH-1", snapshot.getTicket(2).getCar().getRegNo());
+        assertEquals(-1, snapshot.nextOccupied(9001));
+        StringBuilder snapshotStatus = new StringBuilder("Slot No. Registration No.");
+        int numTickets = 0;
+        for (int slot = snapshot.nextOccupied(1); slot != -1; slot = snapshot.nextOccupied(slot + 1), numTickets++)
+            snapshotStatus.append(String.format("\n%-8d %s", slot, snapshot.getTicket(slot).getCar().getRegNo()));
+        assertEquals(4500, numTickets);
+        assertEquals(status, snapshotStatus.toString());
+        assertEquals("Slot No. Registration No.\n1        MH-12-AB-1234",
+                parkingLot.status(false).substring(0, 48));
+    }
+
+    @Test
+    void parksTheCarsAtTheSlotsOfTheirClass() {
+        parkingLot = new ParkingLot.Builder(6)
+                .withSlotClass(VehicleClass.EV, 1, 1)
+                .withSlotClass(VehicleClass.MOTORCYCLE, 2, 3)
+                .withSlotClass(VehicleClass.LARGE, 6, 6)
+                .build();
+        assertEquals(VehicleClass.COMPACT, parkingLot.getSlotClass(4));
+        assertEquals(2, parkingLot.park(new Car("MH-12-AB-0001", "Black", VehicleClass.MOTORCYCLE)).getSlot());
+        assertEquals(4, parkingLot.park(new Car("MH-12-AB-0002")).getSlot());
+        assertEquals(1, parkingLot.park(new Car("MH-12-AB-0003", "Blue", VehicleClass.EV)).getSlot());
+        assertEquals(5, parkingLot.park(new Car("MH-12-AB-0004")).getSlot());
+        // The compact slots are full, so the compact car is upsized to the large slot.
+        assertEquals(6, parkingLot.park(new Car("MH-12-AB-0005")).getSlot());
+        assertThrows(IllegalStateException.class, () -> parkingLot.park(new Car("MH-12-AB-0006")));
+        assertEquals(5, parkingLot.getNumOccupiedSlots());
+        assertEquals(3, parkingLot.park(new Car("MH-12-AB-0007", "Red", VehicleClass.MOTORCYCLE)).getSlot());
+
+        parkingLot.leave(new Car("MH-12-AB-0002"));
+        assertEquals(4, parkingLot.getNearestAvailableSlotIndex());
+        assertEquals(4, parkingLot.park(new Car("MH-12-AB-0006")).getSlot());
+    }
+
+    @Test
+    void chargesTheCarsByTheTariffOfTheirClass() {
+        Tariff motorcycles = new Tariff.Builder(2).build();
+        // The cap applies per calendar day, so the days of the tariff start at the current hour for the 12 hours of
+        // the stay to fall within a day whatever the time the test runs at.
+        int hour = LocalTime.now(ZoneOffset.UTC).getHour();
+        ZoneOffset dayStartsNow = ZoneOffset.ofHours(hour <= 18 ? -hour : 24 - hour);
+        parkingLot = new ParkingLot.Builder(3)
+                .withTariff(new Tariff.Builder(15).withDailyCap(100).withZoneOffset(dayStartsNow).build())
+                .withTariff(VehicleClass.MOTORCYCLE, motorcycles)
+                .withTariff(VehicleClass.LARGE, null)
+                .build();
+        assertSame(motorcycles, parkingLot.getTariff(VehicleClass.MOTORCYCLE));
+        Car motorcycle = new Car("MH-12-AB-0001", "Black", VehicleClass.MOTORCYCLE);
+        Car large = new Car("MH-12-AB-0002", "Black", VehicleClass.LARGE);
+        Car compact = new Car("MH-12-AB-0003");
+        parkingLot.park(motorcycle);
+        parkingLot.park(large);
+        parkingLot.park(compact);
+
+        assertEquals(2 * 5, parkingLot.leave(motorcycle, 5).getCharges());
+        // The large cars are charged by the rates, 10 for the first 2 hours and 10 for each subsequent hour.
+        assertEquals(40, parkingLot.leave(large, 5).getCharges());
+        assertEquals(100, parkingLot.leave(compact, 12).getCharges(), "12 hours capped within a day at most");
+    }
+
+    @Test
+    void parksAndLeavesTheCarsInBatches() {
+        parkingLot = ParkingLot.create(5);
+        List<Ticket> notified = new ArrayList<>();
+        parkingLot.addListener(new ParkingLotListener() {
+            @Override
+            public void onPark(Ticket ticket) {
+                notified.add(ticket);
+            }
+
+            @Override
+            public void onLeave(Ticket ticket) {
+            }
+        });
+        parkingLot.park(new Car("MH-12-AB-0002"));
+        parkingLot.leave(parkingLot.park(new Car("MH-12-AB-0009")).getCar());
+
+        Car[] cars = {new Car("MH-12-AB-0001"), new Car("MH-12-AB-0002"), new Car("MH-12-AB-0003"),
+                new Car("MH-12-AB-0001"), new Car("MH-12-AB-0004"), new Car("MH-12-AB-0005"), new Car("MH-12-AB-0006")};
+        Ticket[] tickets = new Ticket[cars.length];
+        RuntimeException[] failures = new RuntimeException[cars.length];
+        assertEquals(4, parkingLot.parkAll(cars, cars.length, tickets, failures));
+        assertEquals(2, tickets[0].getSlot());
+        assertEquals("The car: MH-12-AB-0002 is already parked at slot: 1", failures[1].getMessage());
+        assertEquals(3, tickets[2].getSlot());
+        assertEquals("The car: MH-12-AB-0001 is already parked at slot: 2", failures[3].getMessage());
+        assertEquals(5, tickets[5].getSlot());
+        assertNull(tickets[6]);
+        assertEquals("Sorry, parking lot is full", failures[6].getMessage());
+        assertEquals(5, parkingLot.getNumOccupiedSlots());
+        assertEquals(2 + 4, notified.size());
+
+        long[] durations = {4, -1};
+        Car[] leaving = {new Car("MH-12-AB-0003"), new Car("MH-12-AB-0007")};
+        assertEquals(1, parkingLot.leaveAll(leaving, durations, leaving.length, tickets, failures));
+        assertEquals(30, tickets[0].getCharges());
+        assertNull(failures[0]);
+        assertEquals("Registration number MH-12-AB-0007 not found", failures[1].getMessage());
+
+        // The slots claimed for the cars already parked are handed back, nearest first.
+        Car[] more = {new Car("MH-12-AB-0005"), new Car("MH-12-AB-0007")};
+        assertEquals(1, parkingLot.parkAll(more, more.length, tickets, null));
+        assertEquals(3, tickets[1].getSlot());
+        assertEquals(-1, parkingLot.getNearestAvailableSlotIndex());
+    }
+
+    @Test
+    void answersTheQueriesFromTheIndexes() throws IOException {
+        parkingLot = ParkingLot.create(100_000);
+        for (int slot = 1; slot <= 6; slot++)
+            parkingLot.park(new Car("KA-01-HH-000" + slot, slot % 2 == 0 ? "Red" : "White"));
+        Car far = new Car("KA-01-HH-9999", "Red");
+        parkingLot.restore(new Ticket(99_999, far, 0));
+
+        assertEquals("KA-01-HH-0002, KA-01-HH-0004, KA-01-HH-0006, KA-01-HH-9999",
+                parkingLot.registrationNumbersWithColor("Red"));
+        assertEquals("1, 3, 5", parkingLot.slotNumbersWithColor("White"));
+        assertEquals(ParkingLot.NOT_FOUND, parkingLot.slotNumbersWithColor("Blue"));
+        assertEquals(99_999, parkingLot.getSlotNumber("KA-01-HH-9999"));
+        assertEquals(-1, parkingLot.getSlotNumber("KA-01-HH-0007"));
+
+        parkingLot.leave(new Car("KA-01-HH-0004", "Red"));
+        parkingLot.release(far);
+        // The leave finds the car by it's registration number alone, and hands out the ticket of the car found.
+        assertEquals(new Car("KA-01-HH-0002", "Red"), parkingLot.leave(new Car("KA-01-HH-0002")).getCar());
+        parkingLot.leave(new Car("KA-01-HH-0006", "Red"));
+        StringBuilder out = new StringBuilder();
+        parkingLot.slotNumbersWithColor("Red", out);
+        assertEquals(ParkingLot.NOT_FOUND, out.toString());
+        assertNull(parkingLot.getParkedCar("KA-01-HH-0004"));
+        assertEquals("White", parkingLot.getParkedCar("KA-01-HH-0005").getColor());
+    }
+}
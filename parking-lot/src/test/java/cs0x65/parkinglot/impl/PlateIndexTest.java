@@ -0,0 +1,63 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.PlateCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlateIndexTest {
+
+    @Test
+    void findsTheCarsAsTheyAreAddedAndRemoved() {
+        int size = 10_000;
+        TicketTable tickets = new TicketTable(size);
+        PlateIndex index = new PlateIndex(tickets);
+        Car[] cars = new Car[size + 1];
+        for (int slot = 1; slot <= size; slot++) {
+            // Every 7th registration number can't be packed.
+            cars[slot] = new Car((slot % 7 == 0 ? "mh-" : "MH-") + slot % 100 + "-AB-" + slot);
+            tickets.put(slot, cars[slot], 0);
+            index.add(PlateCodec.encode(cars[slot].getRegNo()), slot);
+        }
+        assertEquals(size, index.size());
+
+        Random random = new Random(1);
+        boolean[] removed = new boolean[size + 1];
+        for (int i = 0; i < size / 2; i++) {
+            int slot = 1 + random.nextInt(size);
+            if (!removed[slot]){
+                index.remove(PlateCodec.encode(cars[slot].getRegNo()), slot);
+                tickets.remove(slot);
+                removed[slot] = true;
+            }
+        }
+        for (int slot = 1; slot <= size; slot++) {
+            String regNo = cars[slot].getRegNo();
+            assertEquals(removed[slot] ? 0 : slot, index.find(PlateCodec.encode(regNo), regNo));
+        }
+    }
+
+    @Test
+    void findsTheCarsByTheirRegistrationNumbersWhateverTheirColour() {
+        TicketTable tickets = new TicketTable(2);
+        PlateIndex index = new PlateIndex(tickets);
+        long code = PlateCodec.encode("KA-01-HH-1234");
+        assertEquals(0, index.find(code, "KA-01-HH-1234"));
+        tickets.put(1, new Car("KA-01-HH-1234", "Red"), 0);
+        index.add(code, 1);
+        assertEquals(1, index.find(code, "KA-01-HH-1234"));
+
+        long unpacked = PlateCodec.encode("ka-01-hh-1234");
+        assertEquals(0, index.find(unpacked, "ka-01-hh-1234"));
+        tickets.put(2, new Car("ka-01-hh-1234", "Blue"), 0);
+        index.add(unpacked, 2);
+        assertEquals(2, index.find(unpacked, "ka-01-hh-1234"));
+
+        index.remove(code, 1);
+        assertEquals(0, index.find(code, "KA-01-HH-1234"));
+        assertEquals(2, index.find(unpacked, "ka-01-hh-1234"));
+    }
+}
@@ -0,0 +1,58 @@
+package cs0x65.parkinglot.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotBitmapTest {
+
+    @Test
+    void iteratesTheSlotsInOrder() {
+        SlotBitmap bitmap = new SlotBitmap(1_000_000);
+        assertEquals(-1, bitmap.next(1));
+        int[] slots = {1, 63, 64, 4095, 4096, 65_536, 999_999, 1_000_000};
+        for (int slot : slots)
+            bitmap.add(slot);
+        bitmap.add(64);
+        assertEquals(slots.length, bitmap.size());
+
+        int i = 0;
+        for (int slot = bitmap.next(1); slot != -1; slot = slot < 1_000_000 ? bitmap.next(slot + 1) : -1)
+            assertEquals(slots[i++], slot);
+        assertEquals(slots.length, i);
+
+        bitmap.remove(64);
+        bitmap.remove(65);
+        assertEquals(4095, bitmap.next(64));
+        bitmap.remove(4095);
+        bitmap.remove(4096);
+        assertEquals(65_536, bitmap.next(64));
+        assertEquals(slots.length - 3, bitmap.size());
+    }
+
+    @Test
+    void agreesWithBitSet() {
+        int size = 300_000;
+        SlotBitmap bitmap = new SlotBitmap(size);
+        BitSet expected = new BitSet();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            // Clustered, so that the words and the summary words are both emptied now and then.
+            int slot = 1 + (random.nextInt(30) * 10_000 + random.nextInt(200)) % size;
+            if (random.nextBoolean()){
+                bitmap.add(slot);
+                expected.set(slot);
+            }else {
+                bitmap.remove(slot);
+                expected.clear(slot);
+            }
+            int from = 1 + random.nextInt(size);
+            int next = expected.nextSetBit(from);
+            assertEquals(next, bitmap.next(from));
+        }
+        assertEquals(expected.cardinality(), bitmap.size());
+    }
+}
@@ -0,0 +1,71 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.VehicleClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotPoolsTest {
+
+    private static SlotPools pools(boolean upsizing) {
+        // 1-2 EV, 3-4 compact, 5-6 motorcycle, 7-8 large, 9-10 motorcycle.
+        return new SlotPools(10, Arrays.asList(
+                new SlotPools.Range(VehicleClass.MOTORCYCLE, 9, 10),
+                new SlotPools.Range(VehicleClass.EV, 1, 2),
+                new SlotPools.Range(VehicleClass.MOTORCYCLE, 5, 6),
+                new SlotPools.Range(VehicleClass.LARGE, 7, 8)), upsizing, BitSetFreeSlotIndex::new);
+    }
+
+    @Test
+    void allocatesTheNearestSlotOfTheClassThenUpsizes() {
+        SlotPools pools = pools(true);
+        assertEquals(VehicleClass.COMPACT, pools.slotClass(3));
+        assertEquals(VehicleClass.MOTORCYCLE, pools.slotClass(10));
+
+        assertEquals(5, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(6, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(9, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(10, pools.allocate(VehicleClass.MOTORCYCLE));
+        // The motorcycle slots are full, so the motorcycles move up to the compact and then the large slots.
+        assertEquals(3, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(4, pools.allocate(VehicleClass.COMPACT));
+        assertEquals(7, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(8, pools.allocate(VehicleClass.COMPACT));
+        assertEquals(-1, pools.allocate(VehicleClass.LARGE));
+        // The EV slots are kept for the EVs.
+        assertEquals(-1, pools.allocate(VehicleClass.MOTORCYCLE));
+        assertEquals(1, pools.nearest());
+        assertEquals(1, pools.allocate(VehicleClass.EV));
+
+        pools.release(6);
+        assertEquals(2, pools.nearest());
+        assertEquals(2, pools.allocate(VehicleClass.EV));
+        assertEquals(6, pools.nearest());
+        assertEquals(6, pools.allocate(VehicleClass.MOTORCYCLE));
+    }
+
+    @Test
+    void keepsTheVehiclesToTheirOwnClassWithoutUpsizing() {
+        SlotPools pools = pools(false);
+        assertTrue(pools.allocate(3));
+        assertTrue(pools.allocate(4));
+        assertFalse(pools.allocate(4));
+        assertFalse(pools.allocate(11));
+        assertEquals(-1, pools.allocate(VehicleClass.COMPACT));
+        assertEquals(1, pools.allocate());
+        assertEquals(2, pools.allocate());
+        assertEquals(5, pools.allocate());
+    }
+
+    @Test
+    void rejectsTheOverlappingRanges() {
+        assertThrows(IllegalArgumentException.class, () -> new SlotPools(10, Arrays.asList(
+                new SlotPools.Range(VehicleClass.EV, 1, 5),
+                new SlotPools.Range(VehicleClass.LARGE, 5, 6)), true, BitSetFreeSlotIndex::new));
+        assertThrows(IllegalArgumentException.class, () -> new SlotPools(10, Collections.singletonList(
+                new SlotPools.Range(VehicleClass.EV, 8, 11)), true, BitSetFreeSlotIndex::new));
+    }
+}
@@ -0,0 +1,56 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatusWriterTest {
+    @Test
+    void rowsAreFormattedLikeTheFormatter() throws IOException {
+        int[] slots = {1, 9, 10, 99999999, 123456789, Integer.MAX_VALUE};
+        StringBuilder expected = new StringBuilder("Slot No. Registration No.");
+        for (int slot : slots) {
+            expected.append(String.format("\n%-8d %s", slot, "KA-01-HH-" + slot));
+        }
+
+        StringBuilder status = new StringBuilder();
+        int rows = StatusWriter.write(status, Integer.MAX_VALUE, false, new StatusWriter.Slots() {
+            @Override
+            public Car getCar(int slot) {
+                return new Car("KA-01-HH-" + slot);
+            }
+
+            @Override
+            public int nextOccupied(int slot) {
+                for (int occupied : slots) {
+                    if (occupied >= slot)
+                        return occupied;
+                }
+                return -1;
+            }
+        });
+        assertEquals(slots.length, rows);
+        assertEquals(expected.toString(), status.toString());
+    }
+
+    @Test
+    void skipsSlotsWithoutCar() throws IOException {
+        StringBuilder status = new StringBuilder();
+        int rows = StatusWriter.write(status, 3, false, new StatusWriter.Slots() {
+            @Override
+            public Car getCar(int slot) {
+                return slot == 2 ? new Car("KA-01-HH-1234") : null;
+            }
+
+            @Override
+            public int nextOccupied(int slot) {
+                return slot <= 3 ? slot : -1;
+            }
+        });
+        assertEquals(1, rows);
+        assertEquals("Slot No. Registration No.\n2        KA-01-HH-1234", status.toString());
+    }
+}
@@ -0,0 +1,50 @@
+package cs0x65.parkinglot.impl;
+
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketTableTest {
+
+    @Test
+    void ticketsAreViewsOfTheColumns() {
+        TicketTable tickets = new TicketTable(10_000);
+        Car car = new Car("KA-01-HH-1234", "Red");
+        tickets.put(5000, car, 42);
+
+        Ticket ticket = tickets.get(5000);
+        assertEquals(5000, ticket.getSlot());
+        assertSame(car, ticket.getCar());
+        assertEquals(42, ticket.getParkedAt());
+        assertNotSame(ticket, tickets.get(5000));
+        assertSame(car, tickets.getCar(5000));
+        assertNull(tickets.get(4999));
+        assertNull(tickets.getCar(1));
+
+        tickets.remove(5000);
+        assertNull(tickets.get(5000));
+        assertEquals(-1, tickets.nextOccupied(1));
+    }
+
+    @Test
+    void snapshotIsUnaffectedByTheSubsequentUpdates() {
+        TicketTable tickets = new TicketTable(100);
+        Car first = new Car("KA-01-HH-0001");
+        Car second = new Car("KA-01-HH-0002");
+        tickets.put(1, first, 10);
+        tickets.put(2, second, 20);
+
+        TicketTable.View view = tickets.snapshot();
+        tickets.remove(1);
+        tickets.put(1, second, 30);
+        tickets.remove(2);
+
+        assertSame(first, view.getCar(1));
+        assertEquals(10, view.get(1).getParkedAt());
+        assertEquals(20, view.get(2).getParkedAt());
+        assertEquals(30, tickets.get(1).getParkedAt());
+        assertNull(tickets.get(2));
+    }
+}
@@ -0,0 +1,92 @@
+package cs0x65.parkinglot.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchedOutputWriterTest {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    @Test
+    void writesNothingTillFlushed() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        BatchedOutputWriter writer = new BatchedOutputWriter(out, false);
+        writer.writeLine("Allocated slot number: 1");
+        writer.writeLine("Allocated slot number: 2");
+        assertEquals(0, out.size());
+
+        writer.flush();
+        assertEquals("Allocated slot number: 1" + NEW_LINE + "Allocated slot number: 2" + NEW_LINE,
+                out.toString("UTF-8"));
+        assertEquals(1, out.flushes);
+    }
+
+    @Test
+    void writesOutWhenBufferFillsUp() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        StringBuilder expected = new StringBuilder();
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(out, true, 0, 16, StandardCharsets.UTF_8)){
+            for (int i = 0; i < 100; i++) {
+                String line = "Allocated slot number: " + i;
+                writer.writeLine(line);
+                expected.append(line).append(NEW_LINE);
+            }
+            assertTrue(out.size() > 0);
+            assertEquals(0, out.flushes);
+        }
+        assertEquals(expected.toString(), out.toString("UTF-8"));
+        assertTrue(out.closed);
+    }
+
+    @Test
+    void flushesEveryNLines() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(out, false, 2, 1024, StandardCharsets.UTF_8)){
+            writer.writeLine("1");
+            assertEquals(0, out.flushes);
+            writer.writeLine("2");
+            assertEquals(1, out.flushes);
+            assertEquals("1" + NEW_LINE + "2" + NEW_LINE, out.toString("UTF-8"));
+            writer.writeLine("3");
+            assertEquals(1, out.flushes);
+        }
+        assertEquals(2, out.flushes);
+        assertFalse(out.closed);
+    }
+
+    @Test
+    void encodesSurrogatePairsSplitAcrossBatches() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        String text = "KA-\uD83D\uDE97-01\u00E9";
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(out, false, 0, 4, StandardCharsets.UTF_8)){
+            writer.write(text);
+        }
+        assertEquals(text, out.toString("UTF-8"));
+    }
+
+    @Test
+    void throwsExceptionWhenWritingAfterClose() throws IOException {
+        BatchedOutputWriter writer = new BatchedOutputWriter(new ByteArrayOutputStream(), true);
+        writer.close();
+        assertThrows(IOException.class, () -> writer.writeLine("status"));
+    }
+
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+        private int flushes;
+        private boolean closed;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cs0x65.parkinglot.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelCommandReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsSameCommandsAsBufferedReader() throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        List<String> expected = readAll(new BufferedCommandReader(inputFilepath));
+        assertEquals(18, expected.size());
+        assertEquals(expected, readAll(new ChannelCommandReader(inputFilepath)));
+    }
+
+    @Test
+    void readsLinesCrossingTheBlockBoundaries() throws IOException {
+        String content = "create_parking_lot 6\r\n  park KA-01-HH-1234  \n\nstatus true\nleave KA-01-HH-1234 4";
+        Path file = tempDir.resolve("commands.txt");
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        List<String> expected = Arrays.asList("create_parking_lot 6", "park KA-01-HH-1234", "", "status true",
+                "leave KA-01-HH-1234 4");
+
+        for (int blockSize = 1; blockSize <= content.length() + 1; blockSize++) {
+            assertEquals(expected, readAll(new ChannelCommandReader(file.toString(), blockSize)),
+                    "block size: " + blockSize);
+        }
+    }
+
+    @Test
+    void readsNothingFromEmptyFile() throws IOException {
+        Path file = Files.createFile(tempDir.resolve("empty.txt"));
+        assertTrue(readAll(new ChannelCommandReader(file.toString())).isEmpty());
+    }
+
+    @Test
+    void readsLinesLongerThanTheBlock() throws IOException {
+        String content = "park KA-01-HH-1234\nstatus\nleave KA-01-HH-1234 4\n";
+        Path file = tempDir.resolve("commands.txt");
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        List<String> expected = Arrays.asList("park KA-01-HH-1234", "status", "leave KA-01-HH-1234 4");
+
+        for (int blockSize = 1; blockSize <= content.length() + 1; blockSize++) {
+            assertEquals(expected, readAll(new ChannelCommandReader(file.toString(), blockSize)),
+                    "block size: " + blockSize);
+        }
+    }
+
+    private static List<String> readAll(CommandReader reader) throws IOException {
+        List<String> commands = new ArrayList<>();
+        try (CommandReader commandReader = reader){
+            CharSequence command;
+            while ((command = commandReader.readCommand()) != null){
+                commands.add(command.toString());
+            }
+        }
+        return commands;
+    }
+}
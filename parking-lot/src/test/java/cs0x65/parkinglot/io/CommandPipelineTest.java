@@ -0,0 +1,70 @@
+package cs0x65.parkinglot.io;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandPipelineTest {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesTheOutputsInTheOrderOfTheCommands() throws Exception {
+        List<String> commands = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            commands.add("park KA-01-HH-" + i);
+            expected.append("park ").append(i).append(NEW_LINE);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] numExecuted = {0};
+        // Few slots, so the ring wraps around many times.
+        run(commands, out, 4, (command, output) ->
+                output.append(command.getVerb().lName()).append(' ').append(String.valueOf(numExecuted[0]++)));
+        assertEquals(expected.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    void writesTheOutputsOfTheCommandsBeforeTheInvalidOne() throws Exception {
+        List<String> commands = Arrays.asList("park KA-01-HH-1", "park KA-01-HH-2", "bogus 1", "park KA-01-HH-3");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(BadCommandException.class, () -> run(commands, out, 2, (command, output) -> output.append("ok")));
+        assertEquals("ok" + NEW_LINE + "ok" + NEW_LINE, out.toString("UTF-8"));
+    }
+
+    @Test
+    void writesTheOutputsOfTheCommandsBeforeTheFailedOne() throws Exception {
+        List<String> commands = Arrays.asList("park KA-01-HH-1", "status", "park KA-01-HH-2", "park KA-01-HH-3");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                run(commands, out, 2, (command, output) -> {
+                    if (command.getVerb().lName().equals("status"))
+                        throw new IllegalStateException("status failed");
+                    output.append("ok");
+                }));
+        assertEquals("status failed", exception.getMessage());
+        assertEquals("ok" + NEW_LINE, out.toString("UTF-8"));
+    }
+
+    private void run(List<String> commands, ByteArrayOutputStream out, int capacity, CommandPipeline.Stage stage)
+            throws Exception {
+        Path file = Files.write(tempDir.resolve("commands.txt"), commands);
+        try (BatchedOutputWriter writer = new BatchedOutputWriter(out, false);
+             CommandReader reader = new BufferedCommandReader(file.toString())){
+            new CommandPipeline(reader, new DefaultParserImpl(), writer, capacity).run(stage);
+        }
+    }
+}
@@ -2,9 +2,16 @@ package cs0x65.parkinglot.io;
 
 import cs0x65.parkinglot.command.BadCommandException;
 import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.engine.LotEngine;
+import cs0x65.parkinglot.metrics.MetricsRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,15 +27,16 @@ class ProcessorTest {
     }
 
     @Test
-    void processCommandsWhenOutFilePathIsSupplied() {
+    void processCommandsWhenOutFilePathIsSupplied(@TempDir Path tempDir) {
         String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
                 File.separator+"file_inputs.txt";
         String filePath = new File(inputFilepath).getAbsolutePath();
-        Processor processor = new Processor(filePath, "output.txt");
+        String outputFilepath = tempDir.resolve("output.txt").toString();
+        Processor processor = new Processor(filePath, outputFilepath);
         assertDoesNotThrow(() -> processor.processCommands());
         
         StringBuilder stringBuilder = new StringBuilder();
-        try(BufferedReader reader = new BufferedReader(new FileReader("output.txt"))){
+        try(BufferedReader reader = new BufferedReader(new FileReader(outputFilepath))){
             String text = null;
             
             while ((text = reader.readLine()) != null){
@@ -72,6 +80,171 @@ class ProcessorTest {
         assertEquals(expectedOutput, stringBuilder.toString());
     }
 
+    @Test
+    void processCommandsReadThroughTheChannel(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        String filePath = new File(inputFilepath).getAbsolutePath();
+        Path output = tempDir.resolve("output_channel.txt");
+        Processor processor = new Processor(filePath, output.toString())
+                .withInputMode(Processor.InputMode.CHANNEL);
+        assertDoesNotThrow(() -> processor.processCommands());
+
+        // The expected output file has the long lines wrapped, so compare the content irrespective of the new lines.
+        String expectedOutputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_outputs.txt";
+        assertEquals(readWithoutNewLines(expectedOutputFilepath), readWithoutNewLines(output.toString()));
+    }
+
+    @Test
+    void processCommandsThroughThePipeline(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        Path output = tempDir.resolve("output.txt");
+        new Processor(inputFilepath, output.toString()).withPipeline(2).processCommands();
+
+        String expectedOutputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_outputs.txt";
+        assertEquals(readWithoutNewLines(expectedOutputFilepath), readWithoutNewLines(output.toString()));
+    }
+
+    @Test
+    void processCommandsCarriesOnFromTheJournal(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        String journal = tempDir.resolve("journal.bin").toString();
+        new Processor(inputFilepath, tempDir.resolve("output.txt").toString()).withJournal(journal)
+                .processCommands();
+
+        Path statusInput = Files.write(tempDir.resolve("status.txt"), Arrays.asList("status", "park KA-01-HH-1234"));
+        Path statusOutput = tempDir.resolve("status_output.txt");
+        new Processor(statusInput.toString(), statusOutput.toString()).withJournal(journal).processCommands();
+        assertEquals(Arrays.asList(
+                "Slot No. Registration No.",
+                "1        KA-09-HH-0987",
+                "2        KA-01-HH-9999",
+                "3        CA-09-IO-1111",
+                "4        KA-01-HH-7777",
+                "5        KA-01-HH-2701",
+                "6        KA-01-P-333",
+                "Sorry, parking lot is full"), Files.readAllLines(statusOutput));
+    }
+
+    @Test
+    void processCommandsCarriesOnFromTheSnapshotAndTheJournal(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        String journal = tempDir.resolve("journal.bin").toString();
+        String snapshot = tempDir.resolve("snapshot.bin").toString();
+        new Processor(inputFilepath, tempDir.resolve("output.txt").toString()).withJournal(journal)
+                .withSnapshots(snapshot, 5).processCommands();
+        assertTrue(Files.exists(Paths.get(snapshot)));
+
+        Path statusInput = Files.write(tempDir.resolve("status.txt"), Arrays.asList("status", "park KA-01-HH-1234"));
+        Path statusOutput = tempDir.resolve("status_output.txt");
+        new Processor(statusInput.toString(), statusOutput.toString()).withJournal(journal)
+                .withSnapshots(snapshot, 5).processCommands();
+        assertEquals(Arrays.asList(
+                "Slot No. Registration No.",
+                "1        KA-09-HH-0987",
+                "2        KA-01-HH-9999",
+                "3        CA-09-IO-1111",
+                "4        KA-01-HH-7777",
+                "5        KA-01-HH-2701",
+                "6        KA-01-P-333",
+                "Sorry, parking lot is full"), Files.readAllLines(statusOutput));
+    }
+
+    @Test
+    void processCommandsAddressedToMultipleLots(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs_multi_lot.txt";
+        Path output = tempDir.resolve("output.txt");
+        try (LotEngine engine = new LotEngine(2)){
+            new Processor(inputFilepath, output.toString()).withLotEngine(engine).processCommands();
+            assertEquals(2, engine.getRegistry().size());
+            assertEquals(1, engine.getRegistry().get("mall").getNumOccupiedSlots());
+        }
+        assertEquals(Arrays.asList(
+                "Created parking lot with 2 slots",
+                "Created parking lot with 1 slots",
+                "Allocated slot number: 1",
+                "Allocated slot number: 1",
+                "Allocated slot number: 2",
+                "Sorry, parking lot is full",
+                "Registration number KA-01-HH-1234 with Slot Number 1 is free with Charge 30",
+                "Parking lot: station doesn't exist",
+                "Parking lot: mall already exists",
+                "Slot No. Registration No.",
+                "1        KA-01-HH-9999"), Files.readAllLines(output));
+    }
+
+    @Test
+    void replayCommandsAddressedToMultipleLotsInBatches(@TempDir Path tempDir) throws IOException {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs_multi_lot.txt";
+        Path expected = tempDir.resolve("expected.txt");
+        Path output = tempDir.resolve("output.txt");
+        try (LotEngine engine = new LotEngine(2)){
+            new Processor(inputFilepath, expected.toString()).withLotEngine(engine).processCommands();
+        }
+        try (LotEngine engine = new LotEngine(2)){
+            new Processor(inputFilepath, output.toString()).withLotEngine(engine).withReplayBatchSize(3)
+                    .processCommands();
+        }
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(output));
+    }
+
+    @Test
+    void withLotEngineThrowsExceptionWhenTheProcessorIsJournaledOrPipelined(@TempDir Path tempDir) {
+        String journal = tempDir.resolve("parking_lot.journal").toString();
+        try (LotEngine engine = new LotEngine(1)){
+            Processor journaled = new Processor("commands.txt").withJournal(journal);
+            assertThrows(IllegalStateException.class, () -> journaled.withLotEngine(engine));
+
+            Processor engineBacked = new Processor("commands.txt").withLotEngine(engine);
+            assertThrows(IllegalStateException.class, () -> engineBacked.withJournal(journal));
+            assertThrows(IllegalStateException.class,
+                    () -> engineBacked.withSnapshots(tempDir.resolve("parking_lot.snapshot").toString(), 10));
+            assertThrows(IllegalStateException.class, () -> engineBacked.withPipeline(1024));
+
+            Processor pipelined = new Processor("commands.txt").withPipeline(1024);
+            assertThrows(IllegalStateException.class, () -> pipelined.withLotEngine(engine));
+        }
+    }
+
+    @Test
+    void processCommandsWithMetrics(@TempDir Path tempDir) {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs.txt";
+        MetricsRegistry metrics = new MetricsRegistry(1);
+        StringBuilder report = new StringBuilder();
+        new Processor(inputFilepath, tempDir.resolve("output.txt").toString()).withMetrics(metrics, report)
+                .processCommands();
+
+        assertEquals(11, metrics.get(Command.Verb.PARK).getCount());
+        assertEquals(2, metrics.get(Command.Verb.PARK).getFailures());
+        assertEquals(4, metrics.get(Command.Verb.LEAVE).getCount());
+        assertEquals(1, metrics.get(Command.Verb.LEAVE).getFailures());
+        assertEquals(2, metrics.get(Command.Verb.STATUS).getCount());
+        assertEquals(1, metrics.getParkingLots().size());
+        assertEquals(9, metrics.getParkingLots().get(0).getParks());
+        assertEquals(6, metrics.getParkingLots().get(0).getOccupiedSlots());
+        assertEquals(metrics.getReport().split("\\R")[1], report.toString().split("\\R")[1]);
+        assertTrue(report.toString().contains("create_parking_lot"));
+    }
+
+    private static String readWithoutNewLines(String filePath) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        try(BufferedReader reader = new BufferedReader(new FileReader(filePath))){
+            String text;
+            while ((text = reader.readLine()) != null){
+                stringBuilder.append(text);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
     @Test
     void processCommandsThrowsExceptionWhenCreateParkingLotIsNotTheFirstCommand() {
         String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
@@ -83,4 +256,12 @@ class ProcessorTest {
                 + Command.Verb.CREATE_PARKING_LOT.lName() + " before issuing any other commands.";
         assertEquals(expectedMessage, exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void processCommandsThroughThePipelineThrowsExceptionWhenCreateParkingLotIsNotTheFirstCommand() {
+        String inputFilepath = "src"+ File.separator+"test"+File.separator+"resources"+
+                File.separator+"file_inputs_create_missing.txt";
+        Processor processor = new Processor(inputFilepath).withPipeline(16);
+        assertThrows(IllegalStateException.class, () -> processor.processCommands());
+    }
+}
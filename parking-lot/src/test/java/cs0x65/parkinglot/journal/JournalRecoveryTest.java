@@ -0,0 +1,248 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalRecoveryTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recoversTheSameStateAsTheJournaledParkingLot() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        ParkingLot parkingLot = ParkingLot.create(500);
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 100, 0)){
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            Random random = new Random(7);
+            Car[] cars = new Car[1000];
+            for (int i = 0; i < 20000; i++) {
+                int c = random.nextInt(cars.length);
+                if (cars[c] == null){
+                    try {
+                        parkingLot.park(new Car("KA-01-HH-" + c));
+                        cars[c] = new Car("KA-01-HH-" + c);
+                    }catch (IllegalStateException e){
+                        // full
+                    }
+                }else {
+                    parkingLot.leave(cars[c], random.nextInt(5));
+                    cars[c] = null;
+                }
+            }
+        }
+
+        ParkingLot recovered = JournalRecovery.recover(path);
+        assertEquals(500, recovered.getSize());
+        assertEquals(parkingLot.getNumOccupiedSlots(), recovered.getNumOccupiedSlots());
+        assertEquals(parkingLot.status(true), recovered.status(true));
+        assertEquals(parkingLot.getNearestAvailableSlotIndex(), recovered.getNearestAvailableSlotIndex());
+    }
+
+    @Test
+    void recoversTheVehicleClassesOfTheCars() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        IntFunction<ParkingLot.Builder> builders = size -> new ParkingLot.Builder(size)
+                .withSlotClass(VehicleClass.EV, 1, 2).withSlotClass(VehicleClass.LARGE, 5, 6);
+        ParkingLot parkingLot = builders.apply(6).build();
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("KA-01-EV-0001", "Blue", VehicleClass.EV));
+            parkingLot.park(new Car("KA-01-LG-0001", "Red", VehicleClass.LARGE));
+            parkingLot.park(new Car("KA-01-MC-0001", "Black", VehicleClass.MOTORCYCLE));
+            parkingLot.park(new Car("KA-01-LG-0002", "Red", VehicleClass.LARGE));
+            parkingLot.leave(new Car("KA-01-LG-0001", "Red", VehicleClass.LARGE), 1);
+        }
+
+        ParkingLot recovered = JournalRecovery.recover(path, builders);
+        assertEquals(VehicleClass.EV, recovered.getParkedCar("KA-01-EV-0001").getVehicleClass());
+        assertEquals(VehicleClass.MOTORCYCLE, recovered.getParkedCar("KA-01-MC-0001").getVehicleClass());
+        assertEquals(VehicleClass.LARGE, recovered.getParkedCar("KA-01-LG-0002").getVehicleClass());
+        assertEquals(parkingLot.status(true), recovered.status(true));
+        // The slot classes come with the builder, so the next EV still parks at it's own class of slots.
+        assertEquals(2, recovered.park(new Car("KA-01-EV-0002", "Blue", VehicleClass.EV)).getSlot());
+    }
+
+    @Test
+    void recoversTheCarsJournaledWithoutTheVehicleClassAsCompact() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putInt(WriteAheadJournal.MAGIC);
+        putRecord(buffer, ByteBuffer.allocate(5).put(WriteAheadJournal.CREATE).putInt(3));
+        byte[] regNo = "MH-12-AB-1234".getBytes(StandardCharsets.US_ASCII);
+        byte[] color = "White".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer park = ByteBuffer.allocate(1 + 4 + 8 + 2 + regNo.length + 2 + color.length)
+                .put(WriteAheadJournal.PARK).putInt(2).putLong(1000)
+                .putShort((short) regNo.length).put(regNo).putShort((short) color.length).put(color);
+        putRecord(buffer, park);
+        Files.write(path, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        ParkingLot recovered = JournalRecovery.recover(path);
+        assertEquals(1, recovered.getNumOccupiedSlots());
+        assertEquals(VehicleClass.COMPACT, recovered.getParkedCar("MH-12-AB-1234").getVehicleClass());
+    }
+
+    private static void putRecord(ByteBuffer buffer, ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.position());
+        buffer.putInt(payload.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload.array(), 0, payload.position());
+    }
+
+    @Test
+    void recoversNothingWithoutJournalOrCreateRecord() throws IOException {
+        assertNull(JournalRecovery.recover(tempDir.resolve("missing.bin")));
+        Path path = tempDir.resolve("journal.bin");
+        new WriteAheadJournal(path).close();
+        assertNull(JournalRecovery.recover(path));
+    }
+
+    @Test
+    void createRecordStartsOverWithEmptyParkingLot() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            ParkingLot parkingLot = ParkingLot.create(2);
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("MH-12-AB-1234"));
+            journal.recordCreate(ParkingLot.create(3));
+        }
+        ParkingLot recovered = JournalRecovery.recover(path, size -> new ParkingLot.Builder(size).withName("Mall"));
+        assertEquals(3, recovered.getSize());
+        assertEquals("Mall", recovered.getName());
+        assertEquals(0, recovered.getNumOccupiedSlots());
+    }
+
+    @Test
+    void tornRecordIsTruncatedAndJournalStaysAppendable() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            ParkingLot parkingLot = ParkingLot.create(3);
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("MH-12-AB-1234"));
+            parkingLot.park(new Car("MH-13-AC-9999"));
+        }
+        long intact = Files.size(path);
+        // Simulate a crash half way through writing the last record.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)){
+            channel.truncate(intact - 5);
+        }
+
+        ParkingLot recovered = JournalRecovery.recover(path);
+        assertEquals(1, recovered.getNumOccupiedSlots());
+        long truncated = Files.size(path);
+        assertTrue(truncated < intact - 5);
+
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            recovered.addListener(journal);
+            recovered.park(new Car("MH-14-E-1234"));
+        }
+        recovered = JournalRecovery.recover(path);
+        assertEquals("Slot No. Registration No.\n1        MH-12-AB-1234\n2        MH-14-E-1234",
+                recovered.status(false));
+    }
+
+    @Test
+    void corruptRecordIsTruncated() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            ParkingLot parkingLot = ParkingLot.create(3);
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("MH-12-AB-1234"));
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+
+        assertEquals(0, JournalRecovery.recover(path).getNumOccupiedSlots());
+    }
+
+    @Test
+    void recoversFromTheSnapshotPlusTheRestOfTheJournal() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        Path snapshotPath = tempDir.resolve("snapshot.bin");
+        ParkingLot parkingLot = new ParkingLot.Builder(500).withName("Mall").withInitialDurationRate(20).build();
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 100, 0)){
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            Random random = new Random(11);
+            Car[] cars = new Car[1000];
+            for (int i = 0; i < 20000; i++) {
+                if (i == 10000){
+                    journal.sync();
+                    SnapshotFile.write(parkingLot.snapshot(), journal.position(), snapshotPath);
+                }
+                int c = random.nextInt(cars.length);
+                if (cars[c] == null){
+                    try {
+                        parkingLot.park(new Car("KA-01-HH-" + c));
+                        cars[c] = new Car("KA-01-HH-" + c);
+                    }catch (IllegalStateException e){
+                        // full
+                    }
+                }else {
+                    parkingLot.leave(cars[c], random.nextInt(5));
+                    cars[c] = null;
+                }
+            }
+        }
+
+        ParkingLot recovered = JournalRecovery.recover(path, snapshotPath, ParkingLot.Builder::new);
+        assertEquals("Mall", recovered.getName());
+        assertEquals(20, recovered.getInitialDurationRate());
+        assertEquals(parkingLot.getNumOccupiedSlots(), recovered.getNumOccupiedSlots());
+        assertEquals(parkingLot.status(true), recovered.status(true));
+        assertEquals(parkingLot.getNearestAvailableSlotIndex(), recovered.getNearestAvailableSlotIndex());
+    }
+
+    @Test
+    void createRecordAfterTheSnapshotSupersedesIt() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        Path snapshotPath = tempDir.resolve("snapshot.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            ParkingLot parkingLot = ParkingLot.create(2);
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("MH-12-AB-1234"));
+            journal.sync();
+            SnapshotFile.write(parkingLot.snapshot(), journal.position(), snapshotPath);
+            ParkingLot newParkingLot = ParkingLot.create(3);
+            journal.recordCreate(newParkingLot);
+            newParkingLot.addListener(journal);
+            newParkingLot.park(new Car("MH-13-AC-9999"));
+        }
+        ParkingLot recovered = JournalRecovery.recover(path, snapshotPath, ParkingLot.Builder::new);
+        assertEquals(3, recovered.getSize());
+        assertEquals("Slot No. Registration No.\n1        MH-13-AC-9999", recovered.status(false));
+    }
+
+    @Test
+    void journalBehindTheSnapshotIsRejected() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        Path snapshotPath = tempDir.resolve("snapshot.bin");
+        new WriteAheadJournal(path).close();
+        SnapshotFile.write(ParkingLot.create(2).snapshot(), 100, snapshotPath);
+        assertThrows(IOException.class, () -> JournalRecovery.recover(path, snapshotPath, ParkingLot.Builder::new));
+    }
+}
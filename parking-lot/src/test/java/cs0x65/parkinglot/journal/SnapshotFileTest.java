@@ -0,0 +1,102 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.VehicleClass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadsTheSameStateAndConfigurationAsTheSnapshot() throws IOException {
+        ParkingLot parkingLot = new ParkingLot.Builder(20000).withName("Mall")
+                .withParkedTimeUnit(ParkingLot.ParkedTimeUnit.MINUTE).withInitialDuration(30)
+                .withSubsequentDuration(15).withInitialDurationRate(5).withSubsequentDurationRate(3).build();
+        String[] colors = {"White", "Red", "Bl\u00e5"};
+        for (int i = 0; i < 15000; i++)
+            parkingLot.park(new Car("KA-01-HH-" + i, colors[i % colors.length]));
+        for (int i = 0; i < 15000; i += 3)
+            parkingLot.leave(new Car("KA-01-HH-" + i, colors[0]), 1);
+        Path path = tempDir.resolve("snapshot.bin");
+        SnapshotFile.write(parkingLot.snapshot(), 1234, path);
+
+        SnapshotFile.Contents contents = SnapshotFile.read(path);
+        assertEquals(1234, contents.journalPosition);
+        ParkingLot loaded = SnapshotFile.load(path);
+        assertEquals("Mall", loaded.getName());
+        assertEquals(20000, loaded.getSize());
+        assertEquals(ParkingLot.ParkedTimeUnit.MINUTE, loaded.getParkedTimeUnit());
+        assertEquals(30, loaded.getInitialDuration());
+        assertEquals(15, loaded.getSubsequentDuration());
+        assertEquals(5, loaded.getInitialDurationRate());
+        assertEquals(3, loaded.getSubsequentDurationRate());
+        assertEquals(10000, loaded.getNumOccupiedSlots());
+        assertEquals(parkingLot.status(true), loaded.status(true));
+        assertEquals(1, loaded.getNearestAvailableSlotIndex());
+        assertEquals(2, loaded.leave(new Car("KA-01-HH-1", colors[1]), 1).getSlot());
+        assertEquals(contents.parkedAts[0], parkingLot.leave(new Car("KA-01-HH-1", colors[1]), 1).getParkedAt());
+        assertEquals(colors[2], contents.cars[1].getColor());
+    }
+
+    @Test
+    void loadsTheVehicleClassesOfTheCars() throws IOException {
+        IntFunction<ParkingLot.Builder> builders = size -> new ParkingLot.Builder(size)
+                .withSlotClass(VehicleClass.EV, 1, 2).withSlotClass(VehicleClass.LARGE, 5, 6).withUpsizing(false);
+        ParkingLot parkingLot = builders.apply(6).build();
+        parkingLot.park(new Car("KA-01-EV-0001", "Blue", VehicleClass.EV));
+        parkingLot.park(new Car("KA-01-LG-0001", "Red", VehicleClass.LARGE));
+        parkingLot.park(new Car("KA-01-CP-0001", "Black"));
+        Path path = tempDir.resolve("snapshot.bin");
+        SnapshotFile.write(parkingLot.snapshot(), 4, path);
+
+        ParkingLot loaded = SnapshotFile.load(path, builders);
+        assertEquals(VehicleClass.EV, loaded.getParkedCar("KA-01-EV-0001").getVehicleClass());
+        assertEquals(VehicleClass.LARGE, loaded.getParkedCar("KA-01-LG-0001").getVehicleClass());
+        assertEquals(VehicleClass.COMPACT, loaded.getParkedCar("KA-01-CP-0001").getVehicleClass());
+        assertEquals(parkingLot.status(true), loaded.status(true));
+        assertEquals(VehicleClass.EV, loaded.getSlotClass(1));
+        assertEquals(2, loaded.park(new Car("KA-01-EV-0002", "Blue", VehicleClass.EV)).getSlot());
+        // Without the upsizing the last large slot is kept for the large cars.
+        assertEquals(4, loaded.park(new Car("KA-01-CP-0002")).getSlot());
+        assertThrows(IllegalStateException.class, () -> loaded.park(new Car("KA-01-CP-0003")));
+    }
+
+    @Test
+    void loadsEmptyParkingLot() throws IOException {
+        Path path = tempDir.resolve("snapshot.bin");
+        SnapshotFile.write(ParkingLot.create(3).snapshot(), 4, path);
+        ParkingLot loaded = SnapshotFile.load(path);
+        assertEquals(3, loaded.getSize());
+        assertEquals(0, loaded.getNumOccupiedSlots());
+    }
+
+    @Test
+    void corruptOrTruncatedSnapshotIsRejected() throws IOException {
+        ParkingLot parkingLot = ParkingLot.create(10);
+        parkingLot.park(new Car("MH-12-AB-1234"));
+        Path path = tempDir.resolve("snapshot.bin");
+        SnapshotFile.write(parkingLot.snapshot(), 4, path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(path, bytes);
+        IOException corrupt = assertThrows(IOException.class, () -> SnapshotFile.load(path));
+        assertTrue(corrupt.getMessage().endsWith("checksum mismatch"), corrupt.getMessage());
+
+        for (int length = 0; length < bytes.length - 1; length++) {
+            Files.write(path, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> SnapshotFile.load(path), "length: " + length);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void snapshotIsAsOfTheJournalPositionItWasTakenAt() throws IOException, ExecutionException,
+            InterruptedException {
+        Path journalPath = tempDir.resolve("journal.bin");
+        Path snapshotPath = tempDir.resolve("snapshot.bin");
+        ParkingLot parkingLot = ParkingLot.create(10);
+        long position;
+        try (WriteAheadJournal journal = new WriteAheadJournal(journalPath, 1000, 0);
+             Snapshotter snapshotter = new Snapshotter(snapshotPath, journal)){
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            parkingLot.park(new Car("MH-12-AB-1234"));
+            parkingLot.park(new Car("MH-13-AC-9999"));
+            position = journal.position();
+            Future<?> write = snapshotter.snapshot(parkingLot);
+            parkingLot.leave(new Car("MH-12-AB-1234"), 1);
+            write.get();
+            // The journal is synced up to the snapshot before the snapshot is written.
+            assertTrue(Files.size(journalPath) >= position);
+        }
+
+        SnapshotFile.Contents contents = SnapshotFile.read(snapshotPath);
+        assertEquals(position, contents.journalPosition);
+        assertArrayEquals(new int[]{1, 2}, contents.slots);
+        assertEquals(1, JournalRecovery.recover(journalPath, snapshotPath, ParkingLot.Builder::new)
+                .getNumOccupiedSlots());
+    }
+}
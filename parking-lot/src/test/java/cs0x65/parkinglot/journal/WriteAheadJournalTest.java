@@ -0,0 +1,93 @@
+package cs0x65.parkinglot.journal;
+
+import cs0x65.parkinglot.impl.ParkingLot;
+import cs0x65.parkinglot.model.Car;
+import cs0x65.parkinglot.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadJournalTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordsAreOnlyWrittenOutInGroups() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, 3, 0)){
+            ParkingLot parkingLot = ParkingLot.create(10);
+            journal.recordCreate(parkingLot);
+            parkingLot.addListener(journal);
+            long header = Files.size(path);
+            assertEquals(4, header);
+
+            parkingLot.park(new Car("MH-12-AB-1234"));
+            assertEquals(header, Files.size(path));
+            parkingLot.park(new Car("MH-13-AC-9999"));
+            assertTrue(Files.size(path) > header);
+
+            long synced = Files.size(path);
+            parkingLot.leave(new Car("MH-12-AB-1234"), 4);
+            assertEquals(synced, Files.size(path));
+            journal.sync();
+            assertTrue(Files.size(path) > synced);
+        }
+    }
+
+    @Test
+    void backgroundSyncWritesOutTheRecordsWithinTheInterval() throws Exception {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path, Integer.MAX_VALUE, 5)){
+            journal.onPark(new Ticket(1, new Car("MH-12-AB-1234"), 0));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.size(path) == 4 && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            assertTrue(Files.size(path) > 4);
+        }
+    }
+
+    @Test
+    void appendsToTheExistingJournal() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            journal.recordCreate(ParkingLot.create(2));
+            journal.onPark(new Ticket(1, new Car("MH-12-AB-1234"), 1000));
+        }
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            journal.onPark(new Ticket(2, new Car("MH-13-AC-9999"), 2000));
+        }
+        ParkingLot parkingLot = JournalRecovery.recover(path);
+        assertEquals(2, parkingLot.getNumOccupiedSlots());
+        assertEquals("Slot No. Registration No.\n1        MH-12-AB-1234\n2        MH-13-AC-9999",
+                parkingLot.status(false));
+    }
+
+    @Test
+    void throwsExceptionWhenFileIsNotJournal() throws IOException {
+        Path path = tempDir.resolve("commands.txt");
+        Files.write(path, "create_parking_lot 6".getBytes());
+        assertThrows(IOException.class, () -> new WriteAheadJournal(path));
+    }
+
+    @Test
+    void tooLongRegistrationNumberIsRejectedWithoutCorruptingTheJournal() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        StringBuilder regNo = new StringBuilder();
+        for (int i = 0; i < 0x10000; i++)
+            regNo.append('\u00E9');
+        try (WriteAheadJournal journal = new WriteAheadJournal(path)){
+            journal.recordCreate(ParkingLot.create(2));
+            assertThrows(IllegalArgumentException.class,
+                    () -> journal.onPark(new Ticket(1, new Car(regNo.toString()), 0)));
+            journal.onPark(new Ticket(1, new Car("MH-12-\u00C9-1234", "Gr\u00FCn"), 0));
+        }
+        ParkingLot parkingLot = JournalRecovery.recover(path);
+        assertEquals(1, parkingLot.getNumOccupiedSlots());
+        assertEquals(1, parkingLot.leave(new Car("MH-12-\u00C9-1234", "Gr\u00FCn"), 1).getSlot());
+    }
+}
@@ -0,0 +1,59 @@
+package cs0x65.parkinglot.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsTheValuesWithinThePrecision() {
+        long previous = -1;
+        for (int index = 0; LatencyHistogram.lowestValueAt(index) <= LatencyHistogram.HIGHEST_VALUE; index++) {
+            long lowest = LatencyHistogram.lowestValueAt(index);
+            long highest = LatencyHistogram.highestValueAt(index);
+            // The buckets are contiguous, and no wider than 1/32 of their values.
+            assertEquals(previous + 1, lowest);
+            assertTrue(highest - lowest <= Math.max(0, lowest / 32));
+            assertEquals(index, LatencyHistogram.indexOf(lowest));
+            assertEquals(index, LatencyHistogram.indexOf(highest));
+            previous = highest;
+        }
+    }
+
+    @Test
+    void reportsThePercentilesOfTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMax());
+
+        Random random = new Random(25);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + (long) (random.nextDouble() * random.nextDouble() * 5_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(actual >= expected && actual <= expected + expected / 32, percentile + "%: " + actual);
+        }
+        assertEquals(histogram.getValueAtPercentile(100), histogram.getMax());
+        double mean = Arrays.stream(values).average().getAsDouble();
+        assertEquals(mean, histogram.getMean(), mean / 32);
+    }
+
+    @Test
+    void countsTheValuesOutOfTheRangeAtItsEnds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.HIGHEST_VALUE, histogram.getMax());
+    }
+}
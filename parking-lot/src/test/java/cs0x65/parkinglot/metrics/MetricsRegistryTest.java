@@ -0,0 +1,119 @@
+package cs0x65.parkinglot.metrics;
+
+import cs0x65.parkinglot.command.BadCommandException;
+import cs0x65.parkinglot.command.Command;
+import cs0x65.parkinglot.command.DefaultParserImpl;
+import cs0x65.parkinglot.engine.LotEngine;
+import cs0x65.parkinglot.impl.ParkingLot;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void recordsTheCommandsByTheVerb() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(1);
+        DefaultParserImpl parser = new DefaultParserImpl().withMetrics(metrics);
+        ParkingLot parkingLot = ParkingLot.create(1);
+        parser.parse("park KA-01-HH-1234").setTarget(parkingLot).execute();
+        parser.parse("park KA-01-HH-9999").setTarget(parkingLot).execute();
+        parser.parse("status").setTarget(parkingLot).executeAndAppend(new StringBuilder());
+
+        CommandMetrics park = metrics.get(Command.Verb.PARK);
+        assertEquals(2, park.getCount());
+        // The lot is full for the second car.
+        assertEquals(1, park.getFailures());
+        assertEquals(2, park.getLatencies().getCount());
+        assertTrue(park.getMaxLatency() > 0);
+        assertEquals(1, metrics.get(Command.Verb.STATUS).getCount());
+        assertEquals(0, metrics.get(Command.Verb.LEAVE).getCount());
+        assertEquals(3, metrics.getCommands());
+
+        assertThrows(BadCommandException.class, () -> parser.parse("depart KA-01-HH-1234"));
+        assertThrows(BadCommandException.class, () -> parser.parse("park"));
+        assertThrows(BadCommandException.class, () -> parser.parse("leave KA-01-HH-1234 soon"));
+        assertEquals(1, metrics.getParseFailures(BadCommandException.Reason.UNSUPPORTED_COMMAND));
+        assertEquals(2, metrics.getParseFailures(BadCommandException.Reason.INVALID_ARGUMENT));
+    }
+
+    @Test
+    void timesOnlyTheSampledCommands() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(16);
+        DefaultParserImpl parser = new DefaultParserImpl().withMetrics(metrics);
+        ParkingLot parkingLot = ParkingLot.create(10);
+        for (int i = 0; i < 16_000; i++)
+            parser.parse("slot_number_for_registration_number KA-01-HH-1234").setTarget(parkingLot).execute();
+
+        CommandMetrics slot = metrics.get(Command.Verb.SLOT_NUMBER_FOR_REGISTRATION_NUMBER);
+        assertEquals(16_000, slot.getCount());
+        long sampled = slot.getLatencies().getCount();
+        assertTrue(sampled > 500 && sampled < 1500, "Sampled: " + sampled);
+        assertThrows(IllegalArgumentException.class, () -> new MetricsRegistry(10));
+    }
+
+    @Test
+    void keepsTheOccupancyAndTheThroughputOfTheParkingLots() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (LotEngine engine = new LotEngine(2).withMetrics(metrics)){
+            engine.submit("@mall create_parking_lot 4").join();
+            engine.submit("@mall park KA-01-HH-1234").join();
+            engine.submit("@mall park KA-01-HH-9999").join();
+            engine.submit("@mall park KA-01-HH-7777").join();
+            engine.submit("@mall leave KA-01-HH-9999").join();
+        }
+
+        ParkingLotMetrics mall = metrics.getParkingLot("mall");
+        assertEquals(4, mall.getSize());
+        assertEquals(2, mall.getOccupiedSlots());
+        assertEquals(50.0, mall.getOccupancy());
+        assertEquals(3, mall.getParks());
+        assertEquals(1, mall.getLeaves());
+        assertTrue(mall.getThroughput() > 0);
+        assertEquals(1, metrics.get(Command.Verb.CREATE_PARKING_LOT).getCount());
+        assertEquals(3, metrics.get(Command.Verb.PARK).getCount());
+    }
+
+    @Test
+    void exposesTheMetricsThroughJmx() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(1);
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(mBeanServer);
+        ParkingLot parkingLot = new ParkingLot.Builder(2).withName("mall").build();
+        metrics.register(parkingLot);
+        new DefaultParserImpl().withMetrics(metrics).parse("park KA-01-HH-1234").setTarget(parkingLot).execute();
+
+        assertEquals(1L, mBeanServer.getAttribute(
+                new ObjectName("cs0x65.parkinglot:type=Command,verb=park"), "Count"));
+        assertEquals(50.0, mBeanServer.getAttribute(
+                new ObjectName("cs0x65.parkinglot:type=ParkingLot,name=\"mall\""), "Occupancy"));
+        assertEquals(1L, mBeanServer.getAttribute(new ObjectName("cs0x65.parkinglot:type=Metrics"), "Commands"));
+        assertEquals(0L, metrics.getParseFailures().get("invalid_argument"));
+        assertThrows(IllegalStateException.class, () -> metrics.registerMBeans(mBeanServer));
+
+        metrics.unregisterMBeans();
+        assertTrue(mBeanServer.queryNames(new ObjectName("cs0x65.parkinglot:*"), null).isEmpty());
+    }
+
+    @Test
+    void reportsTheMetrics() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(1);
+        ParkingLot parkingLot = new ParkingLot.Builder(3).withName("station").build();
+        metrics.register(parkingLot);
+        DefaultParserImpl parser = new DefaultParserImpl().withMetrics(metrics);
+        parser.parse("park KA-01-HH-1234").setTarget(parkingLot).execute();
+        parser.parse("leave KA-01-HH-1234 2").setTarget(parkingLot).execute();
+
+        String report = metrics.getReport();
+        assertTrue(report.contains("Metrics over "), report);
+        assertTrue(report.matches("(?s).*\npark +1 +0 .*"), report);
+        assertTrue(report.matches("(?s).*\nleave +1 +0 .*"), report);
+        assertFalse(report.contains("\nstatus "), report);
+        assertTrue(report.matches("(?s).*\nunsupported_command +0\\s.*"), report);
+        assertTrue(report.matches("(?s).*\nstation +3 +0 +0\\.0 +1 +1 .*"), report);
+    }
+}
@@ -39,4 +39,12 @@ class CarTest {
         assertFalse(car1.equals(car2));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void carsCarryTheCodeOfTheirRegistrationNumbers(){
+        Car car1 = new Car("KA-09-A-1234", "Black");
+        Car car2 = new Car("KA-09-A-1234", "Red");
+        assertEquals(PlateCodec.encode("KA-09-A-1234"), car1.getCode());
+        assertEquals(car1.getCode(), car2.getCode());
+        assertFalse(car1.equals(car2));
+    }
+}
@@ -0,0 +1,48 @@
+package cs0x65.parkinglot.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlateCodecTest {
+
+    @Test
+    void packsAndUnpacksTheRegistrationNumbers() {
+        String[] regNos = {"KA-01-HH-1234", "KA-01-P-333", "DL-12-AA-9999", "MH12AB1234", "KA01-HH", "A-B-C",
+                "-", "12345678901", "", "ABCDEFGHIJK"};
+        for (String regNo : regNos) {
+            long code = PlateCodec.encode(regNo);
+            assertTrue(PlateCodec.isPacked(code), regNo);
+            assertEquals(code, PlateCodec.encode("park " + regNo, 5, 5 + regNo.length()));
+            assertEquals(regNo, PlateCodec.decode(code));
+        }
+    }
+
+    @Test
+    void packedCodesAreDistinctForDistinctRegistrationNumbers() {
+        Map<Long, String> regNos = new HashMap<>();
+        String[] variants = {"KA-01-HH-%04d", "KA01HH%04d", "KA-01HH-%04d", "K-A01-HH%04d", "KA-1-HH-%04d"};
+        for (String variant : variants) {
+            for (int i = 0; i < 10_000; i++) {
+                String regNo = String.format(variant, i);
+                String existing = regNos.put(PlateCodec.encode(regNo), regNo);
+                assertNull(existing, regNo);
+            }
+        }
+    }
+
+    @Test
+    void hashesTheRegistrationNumbersThatCantBePacked() {
+        String[] regNos = {"ka-01-hh-1234", "KA 01 HH 1234", "MH-12-\u00C9-1234", "ABCDEFGHIJKL", "KA-01-HH-123456"};
+        for (String regNo : regNos) {
+            long code = PlateCodec.encode(regNo);
+            assertFalse(PlateCodec.isPacked(code), regNo);
+            assertEquals(code, PlateCodec.encode(new StringBuilder(regNo)));
+            assertEquals(code, PlateCodec.encode("park " + regNo + " 4", 5, 5 + regNo.length()));
+            assertThrows(IllegalArgumentException.class, () -> PlateCodec.decode(code));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cs0x65.parkinglot.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlateDictionaryTest {
+
+    @Test
+    void reusesTheCarOfTheSameRegistrationNumber() {
+        PlateDictionary plates = new PlateDictionary();
+        String park = "park KA-01-HH-1234";
+        String leave = "leave KA-01-HH-1234 4";
+        Car car = plates.lookup(park, 5, park.length());
+        assertEquals(new Car("KA-01-HH-1234"), car);
+        assertSame(car, plates.lookup(leave, 6, 19));
+        assertSame(car, plates.lookup(new StringBuilder(park), 5, park.length()));
+
+        // The numbers that can't be packed are compared character by character.
+        Car hashed = plates.lookup("park ka-01-hh-1234", 5, 18);
+        assertEquals(new Car("ka-01-hh-1234"), hashed);
+        assertSame(hashed, plates.lookup("ka-01-hh-1234", 0, 13));
+        assertNotSame(hashed, plates.lookup("ka-01-hh-1235", 0, 13));
+    }
+
+    @Test
+    void reusesTheCarOfTheSameRegistrationNumberAndColour() {
+        PlateDictionary plates = new PlateDictionary();
+        String park = "park KA-01-HH-1234 Red";
+        String red = plates.color(park, 19, 22);
+        assertEquals("Red", red);
+        assertSame(red, plates.color("Red", 0, 3));
+        assertSame(Car.DEFAULT_COLOR, plates.color("park KA-01-HH-1234 White", 19, 24));
+
+        Car car = plates.lookup(park, 5, 18, red);
+        assertEquals(new Car("KA-01-HH-1234", "Red"), car);
+        assertSame(car, plates.lookup(park, 5, 18, plates.color(park, 19, 22)));
+        assertSame(car, plates.lookup(park, 5, 18, "Red"));
+        // The car of the other colour evicts it.
+        Car white = plates.lookup(park, 5, 18);
+        assertEquals(new Car("KA-01-HH-1234"), white);
+        assertNotSame(car, plates.lookup(park, 5, 18, red));
+    }
+
+    @Test
+    void evictsTheCarsBeyondItsCapacity() {
+        PlateDictionary plates = new PlateDictionary(4);
+        Car[] cars = new Car[1000];
+        for (int i = 0; i < cars.length; i++) {
+            String regNo = String.format("KA-01-HH-%04d", i);
+            cars[i] = plates.lookup(regNo, 0, regNo.length());
+            assertEquals(regNo, cars[i].getRegNo());
+            assertEquals(Car.DEFAULT_COLOR, cars[i].getColor());
+        }
+        int numHits = 0;
+        for (int i = 0; i < cars.length; i++) {
+            String regNo = cars[i].getRegNo();
+            Car car = plates.lookup(regNo, 0, regNo.length());
+            assertEquals(cars[i], car);
+            if (car == cars[i])
+                numHits++;
+        }
+        assertTrue(numHits <= 4, "Hits: " + numHits);
+    }
+}
@@ -0,0 +1,91 @@
+package cs0x65.parkinglot.server;
+
+import cs0x65.parkinglot.engine.LotEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingLotServerTest {
+    private static final int CARS = 5_000;
+
+    private LotEngine engine;
+    private ParkingLotServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        engine = new LotEngine(2);
+        server = new ParkingLotServer(engine, new InetSocketAddress("127.0.0.1", 0)).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        engine.close();
+    }
+
+    @Test
+    void servesTheCommandsOverTheTextProtocol() throws IOException {
+        try (ParkingLotClient client = new ParkingLotClient(server.getAddress(), Protocol.TEXT)){
+            assertEquals("Created parking lot with 2 slots", client.call("@mall create_parking_lot 2"));
+            assertEquals("Allocated slot number: 1", client.call("@mall park KA-01-HH-1234"));
+            assertEquals("Registration number KA-01-HH-1234 with Slot Number 1 is free with Charge 10",
+                    client.call("@mall leave KA-01-HH-1234"));
+            assertEquals("Parking lot: station doesn't exist", client.call("@station park KA-01-HH-1234"));
+        }
+    }
+
+    @Test
+    void servesTheCommandsOverTheBinaryProtocol() throws IOException {
+        try (ParkingLotClient client = new ParkingLotClient(server.getAddress(), Protocol.BINARY)){
+            assertEquals("Created parking lot with 1 slots", client.call("create_parking_lot 1"));
+            assertEquals("Allocated slot number: 1", client.call("park KA-01-HH-1234"));
+            assertFalse(client.isLastFailed());
+            assertEquals("Sorry, parking lot is full", client.call("park KA-01-HH-9999"));
+
+            assertTrue(client.call("leave KA-01-HH-1234 -4").contains("not a valid argument"));
+            assertTrue(client.isLastFailed());
+            // The connection carries on after a bad command.
+            assertEquals("Slot No. Registration No.\n1        KA-01-HH-1234", client.call("status"));
+            assertFalse(client.isLastFailed());
+        }
+    }
+
+    @Test
+    void respondsToThePipelinedRequestsInTheirOrder() throws IOException {
+        try (ParkingLotClient client = new ParkingLotClient(server.getAddress(), Protocol.BINARY)){
+            int lots = 4;
+            for (int l = 0; l < lots; l++)
+                client.send("@lot-" + l + " create_parking_lot " + CARS);
+            // Interleaved across the lots, so the lanes complete them out of the order of the requests.
+            for (int i = 0; i < CARS; i++) {
+                for (int l = 0; l < lots; l++)
+                    client.send("@lot-" + l + " park KA-0" + l + "-HH-" + i);
+            }
+            client.flush();
+
+            for (int l = 0; l < lots; l++)
+                assertEquals("Created parking lot with " + CARS + " slots", client.receive());
+            for (int i = 0; i < CARS; i++) {
+                for (int l = 0; l < lots; l++)
+                    assertEquals("Allocated slot number: " + (i + 1), client.receive());
+            }
+        }
+        assertEquals(CARS, engine.getRegistry().get("lot-3").getNumOccupiedSlots());
+    }
+
+    @Test
+    void servesManyConnectionsAtOnce() throws IOException {
+        try (ParkingLotClient first = new ParkingLotClient(server.getAddress(), Protocol.TEXT);
+             ParkingLotClient second = new ParkingLotClient(server.getAddress(), Protocol.BINARY)){
+            assertEquals("Created parking lot with 2 slots", first.call("create_parking_lot 2"));
+            assertEquals("Allocated slot number: 1", second.call("park KA-01-HH-1234"));
+            assertEquals("Allocated slot number: 2", first.call("park KA-01-HH-9999"));
+            assertEquals("Sorry, parking lot is full", second.call("park KA-01-HH-7777"));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package cs0x65.parkinglot.tariff;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffTest {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // Monday, 2024-01-01 00:00 UTC.
+    private static final long MONDAY = 1_704_067_200_000L;
+
+    @Test
+    void chargesEveryStartedMinute() {
+        Tariff tariff = new Tariff.Builder(10).build();
+        assertEquals(25, tariff.charge(MONDAY, MONDAY + 150 * MINUTE));
+        assertEquals(1, tariff.charge(MONDAY, MONDAY + 1));
+        assertEquals(0, tariff.charge(MONDAY, MONDAY));
+        assertEquals(30 * 24 * 10, tariff.charge(MONDAY + 5 * DAY, MONDAY + 35 * DAY));
+    }
+
+    @Test
+    void chargesByTheTimeOfTheDayAndTheDayOfTheWeek() {
+        Tariff tariff = new Tariff.Builder(20)
+                .withWeekdayRate(LocalTime.of(20, 0), LocalTime.MIDNIGHT, 10)
+                .withWeekendRate(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT, 5)
+                .build();
+        // 18:00 to 22:00 on a Monday.
+        assertEquals(2 * 20 + 2 * 10, tariff.charge(MONDAY + 18 * HOUR, MONDAY + 22 * HOUR));
+        // Friday 23:00 to Saturday 01:00.
+        assertEquals(10 + 5, tariff.charge(MONDAY + 4 * DAY + 23 * HOUR, MONDAY + 5 * DAY + HOUR));
+        assertThrows(IllegalArgumentException.class, () -> new Tariff.Builder(1)
+                .withRate(DayOfWeek.MONDAY, LocalTime.of(10, 0), LocalTime.of(9, 0), 1));
+    }
+
+    @Test
+    void capsTheChargesOfEveryDayAndChargesTheInitialMinutesFlat() {
+        Tariff tariff = new Tariff.Builder(10)
+                .withDailyCap(100)
+                .withInitialCharge(30, 3)
+                .build();
+        assertEquals(3, tariff.charge(MONDAY, MONDAY + 20 * MINUTE));
+        assertEquals(3 + 5, tariff.charge(MONDAY, MONDAY + HOUR));
+        // 30 minutes flat, then 23.5 capped hours on the first day, 2 whole days and 5 hours on the last day.
+        assertEquals(3 + 100 + 2 * 100 + 50, tariff.charge(MONDAY, MONDAY + 3 * DAY + 5 * HOUR));
+    }
+
+    @Test
+    void agreesWithChargingMinuteByMinute() {
+        ZoneOffset offset = ZoneOffset.ofHoursMinutes(5, 30);
+        Tariff.Builder builder = new Tariff.Builder(12)
+                .withWeekdayRate(LocalTime.of(8, 0), LocalTime.of(18, 30), 40)
+                .withRate(DayOfWeek.FRIDAY, LocalTime.of(17, 0), LocalTime.MIDNIGHT, 55)
+                .withWeekendRate(LocalTime.of(9, 15), LocalTime.of(21, 0), 7)
+                .withDailyCap(300)
+                .withZoneOffset(offset);
+        Tariff tariff = builder.build();
+
+        Random random = new Random(23);
+        long[] parkedAt = new long[500];
+        long[] leftAt = new long[parkedAt.length];
+        for (int i = 0; i < parkedAt.length; i++) {
+            parkedAt[i] = MONDAY + (long) (random.nextDouble() * 400 * DAY);
+            leftAt[i] = parkedAt[i] + (long) (random.nextDouble() * (i % 2 == 0 ? 2 * DAY : 40 * DAY));
+            assertEquals(chargeByTheMinute(parkedAt[i], leftAt[i], offset), tariff.charge(parkedAt[i], leftAt[i]));
+        }
+
+        long[] charges = new long[parkedAt.length];
+        tariff.charge(parkedAt, leftAt, charges);
+        for (int i = 0; i < parkedAt.length; i++)
+            assertEquals(tariff.charge(parkedAt[i], leftAt[i]), charges[i]);
+    }
+
+    /**
+     * The reference the compiled tariff of {@link #agreesWithChargingMinuteByMinute()} is checked against.
+     */
+    private static long chargeByTheMinute(long parkedAt, long leftAt, ZoneOffset offset) {
+        long total = 0;
+        long day = 0;
+        int dayOfYear = -1;
+        long from = Math.floorDiv(parkedAt, MINUTE);
+        for (long minute = from; minute < from + (leftAt - parkedAt + MINUTE - 1) / MINUTE; minute++) {
+            OffsetDateTime time = Instant.ofEpochMilli(minute * MINUTE).atOffset(offset);
+            if (time.getDayOfYear() != dayOfYear){
+                total += Math.min(300 * 60, day);
+                day = 0;
+                dayOfYear = time.getDayOfYear();
+            }
+            day += rate(time.getDayOfWeek(), time.getHour() * 60 + time.getMinute());
+        }
+        total += Math.min(300 * 60, day);
+        return (total + 59) / 60;
+    }
+
+    private static long rate(DayOfWeek day, int minuteOfDay) {
+        boolean weekend = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+        if (weekend)
+            return minuteOfDay >= 9 * 60 + 15 && minuteOfDay < 21 * 60 ? 7 : 12;
+        if (day == DayOfWeek.FRIDAY && minuteOfDay >= 17 * 60)
+            return 55;
+        return minuteOfDay >= 8 * 60 && minuteOfDay < 18 * 60 + 30 ? 40 : 12;
+    }
+}